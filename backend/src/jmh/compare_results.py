@@ -0,0 +1,51 @@
+"""
+Compares two JMH JSON reports (mvn -P jmh verify writes target/jmh-results.json).
+
+    python3 src/jmh/compare_results.py baseline.json target/jmh-results.json [--threshold 10]
+
+Prints each benchmark/parameter combination with its score in both runs and the
+change in percent, flagging changes beyond the threshold in the bad direction
+(slower for time modes, lower for throughput). Exits with 1 if any regression is flagged.
+"""
+import argparse
+import json
+import sys
+
+def load(path):
+    with open(path, encoding="utf-8") as f:
+        results = {}
+        for entry in json.load(f):
+            params = ",".join(f"{k}={v}" for k, v in sorted(entry.get("params", {}).items()))
+            key = entry["benchmark"].rsplit(".", 2)[-2] + "." + entry["benchmark"].rsplit(".", 1)[-1]
+            if params:
+                key += f" [{params}]"
+            metric = entry["primaryMetric"]
+            results[key] = (entry["mode"], metric["score"], metric["scoreError"], metric["scoreUnit"])
+        return results
+
+def main():
+    parser = argparse.ArgumentParser(description="Compare two JMH JSON reports.")
+    parser.add_argument("baseline")
+    parser.add_argument("current")
+    parser.add_argument("--threshold", type=float, default=10.0, help="Regression threshold in percent")
+    args = parser.parse_args()
+
+    baseline = load(args.baseline)
+    current = load(args.current)
+    regressions = 0
+    width = max((len(k) for k in current), default=10)
+    for key in sorted(current):
+        mode, score, error, unit = current[key]
+        if key not in baseline:
+            print(f"{key:<{width}}  {'new':>12}  {score:12.3f} {unit}")
+            continue
+        old_score = baseline[key][1]
+        change = (score - old_score) / old_score * 100 if old_score else 0.0
+        worse = change < -args.threshold if mode == "thrpt" else change > args.threshold
+        regressions += worse
+        flag = "  REGRESSION" if worse else ""
+        print(f"{key:<{width}}  {old_score:12.3f}  {score:12.3f} {unit}  {change:+7.1f}%{flag}")
+    sys.exit(1 if regressions else 0)
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,65 @@
+package com.example.audiototext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wiring for benchmarks that build components without a Spring context.
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Sets an {@code @Autowired} / {@code @Value} field the way the container would.
+     */
+    static void inject(Object target, String fieldName, Object value) {
+        Class<?> type = target.getClass();
+        while (type != null) {
+            try {
+                Field field = type.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                field.set(target, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                type = type.getSuperclass();
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        throw new IllegalArgumentException("No field " + fieldName + " on " + target.getClass());
+    }
+
+    /**
+     * An ObjectMapper configured like Spring Boot's (ISO dates, Java time module).
+     */
+    static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    static JobEventHub eventHub(int replaySize) {
+        JobEventHub hub = new JobEventHub();
+        inject(hub, "objectMapper", objectMapper());
+        inject(hub, "replaySize", replaySize);
+        inject(hub, "timeoutMinutes", 30L);
+        inject(hub, "retainSeconds", 60L);
+        return hub;
+    }
+
+    /**
+     * {@code count} consecutive five-second segments of ordinary sentence length.
+     */
+    static List<TranscriptSegment> segments(int count) {
+        List<TranscriptSegment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            segments.add(new TranscriptSegment(i * 5.0, i * 5.0 + 4.8,
+                    " Segment number " + i + " of a long recording, with a typical amount of spoken text in it."));
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.audiototext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing one {@code /api/history} page of {@link JobSummary} rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistorySerializationBenchmark {
+
+    @Param({ "20", "100", "1000" })
+    public int items;
+
+    private ObjectMapper objectMapper;
+    private TranscriptionService.HistoryPage page;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = BenchmarkSupport.objectMapper();
+        LocalDateTime now = LocalDateTime.now();
+        List<JobSummary> rows = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            LocalDateTime created = now.minusMinutes(i * 7L);
+            rows.add(new JobSummary("3f1c2a9e-0000-4000-8000-" + String.format("%012d", i), JobStatus.COMPLETED,
+                    "small", "en", "transcribe", "Success! Transcription finalized.", created,
+                    created.plusMinutes(3)));
+        }
+        JobSummary last = rows.get(rows.size() - 1);
+        page = new TranscriptionService.HistoryPage(rows, new HistoryCursor(last.createdAt, last.id).encode());
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws IOException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
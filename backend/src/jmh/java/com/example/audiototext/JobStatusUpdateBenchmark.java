@@ -0,0 +1,65 @@
+package com.example.audiototext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.servlet.mvc.method.annotation.BenchmarkEmitters;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TranscriptionService#updateJobStatus} for intermediate PROCESSING updates, with
+ * several threads hitting the same few jobs (as chunked transcriptions do), each job
+ * watched by one SSE subscriber.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JobStatusUpdateBenchmark {
+
+    @Param({ "1", "64" })
+    public int jobs;
+
+    private TranscriptionService service;
+    private String[] jobIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        JobStateTable jobStates = new JobStateTable();
+        JobEventHub eventHub = BenchmarkSupport.eventHub(256);
+        service = new TranscriptionService();
+        BenchmarkSupport.inject(service, "jobStates", jobStates);
+        BenchmarkSupport.inject(service, "eventHub", eventHub);
+
+        jobIds = new String[jobs];
+        for (int i = 0; i < jobs; i++) {
+            jobIds[i] = "job-" + i;
+            jobStates.track(TranscriptionJob.builder().id(jobIds[i]).status(JobStatus.PROCESSING).build());
+            eventHub.open(jobIds[i], 1L);
+            SseEmitter emitter = eventHub.subscribeJob(jobIds[i], null);
+            BenchmarkEmitters.connect(emitter);
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void processingUpdate() {
+        String jobId = jobIds[ThreadLocalRandom.current().nextInt(jobIds.length)];
+        service.updateJobStatus(jobId, JobStatus.PROCESSING, "Transcribed part 3 of 12...", null);
+    }
+}
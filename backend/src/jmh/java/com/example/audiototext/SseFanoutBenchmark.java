@@ -0,0 +1,59 @@
+package com.example.audiototext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.servlet.mvc.method.annotation.BenchmarkEmitters;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishing one segment event through {@link JobEventHub} to N connected subscribers
+ * of the job, plus the owner's user stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SseFanoutBenchmark {
+
+    @Param({ "1", "100", "1000" })
+    public int subscribers;
+
+    private JobEventHub hub;
+    private Map<String, Object> segment;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        hub = BenchmarkSupport.eventHub(256);
+        hub.open("job", 1L);
+        for (int i = 0; i < subscribers; i++) {
+            BenchmarkEmitters.connect(hub.subscribeJob("job", null));
+        }
+        BenchmarkEmitters.connect(hub.subscribeUser(1L, null));
+
+        segment = new HashMap<>();
+        segment.put("jobId", "job");
+        segment.put("start", 12.5);
+        segment.put("end", 17.25);
+        segment.put("text", "A typical decoded segment of speech, about one sentence long.");
+    }
+
+    @Benchmark
+    public void publishSegment() {
+        hub.publish("job", "segment", segment);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.audiototext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code GET /api/status/{jobId}} for a completed job: reading the (bounded) transcript
+ * prefix and serializing the response the way Spring MVC would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusEndpointBenchmark {
+
+    @Param({ "16", "512", "8192" })
+    public int transcriptKb;
+
+    private Path dir;
+    private TranscriptionController controller;
+    private ObjectMapper objectMapper;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("status-bench");
+        Path text = dir.resolve("job.txt");
+        try (Writer out = Files.newBufferedWriter(dir.resolve("job_timestamped.txt"), StandardCharsets.UTF_8)) {
+            long written = 0;
+            int i = 0;
+            while (written < transcriptKb * 1024L) {
+                String line = "[" + TranscriptWriter.formatTimestamp(i * 5.0, true, '.').substring(0, 8)
+                        + "] Segment number " + i++ + " of a long recording, with typical spoken text in it.\n";
+                out.write(line);
+                written += line.length();
+            }
+        }
+        Files.writeString(text, "unused");
+
+        TranscriptionService service = new TranscriptionService() {
+            @Override
+            public JobInfo getJobInfo(String jobId) {
+                return new JobInfo(JobStatus.COMPLETED, text.toString(), "Success! Transcription finalized.");
+            }
+        };
+        controller = new TranscriptionController();
+        BenchmarkSupport.inject(controller, "transcriptionService", service);
+        BenchmarkSupport.inject(controller, "maxInlineTranscriptKb", 512L);
+        objectMapper = BenchmarkSupport.objectMapper();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public byte[] getStatus() throws IOException {
+        return objectMapper.writeValueAsBytes(controller.getStatus("job").getBody());
+    }
+}
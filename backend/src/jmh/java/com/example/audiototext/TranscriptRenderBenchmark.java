@@ -0,0 +1,97 @@
+package com.example.audiototext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering a stitched transcript into each output format ({@link TranscriptWriter}),
+ * from memory and, as downloads do, from a memory-mapped {@link SegmentFile}.
+ * 720 segments is roughly one hour of speech.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TranscriptRenderBenchmark {
+
+    @Param({ "60", "720", "4320" })
+    public int segments;
+
+    private List<TranscriptSegment> transcript;
+    private Path segmentPath;
+    private SegmentFile segmentFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        transcript = BenchmarkSupport.segments(segments);
+        segmentPath = SegmentFile.write(transcript, Files.createTempFile("render-benchmark", SegmentFile.SUFFIX));
+        segmentFile = SegmentFile.open(segmentPath);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(segmentPath);
+    }
+
+    @Benchmark
+    public String txt() throws IOException {
+        StringWriter out = new StringWriter();
+        TranscriptWriter.writeText(transcript, out);
+        return out.toString();
+    }
+
+    @Benchmark
+    public String timestamped() throws IOException {
+        StringWriter out = new StringWriter();
+        TranscriptWriter.writeTimestamped(transcript, out);
+        return out.toString();
+    }
+
+    @Benchmark
+    public String srt() throws IOException {
+        StringWriter out = new StringWriter();
+        TranscriptWriter.writeSrt(transcript, out);
+        return out.toString();
+    }
+
+    @Benchmark
+    public String vtt() throws IOException {
+        StringWriter out = new StringWriter();
+        TranscriptWriter.writeVtt(transcript, out);
+        return out.toString();
+    }
+
+    @Benchmark
+    public String srtFromSegmentFile() throws IOException {
+        StringWriter out = new StringWriter();
+        TranscriptWriter.Format.SRT.render(segmentFile.segments(), 0, out);
+        return out.toString();
+    }
+
+    @Benchmark
+    public String jsonFromSegmentFile() throws IOException {
+        StringWriter out = new StringWriter();
+        TranscriptWriter.Format.JSON.render(segmentFile.segments(), 0, out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.audiototext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classifying and parsing the lines a Whisper worker prints: progress frames,
+ * segment frames and plain log output (which must fall through both parsers cheaply).
+ * {@code progressFrameBytes} is the path workers take: the frame is parsed in the read
+ * buffer and never decoded to a String.
+ * Run with {@code -prof gc} to check the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkerOutputParseBenchmark {
+
+    private String progressLine = "@@PROGRESS 1234.560 5400.000";
+    private String segmentLine = "@@SEGMENT 1230.120 1234.560 And that is why the second quarter looked that way.";
+    private String logLine = "Detected language: English";
+    private byte[] progressBytes = progressLine.getBytes(StandardCharsets.UTF_8);
+
+    private final JobProgress.Part part = new JobProgress(Long.MAX_VALUE / 2_000_000, p -> {
+    }).part(0);
+
+    @Benchmark
+    public boolean progressFrame() {
+        return part.accept(progressLine);
+    }
+
+    @Benchmark
+    public boolean progressFrameBytes() {
+        return part.accept(progressBytes, 0, progressBytes.length);
+    }
+
+    @Benchmark
+    public TranscriptSegment segmentFrame() {
+        return part.accept(segmentLine) ? null : TranscriptSegment.fromFrame(segmentLine);
+    }
+
+    @Benchmark
+    public TranscriptSegment logLine() {
+        return part.accept(logLine) ? null : TranscriptSegment.fromFrame(logLine);
+    }
+}
@@ -0,0 +1,59 @@
+package org.springframework.web.servlet.mvc.method.annotation;
+
+import org.springframework.http.MediaType;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Connects emitters to a handler that only measures what would be written, so fan-out
+ * benchmarks exercise the real send path without a servlet container. Lives in Spring's
+ * package because {@link ResponseBodyEmitter#initialize} is package-private.
+ */
+public final class BenchmarkEmitters {
+
+    private BenchmarkEmitters() {
+    }
+
+    /**
+     * Initializes {@code emitter} as if the container had started the async response.
+     * Returns a counter of the characters "written" through it.
+     */
+    public static long[] connect(ResponseBodyEmitter emitter) throws java.io.IOException {
+        long[] written = new long[1];
+        emitter.initialize(new ResponseBodyEmitter.Handler() {
+            @Override
+            public void send(Object data, MediaType mediaType) {
+                written[0] += String.valueOf(data).length();
+            }
+
+            @Override
+            public void send(Set<ResponseBodyEmitter.DataWithMediaType> items) {
+                for (ResponseBodyEmitter.DataWithMediaType item : items) {
+                    written[0] += String.valueOf(item.getData()).length();
+                }
+            }
+
+            @Override
+            public void complete() {
+            }
+
+            @Override
+            public void completeWithError(Throwable failure) {
+            }
+
+            @Override
+            public void onTimeout(Runnable callback) {
+            }
+
+            @Override
+            public void onError(Consumer<Throwable> callback) {
+            }
+
+            @Override
+            public void onCompletion(Runnable callback) {
+            }
+        });
+        return written;
+    }
+}
@@ -0,0 +1,638 @@
+package com.example.audiototext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end load test. Starts the packaged application against
+ * {@code whisper/fake_transcribe.py} (simulated model load and decode cost), then pushes
+ * an increasing number of concurrent users through register, login, upload, the SSE
+ * status stream and download. For each step it reports jobs per minute, p50/p95/p99
+ * latency per endpoint, rejected uploads, and peak heap and thread count (scraped from
+ * {@code /actuator/prometheus}), and it names the step where throughput stops growing.
+ * With {@code link-share} above 0 that fraction of jobs is submitted as links to a few
+ * files on a local media server instead, and each step reports how often the server
+ * actually had to send a file.
+ *
+ * <p>Run with {@code mvn -P loadtest verify}. Options are {@code name=value} pairs, see
+ * {@link #DEFAULTS}; {@code --property=value} arguments are passed to the application,
+ * so scheduler and pool settings can be compared run against run.
+ */
+public class LoadTest {
+
+    static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("jar", "target/audiototext-0.0.1-SNAPSHOT.jar");
+        DEFAULTS.put("script", "../whisper/fake_transcribe.py");
+        DEFAULTS.put("python", "python3");
+        DEFAULTS.put("port", "18080");
+        DEFAULTS.put("users", "1,2,4,8,16");       // concurrency steps
+        DEFAULTS.put("step-seconds", "60");         // how long each step submits new jobs
+        DEFAULTS.put("audio-seconds", "60");        // length of the generated WAV per upload
+        DEFAULTS.put("model", "small");
+        DEFAULTS.put("load-delay", "2");            // simulated model load per worker, seconds
+        DEFAULTS.put("job-delay", "0.2");           // fixed cost per job, seconds
+        DEFAULTS.put("decode-cost", "0.05");        // seconds per second of audio
+        DEFAULTS.put("plateau-gain", "0.10");       // a step adding less than this is the plateau
+        DEFAULTS.put("link-share", "0");            // fraction of jobs submitted via /api/transcribe-link
+        DEFAULTS.put("links", "4");                 // distinct files the local media server offers
+        DEFAULTS.put("work-dir", "target/loadtest");
+        DEFAULTS.put("report", "target/loadtest-report.json");
+    }
+
+    private static final String[] ENDPOINTS = { "register", "login", "upload", "link", "sse-first-byte", "job",
+            "download" };
+
+    private final Map<String, String> options;
+    private final List<String> appArgs;
+    private final String baseUrl;
+    private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final HttpClient probe = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final List<VirtualUser> users = new ArrayList<>();
+    private final String runId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong audioCounter = new AtomicLong();
+    private MediaServer mediaServer;
+
+    LoadTest(Map<String, String> options, List<String> appArgs) {
+        this.options = options;
+        this.appArgs = appArgs;
+        this.baseUrl = "http://localhost:" + options.get("port");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        List<String> appArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                appArgs.add(arg);
+            } else if (arg.contains("=")) {
+                String name = arg.substring(0, arg.indexOf('='));
+                if (!DEFAULTS.containsKey(name)) {
+                    throw new IllegalArgumentException("Unknown option " + name + ", expected one of " + DEFAULTS.keySet());
+                }
+                options.put(name, arg.substring(arg.indexOf('=') + 1));
+            } else if (!arg.isBlank()) {
+                throw new IllegalArgumentException("Expected name=value or --app.property=value, got " + arg);
+            }
+        }
+        System.exit(new LoadTest(options, appArgs).run());
+    }
+
+    int run() throws Exception {
+        Path workDir = Path.of(options.get("work-dir")).toAbsolutePath();
+        deleteRecursively(workDir);
+        Files.createDirectories(workDir);
+
+        if (Double.parseDouble(options.get("link-share")) > 0) {
+            mediaServer = new MediaServer(Integer.parseInt(options.get("links")));
+        }
+        Process app = startApplication(workDir);
+        try {
+            waitUntilHealthy(app, Duration.ofSeconds(120));
+            List<Map<String, Object>> steps = new ArrayList<>();
+            for (String level : options.get("users").split(",")) {
+                steps.add(runStep(Integer.parseInt(level.trim())));
+            }
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("options", options);
+            report.put("appArgs", appArgs);
+            report.put("steps", steps);
+            report.put("plateau", findPlateau(steps));
+            Path reportFile = Path.of(options.get("report")).toAbsolutePath();
+            Files.createDirectories(reportFile.getParent());
+            mapper.writeValue(reportFile.toFile(), report);
+            printSummary(steps, report.get("plateau"));
+            System.out.println("[LoadTest] Report written to " + reportFile);
+            return 0;
+        } finally {
+            if (mediaServer != null) {
+                mediaServer.stop();
+            }
+            app.destroy();
+            if (!app.waitFor(30, TimeUnit.SECONDS)) {
+                app.destroyForcibly();
+            }
+        }
+    }
+
+    // --- application under test ---
+
+    private Process startApplication(Path workDir) throws IOException {
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-jar", Path.of(options.get("jar")).toAbsolutePath().toString(),
+                "--server.port=" + options.get("port"),
+                "--app.upload.dir=" + workDir.resolve("uploads"),
+                "--app.output.dir=" + workDir.resolve("outputs"),
+                "--app.whisper.script=" + Path.of(options.get("script")).toAbsolutePath(),
+                "--app.python.command=" + options.get("python"),
+                "--spring.datasource.url=jdbc:h2:file:" + workDir.resolve("data/db")));
+        if (appArgs.stream().noneMatch(arg -> arg.startsWith("--app.quota.enabled="))) {
+            // Virtual users submit far more than a person would; measure capacity, not the per-user quotas
+            command.add("--app.quota.enabled=false");
+        }
+        command.addAll(appArgs);
+
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(workDir.resolve("app.log").toFile());
+        // Inherited by every worker the application spawns
+        builder.environment().put("FAKE_WHISPER_LOAD_DELAY", options.get("load-delay"));
+        builder.environment().put("FAKE_WHISPER_JOB_DELAY", options.get("job-delay"));
+        builder.environment().put("FAKE_WHISPER_DECODE_COST", options.get("decode-cost"));
+        System.out.println("[LoadTest] Starting application, log in " + workDir.resolve("app.log"));
+        return builder.start();
+    }
+
+    private void waitUntilHealthy(Process app, Duration timeout) throws Exception {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!app.isAlive()) {
+                throw new IllegalStateException("Application exited with code " + app.exitValue() + ", see app.log");
+            }
+            try {
+                HttpResponse<String> response = probe.send(HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/health"))
+                        .timeout(Duration.ofSeconds(2)).build(), HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("Application not healthy after " + timeout.toSeconds() + "s");
+    }
+
+    // --- one concurrency step ---
+
+    private Map<String, Object> runStep(int concurrency) throws Exception {
+        System.out.println("[LoadTest] Step: " + concurrency + " concurrent users");
+        Stats stats = new Stats();
+        long mediaSentBefore = mediaServer != null ? mediaServer.sent.get() : 0;
+        long mediaNotModifiedBefore = mediaServer != null ? mediaServer.notModified.get() : 0;
+        while (users.size() < concurrency) {
+            VirtualUser user = new VirtualUser("load-" + runId + "-" + users.size());
+            user.signIn(stats);
+            users.add(user);
+        }
+
+        ResourceSampler sampler = new ResourceSampler();
+        Thread samplerThread = new Thread(sampler, "loadtest-sampler");
+        samplerThread.setDaemon(true);
+        samplerThread.start();
+
+        long stepNanos = Duration.ofSeconds(Long.parseLong(options.get("step-seconds"))).toNanos();
+        long startedAt = System.nanoTime();
+        long submitUntil = startedAt + stepNanos;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            VirtualUser user = users.get(i);
+            Thread thread = new Thread(() -> user.loop(stats, submitUntil), "loadtest-" + user.username);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedNanos = System.nanoTime() - startedAt;
+        sampler.stop();
+        samplerThread.join();
+
+        double minutes = elapsedNanos / 60e9;
+        Map<String, Object> step = new LinkedHashMap<>();
+        step.put("users", concurrency);
+        step.put("elapsedSeconds", round(elapsedNanos / 1e9));
+        step.put("jobsCompleted", stats.completed.get());
+        step.put("jobsFailed", stats.failed.get());
+        step.put("uploadsRejected", stats.rejected.get());
+        step.put("errors", stats.errors.get());
+        step.put("jobsPerMinute", round(stats.completed.get() / minutes));
+        step.put("latencyMillis", stats.percentiles());
+        step.put("peakHeapMb", round(sampler.peakHeapBytes / 1048576.0));
+        step.put("peakLiveThreads", sampler.peakThreads);
+        if (mediaServer != null) {
+            step.put("linkJobs", stats.links.get());
+            step.put("mediaFilesSent", mediaServer.sent.get() - mediaSentBefore);
+            step.put("mediaNotModified", mediaServer.notModified.get() - mediaNotModifiedBefore);
+        }
+        System.out.printf("[LoadTest]   %d jobs completed, %.1f jobs/min, %d rejected, %d errors%n",
+                stats.completed.get(), stats.completed.get() / minutes, stats.rejected.get(), stats.errors.get());
+        return step;
+    }
+
+    /**
+     * First step whose throughput grew by less than {@code plateau-gain} over the previous one.
+     */
+    private Map<String, Object> findPlateau(List<Map<String, Object>> steps) {
+        double minGain = Double.parseDouble(options.get("plateau-gain"));
+        for (int i = 1; i < steps.size(); i++) {
+            double previous = (double) steps.get(i - 1).get("jobsPerMinute");
+            double current = (double) steps.get(i).get("jobsPerMinute");
+            if (previous > 0 && current < previous * (1 + minGain)) {
+                Map<String, Object> plateau = new LinkedHashMap<>();
+                plateau.put("users", steps.get(i - 1).get("users"));
+                plateau.put("jobsPerMinute", previous);
+                return plateau;
+            }
+        }
+        return null;
+    }
+
+    private void printSummary(List<Map<String, Object>> steps, Object plateau) {
+        System.out.println();
+        System.out.printf("%6s %9s %6s %6s %8s %9s %8s  %s%n", "users", "jobs/min", "done", "429s", "errors",
+                "heap MB", "threads", "p50/p95/p99 ms per endpoint");
+        for (Map<String, Object> step : steps) {
+            StringBuilder latencies = new StringBuilder();
+            @SuppressWarnings("unchecked")
+            Map<String, Map<String, Object>> byEndpoint = (Map<String, Map<String, Object>>) step.get("latencyMillis");
+            byEndpoint.forEach((endpoint, p) -> latencies.append(endpoint).append(' ')
+                    .append(p.get("p50")).append('/').append(p.get("p95")).append('/').append(p.get("p99")).append("  "));
+            System.out.printf("%6s %9s %6s %6s %8s %9s %8s  %s%n", step.get("users"), step.get("jobsPerMinute"),
+                    step.get("jobsCompleted"), step.get("uploadsRejected"), step.get("errors"), step.get("peakHeapMb"),
+                    step.get("peakLiveThreads"), latencies.toString().trim());
+        }
+        System.out.println(plateau == null
+                ? "Throughput was still growing at the last step; add higher --users levels to find the plateau."
+                : "Throughput levels off at " + plateau);
+    }
+
+    // --- simulated user ---
+
+    private class VirtualUser {
+        final String username;
+        final HttpClient client = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        VirtualUser(String username) {
+            this.username = username;
+        }
+
+        void signIn(Stats stats) throws Exception {
+            String credentials = "{\"username\":\"" + username + "\",\"password\":\"load-test\"";
+            expectOk(stats.time("register", () -> postJson("/api/auth/register",
+                    credentials + ",\"email\":\"" + username + "@example.com\"}")), "register");
+            expectOk(stats.time("login", () -> postJson("/api/auth/login", credentials + "}")), "login");
+        }
+
+        void loop(Stats stats, long submitUntil) {
+            while (System.nanoTime() < submitUntil) {
+                try {
+                    runJob(stats);
+                } catch (Exception e) {
+                    stats.errors.incrementAndGet();
+                    System.err.println("[LoadTest] " + username + ": " + e.getMessage());
+                    sleep(1000);
+                }
+            }
+        }
+
+        private void runJob(Stats stats) throws Exception {
+            boolean viaLink = mediaServer != null
+                    && ThreadLocalRandom.current().nextDouble() < Double.parseDouble(options.get("link-share"));
+            HttpResponse<String> upload = viaLink
+                    ? stats.time("link", () -> submitLink(mediaServer.randomUrl()))
+                    : stats.time("upload", () -> upload(uniqueWav()));
+            if (upload.statusCode() == 429) {
+                stats.rejected.incrementAndGet();
+                sleep(1000L * upload.headers().firstValueAsLong("Retry-After").orElse(1));
+                return;
+            }
+            expectOk(upload, "upload");
+            String jobId = mapper.readTree(upload.body()).path("jobId").asText();
+            long submittedAt = System.nanoTime();
+            if (viaLink) {
+                stats.links.incrementAndGet();
+            }
+
+            String status = awaitCompletion(stats, jobId);
+            stats.record("job", System.nanoTime() - submittedAt);
+            if (!"COMPLETED".equals(status)) {
+                stats.failed.incrementAndGet();
+                return;
+            }
+            expectOk(stats.time("download", () -> client.send(get("/api/download/" + jobId + "?format=txt").build(),
+                    HttpResponse.BodyHandlers.ofString())), "download");
+            stats.completed.incrementAndGet();
+        }
+
+        /**
+         * Follows the job's event stream until a terminal status arrives, reconnecting
+         * with {@code Last-Event-ID} like a browser when the stream ends early.
+         */
+        private String awaitCompletion(Stats stats, String jobId) throws Exception {
+            String lastEventId = null;
+            for (int attempt = 0; attempt < 100; attempt++) {
+                HttpRequest.Builder request = get("/api/status/events/" + jobId).header("Accept", "text/event-stream");
+                if (lastEventId != null) {
+                    request.header("Last-Event-ID", lastEventId);
+                }
+                // Headers arrive with the first event, so this is time to first byte, not just connect
+                long connectStart = System.nanoTime();
+                HttpResponse<Stream<String>> response = client.send(request.build(), HttpResponse.BodyHandlers.ofLines());
+                stats.record("sse-first-byte", System.nanoTime() - connectStart);
+                expectStatus(response.statusCode(), 200, "sse");
+
+                String event = null;
+                try (Stream<String> lines = response.body()) {
+                    Iterator<String> it = lines.iterator();
+                    while (it.hasNext()) {
+                        String line = it.next();
+                        if (line.startsWith("id:")) {
+                            lastEventId = line.substring(3).trim();
+                        } else if (line.startsWith("event:")) {
+                            event = line.substring(6).trim();
+                        } else if (line.startsWith("data:") && "status-update".equals(event)) {
+                            String status = mapper.readTree(line.substring(5)).path("status").asText();
+                            if (status.equals("COMPLETED") || status.equals("FAILED")) {
+                                return status;
+                            }
+                        }
+                    }
+                }
+                sleep(200);
+            }
+            throw new IllegalStateException("No terminal status for job " + jobId);
+        }
+
+        private HttpResponse<String> postJson(String path, String json) throws Exception {
+            return client.send(HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(json)).build(), HttpResponse.BodyHandlers.ofString());
+        }
+
+        private HttpResponse<String> upload(byte[] wav) throws Exception {
+            String boundary = "----loadtest" + UUID.randomUUID();
+            ByteArrayOutputStream body = new ByteArrayOutputStream(wav.length + 512);
+            body.writeBytes(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"model\"\r\n\r\n"
+                    + options.get("model") + "\r\n").getBytes(StandardCharsets.UTF_8));
+            body.writeBytes(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"load.wav\""
+                    + "\r\nContent-Type: audio/wav\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            body.writeBytes(wav);
+            body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+            return client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/transcribe"))
+                    .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray())).build(),
+                    HttpResponse.BodyHandlers.ofString());
+        }
+
+        private HttpResponse<String> submitLink(String url) throws Exception {
+            String form = "url=" + URLEncoder.encode(url, StandardCharsets.UTF_8)
+                    + "&model=" + options.get("model");
+            return client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/transcribe-link"))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString(form)).build(), HttpResponse.BodyHandlers.ofString());
+        }
+
+        private HttpRequest.Builder get(String path) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET();
+        }
+    }
+
+    /**
+     * A silent 8 kHz mono WAV of {@code audio-seconds}, made unique so the transcript
+     * cache never turns an upload into an instant hit.
+     */
+    private byte[] uniqueWav() {
+        int sampleRate = 8000;
+        int samples = (int) (Double.parseDouble(options.get("audio-seconds")) * sampleRate);
+        ByteBuffer wav = ByteBuffer.allocate(44 + samples * 2).order(ByteOrder.LITTLE_ENDIAN);
+        wav.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(36 + samples * 2)
+                .put("WAVEfmt ".getBytes(StandardCharsets.US_ASCII)).putInt(16)
+                .putShort((short) 1).putShort((short) 1).putInt(sampleRate).putInt(sampleRate * 2)
+                .putShort((short) 2).putShort((short) 16)
+                .put("data".getBytes(StandardCharsets.US_ASCII)).putInt(samples * 2);
+        wav.putLong(44, audioCounter.incrementAndGet() ^ runId.hashCode());
+        return wav.array();
+    }
+
+    /**
+     * Local stand-in for a media host: serves {@code count} distinct WAVs at
+     * {@code /media/<n>.wav} with an ETag, answering matching conditional GETs with 304.
+     */
+    private class MediaServer {
+        final HttpServer server;
+        final List<byte[]> files = new ArrayList<>();
+        final AtomicLong sent = new AtomicLong();
+        final AtomicLong notModified = new AtomicLong();
+
+        MediaServer(int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                files.add(uniqueWav());
+            }
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/media/", exchange -> {
+                try (exchange) {
+                    String name = exchange.getRequestURI().getPath().substring("/media/".length());
+                    int index;
+                    try {
+                        index = Integer.parseInt(name.replace(".wav", ""));
+                    } catch (NumberFormatException e) {
+                        index = -1;
+                    }
+                    if (index < 0 || index >= files.size()) {
+                        exchange.sendResponseHeaders(404, -1);
+                        return;
+                    }
+                    String etag = "\"" + runId + "-" + index + "\"";
+                    exchange.getResponseHeaders().set("ETag", etag);
+                    if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                        notModified.incrementAndGet();
+                        exchange.sendResponseHeaders(304, -1);
+                        return;
+                    }
+                    byte[] body = files.get(index);
+                    exchange.getResponseHeaders().set("Content-Type", "audio/wav");
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                    sent.incrementAndGet();
+                }
+            });
+            server.start();
+            System.out.println("[LoadTest] Media server on port " + server.getAddress().getPort());
+        }
+
+        String randomUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + "/media/"
+                    + ThreadLocalRandom.current().nextInt(files.size()) + ".wav";
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+    }
+
+    // --- measurements ---
+
+    private static class Stats {
+        final Map<String, List<Long>> latencies = new ConcurrentHashMap<>();
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        final AtomicInteger links = new AtomicInteger();
+
+        interface Call<T> {
+            T run() throws Exception;
+        }
+
+        <T> T time(String endpoint, Call<T> call) throws Exception {
+            long start = System.nanoTime();
+            try {
+                return call.run();
+            } finally {
+                record(endpoint, System.nanoTime() - start);
+            }
+        }
+
+        void record(String endpoint, long nanos) {
+            latencies.computeIfAbsent(endpoint, e -> Collections.synchronizedList(new ArrayList<>())).add(nanos);
+        }
+
+        Map<String, Map<String, Object>> percentiles() {
+            Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+            for (String endpoint : ENDPOINTS) {
+                List<Long> values = latencies.get(endpoint);
+                if (values == null || values.isEmpty()) {
+                    continue;
+                }
+                List<Long> sorted;
+                synchronized (values) {
+                    sorted = new ArrayList<>(values);
+                }
+                Collections.sort(sorted);
+                Map<String, Object> p = new LinkedHashMap<>();
+                p.put("count", sorted.size());
+                p.put("p50", percentile(sorted, 0.50));
+                p.put("p95", percentile(sorted, 0.95));
+                p.put("p99", percentile(sorted, 0.99));
+                p.put("max", round(sorted.get(sorted.size() - 1) / 1e6));
+                result.put(endpoint, p);
+            }
+            return result;
+        }
+
+        private static double percentile(List<Long> sorted, double q) {
+            int index = (int) Math.ceil(q * sorted.size()) - 1;
+            return round(sorted.get(Math.max(0, index)) / 1e6);
+        }
+    }
+
+    /**
+     * Polls the Prometheus endpoint once a second for heap in use and live threads.
+     */
+    private class ResourceSampler implements Runnable {
+        volatile boolean running = true;
+        volatile double peakHeapBytes;
+        volatile int peakThreads;
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    HttpResponse<Stream<String>> response = probe.send(
+                            HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/prometheus")).build(),
+                            HttpResponse.BodyHandlers.ofLines());
+                    double heap = 0;
+                    int threads = 0;
+                    try (Stream<String> lines = response.body()) {
+                        for (Iterator<String> it = lines.iterator(); it.hasNext();) {
+                            String line = it.next();
+                            if (line.startsWith("jvm_memory_used_bytes{") && line.contains("area=\"heap\"")) {
+                                heap += value(line);
+                            } else if (line.startsWith("jvm_threads_live_threads")) {
+                                threads = (int) value(line);
+                            }
+                        }
+                    }
+                    peakHeapBytes = Math.max(peakHeapBytes, heap);
+                    peakThreads = Math.max(peakThreads, threads);
+                } catch (IOException e) {
+                    // Transient; try again next round
+                } catch (InterruptedException e) {
+                    return;
+                }
+                sleep(1000);
+            }
+        }
+
+        void stop() {
+            running = false;
+        }
+
+        private double value(String line) {
+            return Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1));
+        }
+    }
+
+    // --- helpers ---
+
+    private static void expectOk(HttpResponse<?> response, String what) {
+        expectStatus(response.statusCode(), 200, what);
+    }
+
+    private static void expectStatus(int actual, int expected, String what) {
+        if (actual != expected) {
+            throw new IllegalStateException(what + " returned HTTP " + actual);
+        }
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Collections.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
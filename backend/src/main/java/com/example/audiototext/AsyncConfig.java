@@ -1,9 +1,122 @@
 package com.example.audiototext;
 
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread model. Work that mostly waits (supervising Whisper processes, pumping their
+ * output, SSE sends) runs on virtual threads when the opt-in {@code spring.threads.virtual.enabled}
+ * is set and the JVM is Java 21+; Spring Boot applies the same switch to Tomcat's request
+ * threads and the scheduler. CPU-bound work (rendering and compressing transcripts) goes
+ * to {@code cpuExecutor}, a bounded pool sized to the cores, so thousands of waiting jobs
+ * cannot oversubscribe the CPU.
+ */
 @Configuration
 @EnableAsync
+@EnableScheduling
 public class AsyncConfig {
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${app.threads.cpu-pool-size:0}")
+    private int cpuPoolSize;
+
+    @Value("${app.threads.cpu-queue-capacity:256}")
+    private int cpuQueueCapacity;
+
+    /**
+     * Runs admitted transcription jobs. Unbounded on purpose: {@link TranscriptionScheduler}
+     * decides how many jobs may run, so this pool never queues work of its own.
+     */
+    @Bean(name = "transcriptionExecutor")
+    public Executor transcriptionExecutor() {
+        ThreadFactory factory = blockingThreadFactory("transcription-", virtualThreads);
+        if (isVirtual(factory)) {
+            return command -> factory.newThread(command).start(); // Virtual threads are never pooled
+        }
+        return Executors.newCachedThreadPool(factory);
+    }
+
+    /**
+     * Writes SSE events: one task at a time per subscriber with events queued, so a slow
+     * client only holds up its own writes, never the thread publishing the event.
+     */
+    @Bean(name = "sseExecutor")
+    public Executor sseExecutor() {
+        ThreadFactory factory = blockingThreadFactory("sse-", virtualThreads);
+        if (isVirtual(factory)) {
+            return command -> factory.newThread(command).start();
+        }
+        return Executors.newCachedThreadPool(factory);
+    }
+
+    /**
+     * Bounded pool for CPU-bound steps. When its queue is full the submitting thread runs
+     * the task itself, which slows producers down instead of failing jobs.
+     */
+    @Bean(name = "cpuExecutor", destroyMethod = "shutdown")
+    public ExecutorService cpuExecutor(PipelineMetrics metrics) {
+        int size = cpuPoolSize > 0 ? cpuPoolSize : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(cpuQueueCapacity), r -> {
+                    Thread t = new Thread(r, "cpu-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        metrics.gauge("transcription.cpu.active", Tags.empty(), pool, ThreadPoolExecutor::getActiveCount);
+        metrics.gauge("transcription.cpu.queued", Tags.empty(), pool, p -> p.getQueue().size());
+        return pool;
+    }
+
+    /**
+     * Thread factory for blocking work: virtual threads if requested and the JVM has them
+     * (looked up reflectively, so the build still targets Java 17), daemon platform threads
+     * otherwise.
+     */
+    static ThreadFactory blockingThreadFactory(String prefix, boolean virtual) {
+        if (virtual) {
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+                return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("[Threads]: Virtual threads need Java 21 (running " + Runtime.version().feature()
+                        + "); using platform threads for " + prefix + "*");
+            }
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    static boolean isVirtual(ThreadFactory factory) {
+        try {
+            Method isVirtual = Thread.class.getMethod("isVirtual");
+            return (boolean) isVirtual.invoke(factory.newThread(() -> {
+            }));
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,106 @@
+package com.example.audiototext;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures audio files and cuts them into overlapping windows. WAVE files are
+ * handled natively; every other container goes through ffprobe/ffmpeg.
+ */
+@Component
+public class AudioChunker {
+
+    @Value("${app.ffmpeg.command:ffmpeg}")
+    private String ffmpegCommand;
+
+    @Value("${app.ffprobe.command:ffprobe}")
+    private String ffprobeCommand;
+
+    /**
+     * One window of the source audio. {@code offsetSeconds} is its position in the original.
+     */
+    public static class AudioChunk {
+        public final int index;
+        public final double offsetSeconds;
+        public final double durationSeconds;
+        public final Path path;
+
+        public AudioChunk(int index, double offsetSeconds, double durationSeconds, Path path) {
+            this.index = index;
+            this.offsetSeconds = offsetSeconds;
+            this.durationSeconds = durationSeconds;
+            this.path = path;
+        }
+    }
+
+    /**
+     * Returns the duration of {@code input} in seconds, or -1 if it cannot be determined.
+     */
+    public double probeDurationSeconds(Path input) {
+        try {
+            WavFile wav = WavFile.open(input);
+            if (wav != null) {
+                return wav.getDurationSeconds();
+            }
+            String output = run(List.of(ffprobeCommand, "-v", "error", "-show_entries", "format=duration",
+                    "-of", "default=noprint_wrappers=1:nokey=1", input.toString()));
+            return Double.parseDouble(output.trim());
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("[Chunker]: Could not probe duration of " + input + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Cuts {@code input} into windows of {@code windowSeconds} that overlap by {@code overlapSeconds}.
+     */
+    public List<AudioChunk> split(Path input, Path chunkDir, double durationSeconds, double windowSeconds,
+            double overlapSeconds) throws IOException {
+        WavFile wav = WavFile.open(input);
+        double stride = windowSeconds - overlapSeconds;
+        List<AudioChunk> chunks = new ArrayList<>();
+        for (int i = 0; ; i++) {
+            double offset = i * stride;
+            double length = Math.min(windowSeconds, durationSeconds - offset);
+            Path target = chunkDir.resolve(String.format("chunk_%04d.wav", i));
+            if (wav != null) {
+                wav.writeSlice(target, offset, length);
+            } else {
+                run(List.of(ffmpegCommand, "-v", "error", "-y", "-ss", seconds(offset), "-t", seconds(length),
+                        "-i", input.toString(), "-ac", "1", "-ar", "16000", target.toString()));
+            }
+            chunks.add(new AudioChunk(i, offset, length, target));
+            if (offset + windowSeconds >= durationSeconds) {
+                return chunks;
+            }
+        }
+    }
+
+    private static String seconds(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String run(List<String> command) throws IOException {
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try (InputStream in = process.getInputStream()) {
+            String output = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            if (!process.waitFor(10, TimeUnit.MINUTES) || process.exitValue() != 0) {
+                throw new IOException(command.get(0) + " failed: " + output.trim());
+            }
+            return output;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroy();
+            throw new IOException(command.get(0) + " was interrupted", e);
+        }
+    }
+}
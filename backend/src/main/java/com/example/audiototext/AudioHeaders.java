@@ -0,0 +1,289 @@
+package com.example.audiototext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the duration of an upload from its container headers (WAV, MP3, M4A/MP4, Ogg
+ * Vorbis/Opus) without decoding it or starting ffprobe, so it is cheap enough to run on
+ * every submission. At most a few small reads near the start and end of the file.
+ * <p>
+ * MP3 uses the Xing/Info or VBRI frame count when the encoder wrote one, otherwise the
+ * bitrate of the first frame, which is exact for constant-bitrate files and an estimate
+ * for the rest. The result is for scheduling; chunking still probes with ffprobe.
+ */
+public final class AudioHeaders {
+
+    private static final int MP3_SYNC_SEARCH_BYTES = 64 * 1024;
+    private static final int OGG_MAX_PAGE_BYTES = 65_307;
+    private static final int MAX_BOX_DEPTH = 4;
+
+    private static final int[][] MP3_BITRATES_KBPS = {
+            { 0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448 }, // MPEG-1 layer I
+            { 0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384 },    // MPEG-1 layer II
+            { 0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320 },     // MPEG-1 layer III
+            { 0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256 },    // MPEG-2/2.5 layer I
+            { 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 },         // MPEG-2/2.5 layer II/III
+    };
+
+    private static final int[][] MP3_SAMPLE_RATES = {
+            { 11025, 12000, 8000 },  // MPEG-2.5
+            null,
+            { 22050, 24000, 16000 }, // MPEG-2
+            { 44100, 48000, 32000 }, // MPEG-1
+    };
+
+    private AudioHeaders() {
+    }
+
+    /**
+     * Duration of {@code path} in seconds, or -1 if the format is not recognized or the
+     * headers do not say.
+     */
+    public static double probeDurationSeconds(Path path) throws IOException {
+        WavFile wav = WavFile.open(path);
+        if (wav != null) {
+            return wav.getDurationSeconds();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer start = read(channel, 0, 12);
+            if (start.remaining() < 12) {
+                return -1;
+            }
+            if (matches(start, 0, "OggS")) {
+                return oggDuration(channel);
+            }
+            if (matches(start, 4, "ftyp")) {
+                return mp4Duration(channel);
+            }
+            return mp3Duration(channel);
+        }
+    }
+
+    // MP3: an optional ID3v2 tag, then MPEG audio frames, then an optional 128-byte ID3v1 tag
+    private static double mp3Duration(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long audioStart = 0;
+        ByteBuffer id3 = read(channel, 0, 10);
+        if (id3.remaining() == 10 && matches(id3, 0, "ID3")) {
+            long tagSize = (id3.get(6) & 0x7F) << 21 | (id3.get(7) & 0x7F) << 14
+                    | (id3.get(8) & 0x7F) << 7 | (id3.get(9) & 0x7F);
+            audioStart = 10 + tagSize + ((id3.get(5) & 0x10) != 0 ? 10 : 0);
+        }
+
+        ByteBuffer window = read(channel, audioStart, MP3_SYNC_SEARCH_BYTES);
+        for (int i = 0; i + 4 <= window.limit(); i++) {
+            Mp3Frame frame = Mp3Frame.parse(window, i);
+            if (frame == null) {
+                continue;
+            }
+            // A lone sync pattern is common in cover art and garbage; require the next frame to follow
+            long frameStart = audioStart + i;
+            long next = frameStart + frame.length;
+            if (next + 4 <= size && Mp3Frame.parse(read(channel, next, 4), 0) == null) {
+                continue;
+            }
+
+            ByteBuffer first = read(channel, frameStart, Math.max(4, frame.length));
+            int xing = 4 + frame.sideInfoLength();
+            if (first.limit() >= xing + 12 && (matches(first, xing, "Xing") || matches(first, xing, "Info"))
+                    && (first.getInt(xing + 4) & 1) != 0) {
+                long frames = first.getInt(xing + 8) & 0xFFFFFFFFL;
+                return (double) frames * frame.samplesPerFrame() / frame.sampleRate;
+            }
+            if (first.limit() >= 36 + 18 && matches(first, 36, "VBRI")) {
+                long frames = first.getInt(36 + 14) & 0xFFFFFFFFL;
+                return (double) frames * frame.samplesPerFrame() / frame.sampleRate;
+            }
+
+            long audioEnd = size;
+            ByteBuffer tail = read(channel, size - 128, 3);
+            if (size - 128 > frameStart && tail.remaining() == 3 && matches(tail, 0, "TAG")) {
+                audioEnd -= 128;
+            }
+            return (audioEnd - frameStart) * 8.0 / (frame.bitrateKbps * 1000.0);
+        }
+        return -1;
+    }
+
+    private static final class Mp3Frame {
+        final int version;  // 3 = MPEG-1, 2 = MPEG-2, 0 = MPEG-2.5
+        final int layer;    // 1, 2 or 3
+        final boolean mono;
+        final int bitrateKbps;
+        final int sampleRate;
+        final int length;
+
+        private Mp3Frame(int version, int layer, boolean mono, int bitrateKbps, int sampleRate, int length) {
+            this.version = version;
+            this.layer = layer;
+            this.mono = mono;
+            this.bitrateKbps = bitrateKbps;
+            this.sampleRate = sampleRate;
+            this.length = length;
+        }
+
+        static Mp3Frame parse(ByteBuffer buffer, int offset) {
+            if (buffer.limit() < offset + 4) {
+                return null;
+            }
+            int b1 = buffer.get(offset) & 0xFF;
+            int b2 = buffer.get(offset + 1) & 0xFF;
+            int b3 = buffer.get(offset + 2) & 0xFF;
+            int b4 = buffer.get(offset + 3) & 0xFF;
+            if (b1 != 0xFF || (b2 & 0xE0) != 0xE0) {
+                return null;
+            }
+            int version = (b2 >> 3) & 3;
+            int layer = 4 - ((b2 >> 1) & 3);
+            int bitrateIndex = b3 >> 4;
+            int sampleRateIndex = (b3 >> 2) & 3;
+            if (version == 1 || layer == 4 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+                return null; // Reserved values, or free format, which has no fixed frame size
+            }
+            int table = version == 3 ? layer - 1 : layer == 1 ? 3 : 4;
+            int bitrateKbps = MP3_BITRATES_KBPS[table][bitrateIndex];
+            int sampleRate = MP3_SAMPLE_RATES[version][sampleRateIndex];
+            int padding = (b3 >> 1) & 1;
+            int length;
+            if (layer == 1) {
+                length = (12 * bitrateKbps * 1000 / sampleRate + padding) * 4;
+            } else {
+                int coefficient = layer == 3 && version != 3 ? 72 : 144;
+                length = coefficient * bitrateKbps * 1000 / sampleRate + padding;
+            }
+            return new Mp3Frame(version, layer, (b4 >> 6) == 3, bitrateKbps, sampleRate, length);
+        }
+
+        int samplesPerFrame() {
+            return layer == 1 ? 384 : layer == 3 && version != 3 ? 576 : 1152;
+        }
+
+        int sideInfoLength() {
+            return version == 3 ? (mono ? 17 : 32) : (mono ? 9 : 17);
+        }
+    }
+
+    // MP4/M4A: the movie header (moov/mvhd) holds the duration in its own timescale
+    private static double mp4Duration(FileChannel channel) throws IOException {
+        long mvhd = findBox(channel, 0, channel.size(), new String[] { "moov", "mvhd" }, 0);
+        if (mvhd < 0) {
+            return -1;
+        }
+        ByteBuffer header = read(channel, mvhd, 32);
+        if (header.remaining() < 24) {
+            return -1;
+        }
+        int version = header.get(0) & 0xFF;
+        long timescale;
+        long duration;
+        if (version == 1) {
+            if (header.remaining() < 32) {
+                return -1;
+            }
+            timescale = header.getInt(20) & 0xFFFFFFFFL;
+            duration = header.getLong(24);
+        } else {
+            timescale = header.getInt(12) & 0xFFFFFFFFL;
+            duration = header.getInt(16) & 0xFFFFFFFFL;
+        }
+        return timescale > 0 && duration > 0 && duration != 0xFFFFFFFFL ? (double) duration / timescale : -1;
+    }
+
+    /**
+     * Position of the payload of the box at {@code path[depth]} inside [{@code from}, {@code to}),
+     * or -1. Only box headers are read, so a moov at the end of a large file costs a few seeks.
+     */
+    private static long findBox(FileChannel channel, long from, long to, String[] path, int depth)
+            throws IOException {
+        long position = from;
+        while (position + 8 <= to && depth < MAX_BOX_DEPTH) {
+            ByteBuffer header = read(channel, position, 16);
+            if (header.remaining() < 8) {
+                return -1;
+            }
+            long size = header.getInt(0) & 0xFFFFFFFFL;
+            int headerLength = 8;
+            if (size == 1) {
+                if (header.remaining() < 16) {
+                    return -1;
+                }
+                size = header.getLong(8);
+                headerLength = 16;
+            } else if (size == 0) {
+                size = to - position; // Extends to the end
+            }
+            if (size < headerLength || position + size > to) {
+                return -1;
+            }
+            if (matches(header, 4, path[depth])) {
+                return depth == path.length - 1
+                        ? position + headerLength
+                        : findBox(channel, position + headerLength, position + size, path, depth + 1);
+            }
+            position += size;
+        }
+        return -1;
+    }
+
+    // Ogg: the last page's granule position counts samples; the first page's codec header gives the rate
+    private static double oggDuration(FileChannel channel) throws IOException {
+        ByteBuffer first = read(channel, 0, 27 + 255 + 64).order(ByteOrder.LITTLE_ENDIAN);
+        if (first.remaining() < 28) {
+            return -1;
+        }
+        int serial = first.getInt(14);
+        int packet = 27 + (first.get(26) & 0xFF);
+        long sampleRate;
+        long preSkip = 0;
+        if (first.limit() >= packet + 16 && (first.get(packet) & 0xFF) == 1 && matches(first, packet + 1, "vorbis")) {
+            sampleRate = first.getInt(packet + 12) & 0xFFFFFFFFL;
+        } else if (first.limit() >= packet + 12 && matches(first, packet, "OpusHead")) {
+            sampleRate = 48000; // Opus granule positions are always at 48 kHz
+            preSkip = first.getShort(packet + 10) & 0xFFFF;
+        } else {
+            return -1;
+        }
+
+        long size = channel.size();
+        long tailStart = Math.max(0, size - OGG_MAX_PAGE_BYTES);
+        ByteBuffer tail = read(channel, tailStart, (int) (size - tailStart)).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = tail.limit() - 27; i >= 0; i--) {
+            if (matches(tail, i, "OggS") && tail.get(i + 4) == 0 && tail.getInt(i + 14) == serial) {
+                long granule = tail.getLong(i + 6);
+                if (granule > 0 && sampleRate > 0) {
+                    return Math.max(0, granule - preSkip) / (double) sampleRate;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        if (position < 0) {
+            return ByteBuffer.allocate(0);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(0, Math.min(length, channel.size() - position)));
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+            // Keep reading until full or at the end of the file
+        }
+        buffer.flip();
+        return buffer; // Big-endian, as in MP3 and MP4; Ogg switches to little-endian
+    }
+
+    private static boolean matches(ByteBuffer buffer, int offset, String ascii) {
+        if (offset < 0 || buffer.limit() < offset + ascii.length()) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length(); i++) {
+            if (buffer.get(offset + i) != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,416 @@
+package com.example.audiototext;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Prepares PCM WAVE uploads before Whisper sees them: downmixes to mono, resamples to
+ * 16 kHz (what Whisper works at anyway), and cuts long silences found by a frame energy
+ * check, keeping a little padding around speech. Whisper's cost grows with the audio it
+ * decodes, so every second of silence removed is compute saved. The cut points are
+ * recorded in a {@link TimeMap} so segment timestamps can be put back on the original
+ * timeline. Other formats are left alone.
+ */
+@Component
+public class AudioPreflight {
+
+    static final int TARGET_RATE = 16000;
+    private static final int FRAME_SAMPLES = TARGET_RATE * 30 / 1000; // 30 ms analysis frames
+    private static final int READ_FRAMES = 16384;
+
+    @Value("${app.preflight.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.preflight.silence-threshold-db:-45}")
+    private double silenceThresholdDb;
+
+    @Value("${app.preflight.min-silence-ms:1000}")
+    private long minSilenceMillis;
+
+    @Value("${app.preflight.padding-ms:250}")
+    private long paddingMillis;
+
+    @Value("${app.preflight.min-savings-percent:5}")
+    private double minSavingsPercent;
+
+    /**
+     * A prepared 16 kHz mono file and how its timeline maps onto the original.
+     */
+    public static class Prepared {
+        public final Path path;
+        public final double originalSeconds;
+        public final double preparedSeconds;
+        public final TimeMap timeMap;
+
+        Prepared(Path path, double originalSeconds, double preparedSeconds, TimeMap timeMap) {
+            this.path = path;
+            this.originalSeconds = originalSeconds;
+            this.preparedSeconds = preparedSeconds;
+            this.timeMap = timeMap;
+        }
+
+        public double removedSeconds() {
+            return originalSeconds - preparedSeconds;
+        }
+    }
+
+    /**
+     * Piecewise mapping from prepared time to original time: piece {@code i} starts at
+     * {@code preparedStart[i]} in the prepared audio and at {@code originalStart[i]} in the
+     * original, and runs at the same speed until the next piece.
+     */
+    public static class TimeMap {
+        public static final TimeMap IDENTITY = new TimeMap(new double[] { 0 }, new double[] { 0 });
+
+        private final double[] preparedStart;
+        private final double[] originalStart;
+
+        TimeMap(double[] preparedStart, double[] originalStart) {
+            this.preparedStart = preparedStart;
+            this.originalStart = originalStart;
+        }
+
+        public boolean isIdentity() {
+            return preparedStart.length == 1 && originalStart[0] == preparedStart[0];
+        }
+
+        public int cuts() {
+            return preparedStart.length - 1;
+        }
+
+        /**
+         * Original time of prepared time {@code t}. At a cut, this is the start of the later piece.
+         */
+        public double toOriginal(double t) {
+            int i = Arrays.binarySearch(preparedStart, t);
+            i = i >= 0 ? i : -i - 2;
+            i = Math.max(0, i);
+            return originalStart[i] + (t - preparedStart[i]);
+        }
+
+        /**
+         * Like {@link #toOriginal}, but a time exactly at a cut belongs to the earlier piece,
+         * so a segment ending at a cut does not stretch over the removed silence.
+         */
+        public double toOriginalEnd(double t) {
+            int i = Arrays.binarySearch(preparedStart, t);
+            i = i >= 0 ? i - 1 : -i - 2;
+            i = Math.max(0, i);
+            return originalStart[i] + (t - preparedStart[i]);
+        }
+
+        public TranscriptSegment map(TranscriptSegment segment) {
+            if (isIdentity()) {
+                return segment;
+            }
+            double start = toOriginal(segment.getStart());
+            double end = Math.max(start, toOriginalEnd(segment.getEnd()));
+            return new TranscriptSegment(start, end, segment.getText());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Writes the prepared version of {@code input} to {@code target}. Returns null (and
+     * writes nothing) if the input is not an uncompressed WAVE file, or if it is already
+     * 16 kHz mono and too little silence would be cut to be worth it.
+     */
+    public Prepared prepare(Path input, Path target) throws IOException {
+        if (!Files.isRegularFile(input)) {
+            return null;
+        }
+        WavFile wav = WavFile.open(input);
+        if (wav == null || !(wav.isPcm() || wav.isFloat()) || !supportedSampleSize(wav)) {
+            return null;
+        }
+
+        Prepared prepared;
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+                SilenceCutter cutter = new SilenceCutter(target)) {
+            Resampler resampler = new Resampler(wav.getSampleRate(), cutter);
+            decode(wav, in, resampler);
+            cutter.finish();
+            prepared = new Prepared(target, wav.getDurationSeconds(), cutter.outputSamples / (double) TARGET_RATE,
+                    cutter.timeMap());
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(target);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+
+        boolean alreadyCompact = wav.getSampleRate() == TARGET_RATE && wav.getChannels() == 1
+                && wav.getBitsPerSample() == 16 && !wav.isFloat();
+        if (alreadyCompact && prepared.removedSeconds() < prepared.originalSeconds * minSavingsPercent / 100) {
+            Files.deleteIfExists(target);
+            return null;
+        }
+        return prepared;
+    }
+
+    private static boolean supportedSampleSize(WavFile wav) {
+        int bytes = wav.getBitsPerSample() / 8;
+        if (wav.getChannels() < 1 || wav.getBlockAlign() != bytes * wav.getChannels()) {
+            return false;
+        }
+        return wav.isFloat() ? bytes == 4 || bytes == 8 : bytes >= 1 && bytes <= 4;
+    }
+
+    /**
+     * Streams the data chunk and feeds one mono sample in [-1, 1] per frame to {@code sink}.
+     */
+    private static void decode(WavFile wav, FileChannel in, DoubleConsumer sink) throws IOException {
+        int channels = wav.getChannels();
+        int bytes = wav.getBitsPerSample() / 8;
+        boolean isFloat = wav.isFloat();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(wav.getBlockAlign() * READ_FRAMES).order(ByteOrder.LITTLE_ENDIAN);
+        long position = wav.getDataOffset();
+        long end = wav.getDataOffset() + wav.getDataLength() / wav.getBlockAlign() * wav.getBlockAlign();
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = in.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            position += read;
+            buffer.flip();
+            while (buffer.remaining() >= wav.getBlockAlign()) {
+                double sum = 0;
+                for (int c = 0; c < channels; c++) {
+                    sum += isFloat ? readFloat(buffer, bytes) : readInt(buffer, bytes);
+                }
+                sink.accept(sum / channels);
+            }
+            position -= buffer.remaining(); // A short read can end mid-frame; read the rest again
+        }
+    }
+
+    private static double readInt(ByteBuffer buffer, int bytes) {
+        switch (bytes) {
+            case 1:
+                return ((buffer.get() & 0xFF) - 128) / 128.0; // 8-bit WAV is unsigned
+            case 2:
+                return buffer.getShort() / 32768.0;
+            case 3:
+                int value = (buffer.get() & 0xFF) | (buffer.get() & 0xFF) << 8 | buffer.get() << 16;
+                return value / 8388608.0;
+            default:
+                return buffer.getInt() / 2147483648.0;
+        }
+    }
+
+    private static double readFloat(ByteBuffer buffer, int bytes) {
+        return bytes == 4 ? buffer.getFloat() : buffer.getDouble();
+    }
+
+    /**
+     * Converts a stream of samples at {@code sourceRate} to 16 kHz: averages the source
+     * samples in each output period when downsampling (a cheap low-pass), interpolates
+     * linearly when upsampling.
+     */
+    static class Resampler implements DoubleConsumer {
+        private final DoubleConsumer sink;
+        private final double step; // source samples per output sample
+        private long index;
+        private double boundary;
+        private double sum;
+        private int count;
+        private double previous;
+
+        Resampler(int sourceRate, DoubleConsumer sink) {
+            this.sink = sink;
+            this.step = sourceRate / (double) TARGET_RATE;
+            this.boundary = step >= 1 ? step : 0;
+        }
+
+        @Override
+        public void accept(double sample) {
+            if (step == 1) {
+                sink.accept(sample);
+            } else if (step > 1) {
+                sum += sample;
+                count++;
+                if (index + 1 >= boundary) {
+                    sink.accept(sum / count);
+                    sum = 0;
+                    count = 0;
+                    boundary += step;
+                }
+            } else {
+                if (index == 0) {
+                    previous = sample;
+                }
+                // Output samples at source positions in (index - 1, index]
+                while (boundary <= index) {
+                    double fraction = boundary - (index - 1);
+                    sink.accept(previous + (sample - previous) * Math.min(1, fraction));
+                    boundary += step;
+                }
+                previous = sample;
+            }
+            index++;
+        }
+    }
+
+    /**
+     * Takes 16 kHz samples, groups them into 30 ms frames, and writes them out as 16-bit
+     * PCM except for the middle of silences longer than {@code min-silence-ms}. Frames
+     * below {@code silence-threshold-db} (RMS, dBFS) count as silence; the first and last
+     * {@code padding-ms} of every cut silence are kept so words are not clipped.
+     */
+    private class SilenceCutter implements DoubleConsumer, AutoCloseable {
+        private final FileChannel out;
+        private final ByteBuffer pcm = ByteBuffer.allocate(FRAME_SAMPLES * 2).order(ByteOrder.LITTLE_ENDIAN);
+        private final double[] frame = new double[FRAME_SAMPLES];
+        private final int minSilenceFrames = (int) Math.max(1, minSilenceMillis * TARGET_RATE / 1000 / FRAME_SAMPLES);
+        private final int paddingFrames = (int) Math.min(minSilenceFrames / 2,
+                paddingMillis * TARGET_RATE / 1000 / FRAME_SAMPLES);
+        private final double thresholdMeanSquare = Math.pow(10, silenceThresholdDb / 10);
+
+        private int frameLength;
+        private long inputSamples;       // samples consumed so far (original timeline, at 16 kHz)
+        private long outputSamples;      // samples written
+        // Silent frames since the last speech, held back until we know whether to cut
+        private final List<double[]> silence = new ArrayList<>();
+        private final ArrayDeque<double[]> tail = new ArrayDeque<>();
+        private boolean cutting;
+        private long tailStartSample;
+        private final List<double[]> pieces = new ArrayList<>(); // {preparedStart, originalStart} in samples
+
+        SilenceCutter(Path target) throws IOException {
+            out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            out.write(ByteBuffer.allocate(44), 0); // Header is filled in once the length is known
+            out.position(44);
+            pieces.add(new double[] { 0, 0 });
+        }
+
+        @Override
+        public void accept(double sample) {
+            frame[frameLength++] = sample;
+            if (frameLength == FRAME_SAMPLES) {
+                flushFrame();
+            }
+        }
+
+        void finish() throws IOException {
+            if (frameLength > 0) {
+                flushFrame();
+            }
+            if (!cutting) {
+                silence.forEach(this::write);
+            }
+            // A trailing cut silence is simply dropped after its leading padding
+            silence.clear();
+            tail.clear();
+            writeHeader();
+        }
+
+        TimeMap timeMap() {
+            double[] prepared = new double[pieces.size()];
+            double[] original = new double[pieces.size()];
+            for (int i = 0; i < pieces.size(); i++) {
+                prepared[i] = pieces.get(i)[0] / TARGET_RATE;
+                original[i] = pieces.get(i)[1] / TARGET_RATE;
+            }
+            return new TimeMap(prepared, original);
+        }
+
+        private void flushFrame() {
+            double[] samples = Arrays.copyOf(frame, frameLength);
+            long frameStart = inputSamples;
+            inputSamples += frameLength;
+            frameLength = 0;
+
+            double meanSquare = 0;
+            for (double s : samples) {
+                meanSquare += s * s;
+            }
+            meanSquare /= samples.length;
+
+            if (meanSquare >= thresholdMeanSquare) {
+                if (cutting) {
+                    // Resume with the trailing padding; this is where the timelines jump
+                    long originalStart = tail.isEmpty() ? frameStart : tailStartSample;
+                    pieces.add(new double[] { outputSamples, originalStart });
+                    tail.forEach(this::write);
+                    tail.clear();
+                    cutting = false;
+                } else {
+                    silence.forEach(this::write);
+                }
+                silence.clear();
+                write(samples);
+            } else if (cutting) {
+                tail.addLast(samples);
+                if (tail.size() > paddingFrames) {
+                    tail.pollFirst();
+                }
+                tailStartSample = frameStart + samples.length - tail.stream().mapToLong(f -> f.length).sum();
+            } else {
+                silence.add(samples);
+                if (silence.size() > minSilenceFrames) {
+                    // Long enough to cut: keep the leading padding, then only track the trailing padding
+                    silence.subList(0, paddingFrames).forEach(this::write);
+                    for (double[] f : silence.subList(silence.size() - paddingFrames, silence.size())) {
+                        tail.addLast(f);
+                    }
+                    silence.clear();
+                    cutting = true;
+                    tailStartSample = frameStart + samples.length - tail.stream().mapToLong(f -> f.length).sum();
+                }
+            }
+        }
+
+        private void write(double[] samples) {
+            pcm.clear();
+            for (double s : samples) {
+                pcm.putShort((short) Math.round(Math.max(-1, Math.min(1, s)) * 32767));
+            }
+            pcm.flip();
+            try {
+                while (pcm.hasRemaining()) {
+                    out.write(pcm);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            outputSamples += samples.length;
+        }
+
+        private void writeHeader() throws IOException {
+            long dataLength = outputSamples * 2;
+            ByteBuffer header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(0x46464952).putInt((int) (36 + dataLength)).putInt(0x45564157);
+            header.putInt(0x20746D66).putInt(16).putShort((short) 1).putShort((short) 1)
+                    .putInt(TARGET_RATE).putInt(TARGET_RATE * 2).putShort((short) 2).putShort((short) 16);
+            header.putInt(0x61746164).putInt((int) dataLength);
+            header.flip();
+            out.write(header, 0);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -18,12 +18,14 @@ public class AuthController {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
+    private final AuthTokens authTokens;
 
     public AuthController(UserRepository userRepository, PasswordEncoder passwordEncoder,
-            AuthenticationManager authenticationManager) {
+            AuthenticationManager authenticationManager, AuthTokens authTokens) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.authenticationManager = authenticationManager;
+        this.authTokens = authTokens;
     }
 
     @PostMapping("/register")
@@ -55,14 +57,17 @@ public class AuthController {
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword()));
 
+        User user = (User) authentication.getPrincipal();
+        if (authTokens.isStateless()) {
+            return ResponseEntity.ok(tokenResponse(user, authTokens.issue(user, httpResponse)));
+        }
+
         SecurityContextHolder.getContext().setAuthentication(authentication);
 
         // In Spring Security 6+, we must manually save the context to the session
         org.springframework.security.web.context.SecurityContextRepository repo = new org.springframework.security.web.context.HttpSessionSecurityContextRepository();
         repo.saveContext(SecurityContextHolder.getContext(), httpRequest, httpResponse);
 
-        User user = (User) authentication.getPrincipal();
-
         Map<String, Object> response = new HashMap<>();
         response.put("id", user.getId());
         response.put("username", user.getUsername());
@@ -71,6 +76,37 @@ public class AuthController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Stateless mode: trades a valid refresh token (cookie, or {@code refreshToken} in the body)
+     * for a new token pair. The user is looked up once here, so deleted accounts stop refreshing.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@RequestBody(required = false) Map<String, String> body,
+            jakarta.servlet.http.HttpServletRequest httpRequest,
+            jakarta.servlet.http.HttpServletResponse httpResponse) {
+        if (!authTokens.isStateless()) {
+            return ResponseEntity.status(404).body("Token authentication is not enabled");
+        }
+        Long userId = authTokens.refreshSubject(httpRequest, body != null ? body.get("refreshToken") : null);
+        User user = userId != null ? userRepository.findById(userId).orElse(null) : null;
+        if (user == null) {
+            authTokens.clearCookies(httpResponse);
+            return ResponseEntity.status(401).body("Refresh token invalid or expired");
+        }
+        return ResponseEntity.ok(tokenResponse(user, authTokens.issue(user, httpResponse)));
+    }
+
+    private static Map<String, Object> tokenResponse(User user, AuthTokens.Issued issued) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", user.getId());
+        response.put("username", user.getUsername());
+        response.put("email", user.getEmail());
+        response.put("accessToken", issued.accessToken);
+        response.put("refreshToken", issued.refreshToken);
+        response.put("expiresIn", issued.expiresInSeconds);
+        return response;
+    }
+
     @GetMapping("/me")
     public ResponseEntity<?> getCurrentUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
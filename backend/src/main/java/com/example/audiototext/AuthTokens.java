@@ -0,0 +1,279 @@
+package com.example.audiototext;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Signed tokens for {@code app.auth.stateless} mode: short-lived access tokens that carry
+ * the user's id, name and email, and long-lived refresh tokens that only carry the id.
+ * Both are JWTs signed with HMAC-SHA256 under {@code app.auth.token-secret}, which every
+ * instance must share. They travel as HttpOnly cookies, so EventSource streams and
+ * download links work unchanged; API clients may send the access token as a Bearer header.
+ * <p>
+ * Verified access tokens are kept in a small LRU cache, so a client's repeated requests
+ * cost one map lookup instead of a MAC and a JSON parse, and the {@link User} principal is
+ * rebuilt from the claims without touching the database.
+ */
+@Component
+public class AuthTokens {
+
+    public static final String ACCESS_COOKIE = "access_token";
+    public static final String REFRESH_COOKIE = "refresh_token";
+    private static final String REFRESH_PATH = "/api/auth";
+    private static final String ACCESS = "access";
+    private static final String REFRESH = "refresh";
+    private static final String HEADER = base64(
+            "{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+
+    @Value("${app.auth.stateless:false}")
+    private boolean stateless;
+
+    @Value("${app.auth.token-secret:}")
+    private String secret;
+
+    @Value("${app.auth.access-token-minutes:15}")
+    private long accessMinutes;
+
+    @Value("${app.auth.refresh-token-days:14}")
+    private long refreshDays;
+
+    @Value("${app.auth.claims-cache-size:10000}")
+    private int claimsCacheSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Mac prototype; // Initialized with the key once; each signature works on a clone
+
+    private static class Verified {
+        final User user;
+        final long expiresAt;
+
+        Verified(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // Access-ordered token -> verified principal. Guarded by "this".
+    private LinkedHashMap<String, Verified> verified;
+
+    /**
+     * A freshly issued token pair.
+     */
+    public static class Issued {
+        public final String accessToken;
+        public final String refreshToken;
+        public final long expiresInSeconds;
+
+        Issued(String accessToken, String refreshToken, long expiresInSeconds) {
+            this.accessToken = accessToken;
+            this.refreshToken = refreshToken;
+            this.expiresInSeconds = expiresInSeconds;
+        }
+    }
+
+    @PostConstruct
+    void init() throws GeneralSecurityException {
+        byte[] keyBytes;
+        if (stateless && !secret.isBlank() && secret.length() < 32) {
+            throw new IllegalStateException("app.auth.token-secret must be at least 32 characters");
+        }
+        if (secret.isBlank()) {
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+            if (stateless) {
+                System.err.println("[Auth]: app.auth.token-secret is not set; tokens are only valid on this "
+                        + "instance until it restarts");
+            }
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        prototype = Mac.getInstance("HmacSHA256");
+        prototype.init(new SecretKeySpec(keyBytes, "HmacSHA256"));
+        verified = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Verified> eldest) {
+                return size() > claimsCacheSize;
+            }
+        };
+    }
+
+    public boolean isStateless() {
+        return stateless;
+    }
+
+    /**
+     * Issues a new access and refresh token for {@code user} and sets them as cookies.
+     */
+    public Issued issue(User user, HttpServletResponse response) {
+        long now = Instant.now().getEpochSecond();
+        long accessSeconds = accessMinutes * 60;
+        long refreshSeconds = refreshDays * 86400;
+
+        Map<String, Object> accessClaims = new LinkedHashMap<>();
+        accessClaims.put("sub", String.valueOf(user.getId()));
+        accessClaims.put("typ", ACCESS);
+        accessClaims.put("name", user.getUsername());
+        accessClaims.put("email", user.getEmail());
+        accessClaims.put("iat", now);
+        accessClaims.put("exp", now + accessSeconds);
+
+        Map<String, Object> refreshClaims = new LinkedHashMap<>();
+        refreshClaims.put("sub", String.valueOf(user.getId()));
+        refreshClaims.put("typ", REFRESH);
+        refreshClaims.put("iat", now);
+        refreshClaims.put("exp", now + refreshSeconds);
+
+        Issued issued = new Issued(sign(accessClaims), sign(refreshClaims), accessSeconds);
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie(ACCESS_COOKIE, issued.accessToken, "/", accessSeconds));
+        response.addHeader(HttpHeaders.SET_COOKIE,
+                cookie(REFRESH_COOKIE, issued.refreshToken, REFRESH_PATH, refreshSeconds));
+        return issued;
+    }
+
+    public void clearCookies(HttpServletResponse response) {
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie(ACCESS_COOKIE, "", "/", 0));
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie(REFRESH_COOKIE, "", REFRESH_PATH, 0));
+    }
+
+    /**
+     * The principal of the request's access token (Bearer header first, then cookie), or
+     * null if there is none or it is invalid or expired.
+     */
+    public User authenticate(HttpServletRequest request) {
+        String token = accessToken(request);
+        if (token == null) {
+            return null;
+        }
+        long now = Instant.now().getEpochSecond();
+        synchronized (this) {
+            Verified cached = verified.get(token);
+            if (cached != null) {
+                if (cached.expiresAt > now) {
+                    return cached.user;
+                }
+                verified.remove(token);
+                return null;
+            }
+        }
+        Map<String, Object> claims = verify(token, ACCESS);
+        if (claims == null) {
+            return null;
+        }
+        User user = User.builder()
+                .id(Long.valueOf((String) claims.get("sub")))
+                .username((String) claims.get("name"))
+                .email((String) claims.get("email"))
+                .password("")
+                .build();
+        synchronized (this) {
+            verified.put(token, new Verified(user, ((Number) claims.get("exp")).longValue()));
+        }
+        return user;
+    }
+
+    /**
+     * The user id in the request's refresh token (cookie, or {@code refreshToken} parameter),
+     * or null if there is none or it is invalid or expired.
+     */
+    public Long refreshSubject(HttpServletRequest request, String refreshToken) {
+        String token = refreshToken != null ? refreshToken : cookieValue(request, REFRESH_COOKIE);
+        Map<String, Object> claims = token != null ? verify(token, REFRESH) : null;
+        return claims != null ? Long.valueOf((String) claims.get("sub")) : null;
+    }
+
+    private String accessToken(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return header.substring(7).trim();
+        }
+        return cookieValue(request, ACCESS_COOKIE);
+    }
+
+    private static String cookieValue(HttpServletRequest request, String name) {
+        if (request.getCookies() == null) {
+            return null;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (cookie.getName().equals(name) && !cookie.getValue().isEmpty()) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+
+    private String sign(Map<String, Object> claims) {
+        try {
+            String signingInput = HEADER + "." + base64(objectMapper.writeValueAsBytes(claims));
+            return signingInput + "." + base64(mac(signingInput));
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not sign token", e);
+        }
+    }
+
+    private Map<String, Object> verify(String token, String type) {
+        int firstDot = token.indexOf('.');
+        int lastDot = token.lastIndexOf('.');
+        if (firstDot < 0 || lastDot == firstDot || !token.substring(0, firstDot).equals(HEADER)) {
+            return null;
+        }
+        try {
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(lastDot + 1));
+            if (!MessageDigest.isEqual(signature, mac(token.substring(0, lastDot)))) {
+                return null;
+            }
+            Map<String, Object> claims = objectMapper.readValue(
+                    Base64.getUrlDecoder().decode(token.substring(firstDot + 1, lastDot)),
+                    new TypeReference<Map<String, Object>>() {
+                    });
+            Object expiresAt = claims.get("exp");
+            if (!type.equals(claims.get("typ")) || !(claims.get("sub") instanceof String)
+                    || !(expiresAt instanceof Number)
+                    || ((Number) expiresAt).longValue() <= Instant.now().getEpochSecond()) {
+                return null;
+            }
+            return claims;
+        } catch (Exception e) {
+            return null; // Malformed
+        }
+    }
+
+    private byte[] mac(String signingInput) throws CloneNotSupportedException {
+        // Mac instances are not thread-safe; cloning skips the provider lookup and key setup
+        Mac mac = (Mac) prototype.clone();
+        return mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String cookie(String name, String value, String path, long maxAgeSeconds) {
+        return ResponseCookie.from(name, value)
+                .httpOnly(true)
+                .sameSite("Lax")
+                .path(path)
+                .maxAge(Duration.ofSeconds(maxAgeSeconds))
+                .build()
+                .toString();
+    }
+
+    private static String base64(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.audiototext;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Transcribes long recordings by cutting them into overlapping windows, running
+ * the windows on pooled workers in parallel and stitching the segments back
+ * into a single timeline.
+ */
+@Component
+public class ChunkedTranscriber {
+
+    @Value("${app.chunking.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.chunking.min-duration-seconds:1200}")
+    private double minDurationSeconds;
+
+    @Value("${app.chunking.window-seconds:600}")
+    private double windowSeconds;
+
+    @Value("${app.chunking.overlap-seconds:5}")
+    private double overlapSeconds;
+
+    @Autowired
+    private WhisperWorkerPool workerPool;
+
+    @Autowired
+    private AudioChunker audioChunker;
+
+    @Autowired
+    @Qualifier("transcriptionExecutor")
+    private Executor executor;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Returns the duration of {@code inputSource} if it is long enough to be worth
+     * chunking, or -1 if it should run as a single pass. With fewer than two workers
+     * for {@code model} the parts would run one after another, so that is a single pass too.
+     */
+    public double chunkableDuration(String inputSource, String model) {
+        if (!enabled || !workerPool.isEnabled() || workerPool.configuredSize(model) < 2
+                || inputSource.startsWith("http://") || inputSource.startsWith("https://")) {
+            return -1;
+        }
+        double duration = audioChunker.probeDurationSeconds(Paths.get(inputSource));
+        return duration >= minDurationSeconds && duration > windowSeconds ? duration : -1;
+    }
+
+    /**
+     * Runs the chunked transcription and returns the stitched segments with
+     * timestamps relative to the original recording.
+     *
+     * @param statusListener  receives human-readable progress messages
+     * @param segmentListener receives final segments in order, as soon as every chunk before them is done
+     * @param outputHandlers  creates the handler for each chunk's worker output, once per chunk before any runs
+     */
+    public List<TranscriptSegment> transcribe(String jobId, String inputSource, Path outputDir, double duration,
+            String model, String language, String task, Consumer<String> statusListener,
+            Consumer<TranscriptSegment> segmentListener,
+            Function<AudioChunker.AudioChunk, Consumer<String>> outputHandlers) throws IOException {
+        Path chunkDir = Files.createDirectories(outputDir.resolve(jobId + "_chunks"));
+        try {
+            List<AudioChunker.AudioChunk> chunks = audioChunker.split(Paths.get(inputSource), chunkDir, duration,
+                    windowSeconds, overlapSeconds);
+            statusListener.accept("Split audio into " + chunks.size() + " parts. Transcribing in parallel...");
+
+            AtomicInteger finished = new AtomicInteger();
+            StablePrefix stablePrefix = new StablePrefix(chunks, segmentListener);
+            List<Consumer<String>> handlers = new ArrayList<>();
+            for (AudioChunker.AudioChunk chunk : chunks) {
+                handlers.add(outputHandlers.apply(chunk));
+            }
+            List<CompletableFuture<TranscriptStitcher.ChunkResult>> futures = new ArrayList<>();
+            for (AudioChunker.AudioChunk chunk : chunks) {
+                Consumer<String> outputHandler = handlers.get(chunk.index);
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    TranscriptStitcher.ChunkResult result = transcribeChunk(jobId, chunk, chunkDir, model, language,
+                            task, outputHandler);
+                    statusListener.accept("Transcribed part " + finished.incrementAndGet() + " of " + chunks.size()
+                            + "...");
+                    stablePrefix.completed(chunk.index, result);
+                    return result;
+                }, executor));
+            }
+
+            try {
+                // allOf waits for every part, so no worker is still writing when the chunk dir is removed
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+            }
+            List<TranscriptStitcher.ChunkResult> results = new ArrayList<>();
+            for (CompletableFuture<TranscriptStitcher.ChunkResult> future : futures) {
+                results.add(future.join());
+            }
+            return TranscriptStitcher.stitch(results);
+        } finally {
+            deleteRecursively(chunkDir);
+        }
+    }
+
+    private TranscriptStitcher.ChunkResult transcribeChunk(String jobId, AudioChunker.AudioChunk chunk, Path chunkDir,
+            String model, String language, String task, Consumer<String> outputHandler) {
+        String chunkId = jobId + "_part" + chunk.index;
+        try {
+            workerPool.transcribeSegments(chunkId, chunk.path.toAbsolutePath().toString(),
+                    chunkDir.toAbsolutePath().toString(), model, language, task, chunk.durationSeconds,
+                    outputHandler);
+            List<TranscriptSegment> segments = objectMapper.readValue(
+                    chunkDir.resolve(chunkId + ".segments.json").toFile(),
+                    new TypeReference<List<TranscriptSegment>>() {
+                    });
+            return new TranscriptStitcher.ChunkResult(chunk.offsetSeconds, chunk.durationSeconds, segments);
+        } catch (IOException e) {
+            throw new CompletionException(new IOException("Part " + (chunk.index + 1) + " failed: " + e.getMessage(), e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(new IOException("Part " + (chunk.index + 1) + " was interrupted", e));
+        }
+    }
+
+    /**
+     * Publishes stitched segments as soon as all chunks before them have finished,
+     * so listeners see the final transcript grow in order even though chunks
+     * complete out of order.
+     */
+    private static class StablePrefix {
+        private final List<AudioChunker.AudioChunk> chunks;
+        private final Consumer<TranscriptSegment> listener;
+        private final TranscriptStitcher.ChunkResult[] results;
+        // Listeners send SSE events while it is held; a monitor would pin a virtual thread's carrier
+        private final ReentrantLock lock = new ReentrantLock();
+        private int completePrefix;
+        private int published;
+
+        StablePrefix(List<AudioChunker.AudioChunk> chunks, Consumer<TranscriptSegment> listener) {
+            this.chunks = chunks;
+            this.listener = listener;
+            this.results = new TranscriptStitcher.ChunkResult[chunks.size()];
+        }
+
+        void completed(int index, TranscriptStitcher.ChunkResult result) {
+            lock.lock();
+            try {
+                results[index] = result;
+                int prefix = completePrefix;
+                while (prefix < results.length && results[prefix] != null) {
+                    prefix++;
+                }
+                if (prefix == completePrefix) {
+                    return;
+                }
+                completePrefix = prefix;
+
+                double upTo = Double.POSITIVE_INFINITY;
+                if (prefix < chunks.size()) {
+                    AudioChunker.AudioChunk last = chunks.get(prefix - 1);
+                    AudioChunker.AudioChunk next = chunks.get(prefix);
+                    upTo = TranscriptStitcher.boundary(last.offsetSeconds, last.durationSeconds, next.offsetSeconds,
+                            next.durationSeconds);
+                }
+                List<TranscriptSegment> stable = TranscriptStitcher.stitch(Arrays.asList(results).subList(0, prefix),
+                        upTo);
+                for (int i = published; i < stable.size(); i++) {
+                    listener.accept(stable.get(i));
+                }
+                published = stable.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("[Chunker]: Could not clean up " + dir + ": " + e.getMessage());
+        }
+    }
+}
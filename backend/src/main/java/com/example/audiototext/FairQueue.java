@@ -0,0 +1,174 @@
+package com.example.audiototext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Deficit round-robin across users. Each user with waiting items takes turns; a turn
+ * grants {@code quantum × weight} of credit and the user's items are served while their
+ * cost (audio seconds) fits the accumulated credit. A user with 200 long recordings thus
+ * gets the same share of audio time per round as one with a single short clip, instead of
+ * everyone waiting behind the first user's backlog. When nobody can afford their next
+ * item, the rounds needed by the closest user are granted at once rather than looped through.
+ * <p>
+ * Not thread-safe; callers hold their own lock.
+ */
+final class FairQueue<T> {
+
+    private static final double MIN_WEIGHT = 0.01;
+    private static final double MIN_COST = 1;
+
+    private static final class Entry<T> {
+        final T item;
+        final double cost;
+
+        Entry(T item, double cost) {
+            this.item = item;
+            this.cost = cost;
+        }
+    }
+
+    private static final class Flow<T> {
+        final long user;
+        double weight;
+        double deficit;
+        final ArrayDeque<Entry<T>> entries = new ArrayDeque<>();
+
+        Flow(long user, double weight) {
+            this.user = user;
+            this.weight = weight;
+        }
+    }
+
+    private final double quantum;
+    private final Map<Long, Flow<T>> flows = new HashMap<>();
+    private final ArrayDeque<Flow<T>> turns = new ArrayDeque<>();
+    private int size;
+
+    FairQueue(double quantum) {
+        this.quantum = quantum;
+    }
+
+    /**
+     * Appends {@code item} to {@code user}'s queue. The latest weight given for a user applies.
+     */
+    void add(long user, double weight, double cost, T item) {
+        Flow<T> flow = flows.get(user);
+        if (flow == null) {
+            flow = new Flow<>(user, 0);
+            flows.put(user, flow);
+            turns.addLast(flow);
+        }
+        flow.weight = Math.max(MIN_WEIGHT, weight);
+        flow.entries.addLast(new Entry<>(item, Math.max(MIN_COST, cost)));
+        size++;
+    }
+
+    /**
+     * Removes and returns the next item in fair order among those {@code runnable} accepts
+     * (a user's earlier items it rejects are skipped, not reordered), or null if there is none.
+     */
+    T poll(Predicate<T> runnable) {
+        dropIdleFlows();
+        for (int pass = 0; pass < 2 && !turns.isEmpty(); pass++) {
+            for (int i = 0; i < turns.size(); i++) {
+                Flow<T> flow = turns.peekFirst();
+                Entry<T> entry = firstRunnable(flow, runnable);
+                if (entry != null && entry.cost <= flow.deficit) {
+                    flow.entries.remove(entry);
+                    flow.deficit -= entry.cost;
+                    size--;
+                    if (flow.entries.isEmpty()) {
+                        turns.pollFirst();
+                        flows.remove(flow.user);
+                    }
+                    return entry.item;
+                }
+                turns.addLast(turns.pollFirst()); // Cannot afford it yet: next user's turn
+            }
+
+            double rounds = Double.POSITIVE_INFINITY;
+            for (Flow<T> flow : turns) {
+                Entry<T> entry = firstRunnable(flow, runnable);
+                if (entry != null) {
+                    rounds = Math.min(rounds, Math.ceil((entry.cost - flow.deficit) / (quantum * flow.weight)));
+                }
+            }
+            if (rounds == Double.POSITIVE_INFINITY) {
+                return null; // Everything waiting is blocked
+            }
+            for (Flow<T> flow : turns) {
+                flow.deficit += Math.max(1, rounds) * quantum * flow.weight;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The order items would be served in from the current state if all were runnable,
+     * without changing anything.
+     */
+    List<T> order() {
+        FairQueue<T> copy = new FairQueue<>(quantum);
+        for (Flow<T> flow : turns) {
+            Flow<T> cloned = new Flow<>(flow.user, flow.weight);
+            cloned.deficit = flow.deficit;
+            cloned.entries.addAll(flow.entries);
+            copy.flows.put(cloned.user, cloned);
+            copy.turns.addLast(cloned);
+        }
+        copy.size = size;
+        List<T> order = new ArrayList<>(size);
+        for (T item = copy.poll(x -> true); item != null; item = copy.poll(x -> true)) {
+            order.add(item);
+        }
+        return order;
+    }
+
+    /**
+     * Empties every user's queue but keeps the credit of users who get items again before the next poll.
+     */
+    void clear() {
+        turns.forEach(flow -> flow.entries.clear());
+        size = 0;
+    }
+
+    void forEach(Consumer<T> action) {
+        turns.forEach(flow -> flow.entries.forEach(entry -> action.accept(entry.item)));
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    private Entry<T> firstRunnable(Flow<T> flow, Predicate<T> runnable) {
+        for (Entry<T> entry : flow.entries) {
+            if (runnable.test(entry.item)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    // A user whose queue ran empty leaves the rotation and loses its credit, as in plain DRR
+    private void dropIdleFlows() {
+        Iterator<Flow<T>> it = turns.iterator();
+        while (it.hasNext()) {
+            Flow<T> flow = it.next();
+            if (flow.entries.isEmpty()) {
+                it.remove();
+                flows.remove(flow.user);
+            }
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package com.example.audiototext;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fan-out of job events to SSE subscribers. Each job has a channel with any number of
+ * subscribers and a bounded replay buffer; each user can also hold a stream that
+ * multiplexes all of their jobs. Event ids are {@code <run>-<sequence>}: the sequence is
+ * increasing across this process, so a browser reconnecting with {@code Last-Event-ID}
+ * receives exactly what it missed (as far as the buffer reaches). An id from another node
+ * or an earlier run of this one means nothing here and gets the whole buffer.
+ * <p>
+ * Idle connections get a heartbeat comment every {@code app.sse.heartbeat-seconds} so
+ * proxies keep them open. Every connection ends after {@code app.sse.timeout-minutes}, and
+ * the browser then reconnects with its last event id. Channels of finished jobs are
+ * dropped after {@code app.sse.retain-seconds}.
+ * <p>
+ * Publishing never writes to a connection: events go into each subscriber's queue and are
+ * written by {@code sseExecutor}. A subscriber more than {@code app.sse.subscriber-queue-size}
+ * events behind is disconnected and can resume from its last event id.
+ */
+@Component
+public class JobEventHub {
+
+    @Value("${app.sse.replay-size:256}")
+    private int replaySize;
+
+    @Value("${app.sse.timeout-minutes:30}")
+    private long timeoutMinutes;
+
+    @Value("${app.sse.retain-seconds:60}")
+    private long retainSeconds;
+
+    @Value("${app.sse.subscriber-queue-size:256}")
+    private int subscriberQueueSize;
+
+    @Autowired
+    @Qualifier("sseExecutor")
+    private Executor sseExecutor;
+
+    // Spring's mapper, so event payloads match the REST responses (ISO timestamps)
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PipelineMetrics metrics;
+
+    // Identifies this process in event ids: start time plus a random part for nodes started together
+    private final String runId = Long.toString(System.currentTimeMillis(), 36)
+            + Integer.toString(ThreadLocalRandom.current().nextInt(36 * 36 * 36), 36);
+    private final AtomicLong nextEventId = new AtomicLong();
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Subscriber>> userStreams = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void registerGauges() {
+        metrics.gauge("transcription.sse.channels", Tags.empty(), channels, Map::size);
+        metrics.gauge("transcription.sse.subscribers", Tags.of("stream", "job"), channels,
+                c -> c.values().stream().mapToInt(channel -> channel.subscribers.size()).sum());
+        metrics.gauge("transcription.sse.subscribers", Tags.of("stream", "user"), userStreams,
+                u -> u.values().stream().mapToInt(Set::size).sum());
+    }
+
+    private static class Event {
+        final long id;
+        final String name;
+        final String json;
+
+        Event(long id, String name, String json) {
+            this.id = id;
+            this.name = name;
+            this.json = json;
+        }
+    }
+
+    // Queued like an event so it never overtakes one; not counted towards the queue limit
+    private static final Event HEARTBEAT = new Event(0, null, null);
+
+    private class Subscriber {
+        final SseEmitter emitter;
+        // Events not written yet, the current limit on their number, and whether a drain task
+        // is running (at most one, which keeps events in order). Guarded by "this".
+        private final ArrayDeque<Event> queue = new ArrayDeque<>();
+        private int limit = subscriberQueueSize;
+        private boolean draining;
+        volatile boolean closed;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /**
+         * Queues one event for sending without blocking. Returns false (and closes the
+         * subscriber) if the client is gone or has fallen too far behind.
+         */
+        boolean send(Event event) {
+            synchronized (this) {
+                if (closed) {
+                    return false;
+                }
+                if (event != HEARTBEAT && queue.size() >= limit) {
+                    System.err.println("[Events]: Dropping a subscriber " + queue.size() + " events behind");
+                    drop(); // A drain is running, since the queue is not empty; it completes the emitter
+                    return false;
+                }
+                queue.addLast(event);
+                if (!startDrain()) {
+                    return true;
+                }
+            }
+            sseExecutor.execute(this::drain);
+            return true;
+        }
+
+        /**
+         * Queues a replay, which may exceed the limit: the client asked for all of it.
+         */
+        boolean replay(List<Event> events) {
+            if (events.isEmpty()) {
+                return !closed;
+            }
+            synchronized (this) {
+                if (closed) {
+                    return false;
+                }
+                queue.addAll(events);
+                limit = Math.max(limit, queue.size() + subscriberQueueSize);
+                if (!startDrain()) {
+                    return true;
+                }
+            }
+            sseExecutor.execute(this::drain);
+            return true;
+        }
+
+        boolean heartbeat() {
+            return send(HEARTBEAT);
+        }
+
+        /**
+         * Completes the stream once the events already queued have been written.
+         */
+        void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (!startDrain()) {
+                    return; // The running drain completes the emitter
+                }
+            }
+            sseExecutor.execute(this::drain);
+        }
+
+        // Closes without writing what is still queued; the caller holds the lock
+        private void drop() {
+            closed = true;
+            queue.clear();
+        }
+
+        private boolean startDrain() {
+            if (draining) {
+                return false;
+            }
+            draining = true;
+            return true;
+        }
+
+        // Writes queued events on an sseExecutor thread until the queue is empty, then
+        // completes the emitter if the subscriber was closed meanwhile
+        private void drain() {
+            while (true) {
+                Event event;
+                synchronized (this) {
+                    event = queue.pollFirst();
+                    if (event == null) {
+                        draining = false;
+                        if (!closed) {
+                            return;
+                        }
+                    }
+                }
+                if (event == null) {
+                    try {
+                        emitter.complete();
+                    } catch (IllegalStateException ignored) {
+                        // Already completed by the container
+                    }
+                    return;
+                }
+                try {
+                    if (event == HEARTBEAT) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        emitter.send(SseEmitter.event().id(runId + "-" + event.id).name(event.name)
+                                .data(event.json));
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    synchronized (this) {
+                        drop();
+                    }
+                }
+            }
+        }
+    }
+
+    private class Channel {
+        final String jobId;
+        final Long userId;
+        final ArrayDeque<Event> replay = new ArrayDeque<>();
+        final Set<Subscriber> subscribers = new CopyOnWriteArraySet<>();
+        // Held while publishing and while replaying to a new subscriber, so none sees an event twice or misses one
+        final ReentrantLock lock = new ReentrantLock();
+        boolean finished;
+        long finishedAt;
+
+        Channel(String jobId, Long userId) {
+            this.jobId = jobId;
+            this.userId = userId;
+        }
+
+        void append(Event event) {
+            replay.addLast(event);
+            while (replay.size() > replaySize) {
+                replay.pollFirst();
+            }
+        }
+
+        List<Event> after(long lastEventId) {
+            List<Event> missed = new ArrayList<>();
+            for (Event event : replay) {
+                if (event.id > lastEventId) {
+                    missed.add(event);
+                }
+            }
+            return missed;
+        }
+    }
+
+    /**
+     * Creates the channel for a new job so events published before anyone subscribes are kept.
+     */
+    public void open(String jobId, Long userId) {
+        channels.putIfAbsent(jobId, new Channel(jobId, userId));
+    }
+
+    /**
+     * Publishes an event to the job's subscribers and to its owner's user streams.
+     */
+    public void publish(String jobId, String eventName, Object data) {
+        Channel channel = channels.get(jobId);
+        if (channel == null) {
+            return;
+        }
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(data); // Serialized once for all subscribers
+        } catch (JsonProcessingException e) {
+            System.err.println("[Events]: Could not serialize " + eventName + " for " + jobId + ": " + e.getMessage());
+            return;
+        }
+        channel.lock.lock();
+        try {
+            Event event = new Event(nextEventId.incrementAndGet(), eventName, json);
+            channel.append(event);
+            sendAll(channel.subscribers, event);
+            Set<Subscriber> userSubscribers = channel.userId != null ? userStreams.get(channel.userId) : null;
+            if (userSubscribers != null) {
+                sendAll(userSubscribers, event);
+            }
+        } finally {
+            channel.lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the job finished: its subscribers are completed after the last event, and the
+     * channel stays around for late subscribers until the retention period ends.
+     */
+    public void finish(String jobId) {
+        Channel channel = channels.get(jobId);
+        if (channel == null) {
+            return;
+        }
+        channel.lock.lock();
+        try {
+            channel.finished = true;
+            channel.finishedAt = System.currentTimeMillis();
+            channel.subscribers.forEach(Subscriber::close);
+            channel.subscribers.clear();
+        } finally {
+            channel.lock.unlock();
+        }
+    }
+
+    public void discard(String jobId) {
+        Channel channel = channels.remove(jobId);
+        if (channel != null) {
+            channel.subscribers.forEach(Subscriber::close);
+        }
+    }
+
+    /**
+     * Subscribes to one job. Replays buffered events newer than {@code lastEventId}
+     * (all of them when it is null). Returns null if this node has no channel for the job.
+     */
+    public SseEmitter subscribeJob(String jobId, String lastEventId) {
+        Channel channel = channels.get(jobId);
+        if (channel == null) {
+            return null;
+        }
+        Subscriber subscriber = new Subscriber(newEmitter());
+        channel.lock.lock();
+        try {
+            // Only queued here; the events are written after the lock is released
+            if (!subscriber.replay(channel.after(parseEventId(lastEventId)))) {
+                return subscriber.emitter;
+            }
+            if (channel.finished) {
+                subscriber.close();
+                return subscriber.emitter;
+            }
+            channel.subscribers.add(subscriber);
+        } finally {
+            channel.lock.unlock();
+        }
+        subscriber.emitter.onCompletion(() -> channel.subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> {
+            channel.subscribers.remove(subscriber);
+            subscriber.close();
+        });
+        subscriber.emitter.onError(e -> channel.subscribers.remove(subscriber));
+        return subscriber.emitter;
+    }
+
+    /**
+     * Subscribes to every job of {@code userId}, replaying what the buffers still hold
+     * after {@code lastEventId}. Only events of jobs started after reconnecting fall outside
+     * the replay; the client can reconcile those through the history endpoint.
+     */
+    public SseEmitter subscribeUser(Long userId, String lastEventId) {
+        Subscriber subscriber = new Subscriber(newEmitter());
+        long after = parseEventId(lastEventId);
+        List<Channel> owned = new ArrayList<>();
+        channels.values().stream().filter(c -> userId.equals(c.userId)).forEach(owned::add);
+        // Lock in a fixed order; publishers only ever hold one channel lock, so this cannot deadlock
+        owned.sort(Comparator.comparing(c -> c.jobId));
+        owned.forEach(channel -> channel.lock.lock());
+        try {
+            List<Event> missed = new ArrayList<>();
+            owned.forEach(channel -> missed.addAll(channel.after(after)));
+            missed.sort(Comparator.comparingLong(event -> event.id));
+            if (!subscriber.replay(missed)) {
+                return subscriber.emitter;
+            }
+            userStreams.computeIfAbsent(userId, id -> new CopyOnWriteArraySet<>()).add(subscriber);
+        } finally {
+            owned.forEach(channel -> channel.lock.unlock());
+        }
+
+        subscriber.emitter.onCompletion(() -> removeUserStream(userId, subscriber));
+        subscriber.emitter.onTimeout(() -> {
+            removeUserStream(userId, subscriber);
+            subscriber.close();
+        });
+        subscriber.emitter.onError(e -> removeUserStream(userId, subscriber));
+        return subscriber.emitter;
+    }
+
+    /**
+     * A single-event stream for jobs this node holds no channel for (finished long ago or
+     * running elsewhere). The stream ends right away; for unfinished jobs the browser
+     * reconnects after {@code reconnectMillis}, which turns it into a slow poll.
+     */
+    public SseEmitter snapshot(String eventName, Object data, long reconnectMillis) {
+        SseEmitter emitter = newEmitter();
+        try {
+            emitter.send(SseEmitter.event().name(eventName).reconnectTime(reconnectMillis)
+                    .data(objectMapper.writeValueAsString(data)));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${app.sse.heartbeat-seconds:15}", timeUnit = TimeUnit.SECONDS)
+    public void heartbeat() {
+        channels.values().forEach(channel -> channel.subscribers.removeIf(s -> !s.heartbeat()));
+        userStreams.values().forEach(streams -> streams.removeIf(s -> !s.heartbeat()));
+        evictFinished();
+    }
+
+    public Map<String, Integer> describe() {
+        int jobSubscribers = channels.values().stream().mapToInt(c -> c.subscribers.size()).sum();
+        int userSubscribers = userStreams.values().stream().mapToInt(Set::size).sum();
+        return Map.of("channels", channels.size(), "jobSubscribers", jobSubscribers,
+                "userSubscribers", userSubscribers);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        channels.values().forEach(channel -> channel.subscribers.forEach(Subscriber::close));
+        userStreams.values().forEach(streams -> streams.forEach(Subscriber::close));
+    }
+
+    private void evictFinished() {
+        long cutoff = System.currentTimeMillis() - retainSeconds * 1000;
+        channels.values().removeIf(channel -> {
+            channel.lock.lock();
+            try {
+                return channel.finished && channel.finishedAt < cutoff;
+            } finally {
+                channel.lock.unlock();
+            }
+        });
+        userStreams.values().removeIf(Set::isEmpty);
+    }
+
+    private void removeUserStream(Long userId, Subscriber subscriber) {
+        Set<Subscriber> streams = userStreams.get(userId);
+        if (streams != null) {
+            streams.remove(subscriber);
+        }
+    }
+
+    private SseEmitter newEmitter() {
+        return new SseEmitter(timeoutMinutes * 60_000);
+    }
+
+    private static void sendAll(Set<Subscriber> subscribers, Event event) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.send(event)) {
+                subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    /**
+     * The sequence number in {@code lastEventId}, or 0 (replay everything) if it is missing
+     * or was not issued by this run.
+     */
+    private long parseEventId(String lastEventId) {
+        if (lastEventId == null) {
+            return 0;
+        }
+        String id = lastEventId.trim();
+        if (!id.startsWith(runId + "-")) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(id.substring(runId.length() + 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
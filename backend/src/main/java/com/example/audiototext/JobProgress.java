@@ -0,0 +1,233 @@
+package com.example.audiototext;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Progress of one job, fed by {@code @@PROGRESS <processed> <total>} worker frames
+ * (seconds of audio). A job has one part, or one per chunk when it is transcribed in
+ * pieces. Derives percent complete, the real-time factor (wall time per second of
+ * audio) and an ETA, and notifies its listener at most once per {@code minIntervalMillis}.
+ */
+public class JobProgress {
+
+    static final String PROGRESS_FRAME = "@@PROGRESS ";
+    private static final byte[] PROGRESS_FRAME_BYTES = PROGRESS_FRAME.getBytes(StandardCharsets.US_ASCII);
+
+    private final long minIntervalNanos;
+    private final Consumer<JobProgress> listener;
+    private final List<Part> parts = new ArrayList<>();
+    private final long startedAtNanos = System.nanoTime();
+    private long lastNotifiedNanos;
+    private final AtomicBoolean firstSegmentSeen = new AtomicBoolean();
+
+    private volatile double percent;
+    private volatile double realTimeFactor;
+    private volatile Instant estimatedCompletionAt;
+
+    public JobProgress(long minIntervalMillis, Consumer<JobProgress> listener) {
+        this.minIntervalNanos = minIntervalMillis * 1_000_000;
+        this.listener = listener;
+    }
+
+    /**
+     * One independently reporting piece of the job (the whole job, or a chunk).
+     */
+    public class Part {
+        private double processedSeconds;
+        private double totalSeconds;
+
+        /**
+         * Applies {@code line} if it is a progress frame. Returns false, without
+         * allocating, for any other line.
+         */
+        public boolean accept(String line) {
+            if (!line.startsWith(PROGRESS_FRAME)) {
+                return false;
+            }
+            int start = PROGRESS_FRAME.length();
+            int space = line.indexOf(' ', start);
+            if (space < 0) {
+                return true;
+            }
+            double processed = parseSeconds(line, start, space);
+            double total = parseSeconds(line, space + 1, line.length());
+            if (processed >= 0 && total > 0) {
+                report(this, processed, total);
+            }
+            return true;
+        }
+
+        /**
+         * Same as {@link #accept(String)} for a line still in the worker's read buffer,
+         * {@code line[from, to)} as UTF-8, so progress frames are never decoded.
+         */
+        public boolean accept(byte[] line, int from, int to) {
+            int start = from + PROGRESS_FRAME_BYTES.length;
+            if (to < start || !Arrays.equals(line, from, start, PROGRESS_FRAME_BYTES, 0, PROGRESS_FRAME_BYTES.length)) {
+                return false;
+            }
+            int space = start;
+            while (space < to && line[space] != ' ') {
+                space++;
+            }
+            if (space == to) {
+                return true;
+            }
+            double processed = parseSeconds(line, start, space);
+            double total = parseSeconds(line, space + 1, to);
+            if (processed >= 0 && total > 0) {
+                report(this, processed, total);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Registers a part. {@code expectedSeconds} is its length if known up front, or 0.
+     */
+    public synchronized Part part(double expectedSeconds) {
+        Part part = new Part();
+        part.totalSeconds = expectedSeconds;
+        parts.add(part);
+        return part;
+    }
+
+    /**
+     * Nanoseconds from the start of the job to its first segment on the first call, -1 afterwards.
+     */
+    public long firstSegmentNanos() {
+        return firstSegmentSeen.compareAndSet(false, true) ? System.nanoTime() - startedAtNanos : -1;
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - startedAtNanos;
+    }
+
+    /**
+     * Seconds of audio across all parts, as reported by the worker; 0 before the first frame
+     * unless given up front.
+     */
+    public synchronized double getTotalSeconds() {
+        double totalSum = 0;
+        for (Part p : parts) {
+            totalSum += p.totalSeconds;
+        }
+        return totalSum;
+    }
+
+    public double getPercent() {
+        return percent;
+    }
+
+    /**
+     * Wall-clock seconds spent per second of audio so far, or 0 before the first frame.
+     */
+    public double getRealTimeFactor() {
+        return realTimeFactor;
+    }
+
+    public Instant getEstimatedCompletionAt() {
+        return estimatedCompletionAt;
+    }
+
+    private void report(Part part, double processed, double total) {
+        boolean notify;
+        synchronized (this) {
+            part.processedSeconds = Math.min(processed, total);
+            part.totalSeconds = total;
+
+            double processedSum = 0;
+            double totalSum = 0;
+            for (Part p : parts) {
+                processedSum += p.processedSeconds;
+                totalSum += p.totalSeconds;
+            }
+            if (totalSum <= 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            double elapsedSeconds = (now - startedAtNanos) / 1e9;
+            percent = Math.min(100.0, 100.0 * processedSum / totalSum);
+            if (processedSum > 0) {
+                realTimeFactor = elapsedSeconds / processedSum;
+                long remainingMillis = Math.round((totalSum - processedSum) * realTimeFactor * 1000);
+                estimatedCompletionAt = Instant.now().plusMillis(Math.max(0, remainingMillis));
+            }
+
+            notify = percent >= 100.0 || lastNotifiedNanos == 0 || now - lastNotifiedNanos >= minIntervalNanos;
+            if (notify) {
+                lastNotifiedNanos = now;
+            }
+        }
+        if (notify) {
+            listener.accept(this);
+        }
+    }
+
+    /**
+     * Parses an unsigned decimal such as {@code 12.345} in {@code s[from, to)} without
+     * creating substrings. Returns -1 if the text is not such a number.
+     */
+    static double parseSeconds(String s, int from, int to) {
+        long whole = 0;
+        long fraction = 0;
+        long scale = 1;
+        boolean inFraction = false;
+        boolean digits = false;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+                if (inFraction) {
+                    if (scale < 1_000_000_000L) {
+                        fraction = fraction * 10 + (c - '0');
+                        scale *= 10;
+                    }
+                } else {
+                    whole = whole * 10 + (c - '0');
+                }
+            } else if (c == '.' && !inFraction) {
+                inFraction = true;
+            } else {
+                return -1;
+            }
+        }
+        return digits ? whole + (double) fraction / scale : -1;
+    }
+
+    /**
+     * {@link #parseSeconds(String, int, int)} over ASCII bytes.
+     */
+    static double parseSeconds(byte[] s, int from, int to) {
+        long whole = 0;
+        long fraction = 0;
+        long scale = 1;
+        boolean inFraction = false;
+        boolean digits = false;
+        for (int i = from; i < to; i++) {
+            byte c = s[i];
+            if (c >= '0' && c <= '9') {
+                digits = true;
+                if (inFraction) {
+                    if (scale < 1_000_000_000L) {
+                        fraction = fraction * 10 + (c - '0');
+                        scale *= 10;
+                    }
+                } else {
+                    whole = whole * 10 + (c - '0');
+                }
+            } else if (c == '.' && !inFraction) {
+                inFraction = true;
+            } else {
+                return -1;
+            }
+        }
+        return digits ? whole + (double) fraction / scale : -1;
+    }
+}
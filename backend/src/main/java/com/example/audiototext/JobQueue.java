@@ -0,0 +1,398 @@
+package com.example.audiototext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Job queue shared by every instance that points at the same database. Submitting a job
+ * only records it in {@code transcription_jobs}; each instance claims pending rows when it
+ * has free slots by taking a lease (owner + expiry) on them, renews its leases while the
+ * jobs run, and gives them up when they finish. A job whose lease runs out because its
+ * instance died is put back in the queue for another one, or failed after
+ * {@code app.queue.max-attempts} tries so a recording that crashes workers cannot take the
+ * cluster down one node at a time.
+ * <p>
+ * Live SSE events only flow on the instance running the job. The instance a job was
+ * submitted on relays its status changes from the database to its own subscribers.
+ */
+@Component
+public class JobQueue {
+
+    @Value("${app.queue.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.queue.node-id:}")
+    private String configuredNodeId;
+
+    @Value("${app.queue.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${app.queue.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.queue.capacity:100}")
+    private int queueCapacity;
+
+    @Autowired
+    private TranscriptionJobRepository repository;
+
+    @Autowired
+    private QueueNodeRepository nodeRepository;
+
+    @Autowired
+    private TranscriptionScheduler scheduler;
+
+    @Autowired
+    private JobEventHub eventHub;
+
+    @Autowired
+    private UserQuotas userQuotas;
+
+    private static final List<JobStatus> UNFINISHED = List.of(JobStatus.PENDING, JobStatus.PROCESSING);
+
+    // JPQL "not in" needs at least one value
+    private static final String NO_MODEL = "";
+    private static final int CLAIM_ATTEMPTS = 4;
+    private static final int MAX_CANDIDATE_USERS = 256;
+    private static final String ORPHANED_MESSAGE =
+            "Interrupted by a server restart. Please submit the recording again.";
+    // Check-ins of instances gone this long are dropped; their jobs were failed long before
+    private static final long FORGET_NODE_HOURS = 24;
+
+    private String nodeId;
+
+    // Leases this instance holds, renewed by the heartbeat
+    private final Set<String> held = ConcurrentHashMap.newKeySet();
+
+    // Jobs submitted here and running elsewhere, with the last status relayed to subscribers
+    private final Map<String, JobStatus> relayed = new ConcurrentHashMap<>();
+
+    // One claim at a time; a lock rather than a monitor, as claiming waits on JDBC
+    private final ReentrantLock claimLock = new ReentrantLock();
+
+    // Users' deficit round-robin credit across claims, per scheduler lane. Guarded by claimLock.
+    private final Map<TranscriptionScheduler.Lane, FairQueue<ClaimedJob>> fairOrder =
+            new EnumMap<>(TranscriptionScheduler.Lane.class);
+
+    public JobQueue(@Value("${app.scheduler.fair-quantum-seconds:300}") double fairQuantumSeconds) {
+        for (TranscriptionScheduler.Lane lane : TranscriptionScheduler.Lane.values()) {
+            fairOrder.put(lane, new FairQueue<>(fairQuantumSeconds));
+        }
+    }
+
+    /**
+     * A job this instance won the lease on and should run now.
+     */
+    public static class ClaimedJob {
+        public final String jobId;
+        public final String inputFilePath;
+        public final String cacheKey;
+        public final String language;
+        public final String model;
+        public final String task;
+        public final Long userId;
+        public final double audioSeconds;
+
+        ClaimedJob(Object[] row) {
+            this.jobId = (String) row[0];
+            this.inputFilePath = (String) row[1];
+            this.cacheKey = (String) row[2];
+            this.language = (String) row[3];
+            this.model = (String) row[4];
+            this.task = (String) row[5];
+            this.userId = (Long) row[6];
+            this.audioSeconds = row[7] != null ? (Double) row[7] : 0;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        if (nodeId == null) {
+            nodeId = configuredNodeId.isBlank() ? defaultNodeId() : configuredNodeId.trim();
+        }
+        return nodeId;
+    }
+
+    /**
+     * Whether the shared queue has room for another job.
+     */
+    public boolean isAcceptingJobs() {
+        return repository.countQueued(JobStatus.PENDING) < queueCapacity;
+    }
+
+    /**
+     * Puts a freshly created (PENDING) job in the shared queue.
+     *
+     * @throws QueueFullException if {@code app.queue.capacity} jobs are already waiting
+     */
+    public void enqueue(String jobId, String inputFilePath, String cacheKey, String model, double audioSeconds) {
+        if (!isAcceptingJobs()) {
+            throw new QueueFullException("Transcription queue is full (" + queueCapacity + " jobs waiting)",
+                    scheduler.retryAfterSeconds());
+        }
+        relayed.put(jobId, JobStatus.PENDING);
+        repository.enqueue(jobId, inputFilePath, cacheKey, model, audioSeconds, LocalDateTime.now());
+    }
+
+    /**
+     * Leases the next pending job the local scheduler can start right away, skipping models
+     * already at their limit here and lanes without a free slot, or returns null if there is
+     * none (or another thread is claiming at the moment; the next poll picks up whatever it
+     * leaves). Among users, the job is picked in weighted fair order from each user's oldest
+     * claimable one in the lane.
+     */
+    public ClaimedJob claimNext() {
+        if (!enabled || !claimLock.tryLock()) {
+            return null;
+        }
+        try {
+            List<TranscriptionScheduler.Lane> lanes = scheduler.claimableLanes();
+            if (lanes.isEmpty()) {
+                return null;
+            }
+            Set<String> excluded = scheduler.saturatedModels();
+            excluded.add(NO_MODEL);
+            // A few retries, since other instances may win the race for a row
+            for (int attempt = 0; attempt < CLAIM_ATTEMPTS; attempt++) {
+                LocalDateTime now = LocalDateTime.now();
+                ClaimedJob job = null;
+                for (TranscriptionScheduler.Lane lane : lanes) {
+                    job = nextInFairOrder(now, excluded, lane);
+                    if (job != null) {
+                        break;
+                    }
+                }
+                if (job == null) {
+                    return null;
+                }
+                if (repository.claim(job.jobId, JobStatus.PENDING, getNodeId(), now,
+                        now.plusSeconds(leaseSeconds)) == 1) {
+                    held.add(job.jobId);
+                    relayed.remove(job.jobId);
+                    return job;
+                }
+            }
+            return null;
+        } catch (RuntimeException e) {
+            System.err.println("[Queue]: Claiming a job failed: " + e.getMessage());
+            return null;
+        } finally {
+            claimLock.unlock();
+        }
+    }
+
+    private ClaimedJob nextInFairOrder(LocalDateTime now, Set<String> excluded, TranscriptionScheduler.Lane lane) {
+        boolean shortLane = lane == TranscriptionScheduler.Lane.SHORT;
+        double threshold = scheduler.getShortJobSeconds();
+        FairQueue<ClaimedJob> candidates = fairOrder.get(lane);
+        candidates.clear();
+        for (Object[] row : repository.findClaimableHeads(JobStatus.PENDING, now, excluded,
+                shortLane ? 0 : threshold, shortLane ? threshold : Double.MAX_VALUE,
+                PageRequest.of(0, MAX_CANDIDATE_USERS))) {
+            ClaimedJob job = new ClaimedJob(row);
+            double weight = row[8] != null ? (Double) row[8] : userQuotas.weight(job.userId);
+            candidates.add(job.userId, weight, job.audioSeconds, job);
+        }
+        return candidates.poll(candidate -> true);
+    }
+
+    /**
+     * Gives up the lease once the job has finished (or will not run here after all).
+     */
+    public void release(String jobId) {
+        if (!held.remove(jobId)) {
+            return;
+        }
+        try {
+            repository.releaseLease(jobId, getNodeId());
+        } catch (RuntimeException e) {
+            System.err.println("[Queue]: Could not release lease on " + jobId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Predicted start and finish of a job no instance has claimed yet, replaying the jobs queued
+     * before it through the local scheduler, or null if it is not waiting.
+     */
+    public TranscriptionScheduler.QueueStatus predict(String jobId) {
+        if (!enabled || held.contains(jobId)) {
+            return null;
+        }
+        List<Object[]> queued = repository.findQueuedUpTo(jobId, JobStatus.PENDING);
+        return scheduler.predict(queued);
+    }
+
+    /**
+     * {model, audio seconds} of every job in the shared queue no instance has claimed yet,
+     * oldest first; empty with the queue disabled.
+     */
+    public List<Object[]> queuedJobs() {
+        return enabled ? repository.findQueued(JobStatus.PENDING) : List.of();
+    }
+
+    /**
+     * Cleans up after instances that stopped: jobs whose lease expired (or that a previous
+     * run of this node still holds) go back in the queue, and jobs that were only ever
+     * tracked in memory, by this node or by one that stopped checking in, are failed, since
+     * nothing could resume them. Jobs in memory on live instances are left alone.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        LocalDateTime now = LocalDateTime.now();
+        if (enabled) {
+            checkIn(now);
+            try {
+                nodeRepository.deleteSilentSince(now.minusHours(FORGET_NODE_HOURS));
+            } catch (RuntimeException e) {
+                System.err.println("[Queue]: Could not forget stopped nodes: " + e.getMessage());
+            }
+        }
+        // With the queue disabled every unfinished job was this instance's, pending or not
+        JobStatus runnable = enabled ? JobStatus.PENDING : JobStatus.COMPLETED;
+        int orphaned = repository.failOrphaned(UNFINISHED, runnable, JobStatus.FAILED, ORPHANED_MESSAGE,
+                getNodeId(), now, now.minusSeconds(leaseSeconds), now.minusSeconds(leaseSeconds));
+        if (orphaned > 0) {
+            System.out.println("[Queue]: Failed " + orphaned + " jobs interrupted by a restart");
+        }
+        if (enabled) {
+            System.out.println("[Queue]: Node " + getNodeId() + " pulling from the shared job queue");
+            requeueExpired(getNodeId());
+        }
+    }
+
+    /**
+     * Extends the leases this instance holds and requeues jobs whose lease ran out elsewhere.
+     */
+    @Scheduled(fixedDelayString = "${app.queue.heartbeat-seconds:15}", timeUnit = TimeUnit.SECONDS)
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+        if (!held.isEmpty()) {
+            List<String> ids = new ArrayList<>(held);
+            try {
+                int renewed = repository.renewLeases(getNodeId(), ids,
+                        LocalDateTime.now().plusSeconds(leaseSeconds));
+                if (renewed < ids.size()) {
+                    // Another instance took over after we missed renewals; both runs write the same outputs
+                    System.err.println("[Queue]: Lost " + (ids.size() - renewed) + " of " + ids.size()
+                            + " leases; those jobs were requeued elsewhere");
+                }
+            } catch (RuntimeException e) {
+                System.err.println("[Queue]: Lease renewal failed: " + e.getMessage());
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        checkIn(now);
+        requeueExpired(null);
+        try {
+            int orphaned = repository.failOrphaned(UNFINISHED, JobStatus.PENDING, JobStatus.FAILED,
+                    ORPHANED_MESSAGE, null, now, now.minusSeconds(leaseSeconds), now.minusSeconds(leaseSeconds));
+            if (orphaned > 0) {
+                System.out.println("[Queue]: Failed " + orphaned + " jobs of nodes that stopped responding");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("[Queue]: Failing orphaned jobs failed: " + e.getMessage());
+        }
+    }
+
+    private void checkIn(LocalDateTime now) {
+        try {
+            nodeRepository.save(new QueueNode(getNodeId(), now));
+        } catch (RuntimeException e) {
+            System.err.println("[Queue]: Check-in failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forwards status changes of jobs submitted here but running on another instance.
+     */
+    @Scheduled(fixedDelayString = "${app.queue.poll-interval-ms:1000}")
+    public void relayRemoteStatus() {
+        if (relayed.isEmpty()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>(relayed.keySet());
+        List<Object[]> rows;
+        try {
+            rows = repository.findStatuses(ids);
+        } catch (RuntimeException e) {
+            System.err.println("[Queue]: Status relay failed: " + e.getMessage());
+            return;
+        }
+        Set<String> missing = new HashSet<>(ids);
+        for (Object[] row : rows) {
+            String jobId = (String) row[0];
+            JobStatus status = (JobStatus) row[1];
+            missing.remove(jobId);
+            JobStatus last = relayed.get(jobId);
+            if (last == null || last == status) {
+                continue; // Claimed here meanwhile, or unchanged
+            }
+            Map<String, Object> data = new HashMap<>();
+            data.put("jobId", jobId);
+            data.put("status", status);
+            data.put("message", row[2]);
+            eventHub.publish(jobId, "status-update", data);
+            if (status == JobStatus.COMPLETED || status == JobStatus.FAILED) {
+                relayed.remove(jobId);
+                eventHub.finish(jobId);
+            } else {
+                relayed.replace(jobId, last, status);
+            }
+        }
+        missing.forEach(relayed::remove); // Discarded
+    }
+
+    /**
+     * @param staleNode a node id whose leases count as expired too (this node's own id at
+     *                  startup, when leases it still holds belong to a previous run), or null
+     */
+    private void requeueExpired(String staleNode) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            int requeued = repository.requeueExpired(UNFINISHED, JobStatus.PENDING,
+                    "Requeued: the server running this job stopped responding.", staleNode, now, maxAttempts);
+            int failed = repository.failExpired(UNFINISHED, JobStatus.FAILED,
+                    "Failed: the server running this job stopped responding " + maxAttempts + " times.",
+                    staleNode, now, maxAttempts);
+            if (requeued > 0 || failed > 0) {
+                System.out.println("[Queue]: Expired leases: requeued " + requeued + ", failed " + failed);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("[Queue]: Requeueing expired leases failed: " + e.getMessage());
+        }
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+    }
+}
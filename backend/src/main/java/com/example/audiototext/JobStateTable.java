@@ -0,0 +1,201 @@
+package com.example.audiototext;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Live state of the jobs this instance is running. Status reads and SSE pushes are
+ * served from memory; intermediate PROCESSING updates only mark a job dirty and are
+ * written in one batch every {@code app.jobs.flush-interval-ms}. Terminal states
+ * (COMPLETED / FAILED) are written synchronously before the caller sees them, after
+ * which the job leaves the table and is read from the database like any old job.
+ */
+@Component
+public class JobStateTable {
+
+    @Autowired
+    private TranscriptionJobRepository repository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final Map<String, JobState> states = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+    // Serializes database writes so a batched snapshot can never land after a newer terminal write.
+    // A lock rather than a monitor, so a virtual thread waiting on JDBC does not pin its carrier.
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * Snapshot of a job's mutable fields.
+     */
+    public static class JobState {
+        public final String jobId;
+        public final JobStatus status;
+        public final String message;
+        public final String outputFilePath;
+        public final LocalDateTime completedAt;
+
+        JobState(String jobId, JobStatus status, String message, String outputFilePath, LocalDateTime completedAt) {
+            this.jobId = jobId;
+            this.status = status;
+            this.message = message;
+            this.outputFilePath = outputFilePath;
+            this.completedAt = completedAt;
+        }
+
+        public boolean isTerminal() {
+            return status == JobStatus.COMPLETED || status == JobStatus.FAILED;
+        }
+    }
+
+    /**
+     * Starts tracking a job that was just persisted.
+     */
+    public void track(TranscriptionJob job) {
+        states.put(job.getId(), new JobState(job.getId(), job.getStatus(), job.getMessage(),
+                job.getOutputFilePath(), job.getCompletedAt()));
+    }
+
+    /**
+     * Applies a status change. Null {@code message} / {@code outputFilePath} keep the
+     * current values. Returns the new state, or null if the job does not exist or has
+     * already finished and the change is not terminal (a late progress update).
+     */
+    public JobState update(String jobId, JobStatus status, String message, String outputFilePath) {
+        JobState tracked = states.get(jobId);
+        if (tracked == null) {
+            tracked = load(jobId);
+            if (tracked == null) {
+                return null;
+            }
+            states.putIfAbsent(jobId, tracked);
+        }
+        JobState fallback = tracked;
+        boolean terminal = status == JobStatus.COMPLETED || status == JobStatus.FAILED;
+        JobState next = states.compute(jobId, (id, previous) -> {
+            JobState base = previous != null ? previous : fallback;
+            if (base.isTerminal() && !terminal) {
+                return base; // Never undo a finish
+            }
+            return new JobState(id, status,
+                    message != null ? message : base.message,
+                    outputFilePath != null ? outputFilePath : base.outputFilePath,
+                    terminal ? LocalDateTime.now() : base.completedAt);
+        });
+        if (next.isTerminal() && !terminal) {
+            // A finished job loaded from the database just for this update is not kept
+            states.computeIfPresent(jobId, (id, state) -> state.isTerminal() && !dirty.contains(id) ? null : state);
+            return null;
+        }
+        dirty.add(jobId);
+
+        if (next.isTerminal()) {
+            writeLock.lock();
+            try {
+                if (dirty.remove(jobId)) {
+                    try {
+                        write(List.of(states.getOrDefault(jobId, next)));
+                    } catch (RuntimeException e) {
+                        dirty.add(jobId); // The next flush retries
+                        System.err.println("[JobState]: Could not persist final state of " + jobId + ": "
+                                + e.getMessage());
+                        return next;
+                    }
+                }
+                states.computeIfPresent(jobId, (id, state) -> state.isTerminal() ? null : state);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Current state of {@code jobId}: from memory while it is tracked, otherwise from the database.
+     */
+    public JobState get(String jobId) {
+        JobState state = states.get(jobId);
+        return state != null ? state : load(jobId);
+    }
+
+    /**
+     * State of {@code jobId} if this instance is tracking it, without going to the database.
+     */
+    public JobState peek(String jobId) {
+        return states.get(jobId);
+    }
+
+    public void remove(String jobId) {
+        states.remove(jobId);
+        dirty.remove(jobId);
+    }
+
+    /**
+     * Writes all pending intermediate updates in a single transaction.
+     */
+    @Scheduled(fixedDelayString = "${app.jobs.flush-interval-ms:2000}")
+    @PreDestroy
+    public void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            List<JobState> batch = new ArrayList<>();
+            for (String jobId : dirty) {
+                dirty.remove(jobId);
+                JobState state = states.get(jobId);
+                if (state != null) {
+                    batch.add(state);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                batch.forEach(state -> dirty.add(state.jobId));
+                System.err.println("[JobState]: Flush of " + batch.size() + " jobs failed: " + e.getMessage());
+                return;
+            }
+            // Terminal states whose synchronous write failed earlier are done now
+            for (JobState state : batch) {
+                if (state.isTerminal()) {
+                    states.remove(state.jobId, state);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void write(List<JobState> batch) {
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(tx -> {
+            for (JobState state : batch) {
+                repository.updateState(state.jobId, state.status, state.message, state.outputFilePath,
+                        state.completedAt, now);
+            }
+        });
+    }
+
+    private JobState load(String jobId) {
+        return repository.findById(jobId)
+                .map(job -> new JobState(job.getId(), job.getStatus(), job.getMessage(), job.getOutputFilePath(),
+                        job.getCompletedAt()))
+                .orElse(null);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.audiototext;
+
+import java.time.LocalDateTime;
+
+/**
+ * Slim, read-only projection of a {@link TranscriptionJob} for history listings.
+ * Built directly by the repository query, so no entity or user is loaded.
+ */
+public class JobSummary {
+    public final String id;
+    public final JobStatus status;
+    public final String model;
+    public final String language;
+    public final String task;
+    public final String message;
+    public final LocalDateTime createdAt;
+    public final LocalDateTime completedAt;
+
+    public JobSummary(String id, JobStatus status, String model, String language, String task, String message,
+            LocalDateTime createdAt, LocalDateTime completedAt) {
+        this.id = id;
+        this.status = status;
+        this.model = model;
+        this.language = language;
+        this.task = task;
+        this.message = message;
+        this.createdAt = createdAt;
+        this.completedAt = completedAt;
+    }
+}
@@ -0,0 +1,485 @@
+package com.example.audiototext;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+/**
+ * Disk cache of media downloaded from {@code /api/transcribe-link} sources, so a popular
+ * link is fetched once however many jobs, models, languages or tasks use it. Entries are
+ * keyed by the normalized URL plus the server's ETag (or else the Content-Length); within
+ * {@code app.links.fresh-seconds} an entry is used without asking the server, after that
+ * it is revalidated with a conditional GET and only downloaded again if it changed.
+ * Concurrent requests for the same URL share one download. Least recently used entries
+ * are evicted once the cache exceeds its size limit; entries in use are never evicted.
+ * <p>
+ * Only direct media links are fetched here. Pages (e.g. video sites) and links that do not
+ * answer 200 with audio or video go to the worker as before, which resolves them with yt_dlp.
+ */
+@Component
+public class LinkCache {
+
+    private static final String KEY_PATTERN = "[0-9a-f]{64}";
+    private static final String MEDIA_SUFFIX = ".media";
+    private static final String META_SUFFIX = ".json";
+
+    @Value("${app.links.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.links.cache-dir:}")
+    private String cacheDir;
+
+    @Value("${app.links.max-size-mb:10240}")
+    private long maxSizeMb;
+
+    @Value("${app.links.max-file-mb:2048}")
+    private long maxFileMb;
+
+    @Value("${app.links.fresh-seconds:600}")
+    private long freshSeconds;
+
+    @Value("${app.links.timeout-seconds:30}")
+    private long timeoutSeconds;
+
+    @Autowired
+    private PipelineMetrics metrics;
+
+    @Autowired
+    private NodeDirectories nodeDirectories;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private HttpClient client;
+
+    private static class Entry {
+        final String key;
+        final String url;
+        final String validator;  // "etag:...", "length:..." or "sha256:..." when the server gives neither
+        final String etag;
+        final String sha256;
+        final long sizeBytes;
+        volatile long checkedAt; // When the server last confirmed it, in millis; 0 after a restart
+        int pins;                // Jobs using the file; pinned entries are never deleted
+        boolean removed;         // Evicted or replaced while pinned; deleted by the last release
+
+        Entry(String key, String url, String validator, String etag, String sha256, long sizeBytes) {
+            this.key = key;
+            this.url = url;
+            this.validator = validator;
+            this.etag = etag;
+            this.sha256 = sha256;
+            this.sizeBytes = sizeBytes;
+        }
+    }
+
+    /**
+     * A cached download in use by a job. Must be given back with {@link #release}.
+     */
+    public static class Media {
+        public final Path path;
+        public final String sha256;
+        public final long sizeBytes;
+        private final Entry entry;
+
+        private Media(Path path, Entry entry) {
+            this.path = path;
+            this.sha256 = entry.sha256;
+            this.sizeBytes = entry.sizeBytes;
+            this.entry = entry;
+        }
+    }
+
+    // Keyed by normalized URL, access-ordered: iteration starts at the least recently used. Guarded by "this".
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    // Downloads in progress by normalized URL; later requests for the same URL wait for the first
+    private final Map<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void loadIndex() throws IOException {
+        client = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(timeoutSeconds))
+                .build();
+        if (!enabled) {
+            return;
+        }
+        Path dir = nodeDirectories.open(cacheDir, "links");
+        cacheDir = dir.toString();
+        List<Path> metaFiles = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".part")) {
+                    Files.deleteIfExists(file); // Download cut short by a restart
+                } else if (name.matches(KEY_PATTERN + "\\" + META_SUFFIX)) {
+                    metaFiles.add(file);
+                }
+            }
+        }
+        // Meta files are touched on every use, so their timestamps give the LRU order
+        metaFiles.sort(Comparator.comparing(p -> p.toFile().lastModified()));
+        for (Path metaFile : metaFiles) {
+            String key = metaFile.getFileName().toString().substring(0, 64);
+            try {
+                Map<String, Object> meta = objectMapper.readValue(metaFile.toFile(),
+                        new TypeReference<Map<String, Object>>() {
+                        });
+                Path media = dir.resolve(key + MEDIA_SUFFIX);
+                Entry entry = new Entry(key, (String) meta.get("url"), (String) meta.get("validator"),
+                        (String) meta.get("etag"), (String) meta.get("sha256"), Files.size(media));
+                synchronized (this) {
+                    Entry previous = entries.put(entry.url, entry);
+                    totalBytes += entry.sizeBytes - (previous != null ? previous.sizeBytes : 0);
+                    if (previous != null) {
+                        deleteFiles(previous.key);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("[Links]: Dropping unreadable entry " + key + ": " + e.getMessage());
+                deleteFiles(key);
+            }
+        }
+        System.out.println(">>> Link cache: " + entries.size() + " entries, " + totalBytes / (1024 * 1024) + " MB");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The media behind {@code url}, from the cache or downloaded into it, pinned until
+     * {@link #release}. Returns null if the link is not direct media (or caching is off),
+     * in which case the worker should be given the URL itself.
+     *
+     * @throws IOException if the download failed or the file is over {@code app.links.max-file-mb}
+     */
+    public Media acquire(String url) throws IOException, InterruptedException {
+        if (!enabled) {
+            return null;
+        }
+        String normalized;
+        try {
+            normalized = normalize(url);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        while (true) {
+            CompletableFuture<Entry> mine = new CompletableFuture<>();
+            CompletableFuture<Entry> running = inFlight.putIfAbsent(normalized, mine);
+            if (running != null) {
+                Entry shared;
+                try {
+                    shared = running.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                            : new IOException(e.getCause().getMessage(), e.getCause());
+                }
+                if (shared == null) {
+                    return null;
+                }
+                Media media = pin(shared);
+                if (media != null) {
+                    metrics.linkFetch("shared", 0, 0);
+                    return media;
+                }
+                continue; // Evicted in the meantime; look again
+            }
+            try {
+                Entry entry = fetch(normalized);
+                mine.complete(entry);
+                if (entry == null) {
+                    return null;
+                }
+                Media media = pin(entry);
+                if (media != null) {
+                    return media;
+                }
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(normalized, mine);
+            }
+        }
+    }
+
+    /**
+     * The cached file for {@code url} if there is one, without checking whether it is still
+     * current or pinning it; for estimates only, as it may be evicted at any time.
+     */
+    public Path peek(String url) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry;
+        try {
+            String normalized = normalize(url);
+            synchronized (this) {
+                entry = entries.get(normalized);
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return entry != null ? Paths.get(cacheDir).resolve(entry.key + MEDIA_SUFFIX) : null;
+    }
+
+    /**
+     * Gives back a file from {@link #acquire}, deleting it if it was evicted meanwhile.
+     */
+    public void release(Media media) {
+        if (media == null) {
+            return;
+        }
+        boolean delete;
+        synchronized (this) {
+            media.entry.pins--;
+            delete = media.entry.removed && media.entry.pins == 0;
+        }
+        if (delete) {
+            deleteFiles(media.entry.key);
+        }
+    }
+
+    /**
+     * The current entry for {@code url}: as cached while fresh, otherwise after asking the
+     * server whether it changed, downloading it if so. Null if the link is not direct media.
+     */
+    private Entry fetch(String url) throws IOException, InterruptedException {
+        Entry cached;
+        synchronized (this) {
+            cached = entries.get(url);
+        }
+        if (cached != null && System.currentTimeMillis() - cached.checkedAt < freshSeconds * 1000) {
+            metrics.linkFetch("hit", 0, 0);
+            return cached;
+        }
+
+        long started = System.nanoTime();
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(timeoutSeconds))
+                .GET();
+        if (cached != null && cached.etag != null) {
+            request.header("If-None-Match", cached.etag);
+        }
+        HttpResponse<InputStream> response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            if (response.statusCode() == 304 && cached != null) {
+                return confirmed(cached, "revalidated");
+            }
+            String contentType = response.headers().firstValue("Content-Type").orElse("")
+                    .toLowerCase(Locale.ROOT);
+            if (response.statusCode() != 200 || !isMedia(contentType)) {
+                System.out.println("[Links]: " + url + " answered " + response.statusCode() + " "
+                        + contentType + "; leaving it to the worker");
+                metrics.linkFetch("passthrough", 0, 0);
+                return null;
+            }
+            String etag = response.headers().firstValue("ETag").orElse(null);
+            long length = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+            String validator = etag != null ? "etag:" + etag : length >= 0 ? "length:" + length : null;
+            if (cached != null && validator != null && validator.equals(cached.validator)) {
+                return confirmed(cached, "revalidated");
+            }
+            if (length > maxFileMb * 1024 * 1024) {
+                throw new IOException("Linked file is larger than " + maxFileMb + " MB");
+            }
+
+            Path dir = Files.createDirectories(Paths.get(cacheDir));
+            Path part = dir.resolve(UUID.randomUUID() + ".part");
+            String sha256;
+            long size;
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                size = download(body, part, digest);
+                sha256 = HexFormat.of().formatHex(digest.digest());
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(part);
+                throw e;
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            if (cached != null && sha256.equals(cached.sha256)) {
+                Files.deleteIfExists(part); // Same bytes under a new validator-less response
+                return confirmed(cached, "revalidated");
+            }
+
+            String key = key(url, validator != null ? validator : "sha256:" + sha256);
+            Entry entry = new Entry(key, url, validator != null ? validator : "sha256:" + sha256, etag, sha256,
+                    size);
+            entry.checkedAt = System.currentTimeMillis();
+            try {
+                Files.move(part, dir.resolve(key + MEDIA_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+                Map<String, Object> meta = new LinkedHashMap<>();
+                meta.put("url", url);
+                meta.put("validator", entry.validator);
+                meta.put("etag", etag);
+                meta.put("sha256", sha256);
+                objectMapper.writeValue(dir.resolve(key + META_SUFFIX).toFile(), meta);
+            } catch (IOException e) {
+                Files.deleteIfExists(part);
+                deleteFiles(key);
+                throw e;
+            }
+            metrics.linkFetch("download", size, System.nanoTime() - started);
+            System.out.printf("[Links]: Downloaded %s (%d KB)%n", url, size / 1024);
+            add(entry);
+            return entry;
+        }
+    }
+
+    private long download(InputStream body, Path target, MessageDigest digest) throws IOException {
+        long limit = maxFileMb * 1024 * 1024;
+        long size = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (OutputStream out = Files.newOutputStream(target)) {
+            for (int read = body.read(buffer); read >= 0; read = body.read(buffer)) {
+                size += read;
+                if (size > limit) {
+                    throw new IOException("Linked file is larger than " + maxFileMb + " MB");
+                }
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+            }
+        }
+        return size;
+    }
+
+    private Entry confirmed(Entry cached, String outcome) {
+        cached.checkedAt = System.currentTimeMillis();
+        metrics.linkFetch(outcome, 0, 0);
+        return cached;
+    }
+
+    /**
+     * Puts {@code entry} in place of any older version of its URL, then evicts least
+     * recently used entries until the cache fits its size limit.
+     */
+    private void add(Entry entry) {
+        List<String> deleted = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.put(entry.url, entry);
+            totalBytes += entry.sizeBytes;
+            if (previous != null && previous != entry) {
+                totalBytes -= previous.sizeBytes;
+                retire(previous, deleted);
+            }
+            long limit = maxSizeMb * 1024 * 1024;
+            Iterator<Entry> it = entries.values().iterator();
+            while (totalBytes > limit && it.hasNext()) {
+                Entry candidate = it.next();
+                if (candidate.pins > 0 || candidate == entry) {
+                    continue;
+                }
+                it.remove();
+                totalBytes -= candidate.sizeBytes;
+                retire(candidate, deleted);
+            }
+        }
+        deleted.forEach(this::deleteFiles);
+    }
+
+    // Caller holds "this"
+    private void retire(Entry entry, List<String> deleted) {
+        entry.removed = true;
+        if (entry.pins == 0) {
+            deleted.add(entry.key);
+        }
+    }
+
+    private Media pin(Entry entry) {
+        synchronized (this) {
+            if (entry.removed) {
+                return null;
+            }
+            entry.pins++;
+            entries.get(entry.url); // Most recently used now
+        }
+        Path dir = Paths.get(cacheDir);
+        try {
+            Files.setLastModifiedTime(dir.resolve(entry.key + META_SUFFIX), FileTime.fromMillis(
+                    System.currentTimeMillis()));
+        } catch (IOException e) {
+            System.err.println("[Links]: Could not mark " + entry.key + ": " + e.getMessage());
+        }
+        return new Media(dir.resolve(entry.key + MEDIA_SUFFIX), entry);
+    }
+
+    private void deleteFiles(String key) {
+        Path dir = Paths.get(cacheDir);
+        try {
+            Files.deleteIfExists(dir.resolve(key + MEDIA_SUFFIX));
+            Files.deleteIfExists(dir.resolve(key + META_SUFFIX));
+        } catch (IOException e) {
+            System.err.println("[Links]: Could not delete " + key + ": " + e.getMessage());
+        }
+    }
+
+    private static boolean isMedia(String contentType) {
+        return contentType.isEmpty() || contentType.startsWith("audio/") || contentType.startsWith("video/")
+                || contentType.startsWith("application/octet-stream") || contentType.startsWith("application/ogg");
+    }
+
+    /**
+     * {@code url} with the scheme and host lower-cased, the default port, an empty path and
+     * the fragment dropped, so trivially different spellings share an entry.
+     *
+     * @throws IllegalArgumentException if it is not an absolute http(s) URL
+     */
+    static String normalize(String url) {
+        URI uri = URI.create(url.trim()).normalize();
+        String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.ROOT) : "";
+        if (!scheme.equals("http") && !scheme.equals("https") || uri.getHost() == null) {
+            throw new IllegalArgumentException("Not an http(s) URL: " + url);
+        }
+        int port = uri.getPort();
+        boolean defaultPort = port == -1 || (scheme.equals("http") && port == 80)
+                || (scheme.equals("https") && port == 443);
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        return scheme + "://" + uri.getHost().toLowerCase(Locale.ROOT) + (defaultPort ? "" : ":" + port) + path
+                + (uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "");
+    }
+
+    private static String key(String url, String validator) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest((url + "|" + validator).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.audiototext;
+
+/**
+ * Helpers for per-model settings written as {@code model:value} lists, e.g. {@code tiny:2,small:1}.
+ */
+public final class ModelSettings {
+
+    private ModelSettings() {
+    }
+
+    /**
+     * Returns the positive integer configured for {@code model} in {@code spec}, or {@code fallback}.
+     */
+    public static int lookup(String spec, String model, int fallback) {
+        if (spec != null && !spec.isBlank() && model != null) {
+            for (String entry : spec.split(",")) {
+                String[] parts = entry.trim().split(":");
+                if (parts.length == 2 && parts[0].trim().equalsIgnoreCase(model)) {
+                    return Math.max(1, Integer.parseInt(parts[1].trim()));
+                }
+            }
+        }
+        return Math.max(1, fallback);
+    }
+
+    /**
+     * Returns the positive number configured for {@code model} in {@code spec}, or {@code fallback}.
+     */
+    public static double lookupDouble(String spec, String model, double fallback) {
+        if (spec != null && !spec.isBlank() && model != null) {
+            for (String entry : spec.split(",")) {
+                String[] parts = entry.trim().split(":");
+                if (parts.length == 2 && parts[0].trim().equalsIgnoreCase(model)) {
+                    double value = Double.parseDouble(parts[1].trim());
+                    return value > 0 ? value : fallback;
+                }
+            }
+        }
+        return fallback;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.audiototext;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Directories that belong to one instance: the search index and the transcript and link
+ * caches. Instances sharing the job queue share {@code app.output.dir}, so unless a directory
+ * is configured explicitly it goes under {@code <app.output.dir>/<name>/<node>}, where the node
+ * is {@code app.queue.node-id} or else the host name (without the pid, so a restart finds its
+ * files again). Each directory is locked while the instance runs, and startup fails if another
+ * instance already holds it.
+ */
+@Component
+public class NodeDirectories {
+
+    private static final String LOCK_FILE = ".lock";
+
+    @Value("${app.output.dir}")
+    private String outputDir;
+
+    @Value("${app.queue.enabled:false}")
+    private boolean queueEnabled;
+
+    @Value("${app.queue.node-id:}")
+    private String configuredNodeId;
+
+    // Held until the JVM exits, which releases the locks
+    private final List<FileChannel> locks = new ArrayList<>();
+
+    /**
+     * Creates and locks the directory for {@code name}: {@code configured} if set, else the
+     * per-node default (just {@code <app.output.dir>/<name>} without the shared queue).
+     *
+     * @throws IllegalStateException if another instance is using the directory
+     */
+    public synchronized Path open(String configured, String name) throws IOException {
+        Path dir;
+        if (configured != null && !configured.isBlank()) {
+            dir = Paths.get(configured.trim());
+        } else if (queueEnabled) {
+            dir = Paths.get(outputDir, name, nodeName());
+        } else {
+            dir = Paths.get(outputDir, name);
+        }
+        dir = Files.createDirectories(dir);
+        FileChannel channel = FileChannel.open(dir.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IllegalStateException(dir.toAbsolutePath() + " is already in use by another instance. "
+                    + "Give each instance its own app.queue.node-id, or its own directories.");
+        }
+        locks.add(channel);
+        return dir;
+    }
+
+    private String nodeName() {
+        if (!configuredNodeId.isBlank()) {
+            return configuredNodeId.trim().replaceAll("[^A-Za-z0-9._-]", "_");
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName().replaceAll("[^A-Za-z0-9._-]", "_");
+        } catch (Exception e) {
+            return "node";
+        }
+    }
+}
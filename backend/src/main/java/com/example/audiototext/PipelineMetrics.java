@@ -0,0 +1,198 @@
+package com.example.audiototext;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Micrometer instrumentation of the transcription pipeline, one method per stage:
+ * upload, queue wait, audio preflight, worker start (process spawn + model load), time to first
+ * segment, decoding speed and overall job time. Every timer and summary publishes a
+ * histogram so percentiles can be computed on the Prometheus side
+ * ({@code /actuator/prometheus}).
+ */
+@Component
+public class PipelineMetrics {
+
+    // Tag values are bounded so arbitrary request parameters cannot blow up the series count
+    private static final Set<String> KNOWN_MODELS = Set.of("tiny", "tiny.en", "base", "base.en", "small", "small.en",
+            "medium", "medium.en", "large", "large-v1", "large-v2", "large-v3", "turbo", "large-v3-turbo");
+
+    private final MeterRegistry registry;
+
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void uploadCompleted(long bytes, long nanos) {
+        DistributionSummary.builder("transcription.upload.size")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(bytes);
+        Timer.builder("transcription.upload.duration")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (nanos > 0) {
+            DistributionSummary.builder("transcription.upload.throughput")
+                    .baseUnit("bytes_per_second")
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(bytes * 1e9 / nanos);
+        }
+    }
+
+    /**
+     * A resumable upload session event: opened, completed, aborted or expired.
+     */
+    public void uploadSession(String event) {
+        Counter.builder("transcription.upload.sessions")
+                .tags(Tags.of("event", event))
+                .register(registry)
+                .increment();
+    }
+
+    public void queueWait(String model, long nanos) {
+        Timer.builder("transcription.queue.wait")
+                .tags(Tags.of("model", model(model)))
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Time from spawning a resident worker until it reported its model loaded.
+     */
+    public void workerStartup(String model, long nanos, boolean succeeded) {
+        Timer.builder("transcription.worker.startup")
+                .tags(Tags.of("model", model(model), "outcome", succeeded ? "ready" : "failed"))
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Time to spawn a one-off (non-pooled) Whisper process.
+     */
+    public void processSpawn(String model, long nanos) {
+        Timer.builder("transcription.process.spawn")
+                .tags(Tags.of("model", model(model)))
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records an audio preflight: how long it took and the share of the recording cut as silence.
+     */
+    public void preflight(double originalSeconds, double preparedSeconds, long nanos) {
+        Timer.builder("transcription.preflight.duration")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (originalSeconds > 0) {
+            DistributionSummary.builder("transcription.preflight.removed.ratio")
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(Math.max(0, originalSeconds - preparedSeconds) / originalSeconds);
+        }
+    }
+
+    /**
+     * A link source resolved by {@link LinkCache}: outcome is hit, shared, revalidated,
+     * download or passthrough (not direct media, left to the worker).
+     */
+    public void linkFetch(String outcome, long bytes, long nanos) {
+        Counter.builder("transcription.link.fetches")
+                .tags(Tags.of("outcome", outcome))
+                .register(registry)
+                .increment();
+        if (bytes > 0) {
+            DistributionSummary.builder("transcription.link.download.size")
+                    .baseUnit("bytes")
+                    .register(registry)
+                    .record(bytes);
+            Timer.builder("transcription.link.download.duration")
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * A batch item that was not admitted: reason is busy (queue full), quota or error.
+     */
+    public void batchItemRejected(String reason) {
+        Counter.builder("transcription.batch.rejected")
+                .tags(Tags.of("reason", reason))
+                .register(registry)
+                .increment();
+    }
+
+    public void search(long nanos) {
+        Timer.builder("transcription.search.duration")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void firstSegment(String model, long nanos) {
+        Timer.builder("transcription.first.segment")
+                .tags(Tags.of("model", model(model)))
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records a finished job.
+     *
+     * @param mode           how it ran: pool, process, chunked or cache
+     * @param realTimeFactor wall seconds per audio second, or 0 if unknown
+     */
+    public void jobFinished(String model, String language, String mode, boolean succeeded, long nanos,
+            double realTimeFactor) {
+        Tags tags = Tags.of("model", model(model), "mode", mode, "outcome", succeeded ? "completed" : "failed");
+        Counter.builder("transcription.jobs").tags(tags).register(registry).increment();
+        Timer.builder("transcription.job.duration")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (succeeded && realTimeFactor > 0) {
+            DistributionSummary.builder("transcription.realtime.factor")
+                    .tags(Tags.of("model", model(model), "language", language(language)))
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(realTimeFactor);
+        }
+    }
+
+    public <T> void gauge(String name, Tags tags, T target, ToDoubleFunction<T> value) {
+        Gauge.builder(name, target, value).tags(tags).register(registry);
+    }
+
+    private static String model(String model) {
+        if (model == null || model.isEmpty()) {
+            return "default";
+        }
+        return KNOWN_MODELS.contains(model) ? model : "other";
+    }
+
+    private static String language(String language) {
+        if (language == null || language.isEmpty() || "auto".equalsIgnoreCase(language)) {
+            return "auto";
+        }
+        return language.length() <= 3 && language.chars().allMatch(Character::isLetter)
+                ? language.toLowerCase() : "other";
+    }
+}
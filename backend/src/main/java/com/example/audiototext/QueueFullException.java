@@ -0,0 +1,19 @@
+package com.example.audiototext;
+
+/**
+ * Thrown when the transcription queue is at capacity. Controllers map it to
+ * 429 Too Many Requests with a Retry-After header.
+ */
+public class QueueFullException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public QueueFullException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.audiototext;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An instance pulling from the shared job queue (JobQueue), and when it last checked in.
+ * Jobs submitted to an instance that stopped checking in are failed by the others.
+ */
+@Entity
+@Table(name = "queue_nodes")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueueNode {
+
+    @Id
+    private String id;
+
+    private LocalDateTime heartbeatAt;
+}
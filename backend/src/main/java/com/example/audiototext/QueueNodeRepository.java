@@ -0,0 +1,17 @@
+package com.example.audiototext;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface QueueNodeRepository extends JpaRepository<QueueNode, String> {
+
+    @Modifying
+    @Transactional
+    @Query("delete from QueueNode n where n.heartbeatAt < :before")
+    int deleteSilentSince(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,19 @@
+package com.example.audiototext;
+
+/**
+ * Thrown when a user has used up their job or audio quota for now. Controllers map it to
+ * 429 Too Many Requests with a Retry-After header.
+ */
+public class QuotaExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public QuotaExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.audiototext;
+
+/**
+ * What searching and merging need from one generation of the search index, whether
+ * memory-mapped ({@link SearchIndexFile}) or still in memory ({@link SearchIndexFile.Builder}).
+ * Docs are transcript segments, numbered from 0 within the generation.
+ */
+interface SearchGeneration {
+
+    /**
+     * Postings of one term for one user, in ascending doc order.
+     */
+    interface PostingList {
+        int size();
+
+        int doc(int index);
+
+        int termFrequency(int index);
+    }
+
+    int jobCount();
+
+    long jobUser(int job);
+
+    String jobId(int job);
+
+    int docCount();
+
+    int docJob(int doc);
+
+    double docStart(int doc);
+
+    double docEnd(int doc);
+
+    String docText(int doc);
+
+    int docTokens(int doc);
+
+    /** Segments indexed for this user, 0 if none. */
+    int userDocs(long userId);
+
+    long userTokens(long userId);
+
+    /** The term's postings for this user, or null. */
+    PostingList postings(long userId, String term);
+}
@@ -0,0 +1,508 @@
+package com.example.audiototext;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * One immutable generation of the transcript search index, memory-mapped from disk.
+ * Opening reads only the header; lookups binary-search the term dictionary and walk the
+ * postings in place, so neither the transcripts nor the postings are ever loaded onto
+ * the heap. New segments collect in a {@link Builder}, which is searchable too until it
+ * is written out as a new file.
+ *
+ * <pre>
+ * header    magic, version, counts and the offsets of the variable-length sections
+ * users     userId, segment count, token count               (sorted by userId)
+ * jobs      userId, jobId (ASCII, at most 39 bytes)
+ * docs      job, start, end, text offset, text length, token count (one per segment)
+ * dict      userId, term offset, term length, df, postings offset (sorted by userId, term)
+ * text      UTF-8 segment text
+ * terms     UTF-8 terms
+ * postings  doc, term frequency                              (sorted by doc)
+ * </pre>
+ */
+final class SearchIndexFile implements SearchGeneration {
+
+    private static final int MAGIC = 0x45534958; // "ESIX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int USER_RECORD = 20;
+    private static final int JOB_RECORD = 48;
+    private static final int DOC_RECORD = 28;
+    private static final int DICT_RECORD = 28;
+    private static final int POSTING_RECORD = 6;
+    private static final int MAX_JOB_ID = JOB_RECORD - 9;
+
+    final Path path;
+    private final int userCount;
+    private final int jobCount;
+    private final int docCount;
+    private final int termCount;
+    private final MappedByteBuffer fixed;
+    private final MappedByteBuffer text;
+    private final MappedByteBuffer terms;
+    private final MappedByteBuffer postings;
+    private final int jobsOffset;
+    private final int docsOffset;
+    private final int dictOffset;
+
+    private SearchIndexFile(Path path, FileChannel channel) throws IOException {
+        this.path = path;
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Not a search index file: " + path);
+        }
+        userCount = header.getInt(8);
+        jobCount = header.getInt(12);
+        docCount = header.getInt(16);
+        termCount = header.getInt(20);
+        long textOffset = header.getLong(24);
+        long termsOffset = header.getLong(32);
+        long postingsOffset = header.getLong(40);
+        long length = header.getLong(48);
+        if (length != channel.size()) {
+            throw new IOException("Truncated search index file: " + path);
+        }
+        jobsOffset = HEADER_SIZE + userCount * USER_RECORD;
+        docsOffset = jobsOffset + jobCount * JOB_RECORD;
+        dictOffset = docsOffset + docCount * DOC_RECORD;
+        fixed = channel.map(FileChannel.MapMode.READ_ONLY, 0, textOffset);
+        text = channel.map(FileChannel.MapMode.READ_ONLY, textOffset, termsOffset - textOffset);
+        terms = channel.map(FileChannel.MapMode.READ_ONLY, termsOffset, postingsOffset - termsOffset);
+        postings = channel.map(FileChannel.MapMode.READ_ONLY, postingsOffset, length - postingsOffset);
+    }
+
+    /**
+     * Maps a generation written by {@link Builder#write}. The mapping outlives the channel.
+     */
+    static SearchIndexFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            return new SearchIndexFile(path, channel);
+        }
+    }
+
+    @Override
+    public int jobCount() {
+        return jobCount;
+    }
+
+    @Override
+    public long jobUser(int job) {
+        return fixed.getLong(jobsOffset + job * JOB_RECORD);
+    }
+
+    @Override
+    public String jobId(int job) {
+        int offset = jobsOffset + job * JOB_RECORD;
+        byte[] id = new byte[fixed.get(offset + 8)];
+        fixed.get(offset + 9, id);
+        return new String(id, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public int docCount() {
+        return docCount;
+    }
+
+    @Override
+    public int docJob(int doc) {
+        return fixed.getInt(docsOffset + doc * DOC_RECORD);
+    }
+
+    @Override
+    public double docStart(int doc) {
+        return fixed.getFloat(docsOffset + doc * DOC_RECORD + 4);
+    }
+
+    @Override
+    public double docEnd(int doc) {
+        return fixed.getFloat(docsOffset + doc * DOC_RECORD + 8);
+    }
+
+    @Override
+    public String docText(int doc) {
+        int offset = docsOffset + doc * DOC_RECORD;
+        byte[] bytes = new byte[fixed.getInt(offset + 20)];
+        text.get((int) fixed.getLong(offset + 12), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int docTokens(int doc) {
+        return fixed.getInt(docsOffset + doc * DOC_RECORD + 24);
+    }
+
+    @Override
+    public int userDocs(long userId) {
+        int user = findUser(userId);
+        return user < 0 ? 0 : fixed.getInt(HEADER_SIZE + user * USER_RECORD + 8);
+    }
+
+    @Override
+    public long userTokens(long userId) {
+        int user = findUser(userId);
+        return user < 0 ? 0 : fixed.getLong(HEADER_SIZE + user * USER_RECORD + 12);
+    }
+
+    private int findUser(long userId) {
+        int low = 0;
+        int high = userCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Long.compare(fixed.getLong(HEADER_SIZE + mid * USER_RECORD), userId);
+            if (cmp == 0) {
+                return mid;
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public PostingList postings(long userId, String term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int offset = dictOffset + mid * DICT_RECORD;
+            int cmp = Long.compare(fixed.getLong(offset), userId);
+            if (cmp == 0) {
+                byte[] bytes = new byte[fixed.getInt(offset + 12)];
+                terms.get(fixed.getInt(offset + 8), bytes);
+                cmp = new String(bytes, StandardCharsets.UTF_8).compareTo(term);
+            }
+            if (cmp == 0) {
+                return new MappedPostings((int) fixed.getLong(offset + 20), fixed.getInt(offset + 16));
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return null;
+    }
+
+    private final class MappedPostings implements PostingList {
+        private final int offset;
+        private final int size;
+
+        MappedPostings(int offset, int size) {
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int doc(int index) {
+            return postings.getInt(offset + index * POSTING_RECORD);
+        }
+
+        @Override
+        public int termFrequency(int index) {
+            return Short.toUnsignedInt(postings.getShort(offset + index * POSTING_RECORD + 4));
+        }
+    }
+
+    /**
+     * Growing in-memory generation. Not thread-safe: callers serialize {@link #add} against
+     * readers.
+     */
+    static final class Builder implements SearchGeneration {
+
+        private static final class UserStats {
+            int docs;
+            long tokens;
+        }
+
+        private static final class Postings implements PostingList {
+            int[] docs = new int[4];
+            short[] frequencies = new short[4];
+            int size;
+
+            void add(int doc, int frequency) {
+                if (size == docs.length) {
+                    docs = Arrays.copyOf(docs, size * 2);
+                    frequencies = Arrays.copyOf(frequencies, size * 2);
+                }
+                docs[size] = doc;
+                frequencies[size++] = (short) Math.min(frequency, 0xFFFF);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public int doc(int index) {
+                return docs[index];
+            }
+
+            @Override
+            public int termFrequency(int index) {
+                return Short.toUnsignedInt(frequencies[index]);
+            }
+        }
+
+        private final List<Long> jobUsers = new ArrayList<>();
+        private final List<String> jobIds = new ArrayList<>();
+        private final List<byte[]> texts = new ArrayList<>();
+        private int[] docJobs = new int[64];
+        private float[] docTimes = new float[128];
+        private int[] docTokens = new int[64];
+        private long textBytes;
+        private final Map<Long, UserStats> users = new HashMap<>();
+        private final Map<Long, Map<String, Postings>> dictionary = new HashMap<>();
+
+        int size() {
+            return texts.size();
+        }
+
+        /**
+         * Adds one job's segments; segments without words are skipped.
+         */
+        void add(long userId, String jobId, List<TranscriptSegment> segments) {
+            int job = addJob(userId, jobId);
+            for (TranscriptSegment segment : segments) {
+                addDoc(userId, job, segment.getStart(), segment.getEnd(), segment.getText().strip());
+            }
+        }
+
+        private int addJob(long userId, String jobId) {
+            if (jobId.length() > MAX_JOB_ID || !StandardCharsets.US_ASCII.newEncoder().canEncode(jobId)) {
+                throw new IllegalArgumentException("Job id cannot be indexed: " + jobId);
+            }
+            jobUsers.add(userId);
+            jobIds.add(jobId);
+            return jobIds.size() - 1;
+        }
+
+        private void addDoc(long userId, int job, double start, double end, String segmentText) {
+            Map<String, Integer> frequencies = new LinkedHashMap<>();
+            TranscriptSearchIndex.forEachToken(segmentText, (term, from, to) -> frequencies.merge(term, 1, Integer::sum));
+            if (frequencies.isEmpty()) {
+                return;
+            }
+            int doc = texts.size();
+            if (doc == docJobs.length) {
+                docJobs = Arrays.copyOf(docJobs, doc * 2);
+                docTokens = Arrays.copyOf(docTokens, doc * 2);
+                docTimes = Arrays.copyOf(docTimes, doc * 4);
+            }
+            int tokens = frequencies.values().stream().mapToInt(Integer::intValue).sum();
+            byte[] bytes = segmentText.getBytes(StandardCharsets.UTF_8);
+            texts.add(bytes);
+            textBytes += bytes.length;
+            docJobs[doc] = job;
+            docTimes[doc * 2] = (float) start;
+            docTimes[doc * 2 + 1] = (float) end;
+            docTokens[doc] = tokens;
+            UserStats stats = users.computeIfAbsent(userId, id -> new UserStats());
+            stats.docs++;
+            stats.tokens += tokens;
+            Map<String, Postings> userTerms = dictionary.computeIfAbsent(userId, id -> new HashMap<>());
+            frequencies.forEach((term, frequency) -> userTerms.computeIfAbsent(term, t -> new Postings())
+                    .add(doc, frequency));
+        }
+
+        /**
+         * Copies every job and segment of {@code source}, re-tokenizing the stored text.
+         */
+        void addAll(SearchGeneration source) {
+            int[] jobs = new int[source.jobCount()];
+            for (int job = 0; job < jobs.length; job++) {
+                jobs[job] = addJob(source.jobUser(job), source.jobId(job));
+            }
+            for (int doc = 0; doc < source.docCount(); doc++) {
+                int job = source.docJob(doc);
+                addDoc(source.jobUser(job), jobs[job], source.docStart(doc), source.docEnd(doc), source.docText(doc));
+            }
+        }
+
+        /**
+         * Writes the generation to {@code target} (via a temporary file, so a crash never
+         * leaves a half-written index behind).
+         */
+        void write(Path target) throws IOException {
+            // Sorted dictionary: by user, then term, matching the lookup in postings()
+            TreeMap<Long, TreeMap<String, Postings>> sorted = new TreeMap<>();
+            dictionary.forEach((user, userTerms) -> sorted.put(user, new TreeMap<>(userTerms)));
+            int termCount = 0;
+            long termBytes = 0;
+            long postingCount = 0;
+            for (TreeMap<String, Postings> userTerms : sorted.values()) {
+                for (Map.Entry<String, Postings> entry : userTerms.entrySet()) {
+                    termCount++;
+                    termBytes += entry.getKey().getBytes(StandardCharsets.UTF_8).length;
+                    postingCount += entry.getValue().size;
+                }
+            }
+            long textOffset = HEADER_SIZE + (long) users.size() * USER_RECORD + (long) jobIds.size() * JOB_RECORD
+                    + (long) texts.size() * DOC_RECORD + (long) termCount * DICT_RECORD;
+            long termsOffset = textOffset + textBytes;
+            long postingsOffset = termsOffset + termBytes;
+            long length = postingsOffset + postingCount * POSTING_RECORD;
+            if (textOffset > Integer.MAX_VALUE || textBytes > Integer.MAX_VALUE || termBytes > Integer.MAX_VALUE
+                    || length - postingsOffset > Integer.MAX_VALUE) {
+                throw new IOException("Search index generation too large (" + length + " bytes)");
+            }
+
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp),
+                    1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(users.size());
+                out.writeInt(jobIds.size());
+                out.writeInt(texts.size());
+                out.writeInt(termCount);
+                out.writeLong(textOffset);
+                out.writeLong(termsOffset);
+                out.writeLong(postingsOffset);
+                out.writeLong(length);
+                out.write(new byte[HEADER_SIZE - 56]);
+
+                for (Long user : new TreeMap<>(users).keySet()) {
+                    UserStats stats = users.get(user);
+                    out.writeLong(user);
+                    out.writeInt(stats.docs);
+                    out.writeLong(stats.tokens);
+                }
+                for (int job = 0; job < jobIds.size(); job++) {
+                    byte[] id = jobIds.get(job).getBytes(StandardCharsets.US_ASCII);
+                    out.writeLong(jobUsers.get(job));
+                    out.writeByte(id.length);
+                    out.write(Arrays.copyOf(id, MAX_JOB_ID));
+                }
+                long position = 0;
+                for (int doc = 0; doc < texts.size(); doc++) {
+                    out.writeInt(docJobs[doc]);
+                    out.writeFloat(docTimes[doc * 2]);
+                    out.writeFloat(docTimes[doc * 2 + 1]);
+                    out.writeLong(position);
+                    out.writeInt(texts.get(doc).length);
+                    out.writeInt(docTokens[doc]);
+                    position += texts.get(doc).length;
+                }
+                int termPosition = 0;
+                long postingPosition = 0;
+                for (Map.Entry<Long, TreeMap<String, Postings>> user : sorted.entrySet()) {
+                    for (Map.Entry<String, Postings> entry : user.getValue().entrySet()) {
+                        int termLength = entry.getKey().getBytes(StandardCharsets.UTF_8).length;
+                        out.writeLong(user.getKey());
+                        out.writeInt(termPosition);
+                        out.writeInt(termLength);
+                        out.writeInt(entry.getValue().size);
+                        out.writeLong(postingPosition);
+                        termPosition += termLength;
+                        postingPosition += (long) entry.getValue().size * POSTING_RECORD;
+                    }
+                }
+                for (byte[] bytes : texts) {
+                    out.write(bytes);
+                }
+                for (TreeMap<String, Postings> userTerms : sorted.values()) {
+                    for (String term : userTerms.keySet()) {
+                        out.write(term.getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+                for (TreeMap<String, Postings> userTerms : sorted.values()) {
+                    for (Postings list : userTerms.values()) {
+                        for (int i = 0; i < list.size; i++) {
+                            out.writeInt(list.docs[i]);
+                            out.writeShort(list.frequencies[i]);
+                        }
+                    }
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        @Override
+        public int jobCount() {
+            return jobIds.size();
+        }
+
+        @Override
+        public long jobUser(int job) {
+            return jobUsers.get(job);
+        }
+
+        @Override
+        public String jobId(int job) {
+            return jobIds.get(job);
+        }
+
+        @Override
+        public int docCount() {
+            return texts.size();
+        }
+
+        @Override
+        public int docJob(int doc) {
+            return docJobs[doc];
+        }
+
+        @Override
+        public double docStart(int doc) {
+            return docTimes[doc * 2];
+        }
+
+        @Override
+        public double docEnd(int doc) {
+            return docTimes[doc * 2 + 1];
+        }
+
+        @Override
+        public String docText(int doc) {
+            return new String(texts.get(doc), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int docTokens(int doc) {
+            return docTokens[doc];
+        }
+
+        @Override
+        public int userDocs(long userId) {
+            UserStats stats = users.get(userId);
+            return stats == null ? 0 : stats.docs;
+        }
+
+        @Override
+        public long userTokens(long userId) {
+            UserStats stats = users.get(userId);
+            return stats == null ? 0 : stats.tokens;
+        }
+
+        @Override
+        public PostingList postings(long userId, String term) {
+            Map<String, Postings> userTerms = dictionary.get(userId);
+            return userTerms == null ? null : userTerms.get(term);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.audiototext;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A finished job's transcript in its one stored form, {@code <jobId>.seg}: fixed-size
+ * records with each segment's timing (milliseconds) and the offset of its UTF-8 text,
+ * followed by the text. Every download format is rendered from it on demand, so a job
+ * keeps one file instead of four copies of the same words, and the records can be
+ * binary-searched by time to serve part of a long recording without reading the rest.
+ *
+ * <pre>
+ * header   magic, version, segment count, reserved
+ * records  start ms, end ms, text offset, text length   (in start order)
+ * text     UTF-8, as Whisper produced it
+ * </pre>
+ */
+public final class SegmentFile {
+
+    public static final String SUFFIX = ".seg";
+
+    private static final int MAGIC = 0x45534547; // "ESEG"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 16;
+
+    public final Path path;
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int textStart;
+
+    private SegmentFile(Path path, MappedByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a segment file: " + path);
+        }
+        count = buffer.getInt(8);
+        textStart = HEADER_SIZE + count * RECORD_SIZE;
+        if (count < 0 || textStart > buffer.capacity()) {
+            throw new IOException("Truncated segment file: " + path);
+        }
+    }
+
+    /**
+     * Maps {@code path} read-only. The mapping stays valid after the file is closed.
+     */
+    public static SegmentFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Segment file too large: " + path);
+            }
+            return new SegmentFile(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes {@code segments} to {@code target} through a temporary file, so readers
+     * never see a partial file.
+     */
+    public static Path write(List<TranscriptSegment> segments, Path target) throws IOException {
+        List<byte[]> texts = new ArrayList<>(segments.size());
+        long textBytes = 0;
+        for (TranscriptSegment segment : segments) {
+            byte[] text = (segment.getText() == null ? "" : segment.getText()).getBytes(StandardCharsets.UTF_8);
+            texts.add(text);
+            textBytes += text.length;
+        }
+        if (HEADER_SIZE + (long) segments.size() * RECORD_SIZE + textBytes > Integer.MAX_VALUE) {
+            throw new IOException("Transcript too large for a segment file (" + segments.size() + " segments)");
+        }
+
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp),
+                1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(segments.size());
+            out.writeInt(0);
+            int offset = 0;
+            for (int i = 0; i < segments.size(); i++) {
+                out.writeInt(toMillis(segments.get(i).getStart()));
+                out.writeInt(toMillis(segments.get(i).getEnd()));
+                out.writeInt(offset);
+                out.writeInt(texts.get(i).length);
+                offset += texts.get(i).length;
+            }
+            for (byte[] text : texts) {
+                out.write(text);
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return target;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public double start(int index) {
+        return buffer.getInt(HEADER_SIZE + index * RECORD_SIZE) / 1000.0;
+    }
+
+    public double end(int index) {
+        return buffer.getInt(HEADER_SIZE + index * RECORD_SIZE + 4) / 1000.0;
+    }
+
+    public String text(int index) {
+        int record = HEADER_SIZE + index * RECORD_SIZE;
+        byte[] bytes = new byte[buffer.getInt(record + 12)];
+        buffer.get(textStart + buffer.getInt(record + 8), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public TranscriptSegment get(int index) {
+        return new TranscriptSegment(start(index), end(index), text(index));
+    }
+
+    /**
+     * All segments, decoded lazily from the mapping as they are read.
+     */
+    public List<TranscriptSegment> segments() {
+        return segments(0, count);
+    }
+
+    /**
+     * Segments {@code from} (inclusive) to {@code to} (exclusive), decoded lazily.
+     */
+    public List<TranscriptSegment> segments(int from, int to) {
+        return new View(from, to);
+    }
+
+    /**
+     * Index of the first segment that ends after {@code seconds} (segments are in time order).
+     */
+    public int firstEndingAfter(double seconds) {
+        int limit = toMillis(seconds);
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getInt(HEADER_SIZE + mid * RECORD_SIZE + 4) <= limit) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Index of the first segment that starts at or after {@code seconds}.
+     */
+    public int firstStartingFrom(double seconds) {
+        int limit = toMillis(seconds);
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getInt(HEADER_SIZE + mid * RECORD_SIZE) < limit) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int toMillis(double seconds) {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, Math.round(seconds * 1000)));
+    }
+
+    private final class View extends AbstractList<TranscriptSegment> implements RandomAccess {
+        private final int from;
+        private final int to;
+
+        View(int from, int to) {
+            if (from < 0 || to > count || from > to) {
+                throw new IndexOutOfBoundsException("Segments " + from + "-" + to + " of " + count);
+            }
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public TranscriptSegment get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return SegmentFile.this.get(from + index);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
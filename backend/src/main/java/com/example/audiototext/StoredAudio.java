@@ -0,0 +1,16 @@
+package com.example.audiototext;
+
+/**
+ * An upload written to disk, with the SHA-256 of its bytes computed while it streamed in.
+ */
+public class StoredAudio {
+    public final String path;
+    public final String sha256;
+    public final long sizeBytes;
+
+    public StoredAudio(String path, String sha256, long sizeBytes) {
+        this.path = path;
+        this.sha256 = sha256;
+        this.sizeBytes = sizeBytes;
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.audiototext;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of finished transcripts. The key is the SHA-256 of the
+ * uploaded audio plus model, language and task, so re-uploads of the same
+ * recording (any filename) complete instantly. Files are shared with job outputs
+ * through hard links where the file system allows it, and the least recently
+ * used entries are evicted once the cache exceeds its size limit.
+ */
+@Component
+public class TranscriptCache {
+
+    private static final String KEY_PATTERN = "[0-9a-f]{64}";
+
+    @Value("${app.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.cache.dir:}")
+    private String cacheDir;
+
+    @Value("${app.cache.max-size-mb:2048}")
+    private long maxSizeMb;
+
+    @Autowired
+    private NodeDirectories nodeDirectories;
+
+    private static class Entry {
+        final long sizeBytes;
+        int pins; // restores in progress; pinned entries are never evicted
+
+        Entry(long sizeBytes) {
+            this.sizeBytes = sizeBytes;
+        }
+    }
+
+    // Access-ordered: iteration starts at the least recently used entry. Guarded by "this".
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    @PostConstruct
+    public void loadIndex() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Path dir = nodeDirectories.open(cacheDir, "cache");
+        cacheDir = dir.toString();
+        convertRenderedEntries(dir);
+        // Rebuild LRU order from each entry's access marker, which restore() touches. The transcript
+        // files themselves are hard-linked into job outputs, so their timestamps must stay put.
+        List<Path> segmentFiles;
+        try (Stream<Path> files = Files.list(dir)) {
+            segmentFiles = new ArrayList<>(files.filter(p -> p.getFileName().toString().matches(KEY_PATTERN
+                    + "\\" + SegmentFile.SUFFIX)).toList());
+        }
+        segmentFiles.sort(Comparator.comparing(p -> accessMarker(p.resolveSibling(p.getFileName().toString()
+                .substring(0, 64))).toFile().lastModified()));
+        synchronized (this) {
+            for (Path segmentFile : segmentFiles) {
+                long size = Files.size(segmentFile);
+                entries.put(segmentFile.getFileName().toString().substring(0, 64), new Entry(size));
+                totalBytes += size;
+            }
+        }
+        System.out.println(">>> Transcript cache: " + entries.size() + " entries, " + totalBytes / 1024 + " KB");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Cache key for a recording transcribed with the given settings, or null if
+     * {@code contentHash} is unknown.
+     */
+    public String keyFor(String contentHash, String model, String language, String task) {
+        if (!enabled || contentHash == null) {
+            return null;
+        }
+        String normalizedLanguage = language == null || language.isBlank() ? "auto" : language;
+        String material = String.join("|", contentHash, String.valueOf(model), normalizedLanguage,
+                String.valueOf(task)).toLowerCase(Locale.ROOT);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(material.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Materializes the cached transcript for {@code key} as {@code <outputDir>/<jobId>.seg}.
+     *
+     * @return the path of the job's segment file, or null on a cache miss
+     */
+    public Path restore(String key, Path outputDir, String jobId) {
+        if (key == null) {
+            return null;
+        }
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            entry.pins++;
+        }
+        try {
+            Path dir = Paths.get(cacheDir);
+            Path target = outputDir.resolve(jobId + SegmentFile.SUFFIX);
+            linkOrCopy(dir.resolve(key + SegmentFile.SUFFIX), target);
+            touch(accessMarker(dir.resolve(key)));
+            return target;
+        } catch (IOException e) {
+            System.err.println("[Cache]: Could not restore " + key + ": " + e.getMessage());
+            forget(key);
+            return null;
+        } finally {
+            synchronized (this) {
+                Entry entry = entries.get(key);
+                if (entry != null) {
+                    entry.pins--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the segment file of {@code jobId} under {@code key}, then evicts
+     * least recently used entries until the cache fits its size limit.
+     */
+    public void store(String key, Path outputDir, String jobId) {
+        if (key == null) {
+            return;
+        }
+        synchronized (this) {
+            if (entries.containsKey(key)) {
+                return;
+            }
+        }
+        Path dir = Paths.get(cacheDir);
+        long size;
+        try {
+            Path source = outputDir.resolve(jobId + SegmentFile.SUFFIX);
+            linkOrCopy(source, dir.resolve(key + SegmentFile.SUFFIX));
+            size = Files.size(source);
+        } catch (IOException e) {
+            System.err.println("[Cache]: Could not store " + key + ": " + e.getMessage());
+            deleteFiles(key);
+            return;
+        }
+
+        try {
+            touch(accessMarker(dir.resolve(key)));
+        } catch (IOException e) {
+            System.err.println("[Cache]: Could not mark " + key + ": " + e.getMessage());
+        }
+
+        List<String> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (entries.putIfAbsent(key, new Entry(size)) != null) {
+                return; // Stored by a concurrent job with the same audio meanwhile; already counted
+            }
+            totalBytes += size;
+            long limit = maxSizeMb * 1024 * 1024;
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (totalBytes > limit && it.hasNext()) {
+                Map.Entry<String, Entry> candidate = it.next();
+                if (candidate.getValue().pins > 0 || candidate.getKey().equals(key)) {
+                    continue;
+                }
+                it.remove();
+                totalBytes -= candidate.getValue().sizeBytes;
+                evicted.add(candidate.getKey());
+            }
+        }
+        evicted.forEach(this::deleteFiles);
+    }
+
+    private void forget(String key) {
+        synchronized (this) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                totalBytes -= entry.sizeBytes;
+            }
+        }
+        deleteFiles(key);
+    }
+
+    private void deleteFiles(String key) {
+        Path dir = Paths.get(cacheDir);
+        try {
+            // Job outputs linked to the same data keep it alive
+            Files.deleteIfExists(dir.resolve(key + SegmentFile.SUFFIX));
+        } catch (IOException e) {
+            System.err.println("[Cache]: Could not delete " + key + SegmentFile.SUFFIX + ": " + e.getMessage());
+        }
+        try {
+            Files.deleteIfExists(accessMarker(dir.resolve(key)));
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Entries from before segment files held the four rendered transcripts; converts each
+     * to a segment file (from its .srt) and drops the rendered copies.
+     */
+    private static void convertRenderedEntries(Path dir) throws IOException {
+        List<Path> textFiles;
+        try (Stream<Path> files = Files.list(dir)) {
+            textFiles = files.filter(p -> p.getFileName().toString().matches(KEY_PATTERN + "\\.txt")).toList();
+        }
+        for (Path textFile : textFiles) {
+            String key = textFile.getFileName().toString().substring(0, 64);
+            Path srt = dir.resolve(key + ".srt");
+            try {
+                if (Files.exists(srt) && !Files.exists(dir.resolve(key + SegmentFile.SUFFIX))) {
+                    SegmentFile.write(TranscriptReader.readSrt(srt), dir.resolve(key + SegmentFile.SUFFIX));
+                }
+                for (String suffix : TranscriptWriter.OUTPUT_SUFFIXES) {
+                    Files.deleteIfExists(dir.resolve(key + suffix));
+                }
+            } catch (IOException e) {
+                System.err.println("[Cache]: Could not convert " + key + ": " + e.getMessage());
+            }
+        }
+        if (!textFiles.isEmpty()) {
+            System.out.println(">>> Transcript cache: converted " + textFiles.size() + " entries to segment files");
+        }
+    }
+
+    private static Path accessMarker(Path keyBase) {
+        return keyBase.resolveSibling(keyBase.getFileName() + ".access");
+    }
+
+    private static void touch(Path file) throws IOException {
+        if (Files.exists(file)) {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } else {
+            Files.createFile(file);
+        }
+    }
+
+    private static void linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.deleteIfExists(target);
+            Files.createLink(target, source);
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            // e.g. cache and outputs on different volumes, or no hard link support
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.example.audiototext;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves transcripts with conditional GET (ETag / Last-Modified → 304) and single byte
+ * ranges (206 / 416). Current jobs are rendered from their {@link SegmentFile}; each
+ * rendering and its gzip variant are kept in a size-bounded LRU cache, so repeated and
+ * ranged downloads neither render nor compress again. Pre-rendered files of older jobs go
+ * straight from disk, with their stored .gz variants and zero-copy transfer through
+ * Tomcat's sendfile when the connector supports it (falling back to
+ * {@link FileChannel#transferTo}).
+ */
+@Component
+public class TranscriptDownloadHandler {
+
+    static final String GZIP_SUFFIX = ".gz";
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Value("${app.download.render-cache-mb:64}")
+    private long renderCacheMb;
+
+    private static final class Rendering {
+        final byte[] plain;
+        byte[] gzip; // Compressed on the first gzip request. Guarded by the handler's monitor.
+
+        Rendering(byte[] plain) {
+            this.plain = plain;
+        }
+    }
+
+    // Access-ordered: iteration starts at the least recently used rendering. Guarded by "this".
+    private final LinkedHashMap<String, Rendering> renderings = new LinkedHashMap<>(16, 0.75f, true);
+    private long renderedBytes;
+
+    /**
+     * Sends segments {@code from} to {@code to} (exclusive) of {@code file}, rendered as
+     * {@code format}. Each format and slice has its own ETag, which also keys the cached
+     * rendering.
+     */
+    public void serveRendered(SegmentFile file, TranscriptWriter.Format format, int from, int to,
+            String downloadName, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long lastModified = Files.getLastModifiedTime(file.path).toMillis();
+        String slice = from == 0 && to == file.size() ? "" : "-" + from + "-" + to;
+        String etag = "\"" + Long.toHexString(Files.size(file.path)) + "-" + Long.toHexString(lastModified) + "-"
+                + format.name().toLowerCase(Locale.ROOT) + slice + "\"";
+        if (writeValidators(etag, lastModified, downloadName, request, response)) {
+            return;
+        }
+
+        response.setContentType(format.contentType);
+        String key = file.path.toAbsolutePath() + etag;
+        Rendering rendering = rendering(key, file, format, from, to);
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long length = rendering.plain.length;
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+            if (bounds.length == 2) {
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE,
+                        "bytes " + bounds[0] + "-" + (bounds[1] - 1) + "/" + length);
+                send(rendering.plain, (int) bounds[0], (int) bounds[1], response);
+                return;
+            }
+        }
+
+        if (acceptsGzip(request)) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            response.setHeader(HttpHeaders.ETAG, etag.substring(0, etag.length() - 1) + "-gz\"");
+            byte[] gzip = gzipped(key, rendering);
+            send(gzip, 0, gzip.length, response);
+            return;
+        }
+        send(rendering.plain, 0, rendering.plain.length, response);
+    }
+
+    /**
+     * The cached rendering for {@code key}, rendered now if missing.
+     */
+    private Rendering rendering(String key, SegmentFile file, TranscriptWriter.Format format, int from, int to)
+            throws IOException {
+        synchronized (this) {
+            Rendering cached = renderings.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        render(format, file.segments(from, to), from, out);
+        Rendering rendering = new Rendering(out.toByteArray());
+        synchronized (this) {
+            // A concurrent request may have rendered it meanwhile; keep the first
+            Rendering raced = renderings.putIfAbsent(key, rendering);
+            if (raced != null) {
+                return raced;
+            }
+            renderedBytes += rendering.plain.length;
+            evict(key);
+        }
+        return rendering;
+    }
+
+    private byte[] gzipped(String key, Rendering rendering) throws IOException {
+        synchronized (this) {
+            if (rendering.gzip != null) {
+                return rendering.gzip;
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(rendering.plain.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024)) {
+            gzip.write(rendering.plain);
+        }
+        byte[] compressed = out.toByteArray();
+        synchronized (this) {
+            if (rendering.gzip == null) {
+                rendering.gzip = compressed;
+                if (renderings.get(key) == rendering) {
+                    renderedBytes += compressed.length;
+                    evict(key);
+                }
+            }
+            return rendering.gzip;
+        }
+    }
+
+    /**
+     * Drops least recently used renderings until the cache fits its limit; {@code keep}, just
+     * used, stays even if it alone is over the limit, until the next rendering pushes it out.
+     */
+    private void evict(String keep) {
+        long limit = renderCacheMb * 1024 * 1024;
+        Iterator<Map.Entry<String, Rendering>> it = renderings.entrySet().iterator();
+        while (renderedBytes > limit && it.hasNext()) {
+            Map.Entry<String, Rendering> candidate = it.next();
+            if (candidate.getKey().equals(keep)) {
+                continue;
+            }
+            it.remove();
+            Rendering evicted = candidate.getValue();
+            renderedBytes -= evicted.plain.length + (evicted.gzip != null ? evicted.gzip.length : 0);
+        }
+    }
+
+    private static void send(byte[] bytes, int start, int end, HttpServletResponse response) throws IOException {
+        response.setContentLength(end - start);
+        response.getOutputStream().write(bytes, start, end - start);
+    }
+
+    /**
+     * Streams {@code file} as the response body, honouring conditional and range headers.
+     */
+    public void serve(Path file, String contentType, String downloadName, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        long length = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+        if (writeValidators(etag, lastModified, downloadName, request, response)) {
+            return;
+        }
+
+        response.setContentType(contentType);
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+            if (bounds.length == 2) {
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE,
+                        "bytes " + bounds[0] + "-" + (bounds[1] - 1) + "/" + length);
+                transfer(file, bounds[0], bounds[1], request, response);
+                return;
+            }
+            // Multiple ranges: a full 200 response is a valid answer
+        }
+
+        Path gzip = file.resolveSibling(file.getFileName() + GZIP_SUFFIX);
+        if (acceptsGzip(request) && Files.isRegularFile(gzip)
+                && Files.getLastModifiedTime(gzip).toMillis() >= lastModified) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            // Distinct validator per representation
+            response.setHeader(HttpHeaders.ETAG, etag.substring(0, etag.length() - 1) + "-gz\"");
+            transfer(gzip, 0, Files.size(gzip), request, response);
+            return;
+        }
+        transfer(file, 0, length, request, response);
+    }
+
+    /**
+     * Sets the caching headers; returns true if the request was answered with 304.
+     */
+    private static boolean writeValidators(String etag, long lastModified, String downloadName,
+            HttpServletRequest request, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        if (downloadName != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + downloadName + "\"");
+        }
+        if (notModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            String gzipEtag = etag.substring(0, etag.length() - 1) + "-gz\"";
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag) || tag.equals(gzipEtag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        // HTTP dates have one-second resolution
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * Parses a {@code bytes=} header. Returns {start, endExclusive} for one satisfiable
+     * range, an empty array for several ranges, or null if nothing is satisfiable.
+     */
+    static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=")) {
+            return new long[0];
+        }
+        String spec = header.substring(6).trim();
+        if (spec.contains(",")) {
+            return new long[0];
+        }
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? length : Math.min(length, Long.parseLong(last) + 1);
+            }
+            return start < length && start < end ? new long[] { start, end } : null;
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (accept == null) {
+            return false;
+        }
+        for (String coding : accept.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return !(parts.length > 1 && parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?"));
+            }
+        }
+        return false;
+    }
+
+    private static void render(TranscriptWriter.Format format, List<TranscriptSegment> segments, int firstIndex,
+            OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        format.render(segments, firstIndex, writer);
+        writer.flush();
+    }
+
+    private static void transfer(Path file, long start, long end, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        response.setContentLengthLong(end - start);
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat copies the bytes with sendfile once this request returns
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position < end) {
+                position += channel.transferTo(position, end - position, out);
+            }
+        }
+    }
+}
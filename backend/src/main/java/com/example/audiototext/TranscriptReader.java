@@ -0,0 +1,74 @@
+package com.example.audiototext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads segments back from finished transcripts: a job's {@link SegmentFile}, or the
+ * rendered files of jobs from before segment files existed.
+ */
+public final class TranscriptReader {
+
+    private TranscriptReader() {
+    }
+
+    /**
+     * All segments of the job whose stored output is {@code outputFilePath} (a {@code .seg},
+     * or the {@code .txt} of an older job, whose .srt is read instead).
+     */
+    public static List<TranscriptSegment> read(String outputFilePath) throws IOException {
+        if (outputFilePath.endsWith(SegmentFile.SUFFIX)) {
+            return new ArrayList<>(SegmentFile.open(Paths.get(outputFilePath)).segments());
+        }
+        return readSrt(TranscriptWriter.outputFile(outputFilePath, ".srt"));
+    }
+
+    /**
+     * Parses an SRT file as written by Whisper or {@link TranscriptWriter#writeSrt}. Cue
+     * text spanning several lines is joined with spaces.
+     */
+    public static List<TranscriptSegment> readSrt(Path path) throws IOException {
+        List<TranscriptSegment> segments = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int arrow = line.indexOf("-->");
+                if (arrow < 0) {
+                    continue; // cue number or stray blank line
+                }
+                double start = parseTimestamp(line.substring(0, arrow));
+                double end = parseTimestamp(line.substring(arrow + 3));
+                StringBuilder text = new StringBuilder();
+                while ((line = in.readLine()) != null && !line.isBlank()) {
+                    text.append(' ').append(line.strip());
+                }
+                if (start >= 0 && end >= 0) {
+                    segments.add(new TranscriptSegment(start, end, text.toString()));
+                }
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Parses {@code [HH:]MM:SS,mmm} (or with a '.'), or returns -1.
+     */
+    static double parseTimestamp(String value) {
+        String[] parts = value.strip().replace(',', '.').split(":");
+        try {
+            double seconds = 0;
+            for (String part : parts) {
+                seconds = seconds * 60 + Double.parseDouble(part);
+            }
+            return parts.length >= 2 ? seconds : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,567 @@
+package com.example.audiototext;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Full-text search over each user's finished transcripts. Every segment of a completed
+ * job becomes a document in an inverted index keyed by (user, term), so a user only ever
+ * matches their own recordings. Completed jobs are added to an in-memory generation that
+ * is searchable at once and written out as a memory-mapped {@link SearchIndexFile} every
+ * {@code app.search.flush-segments} segments or {@code app.search.flush-interval-seconds};
+ * small files are merged in the background so a query touches at most
+ * {@code app.search.max-generations} of them. The manifest names the live files, so
+ * startup maps them in a few milliseconds whatever their size, then indexes any
+ * completed job that is missing (after a crash, or for jobs from before the index).
+ * Queries match all terms and are ranked with BM25.
+ */
+@Component
+public class TranscriptSearchIndex {
+
+    private static final String MANIFEST = "manifest";
+    private static final String GENERATION_PREFIX = "gen-";
+    private static final String GENERATION_SUFFIX = ".idx";
+    private static final int MAX_TERM_LENGTH = 64;
+    private static final int SNIPPET_CHARS = 200;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    @Value("${app.search.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.search.dir:}")
+    private String indexDir;
+
+    @Value("${app.search.flush-segments:20000}")
+    private int flushSegments;
+
+    @Value("${app.search.max-generations:8}")
+    private int maxGenerations;
+
+    @Value("${app.search.max-generation-mb:1024}")
+    private long maxGenerationMb;
+
+    @Autowired
+    private TranscriptionJobRepository repository;
+
+    @Autowired
+    private NodeDirectories nodeDirectories;
+
+    @Autowired
+    private PipelineMetrics metrics;
+
+    @Autowired
+    @Qualifier("cpuExecutor")
+    private ExecutorService cpuExecutor;
+
+    // Searches hold the read lock; swapping generations takes the write lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private List<SearchIndexFile> generations = List.of();
+    private SearchIndexFile.Builder pending = new SearchIndexFile.Builder();
+    private SearchIndexFile.Builder flushing; // being written out; searched until its file is live
+
+    // One flush or merge at a time
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Set<String> indexedJobs = ConcurrentHashMap.newKeySet();
+    private long nextGeneration;
+    private Path dir;
+    // Completion time up to which jobs finished by other instances have been picked up
+    private volatile LocalDateTime syncedUpTo = LocalDateTime.now();
+
+    /**
+     * One matching segment.
+     */
+    public static class Hit {
+        public final String jobId;
+        public final double start;
+        public final double end;
+        public final String timestamp;
+        public final double score;
+        public final String snippet;
+        // [from, to) character ranges of the matched words in the snippet
+        public final List<int[]> highlights;
+
+        Hit(String jobId, double start, double end, double score, String snippet, List<int[]> highlights) {
+            this.jobId = jobId;
+            // Stored as floats; round to the millisecond so 19.51 does not come back as 19.510000228881836
+            this.start = Math.round(start * 1000) / 1000.0;
+            this.end = Math.round(end * 1000) / 1000.0;
+            this.timestamp = TranscriptWriter.formatTimestamp(start, false, '.');
+            this.score = score;
+            this.snippet = snippet;
+            this.highlights = highlights;
+        }
+    }
+
+    interface TokenConsumer {
+        void accept(String term, int from, int to);
+    }
+
+    @PostConstruct
+    public void load() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        dir = nodeDirectories.open(indexDir, "search");
+        Path manifest = dir.resolve(MANIFEST);
+        List<String> live = Files.exists(manifest) ? Files.readAllLines(manifest, StandardCharsets.UTF_8) : List.of();
+        List<SearchIndexFile> loaded = new ArrayList<>();
+        int segments = 0;
+        for (String name : live) {
+            if (name.isBlank()) {
+                continue;
+            }
+            nextGeneration = Math.max(nextGeneration, generationNumber(name) + 1);
+            try {
+                SearchIndexFile generation = SearchIndexFile.open(dir.resolve(name));
+                for (int job = 0; job < generation.jobCount(); job++) {
+                    indexedJobs.add(generation.jobId(job));
+                }
+                segments += generation.docCount();
+                loaded.add(generation);
+            } catch (IOException e) {
+                // Its jobs are not marked as indexed, so the startup catch-up adds them again
+                System.err.println("[Search]: Skipping unreadable index file " + name + ": " + e.getMessage());
+            }
+        }
+        generations = List.copyOf(loaded);
+        // Leftovers of interrupted flushes and merges, and files that could not be deleted while mapped
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.endsWith(".tmp") || (name.startsWith(GENERATION_PREFIX) && !live.contains(name));
+            }).forEach(TranscriptSearchIndex::deleteQuietly);
+        }
+        System.out.println(">>> Search index: " + generations.size() + " files, " + indexedJobs.size() + " jobs, "
+                + segments + " segments");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexMissingJobs() {
+        if (!enabled) {
+            return;
+        }
+        cpuExecutor.execute(() -> {
+            int added = 0;
+            for (Object[] row : repository.findOutputsByStatus(JobStatus.COMPLETED)) {
+                String jobId = (String) row[0];
+                if (!indexedJobs.contains(jobId) && index(jobId, (Long) row[1], (String) row[2])) {
+                    added++;
+                }
+            }
+            if (added > 0) {
+                System.out.println(">>> Search index: added " + added + " completed jobs");
+                flush();
+            }
+        });
+    }
+
+    /**
+     * Indexes jobs that other instances sharing the database completed since the last pass.
+     * Jobs completed here were indexed already and are skipped.
+     */
+    @Scheduled(fixedDelayString = "${app.search.sync-interval-seconds:30}", timeUnit = TimeUnit.SECONDS)
+    public void indexRemoteJobs() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        // Overlap the previous pass, as completion times are stamped a moment before they are committed
+        for (Object[] row : repository.findOutputsCompletedSince(JobStatus.COMPLETED, syncedUpTo.minusMinutes(1))) {
+            String jobId = (String) row[0];
+            if (!indexedJobs.contains(jobId)) {
+                index(jobId, (Long) row[1], (String) row[2]);
+            }
+        }
+        syncedUpTo = now;
+    }
+
+    /**
+     * Indexes a job that just completed, off the calling thread.
+     */
+    public void indexCompletedJob(String jobId, String outputFilePath) {
+        if (!enabled || outputFilePath == null) {
+            return;
+        }
+        cpuExecutor.execute(() -> index(jobId, repository.findUserIdById(jobId), outputFilePath));
+    }
+
+    private boolean index(String jobId, Long userId, String outputFilePath) {
+        if (userId == null || !indexedJobs.add(jobId)) {
+            return false;
+        }
+        List<TranscriptSegment> segments;
+        try {
+            segments = TranscriptReader.read(outputFilePath);
+        } catch (IOException e) {
+            indexedJobs.remove(jobId);
+            System.err.println("[Search]: Could not index job " + jobId + ": " + e.getMessage());
+            return false;
+        }
+        boolean full;
+        lock.writeLock().lock();
+        try {
+            pending.add(userId, jobId, segments);
+            full = pending.size() >= flushSegments;
+        } catch (IllegalArgumentException e) {
+            System.err.println("[Search]: " + e.getMessage());
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (full) {
+            flush();
+        }
+        return true;
+    }
+
+    /**
+     * The best {@code limit} segments of the user's transcripts containing every word of
+     * {@code query}, best first.
+     */
+    public List<Hit> search(long userId, String query, int limit) {
+        long started = System.nanoTime();
+        Set<String> unique = new LinkedHashSet<>();
+        forEachToken(query, (term, from, to) -> unique.add(term));
+        if (!enabled || unique.isEmpty()) {
+            return List.of();
+        }
+        String[] terms = unique.toArray(new String[0]);
+
+        lock.readLock().lock();
+        try {
+            List<SearchGeneration> sources = new ArrayList<>(generations);
+            if (flushing != null) {
+                sources.add(flushing);
+            }
+            sources.add(pending);
+
+            // Collection statistics for this user across all generations
+            long docs = 0;
+            long tokens = 0;
+            int[] documentFrequency = new int[terms.length];
+            SearchGeneration.PostingList[][] lists = new SearchGeneration.PostingList[sources.size()][terms.length];
+            for (int s = 0; s < sources.size(); s++) {
+                docs += sources.get(s).userDocs(userId);
+                tokens += sources.get(s).userTokens(userId);
+                for (int t = 0; t < terms.length; t++) {
+                    lists[s][t] = sources.get(s).postings(userId, terms[t]);
+                    documentFrequency[t] += lists[s][t] == null ? 0 : lists[s][t].size();
+                }
+            }
+            if (docs == 0 || Arrays.stream(documentFrequency).anyMatch(df -> df == 0)) {
+                return List.of();
+            }
+            double averageLength = (double) tokens / docs;
+            double[] idf = new double[terms.length];
+            for (int t = 0; t < terms.length; t++) {
+                idf[t] = Math.log(1 + (docs - documentFrequency[t] + 0.5) / (documentFrequency[t] + 0.5));
+            }
+
+            // Min-heap of the best hits so far: {source, doc, score}
+            PriorityQueue<double[]> top = new PriorityQueue<>(Comparator.comparingDouble(c -> c[2]));
+            for (int s = 0; s < sources.size(); s++) {
+                if (Arrays.stream(lists[s]).anyMatch(list -> list == null)) {
+                    continue;
+                }
+                intersect(sources.get(s), lists[s], idf, averageLength, s, top, limit);
+            }
+
+            List<Hit> hits = new ArrayList<>();
+            while (!top.isEmpty()) {
+                double[] candidate = top.poll();
+                hits.add(0, hit(sources.get((int) candidate[0]), (int) candidate[1], candidate[2], unique));
+            }
+            metrics.search(System.nanoTime() - started);
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Walks the shortest posting list and leapfrogs the others to the same doc; every doc
+     * present in all of them is scored and offered to {@code top}.
+     */
+    private static void intersect(SearchGeneration source, SearchGeneration.PostingList[] lists, double[] idf,
+            double averageLength, int sourceIndex, PriorityQueue<double[]> top, int limit) {
+        Integer[] order = new Integer[lists.length];
+        for (int t = 0; t < order.length; t++) {
+            order[t] = t;
+        }
+        Arrays.sort(order, Comparator.comparingInt(t -> lists[t].size()));
+        SearchGeneration.PostingList lead = lists[order[0]];
+        int[] cursors = new int[lists.length];
+        candidates:
+        for (int i = 0; i < lead.size(); i++) {
+            int doc = lead.doc(i);
+            cursors[order[0]] = i;
+            for (int k = 1; k < order.length; k++) {
+                int t = order[k];
+                int position = advance(lists[t], cursors[t], doc);
+                cursors[t] = position;
+                if (position == lists[t].size()) {
+                    return;
+                }
+                if (lists[t].doc(position) != doc) {
+                    continue candidates;
+                }
+            }
+            double lengthNorm = K1 * (1 - B + B * source.docTokens(doc) / averageLength);
+            double score = 0;
+            for (int t = 0; t < lists.length; t++) {
+                int tf = lists[t].termFrequency(cursors[t]);
+                score += idf[t] * tf * (K1 + 1) / (tf + lengthNorm);
+            }
+            if (top.size() < limit) {
+                top.add(new double[] { sourceIndex, doc, score });
+            } else if (score > top.peek()[2]) {
+                top.poll();
+                top.add(new double[] { sourceIndex, doc, score });
+            }
+        }
+    }
+
+    /**
+     * First index at or after {@code from} whose doc is at least {@code doc} (galloping search).
+     */
+    private static int advance(SearchGeneration.PostingList list, int from, int doc) {
+        int size = list.size();
+        int step = 1;
+        int high = from;
+        while (high < size && list.doc(high) < doc) {
+            from = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, size);
+        while (from < high) {
+            int mid = (from + high) >>> 1;
+            if (list.doc(mid) < doc) {
+                from = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return from;
+    }
+
+    private static Hit hit(SearchGeneration source, int doc, double score, Set<String> terms) {
+        String text = source.docText(doc);
+        List<int[]> spans = new ArrayList<>();
+        forEachToken(text, (term, from, to) -> {
+            if (terms.contains(term)) {
+                spans.add(new int[] { from, to });
+            }
+        });
+        String snippet = text;
+        if (text.length() > SNIPPET_CHARS) {
+            // Window around the first match, marked with ellipses where the text was cut
+            int from = spans.isEmpty() ? 0
+                    : Math.max(0, Math.min(spans.get(0)[0] - SNIPPET_CHARS / 4, text.length() - SNIPPET_CHARS));
+            int to = Math.min(text.length(), from + SNIPPET_CHARS);
+            String prefix = from > 0 ? "…" : "";
+            snippet = prefix + text.substring(from, to) + (to < text.length() ? "…" : "");
+            int shift = prefix.length() - from;
+            spans.removeIf(span -> span[0] < from || span[1] > to);
+            spans.forEach(span -> {
+                span[0] += shift;
+                span[1] += shift;
+            });
+        }
+        return new Hit(source.jobId(source.docJob(doc)), source.docStart(doc), source.docEnd(doc), score, snippet,
+                spans);
+    }
+
+    /**
+     * Splits text into lower-case words: runs of letters, digits and combining marks.
+     * Overlong runs (not words in any language) are skipped.
+     */
+    static void forEachToken(String text, TokenConsumer consumer) {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = text.codePointAt(i);
+            if (!isWordChar(codePoint)) {
+                i += Character.charCount(codePoint);
+                continue;
+            }
+            int start = i;
+            while (i < length && isWordChar(codePoint = text.codePointAt(i))) {
+                i += Character.charCount(codePoint);
+            }
+            if (i - start <= MAX_TERM_LENGTH) {
+                consumer.accept(text.substring(start, i).toLowerCase(Locale.ROOT), start, i);
+            }
+        }
+    }
+
+    private static boolean isWordChar(int codePoint) {
+        if (Character.isLetterOrDigit(codePoint)) {
+            return true;
+        }
+        int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK;
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.flush-interval-seconds:60}", timeUnit = TimeUnit.SECONDS)
+    public void scheduledFlush() {
+        if (enabled) {
+            flush();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (enabled) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the in-memory generation to a new file, then merges if there are too many files.
+     */
+    void flush() {
+        flushLock.lock();
+        try {
+            SearchIndexFile.Builder frozen;
+            lock.writeLock().lock();
+            try {
+                if (pending.size() == 0) {
+                    return;
+                }
+                frozen = pending;
+                flushing = frozen;
+                pending = new SearchIndexFile.Builder();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            SearchIndexFile written = null;
+            try {
+                written = writeGeneration(frozen);
+            } catch (IOException e) {
+                System.err.println("[Search]: Could not write index file: " + e.getMessage());
+            }
+            lock.writeLock().lock();
+            try {
+                flushing = null;
+                if (written == null) {
+                    pending.addAll(frozen); // keep the segments searchable and try again next time
+                    return;
+                }
+                generations = append(generations, written);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            writeManifest();
+            merge();
+        } catch (IOException e) {
+            System.err.println("[Search]: Could not update the index manifest: " + e.getMessage());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * While there are more than {@code app.search.max-generations} files, rewrites the smaller
+     * half of them as one, leaving out files that would push it past {@code app.search.max-generation-mb}.
+     */
+    private void merge() throws IOException {
+        while (generations.size() > maxGenerations) {
+            List<SearchIndexFile> bySize = new ArrayList<>(generations);
+            bySize.sort(Comparator.comparingLong(g -> g.path.toFile().length()));
+            List<SearchIndexFile> inputs = new ArrayList<>();
+            long bytes = 0;
+            for (SearchIndexFile generation : bySize.subList(0, Math.max(2, bySize.size() / 2))) {
+                bytes += generation.path.toFile().length();
+                if (bytes > maxGenerationMb * 1024 * 1024) {
+                    break;
+                }
+                inputs.add(generation);
+            }
+            if (inputs.size() < 2) {
+                return; // every small pair is already at the size limit
+            }
+            long started = System.nanoTime();
+            SearchIndexFile.Builder merged = new SearchIndexFile.Builder();
+            inputs.forEach(merged::addAll);
+            SearchIndexFile written = writeGeneration(merged);
+            lock.writeLock().lock();
+            try {
+                List<SearchIndexFile> remaining = new ArrayList<>(generations);
+                remaining.removeAll(inputs);
+                generations = append(remaining, written);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            writeManifest();
+            // Deleting a mapped file fails on Windows; load() removes it on the next start instead
+            inputs.forEach(generation -> deleteQuietly(generation.path));
+            System.out.println("[Search]: Merged " + inputs.size() + " index files (" + merged.size()
+                    + " segments) in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+        }
+    }
+
+    private SearchIndexFile writeGeneration(SearchIndexFile.Builder builder) throws IOException {
+        Path path = dir.resolve(String.format("%s%08d%s", GENERATION_PREFIX, nextGeneration++, GENERATION_SUFFIX));
+        builder.write(path);
+        return SearchIndexFile.open(path);
+    }
+
+    private void writeManifest() throws IOException {
+        Path temp = dir.resolve(MANIFEST + ".tmp");
+        Files.write(temp, generations.stream().map(g -> g.path.getFileName().toString()).toList(),
+                StandardCharsets.UTF_8);
+        Files.move(temp, dir.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static List<SearchIndexFile> append(List<SearchIndexFile> list, SearchIndexFile generation) {
+        List<SearchIndexFile> copy = new ArrayList<>(list);
+        copy.add(generation);
+        return List.copyOf(copy);
+    }
+
+    private static long generationNumber(String name) {
+        try {
+            return Long.parseLong(name.substring(GENERATION_PREFIX.length(), name.length() - GENERATION_SUFFIX.length()));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("[Search]: Could not delete " + path + ": " + e.getMessage());
+        }
+    }
+}
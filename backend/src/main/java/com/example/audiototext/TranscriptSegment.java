@@ -0,0 +1,41 @@
+package com.example.audiototext;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One Whisper segment: start/end in seconds and the raw text (usually with a leading space).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TranscriptSegment {
+    private double start;
+    private double end;
+    private String text;
+
+    /**
+     * Parses a {@code @@SEGMENT <start> <end> <text>} worker frame, or returns null if
+     * {@code line} is not one.
+     */
+    public static TranscriptSegment fromFrame(String line) {
+        if (!line.startsWith(WhisperWorker.SEGMENT_FRAME)) {
+            return null;
+        }
+        String[] parts = line.substring(WhisperWorker.SEGMENT_FRAME.length()).split(" ", 3);
+        if (parts.length < 2) {
+            return null;
+        }
+        try {
+            return new TranscriptSegment(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]),
+                    parts.length == 3 ? " " + parts[2] : "");
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public TranscriptSegment shifted(double offsetSeconds) {
+        return new TranscriptSegment(start + offsetSeconds, end + offsetSeconds, text);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.audiototext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Joins the segment lists of overlapping chunks into one timeline. Each chunk
+ * owns the audio from the middle of its leading overlap to the middle of its
+ * trailing overlap; segments are kept by the chunk that owns their midpoint,
+ * then exact repeats across a boundary are dropped.
+ */
+public final class TranscriptStitcher {
+
+    private TranscriptStitcher() {
+    }
+
+    /**
+     * Segments of one chunk, with times relative to the chunk start.
+     */
+    public static class ChunkResult {
+        public final double offsetSeconds;
+        public final double durationSeconds;
+        public final List<TranscriptSegment> segments;
+
+        public ChunkResult(double offsetSeconds, double durationSeconds, List<TranscriptSegment> segments) {
+            this.offsetSeconds = offsetSeconds;
+            this.durationSeconds = durationSeconds;
+            this.segments = segments;
+        }
+    }
+
+    /**
+     * @param chunks results ordered by offset
+     */
+    public static List<TranscriptSegment> stitch(List<ChunkResult> chunks) {
+        return stitch(chunks, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Stitches a leading run of chunks, keeping only segments whose midpoint lies
+     * before {@code upTo}. With {@code upTo} set to the boundary with the next,
+     * still-missing chunk, the result is a stable prefix of the final transcript.
+     */
+    public static List<TranscriptSegment> stitch(List<ChunkResult> chunks, double upTo) {
+        List<TranscriptSegment> merged = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            ChunkResult chunk = chunks.get(i);
+            double ownFrom = i == 0 ? Double.NEGATIVE_INFINITY
+                    : boundary(chunks.get(i - 1), chunk);
+            double ownTo = i == chunks.size() - 1 ? upTo
+                    : boundary(chunk, chunks.get(i + 1));
+
+            for (TranscriptSegment local : chunk.segments) {
+                TranscriptSegment segment = local.shifted(chunk.offsetSeconds);
+                double midpoint = (segment.getStart() + segment.getEnd()) / 2;
+                if (midpoint < ownFrom || midpoint >= ownTo) {
+                    continue;
+                }
+                if (!merged.isEmpty()) {
+                    TranscriptSegment previous = merged.get(merged.size() - 1);
+                    if (segment.getStart() < previous.getEnd()) {
+                        if (normalize(segment.getText()).equals(normalize(previous.getText()))) {
+                            continue; // same words heard by both chunks
+                        }
+                        segment.setStart(previous.getEnd());
+                        if (segment.getEnd() <= segment.getStart()) {
+                            continue;
+                        }
+                    }
+                }
+                merged.add(segment);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Middle of the overlap between two consecutive chunks.
+     */
+    private static double boundary(ChunkResult earlier, ChunkResult later) {
+        return boundary(earlier.offsetSeconds, earlier.durationSeconds, later.offsetSeconds, later.durationSeconds);
+    }
+
+    public static double boundary(double earlierOffset, double earlierDuration, double laterOffset,
+            double laterDuration) {
+        double overlapEnd = Math.min(earlierOffset + earlierDuration, laterOffset + laterDuration);
+        return (laterOffset + overlapEnd) / 2;
+    }
+
+    private static String normalize(String text) {
+        return text.strip().toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.audiototext;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Renders segments in the formats of Whisper's own writers ({@code .txt},
+ * {@code _timestamped.txt}, {@code .srt}, {@code .vtt}) byte for byte, plus JSON. Finished
+ * jobs keep only a {@link SegmentFile}; downloads stream through these renderers.
+ */
+public final class TranscriptWriter {
+
+    /**
+     * Suffixes of the rendered files jobs from before {@link SegmentFile} own instead of a {@code .seg}.
+     */
+    public static final List<String> OUTPUT_SUFFIXES = List.of(".txt", "_timestamped.txt", ".srt", ".vtt");
+
+    /**
+     * Download formats, named by {@code ?format=}.
+     */
+    public enum Format {
+        TXT("txt", ".txt", "text/plain;charset=UTF-8"),
+        TIMESTAMPED("txt", "_timestamped.txt", "text/plain;charset=UTF-8"),
+        SRT("srt", ".srt", "application/x-subrip;charset=UTF-8"),
+        VTT("vtt", ".vtt", "text/vtt;charset=UTF-8"),
+        JSON("json", null, "application/json;charset=UTF-8");
+
+        public final String extension;
+        // The pre-rendered file older jobs have for this format, or null
+        public final String legacySuffix;
+        public final String contentType;
+
+        Format(String extension, String legacySuffix, String contentType) {
+            this.extension = extension;
+            this.legacySuffix = legacySuffix;
+            this.contentType = contentType;
+        }
+
+        /**
+         * The format for a {@code ?format=} value; anything unknown is plain text.
+         */
+        public static Format parse(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            return TXT;
+        }
+
+        /**
+         * Writes {@code segments}, the first of which is segment number {@code firstIndex}
+         * of the transcript (SRT cues and JSON ids keep their numbers in a slice).
+         */
+        public void render(List<TranscriptSegment> segments, int firstIndex, Writer out) throws IOException {
+            switch (this) {
+                case TIMESTAMPED -> writeTimestamped(segments, out);
+                case SRT -> writeSrt(segments, firstIndex + 1, out);
+                case VTT -> writeVtt(segments, out);
+                case JSON -> writeJson(segments, firstIndex, out);
+                default -> writeText(segments, out);
+            }
+        }
+    }
+
+    // The generator must not close the response writer it wraps
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET).build();
+
+    private TranscriptWriter() {
+    }
+
+    /**
+     * Sibling of a job's .txt output with the given suffix, e.g. {@code _timestamped.txt} or {@code .srt}.
+     */
+    public static Path outputFile(String textFilePath, String suffix) {
+        Path textPath = Paths.get(textFilePath);
+        String name = textPath.getFileName().toString();
+        String base = name.endsWith(".txt") ? name.substring(0, name.length() - 4) : name;
+        return textPath.resolveSibling(base + suffix);
+    }
+
+    /**
+     * The segments' raw text run together, without leading or trailing whitespace (Whisper's
+     * {@code result["text"].strip()}). Streams, so whitespace is held back until more text follows.
+     */
+    public static void writeText(List<TranscriptSegment> segments, Writer out) throws IOException {
+        boolean started = false;
+        StringBuilder whitespace = new StringBuilder();
+        for (TranscriptSegment segment : segments) {
+            String text = segment.getText();
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    if (started) {
+                        whitespace.append(c);
+                    }
+                } else {
+                    if (whitespace.length() > 0) {
+                        out.append(whitespace);
+                        whitespace.setLength(0);
+                    }
+                    out.write(c);
+                    started = true;
+                }
+            }
+        }
+    }
+
+    public static void writeTimestamped(List<TranscriptSegment> segments, Writer out) throws IOException {
+        for (TranscriptSegment segment : segments) {
+            long start = (long) segment.getStart();
+            out.write(String.format("[%02d:%02d:%02d] ", start / 3600, (start % 3600) / 60, start % 60));
+            out.write(segment.getText().strip());
+            out.write('\n');
+        }
+    }
+
+    public static void writeSrt(List<TranscriptSegment> segments, Writer out) throws IOException {
+        writeSrt(segments, 1, out);
+    }
+
+    public static void writeSrt(List<TranscriptSegment> segments, int firstCue, Writer out) throws IOException {
+        int index = firstCue;
+        for (TranscriptSegment segment : segments) {
+            out.write(index++ + "\n");
+            out.write(formatTimestamp(segment.getStart(), true, ',') + " --> "
+                    + formatTimestamp(segment.getEnd(), true, ',') + "\n");
+            out.write(cueText(segment) + "\n\n");
+        }
+    }
+
+    public static void writeVtt(List<TranscriptSegment> segments, Writer out) throws IOException {
+        out.write("WEBVTT\n\n");
+        for (TranscriptSegment segment : segments) {
+            out.write(formatTimestamp(segment.getStart(), false, '.') + " --> "
+                    + formatTimestamp(segment.getEnd(), false, '.') + "\n");
+            out.write(cueText(segment) + "\n\n");
+        }
+    }
+
+    /**
+     * {@code {"segments": [{"id", "start", "end", "text"}, ...]}} with Whisper's raw text.
+     */
+    public static void writeJson(List<TranscriptSegment> segments, int firstId, Writer out) throws IOException {
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("segments");
+            int id = firstId;
+            for (TranscriptSegment segment : segments) {
+                json.writeStartObject();
+                json.writeNumberField("id", id++);
+                json.writeNumberField("start", segment.getStart());
+                json.writeNumberField("end", segment.getEnd());
+                json.writeStringField("text", segment.getText());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+    }
+
+    /**
+     * Mirrors whisper.utils.format_timestamp.
+     */
+    static String formatTimestamp(double seconds, boolean alwaysIncludeHours, char decimalMarker) {
+        long millis = Math.round(seconds * 1000.0);
+        long hours = millis / 3_600_000;
+        millis -= hours * 3_600_000;
+        long minutes = millis / 60_000;
+        millis -= minutes * 60_000;
+        long secs = millis / 1000;
+        millis -= secs * 1000;
+        String hoursMarker = alwaysIncludeHours || hours > 0 ? String.format("%02d:", hours) : "";
+        return String.format("%s%02d:%02d%c%03d", hoursMarker, minutes, secs, decimalMarker, millis);
+    }
+
+    private static String cueText(TranscriptSegment segment) {
+        return segment.getText().strip().replace("-->", "->");
+    }
+}
@@ -1,22 +1,33 @@
 package com.example.audiototext;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api")
@@ -25,11 +36,30 @@ public class TranscriptionController {
     @Autowired
     private TranscriptionService transcriptionService;
 
+    @Autowired
+    private TranscriptDownloadHandler downloadHandler;
+
+    @Autowired
+    private UploadSessions uploadSessions;
+
+    @Autowired
+    private TranscriptSearchIndex searchIndex;
+
+    private static final int MAX_HISTORY_PAGE = 100;
+    private static final int MAX_SEARCH_HITS = 100;
+
+    @Value("${app.batch.max-status-jobs:1000}")
+    private int maxStatusJobs;
+
+    @Value("${app.status.max-inline-transcript-kb:512}")
+    private long maxInlineTranscriptKb;
+
     @PostMapping("/transcribe")
     public ResponseEntity<?> uploadAndTranscribe(
             @RequestParam("file") MultipartFile file,
             @RequestParam(value = "language", required = false) String language,
-            @RequestParam(value = "model", defaultValue = "small") String model,
+            @RequestParam(value = "model", required = false) String model,
+            @RequestParam(value = "deadline", required = false) String deadline,
             @RequestParam(value = "task", defaultValue = "transcribe") String task) {
 
         System.out.println(">>> Received request to /api/transcribe");
@@ -37,6 +67,14 @@ public class TranscriptionController {
         if (file.isEmpty()) {
             return ResponseEntity.badRequest().body("Please select a file to upload");
         }
+        Duration deadlineAfter = parseDeadline(deadline);
+        if (deadline != null && deadlineAfter == null) {
+            return ResponseEntity.badRequest().body("deadline must be HH:MM:SS or seconds");
+        }
+        model = resolveModel(model, deadlineAfter);
+        if (!transcriptionService.isAcceptingJobs()) {
+            return tooManyRequests(transcriptionService.retryAfterSeconds());
+        }
 
         try {
             // 1. Get current user
@@ -51,22 +89,193 @@ public class TranscriptionController {
 
             User user = (User) principal;
             System.out.println(">>> Starting transcription job for user: " + user.getUsername());
+            long quotaWait = transcriptionService.quotaRetryAfterSeconds(user);
+            if (quotaWait > 0) {
+                return tooManyRequests(quotaWait, "Job quota exceeded, please retry in " + quotaWait + " seconds");
+            }
 
             // 2. Create a job
             String jobId = transcriptionService.createJob(language, model, task, user);
 
             // 3. Save file
-            String filePath = transcriptionService.saveAudioFile(file);
+            StoredAudio stored = transcriptionService.saveAudioFile(file);
 
-            // 4. Start async process
-            transcriptionService.processTranscription(jobId, filePath, language, model, task);
+            // 4. Queue for processing (completes immediately if this recording was transcribed before)
+            JobStatus status;
+            try {
+                status = transcriptionService.submitTranscription(jobId, user, stored.path, stored.sha256, language,
+                        model, task, deadlineAfter);
+            } catch (QueueFullException e) {
+                transcriptionService.discardJob(jobId, stored.path);
+                return tooManyRequests(e.getRetryAfterSeconds());
+            } catch (QuotaExceededException e) {
+                transcriptionService.discardJob(jobId, stored.path);
+                return tooManyRequests(e.getRetryAfterSeconds(), e.getMessage() + ", please retry in "
+                        + e.getRetryAfterSeconds() + " seconds");
+            }
 
             // 5. Return jobId
             Map<String, String> response = new HashMap<>();
             response.put("jobId", jobId);
-            response.put("status", "PENDING");
+            response.put("status", status.name());
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            System.err.println(">>> Transcription Job Error: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to start processing: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Opens a resumable upload of {@code length} bytes. The client then PUTs the bytes to
+     * the returned location and finishes with {@code POST /api/uploads/{id}/complete}.
+     */
+    @PostMapping("/uploads")
+    public ResponseEntity<?> createUpload(@RequestParam("filename") String filename,
+            @RequestParam("length") long length) {
+        User user = currentUser();
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("User session expired or not authenticated");
+        }
+        if (length > uploadSessions.getMaxBytes()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body("File is larger than " + uploadSessions.getMaxBytes() / (1024 * 1024) + " MB");
+        }
+        try {
+            UploadSessions.Session session = uploadSessions.create(user.getId(), filename, length);
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .header(HttpHeaders.LOCATION, "/api/uploads/" + session.id)
+                    .body(uploadState(session));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            System.err.println(">>> Could not open upload: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).body("Could not store upload: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Appends the request body at the offset given by {@code Content-Range: bytes start-end/total}
+     * (or at the current offset if the header is missing). Answers 409 with the offset to resume
+     * from when the range does not line up.
+     */
+    @PutMapping("/uploads/{uploadId}")
+    public ResponseEntity<?> writeUpload(@PathVariable String uploadId,
+            @RequestHeader(value = HttpHeaders.CONTENT_RANGE, required = false) String contentRange,
+            HttpServletRequest request) {
+        User user = currentUser();
+        UploadSessions.Session session = user != null ? uploadSessions.get(uploadId, user.getId()) : null;
+        if (session == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Upload not found");
+        }
+        long start = session.getOffset();
+        long maxBytes = -1;
+        if (contentRange != null) {
+            long[] range = parseContentRange(contentRange);
+            if (range == null || range[1] < range[0] || (range[2] >= 0 && range[2] != session.length)) {
+                return ResponseEntity.badRequest().body("Invalid Content-Range for a " + session.length + " byte upload");
+            }
+            start = range[0];
+            maxBytes = range[1] - range[0] + 1;
+        }
+        try {
+            uploadSessions.write(session, start, maxBytes, request.getInputStream());
+            return ResponseEntity.ok(uploadState(session));
+        } catch (UploadConflictException e) {
+            Map<String, Object> body = uploadState(session);
+            body.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            // Usually the client went away; what arrived is kept and the offset says where to resume
+            System.err.println("[Upload-" + uploadId + "]: Write interrupted at " + session.getOffset() + ": "
+                    + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(uploadState(session));
+        }
+    }
+
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<?> getUpload(@PathVariable String uploadId) {
+        User user = currentUser();
+        UploadSessions.Session session = user != null ? uploadSessions.get(uploadId, user.getId()) : null;
+        if (session == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Upload not found");
+        }
+        return ResponseEntity.ok(uploadState(session));
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<?> abortUpload(@PathVariable String uploadId) {
+        User user = currentUser();
+        UploadSessions.Session session = user != null ? uploadSessions.get(uploadId, user.getId()) : null;
+        if (session == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Upload not found");
+        }
+        uploadSessions.abort(session);
+        return ResponseEntity.noContent().build();
+    }
 
+    /**
+     * Turns a fully received upload into a transcription job, like {@code /api/transcribe}.
+     */
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ResponseEntity<?> completeUpload(@PathVariable String uploadId,
+            @RequestParam(value = "language", required = false) String language,
+            @RequestParam(value = "model", required = false) String model,
+            @RequestParam(value = "deadline", required = false) String deadline,
+            @RequestParam(value = "task", defaultValue = "transcribe") String task) {
+        User user = currentUser();
+        UploadSessions.Session session = user != null ? uploadSessions.get(uploadId, user.getId()) : null;
+        if (session == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Upload not found");
+        }
+        Duration deadlineAfter = parseDeadline(deadline);
+        if (deadline != null && deadlineAfter == null) {
+            return ResponseEntity.badRequest().body("deadline must be HH:MM:SS or seconds");
+        }
+        model = resolveModel(model, deadlineAfter);
+        if (!session.isComplete()) {
+            Map<String, Object> body = uploadState(session);
+            body.put("error", "Upload incomplete");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(body);
+        }
+        if (!transcriptionService.isAcceptingJobs()) {
+            // The session stays open, so the client can retry completing it later
+            return tooManyRequests(transcriptionService.retryAfterSeconds());
+        }
+
+        long quotaWait = transcriptionService.quotaRetryAfterSeconds(user);
+        if (quotaWait > 0) {
+            return tooManyRequests(quotaWait, "Job quota exceeded, please retry in " + quotaWait + " seconds");
+        }
+
+        try {
+            StoredAudio stored = uploadSessions.complete(session);
+            System.out.println(">>> Starting transcription job for user: " + user.getUsername() + " (resumable upload "
+                    + uploadId + ")");
+            String jobId = transcriptionService.createJob(language, model, task, user);
+            JobStatus status;
+            try {
+                status = transcriptionService.submitTranscription(jobId, user, stored.path, stored.sha256, language,
+                        model, task, deadlineAfter);
+            } catch (QueueFullException e) {
+                transcriptionService.discardJob(jobId, stored.path);
+                return tooManyRequests(e.getRetryAfterSeconds());
+            } catch (QuotaExceededException e) {
+                transcriptionService.discardJob(jobId, stored.path);
+                return tooManyRequests(e.getRetryAfterSeconds(), e.getMessage() + ", please retry in "
+                        + e.getRetryAfterSeconds() + " seconds");
+            }
+
+            Map<String, String> response = new HashMap<>();
+            response.put("jobId", jobId);
+            response.put("status", status.name());
             return ResponseEntity.ok(response);
+        } catch (UploadConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         } catch (Exception e) {
             System.err.println(">>> Transcription Job Error: " + e.getMessage());
             e.printStackTrace();
@@ -79,7 +288,8 @@ public class TranscriptionController {
     public ResponseEntity<?> transcribeFromLink(
             @RequestParam("url") String url,
             @RequestParam(value = "language", required = false) String language,
-            @RequestParam(value = "model", defaultValue = "small") String model,
+            @RequestParam(value = "model", required = false) String model,
+            @RequestParam(value = "deadline", required = false) String deadline,
             @RequestParam(value = "task", defaultValue = "transcribe") String task) {
 
         System.out.println(">>> Received request to /api/transcribe-link: " + url);
@@ -87,6 +297,14 @@ public class TranscriptionController {
         if (url == null || url.trim().isEmpty()) {
             return ResponseEntity.badRequest().body("URL cannot be empty");
         }
+        Duration deadlineAfter = parseDeadline(deadline);
+        if (deadline != null && deadlineAfter == null) {
+            return ResponseEntity.badRequest().body("deadline must be HH:MM:SS or seconds");
+        }
+        model = resolveModel(model, deadlineAfter);
+        if (!transcriptionService.isAcceptingJobs()) {
+            return tooManyRequests(transcriptionService.retryAfterSeconds());
+        }
 
         try {
             // 1. Get current user
@@ -101,12 +319,26 @@ public class TranscriptionController {
 
             User user = (User) principal;
             System.out.println(">>> Starting link transcription job for user: " + user.getUsername());
+            long quotaWait = transcriptionService.quotaRetryAfterSeconds(user);
+            if (quotaWait > 0) {
+                return tooManyRequests(quotaWait, "Job quota exceeded, please retry in " + quotaWait + " seconds");
+            }
 
             // 2. Create a job
             String jobId = transcriptionService.createJob(language, model, task, user);
 
-            // 3. Start async process (pass the URL instead of file path)
-            transcriptionService.processTranscription(jobId, url, language, model, task);
+            // 3. Queue for processing (pass the URL instead of file path)
+            try {
+                transcriptionService.submitTranscription(jobId, user, url, null, language, model, task,
+                        deadlineAfter);
+            } catch (QueueFullException e) {
+                transcriptionService.discardJob(jobId, null);
+                return tooManyRequests(e.getRetryAfterSeconds());
+            } catch (QuotaExceededException e) {
+                transcriptionService.discardJob(jobId, null);
+                return tooManyRequests(e.getRetryAfterSeconds(), e.getMessage() + ", please retry in "
+                        + e.getRetryAfterSeconds() + " seconds");
+            }
 
             // 4. Return jobId
             Map<String, String> response = new HashMap<>();
@@ -122,9 +354,168 @@ public class TranscriptionController {
         }
     }
 
+    /**
+     * Submits many recordings in one request: any mix of {@code files}, a ZIP {@code archive}
+     * and {@code urls} (repeated, or whitespace-separated), all with the same settings. The
+     * jobs share a batch id for {@code /api/jobs/status?batchId=}. Items that were not
+     * submitted are listed under {@code rejected} with an error, and a Retry-After if the
+     * queue or the quota turned them away. The response is 207 if only some items were
+     * submitted; if none were, it is 429 when any can be retried later, else 500.
+     */
+    @PostMapping("/batches")
+    public ResponseEntity<?> submitBatch(
+            @RequestParam(value = "files", required = false) List<MultipartFile> files,
+            @RequestParam(value = "archive", required = false) MultipartFile archive,
+            @RequestParam(value = "urls", required = false) List<String> urls,
+            @RequestParam(value = "language", required = false) String language,
+            @RequestParam(value = "model", required = false) String model,
+            @RequestParam(value = "deadline", required = false) String deadline,
+            @RequestParam(value = "task", defaultValue = "transcribe") String task) {
+        User user = currentUser();
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("User session expired or not authenticated");
+        }
+        Duration deadlineAfter = parseDeadline(deadline);
+        if (deadline != null && deadlineAfter == null) {
+            return ResponseEntity.badRequest().body("deadline must be HH:MM:SS or seconds");
+        }
+        model = resolveModel(model, deadlineAfter);
+        if (!transcriptionService.isAcceptingJobs()) {
+            return tooManyRequests(transcriptionService.retryAfterSeconds());
+        }
+        long quotaWait = transcriptionService.quotaRetryAfterSeconds(user);
+        if (quotaWait > 0) {
+            return tooManyRequests(quotaWait, "Job quota exceeded, please retry in " + quotaWait + " seconds");
+        }
+
+        List<String> links = new ArrayList<>();
+        if (urls != null) {
+            for (String value : urls) {
+                for (String link : value.trim().split("\\s+")) {
+                    if (!link.isEmpty()) {
+                        links.add(link);
+                    }
+                }
+            }
+        }
+        System.out.println(">>> Received batch from " + user.getUsername() + ": "
+                + (files != null ? files.size() : 0) + " files, " + links.size() + " links"
+                + (archive != null ? ", archive " + archive.getOriginalFilename() : ""));
+
+        TranscriptionService.BatchResult batch;
+        try {
+            batch = transcriptionService.submitBatch(user, files != null ? files : List.of(), archive, links,
+                    language, model, task, deadlineAfter);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            System.err.println(">>> Batch Error: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to start processing: " + e.getMessage());
+        }
+
+        List<Map<String, Object>> accepted = new ArrayList<>();
+        List<Map<String, Object>> rejected = new ArrayList<>();
+        Long retryAfter = null;
+        for (TranscriptionService.BatchItem item : batch.items) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", item.name);
+            if (item.status != null) {
+                entry.put("jobId", item.jobId);
+                entry.put("status", item.status);
+                accepted.add(entry);
+            } else {
+                entry.put("error", item.error);
+                entry.put("retryAfterSeconds", item.retryAfterSeconds);
+                rejected.add(entry);
+                if (item.retryAfterSeconds != null) {
+                    retryAfter = Math.max(retryAfter != null ? retryAfter : 0, item.retryAfterSeconds);
+                }
+            }
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("batchId", batch.batchId);
+        response.put("jobs", accepted);
+        response.put("rejected", rejected);
+        if (!accepted.isEmpty()) {
+            return ResponseEntity.status(rejected.isEmpty() ? HttpStatus.OK : HttpStatus.MULTI_STATUS).body(response);
+        }
+        if (retryAfter == null) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                .body(response);
+    }
+
+    /**
+     * States of many of the current user's jobs in one response: the given {@code ids}
+     * (comma-separated or repeated; POST them as a form for long lists), or the jobs changed
+     * since {@code since} (ISO date-time) or since a previous response's {@code cursor},
+     * optionally only those in {@code batchId}. Change listings come in the order the jobs
+     * changed and return a cursor for the next poll.
+     */
+    @RequestMapping(path = "/jobs/status", method = { RequestMethod.GET, RequestMethod.POST })
+    public ResponseEntity<?> getStatuses(
+            @RequestParam(value = "ids", required = false) List<String> ids,
+            @RequestParam(value = "batchId", required = false) String batchId,
+            @RequestParam(value = "since", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        User user = currentUser();
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("User session expired or not authenticated");
+        }
+        int pageSize = limit != null ? limit : maxStatusJobs;
+        if (pageSize < 1 || pageSize > maxStatusJobs) {
+            return ResponseEntity.badRequest().body("limit must be between 1 and " + maxStatusJobs);
+        }
+
+        if (ids != null && !ids.isEmpty()) {
+            if (batchId != null || since != null || cursor != null) {
+                return ResponseEntity.badRequest().body("ids cannot be combined with batchId, since or cursor");
+            }
+            Set<String> unique = new LinkedHashSet<>(ids);
+            if (unique.size() > maxStatusJobs) {
+                return ResponseEntity.badRequest().body("At most " + maxStatusJobs + " ids per request");
+            }
+            return ResponseEntity.ok(transcriptionService.getStatuses(user, unique));
+        }
+        if (batchId == null && since == null && cursor == null) {
+            return ResponseEntity.badRequest().body("Give ids, batchId, since or cursor");
+        }
+        StatusCursor after = since != null ? new StatusCursor(since, "") : null;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                after = StatusCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body("Invalid cursor");
+            }
+        }
+        return ResponseEntity.ok(transcriptionService.getStatusChanges(user, batchId, after, pageSize));
+    }
+
     @GetMapping("/status/events/{jobId}")
-    public SseEmitter streamStatus(@PathVariable String jobId) {
-        return transcriptionService.registerEmitter(jobId);
+    public ResponseEntity<SseEmitter> streamStatus(@PathVariable String jobId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        SseEmitter emitter = transcriptionService.registerEmitter(jobId, lastEventId);
+        if (emitter == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * One stream carrying the events of all the current user's jobs.
+     */
+    @GetMapping("/events")
+    public SseEmitter streamUserEvents(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        User user = (User) org.springframework.security.core.context.SecurityContextHolder.getContext()
+                .getAuthentication().getPrincipal();
+        return transcriptionService.registerUserEmitter(user, lastEventId);
     }
 
     @GetMapping("/status/{jobId}")
@@ -138,19 +529,42 @@ public class TranscriptionController {
         response.put("jobId", jobId);
         response.put("status", info.status);
         response.put("message", info.message);
+        if (info.queuePosition != null) {
+            response.put("queuePosition", info.queuePosition);
+            response.put("expectedStartAt", info.expectedStartAt);
+            response.put("expectedFinishAt", info.expectedFinishAt);
+        }
+        if (info.percentComplete != null) {
+            response.put("percentComplete", info.percentComplete);
+            response.put("realTimeFactor", info.realTimeFactor);
+            response.put("estimatedCompletionAt", info.estimatedCompletionAt);
+        }
 
-        if (info.status == JobStatus.COMPLETED && info.outputFilePath != null) {
+        if (info.status == JobStatus.COMPLETED && info.outputFilePath != null
+                && info.outputFilePath.endsWith(SegmentFile.SUFFIX)) {
             try {
-                System.out.println("[Status-" + jobId + "]: Reading result from " + info.outputFilePath);
-                // Return timestamped version for the UI if it exists
-                Path timestampedPath = Paths.get(info.outputFilePath.replace(".txt", "_timestamped.txt"));
-                if (Files.exists(timestampedPath)) {
-                    System.out.println("[Status-" + jobId + "]: Found timestamped version");
-                    response.put("transcript", Files.readString(timestampedPath));
-                } else {
+                inlineTranscript(jobId, SegmentFile.open(Paths.get(info.outputFilePath)), response);
+            } catch (IOException e) {
+                System.err.println("[Status-" + jobId + "]: Error reading file: " + e.getMessage());
+                response.put("transcript", "Error reading result file: " + e.getMessage());
+            }
+        } else if (info.status == JobStatus.COMPLETED && info.outputFilePath != null) {
+            try {
+                // Jobs from before segment files: return the timestamped version for the UI if it exists
+                Path transcriptPath = TranscriptWriter.outputFile(info.outputFilePath, "_timestamped.txt");
+                String format = "timestamped";
+                if (!Files.exists(transcriptPath)) {
                     System.out.println(
                             "[Status-" + jobId + "]: Timestamped version NOT found, falling back to plain text");
-                    response.put("transcript", Files.readString(Paths.get(info.outputFilePath)));
+                    transcriptPath = Paths.get(info.outputFilePath);
+                    format = "txt";
+                }
+                // Inline at most a bounded prefix; the full text is one ranged/cached download away
+                long size = Files.size(transcriptPath);
+                response.put("transcript", readPrefix(transcriptPath, maxInlineTranscriptKb * 1024));
+                if (size > maxInlineTranscriptKb * 1024) {
+                    response.put("transcriptTruncated", true);
+                    response.put("transcriptUrl", "/api/download/" + jobId + "?format=" + format);
                 }
             } catch (IOException e) {
                 System.err.println("[Status-" + jobId + "]: Error reading file: " + e.getMessage());
@@ -161,39 +575,242 @@ public class TranscriptionController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * The transcript as txt, timestamped, srt, vtt or json. {@code from} and {@code to}
+     * ({@code HH:MM:SS[.mmm]}, {@code MM:SS} or seconds) limit it to the segments that
+     * overlap that stretch of the recording.
+     */
     @GetMapping("/download/{jobId}")
-    public ResponseEntity<Resource> downloadResult(
+    public void downloadResult(
             @PathVariable String jobId,
-            @RequestParam(value = "format", defaultValue = "txt") String format) {
+            @RequestParam(value = "format", defaultValue = "txt") String format,
+            @RequestParam(value = "from", required = false) String from,
+            @RequestParam(value = "to", required = false) String to,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
 
         TranscriptionService.JobInfo info = transcriptionService.getJobInfo(jobId);
         if (info == null || info.status != JobStatus.COMPLETED || info.outputFilePath == null) {
-            return ResponseEntity.notFound().build();
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
-
-        String extension = format.toLowerCase();
-        if (!extension.equals("txt") && !extension.equals("srt") && !extension.equals("vtt")) {
-            extension = "txt";
+        double fromSeconds = from != null ? parseTime(from) : 0;
+        double toSeconds = to != null ? parseTime(to) : Double.MAX_VALUE;
+        if (Double.isNaN(fromSeconds) || Double.isNaN(toSeconds)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "from and to must be HH:MM:SS or seconds");
+            return;
         }
 
-        Path path = Paths.get(info.outputFilePath.replace(".txt", "." + extension));
-        Resource resource = new FileSystemResource(path.toFile());
-
-        if (!resource.exists()) {
-            return ResponseEntity.notFound().build();
+        TranscriptWriter.Format outputFormat = TranscriptWriter.Format.parse(format);
+        String downloadName = "transcript_" + jobId + "." + outputFormat.extension;
+        Path segmentPath;
+        if (info.outputFilePath.endsWith(SegmentFile.SUFFIX)) {
+            segmentPath = Paths.get(info.outputFilePath);
+        } else if (outputFormat.legacySuffix != null && from == null && to == null) {
+            // Jobs from before segment files have each format pre-rendered
+            Path path = TranscriptWriter.outputFile(info.outputFilePath, outputFormat.legacySuffix);
+            if (!Files.isRegularFile(path)) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            downloadHandler.serve(path, outputFormat.contentType, downloadName, request, response);
+            return;
+        } else {
+            segmentPath = legacySegmentFile(info.outputFilePath);
+        }
+        if (!Files.isRegularFile(segmentPath)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.TEXT_PLAIN)
-                .header(HttpHeaders.CONTENT_DISPOSITION,
-                        "attachment; filename=\"transcript_" + jobId + "." + extension + "\"")
-                .body(resource);
+        SegmentFile file = SegmentFile.open(segmentPath);
+        int first = file.firstEndingAfter(fromSeconds);
+        int last = Math.max(first, file.firstStartingFrom(toSeconds));
+        downloadHandler.serveRendered(file, outputFormat, first, last, downloadName, request, response);
     }
 
     @GetMapping("/history")
-    public ResponseEntity<?> getHistory() {
+    public ResponseEntity<?> getHistory(
+            @RequestParam(value = "limit", defaultValue = "20") int limit,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "status", required = false) JobStatus status,
+            @RequestParam(value = "model", required = false) String model,
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
         User user = (User) org.springframework.security.core.context.SecurityContextHolder.getContext()
                 .getAuthentication().getPrincipal();
-        return ResponseEntity.ok(transcriptionService.getAllJobs(user));
+        if (limit < 1 || limit > MAX_HISTORY_PAGE) {
+            return ResponseEntity.badRequest().body("limit must be between 1 and " + MAX_HISTORY_PAGE);
+        }
+
+        HistoryCursor position = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                position = HistoryCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body("Invalid cursor");
+            }
+        }
+        return ResponseEntity.ok(transcriptionService.getHistoryPage(user, limit, position, status,
+                model != null && !model.isEmpty() ? model : null, from, to));
+    }
+
+    /**
+     * Segments of the current user's transcripts that contain every word of {@code q}, best match first.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> search(@RequestParam("q") String query,
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        User user = currentUser();
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("User session expired or not authenticated");
+        }
+        if (limit < 1 || limit > MAX_SEARCH_HITS) {
+            return ResponseEntity.badRequest().body("limit must be between 1 and " + MAX_SEARCH_HITS);
+        }
+        long started = System.nanoTime();
+        Map<String, Object> body = new HashMap<>();
+        body.put("query", query);
+        body.put("hits", searchIndex.search(user.getId(), query, limit));
+        body.put("tookMillis", (System.nanoTime() - started) / 1_000_000.0);
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Puts the timestamped transcript into {@code response}, up to the inline limit; longer
+     * transcripts are cut after the last whole line and link to the download.
+     */
+    private void inlineTranscript(String jobId, SegmentFile file, Map<String, Object> response) throws IOException {
+        long limit = maxInlineTranscriptKb * 1024;
+        StringBuilder text = new StringBuilder();
+        long bytes = 0;
+        int shown = 0;
+        for (; shown < file.size(); shown++) {
+            StringWriter line = new StringWriter();
+            TranscriptWriter.writeTimestamped(file.segments(shown, shown + 1), line);
+            bytes += line.toString().getBytes(StandardCharsets.UTF_8).length;
+            if (bytes > limit) {
+                break;
+            }
+            text.append(line);
+        }
+        response.put("transcript", text.toString());
+        if (shown < file.size()) {
+            response.put("transcriptTruncated", true);
+            response.put("transcriptUrl", "/api/download/" + jobId + "?format=timestamped");
+        }
+    }
+
+    /**
+     * A segment file for a job from before segment files, converted from its .srt on first use.
+     */
+    private static Path legacySegmentFile(String outputFilePath) throws IOException {
+        Path segmentPath = TranscriptWriter.outputFile(outputFilePath, SegmentFile.SUFFIX);
+        Path srt = TranscriptWriter.outputFile(outputFilePath, ".srt");
+        if (!Files.exists(segmentPath) && Files.exists(srt)) {
+            SegmentFile.write(TranscriptReader.readSrt(srt), segmentPath);
+        }
+        return segmentPath;
+    }
+
+    /**
+     * Seconds for {@code HH:MM:SS[.mmm]}, {@code MM:SS} or plain seconds; NaN if malformed or negative.
+     */
+    static double parseTime(String value) {
+        double seconds;
+        try {
+            seconds = value.contains(":") ? TranscriptReader.parseTimestamp(value) : Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+        return seconds >= 0 && Double.isFinite(seconds) ? seconds : Double.NaN;
+    }
+
+    /**
+     * How soon a {@code model=auto} job should be done, as seconds or {@code [HH:]MM:SS};
+     * null if absent or invalid.
+     */
+    static Duration parseDeadline(String value) {
+        if (value == null) {
+            return null;
+        }
+        double seconds = parseTime(value);
+        return Double.isNaN(seconds) || seconds < 1 ? null : Duration.ofMillis(Math.round(seconds * 1000));
+    }
+
+    /**
+     * The model to run: as requested, "auto" if only a deadline was given, otherwise "small".
+     * A deadline with an explicit model is ignored.
+     */
+    private static String resolveModel(String model, Duration deadline) {
+        if (model != null && !model.isBlank()) {
+            return model.trim();
+        }
+        return deadline != null ? TranscriptionScheduler.AUTO_MODEL : "small";
+    }
+
+    private static Map<String, Object> uploadState(UploadSessions.Session session) {
+        Map<String, Object> state = new HashMap<>();
+        state.put("uploadId", session.id);
+        state.put("offset", session.getOffset());
+        state.put("length", session.length);
+        state.put("complete", session.isComplete());
+        return state;
+    }
+
+    /**
+     * Parses {@code bytes start-end/total} into {start, end, total}; total is -1 for {@code *}.
+     * Returns null if the header is malformed.
+     */
+    static long[] parseContentRange(String header) {
+        String value = header.trim();
+        if (!value.startsWith("bytes ")) {
+            return null;
+        }
+        int dash = value.indexOf('-', 6);
+        int slash = value.indexOf('/', dash + 1);
+        if (dash < 0 || slash < 0) {
+            return null;
+        }
+        try {
+            long start = Long.parseLong(value.substring(6, dash).trim());
+            long end = Long.parseLong(value.substring(dash + 1, slash).trim());
+            String total = value.substring(slash + 1).trim();
+            return new long[] { start, end, total.equals("*") ? -1 : Long.parseLong(total) };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static User currentUser() {
+        Object principal = org.springframework.security.core.context.SecurityContextHolder.getContext()
+                .getAuthentication().getPrincipal();
+        return principal instanceof User ? (User) principal : null;
+    }
+
+    private ResponseEntity<?> tooManyRequests(long retryAfterSeconds) {
+        return tooManyRequests(retryAfterSeconds, "Server is busy, please retry in " + retryAfterSeconds + " seconds");
+    }
+
+    private ResponseEntity<?> tooManyRequests(long retryAfterSeconds, String message) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(message);
+    }
+
+    private static String readPrefix(Path path, long maxBytes) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] bytes = in.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, maxBytes));
+            int length = bytes.length;
+            if (length == maxBytes && in.read() != -1) {
+                // Cut at the last full line rather than in the middle of a character
+                while (length > 0 && bytes[length - 1] != '\n') {
+                    length--;
+                }
+            }
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
     }
 }
@@ -9,7 +9,12 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transcription_jobs")
+@Table(name = "transcription_jobs", indexes = {
+        @Index(name = "idx_jobs_user_created", columnList = "user_id, createdAt, id"),
+        @Index(name = "idx_jobs_status_created", columnList = "status, createdAt, id"),
+        @Index(name = "idx_jobs_user_updated", columnList = "user_id, updatedAt, id"),
+        @Index(name = "idx_jobs_batch", columnList = "batchId")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -38,8 +43,26 @@ public class TranscriptionJob {
     private LocalDateTime createdAt;
     private LocalDateTime completedAt;
 
+    // Last time the status or message was written; what /api/jobs/status?since= looks at
+    private LocalDateTime updatedAt;
+
+    // Shared by the jobs submitted together through /api/batches
+    private String batchId;
+
+    // Audio length read from the upload's headers at submission (AudioHeaders), or estimated from its size
+    private Double audioSeconds;
+
+    // Shared queue (JobQueue): the node the job was submitted to, what another node needs to run it,
+    // and who holds it until when
+    private String originNode;
+    private String cacheKey;
+    private String leaseOwner;
+    private LocalDateTime leaseExpiresAt;
+    private Integer attempts;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
     }
 }
@@ -1,8 +1,15 @@
 package com.example.audiototext;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -10,4 +17,252 @@ public interface TranscriptionJobRepository extends JpaRepository<TranscriptionJ
     List<TranscriptionJob> findAllByOrderByCreatedAtDesc();
 
     List<TranscriptionJob> findAllByUserOrderByCreatedAtDesc(User user);
+
+    /**
+     * One page of a user's history, newest first, starting strictly after the
+     * (cursorCreatedAt, cursorId) keyset position. Served by idx_jobs_user_created,
+     * so the cost does not grow with how far back the page is.
+     */
+    @Query("select new com.example.audiototext.JobSummary(j.id, j.status, j.model, j.language, j.task, j.message, "
+            + "j.createdAt, j.completedAt) from TranscriptionJob j "
+            + "where j.user.id = :userId "
+            + "and (:status is null or j.status = :status) "
+            + "and (:model is null or j.model = :model) "
+            + "and (:from is null or j.createdAt >= :from) "
+            + "and (:to is null or j.createdAt < :to) "
+            + "and (:cursorCreatedAt is null or j.createdAt < :cursorCreatedAt "
+            + "or (j.createdAt = :cursorCreatedAt and j.id < :cursorId)) "
+            + "order by j.createdAt desc, j.id desc")
+    List<JobSummary> findHistoryPage(@Param("userId") Long userId,
+            @Param("status") JobStatus status,
+            @Param("model") String model,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+            @Param("cursorId") String cursorId,
+            Pageable page);
+
+    /**
+     * Writes a job's mutable state without reading the entity first.
+     */
+    @Modifying
+    @Transactional
+    @Query("update TranscriptionJob j set j.status = :status, j.message = :message, "
+            + "j.outputFilePath = :outputFilePath, j.completedAt = :completedAt, j.updatedAt = :updatedAt "
+            + "where j.id = :id")
+    int updateState(@Param("id") String id,
+            @Param("status") JobStatus status,
+            @Param("message") String message,
+            @Param("outputFilePath") String outputFilePath,
+            @Param("completedAt") LocalDateTime completedAt,
+            @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Query("select j.user.id from TranscriptionJob j where j.id = :id")
+    Long findUserIdById(@Param("id") String id);
+
+    /**
+     * {id, user id, output file path} of every job in {@code status} that has outputs.
+     */
+    @Query("select j.id, j.user.id, j.outputFilePath from TranscriptionJob j "
+            + "where j.status = :status and j.outputFilePath is not null")
+    List<Object[]> findOutputsByStatus(@Param("status") JobStatus status);
+
+    /**
+     * {id, user id, output file path} of jobs in {@code status} completed at or after {@code since}.
+     */
+    @Query("select j.id, j.user.id, j.outputFilePath from TranscriptionJob j "
+            + "where j.status = :status and j.outputFilePath is not null and j.completedAt >= :since")
+    List<Object[]> findOutputsCompletedSince(@Param("status") JobStatus status,
+            @Param("since") LocalDateTime since);
+
+    /**
+     * Records what another node needs to run and fairly schedule a queued job.
+     */
+    @Modifying
+    @Transactional
+    @Query("update TranscriptionJob j set j.inputFilePath = :inputFilePath, j.cacheKey = :cacheKey, "
+            + "j.model = :model, j.audioSeconds = :audioSeconds, j.attempts = 0, j.updatedAt = :now where j.id = :id")
+    int enqueue(@Param("id") String id,
+            @Param("inputFilePath") String inputFilePath,
+            @Param("cacheKey") String cacheKey,
+            @Param("model") String model,
+            @Param("audioSeconds") Double audioSeconds,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * Records the model (chosen for {@code model=auto} jobs) and the audio length found at
+     * submission, for jobs that do not go through the shared queue.
+     */
+    @Modifying
+    @Transactional
+    @Query("update TranscriptionJob j set j.model = :model, j.audioSeconds = :audioSeconds, j.updatedAt = :now "
+            + "where j.id = :id")
+    int recordSubmission(@Param("id") String id,
+            @Param("model") String model,
+            @Param("audioSeconds") Double audioSeconds,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * {id, input file path, cache key, language, model, task, user id, audio seconds, user weight}
+     * of each user's oldest pending job that nobody holds a live lease on, skipping models in
+     * {@code excludedModels} and audio outside [{@code minSeconds}, {@code maxSeconds}) (a
+     * scheduler lane). Users whose head job has waited longest come first.
+     */
+    @Query("select j.id, j.inputFilePath, j.cacheKey, j.language, j.model, j.task, u.id, j.audioSeconds, "
+            + "u.schedulingWeight from TranscriptionJob j join j.user u "
+            + "where j.status = :status and j.inputFilePath is not null "
+            + "and (j.leaseOwner is null or j.leaseExpiresAt < :now) and j.model not in :excludedModels "
+            + "and coalesce(j.audioSeconds, 0) >= :minSeconds and coalesce(j.audioSeconds, 0) < :maxSeconds "
+            + "and not exists (select e.id from TranscriptionJob e where e.user = j.user and e.status = :status "
+            + "and e.inputFilePath is not null and (e.leaseOwner is null or e.leaseExpiresAt < :now) "
+            + "and e.model not in :excludedModels "
+            + "and coalesce(e.audioSeconds, 0) >= :minSeconds and coalesce(e.audioSeconds, 0) < :maxSeconds "
+            + "and (e.createdAt < j.createdAt or (e.createdAt = j.createdAt and e.id < j.id))) "
+            + "order by j.createdAt, j.id")
+    List<Object[]> findClaimableHeads(@Param("status") JobStatus status,
+            @Param("now") LocalDateTime now,
+            @Param("excludedModels") Collection<String> excludedModels,
+            @Param("minSeconds") double minSeconds,
+            @Param("maxSeconds") double maxSeconds,
+            Pageable page);
+
+    /**
+     * Takes the lease on a pending job unless another node got there first. Returns 1 if
+     * this node now holds it. The condition is re-checked under the row lock, so of several
+     * nodes racing for the same row exactly one wins and the others move on.
+     */
+    @Modifying
+    @Transactional
+    @Query("update TranscriptionJob j set j.leaseOwner = :node, j.leaseExpiresAt = :until, "
+            + "j.attempts = coalesce(j.attempts, 0) + 1 "
+            + "where j.id = :id and j.status = :status and (j.leaseOwner is null or j.leaseExpiresAt < :now)")
+    int claim(@Param("id") String id,
+            @Param("status") JobStatus status,
+            @Param("node") String node,
+            @Param("now") LocalDateTime now,
+            @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Transactional
+    @Query("update TranscriptionJob j set j.leaseExpiresAt = :until where j.leaseOwner = :node and j.id in :ids")
+    int renewLeases(@Param("node") String node,
+            @Param("ids") Collection<String> ids,
+            @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Transactional
+    @Query("update TranscriptionJob j set j.leaseOwner = null, j.leaseExpiresAt = null "
+            + "where j.id = :id and j.leaseOwner = :node")
+    int releaseLease(@Param("id") String id, @Param("node") String node);
+
+    /**
+     * Puts unfinished jobs whose lease ran out (or that {@code node}, a previous run of this
+     * instance, still holds; null for none) back in the queue, as long as they have attempts left.
+     */
+    @Modifying
+    @Transactional
+    @Query("update TranscriptionJob j set j.status = :pending, j.message = :message, j.updatedAt = :now, "
+            + "j.leaseOwner = null, j.leaseExpiresAt = null "
+            + "where j.status in :unfinished and (j.leaseExpiresAt < :now or j.leaseOwner = :node) "
+            + "and coalesce(j.attempts, 0) < :maxAttempts")
+    int requeueExpired(@Param("unfinished") Collection<JobStatus> unfinished,
+            @Param("pending") JobStatus pending,
+            @Param("message") String message,
+            @Param("node") String node,
+            @Param("now") LocalDateTime now,
+            @Param("maxAttempts") int maxAttempts);
+
+    /**
+     * Fails unfinished jobs whose lease ran out and that have used up their attempts.
+     */
+    @Modifying
+    @Transactional
+    @Query("update TranscriptionJob j set j.status = :failed, j.message = :message, j.completedAt = :now, "
+            + "j.updatedAt = :now, j.leaseOwner = null, j.leaseExpiresAt = null "
+            + "where j.status in :unfinished and (j.leaseExpiresAt < :now or j.leaseOwner = :node) "
+            + "and coalesce(j.attempts, 0) >= :maxAttempts")
+    int failExpired(@Param("unfinished") Collection<JobStatus> unfinished,
+            @Param("failed") JobStatus failed,
+            @Param("message") String message,
+            @Param("node") String node,
+            @Param("now") LocalDateTime now,
+            @Param("maxAttempts") int maxAttempts);
+
+    /**
+     * Fails unfinished jobs created before {@code createdBefore} that are not in the shared
+     * queue and were submitted to {@code node} (a previous run of this instance; null for none)
+     * or to an instance that has not checked in since {@code aliveSince}: they were running in
+     * memory on an instance that has since stopped.
+     */
+    @Modifying
+    @Transactional
+    @Query("update TranscriptionJob j set j.status = :failed, j.message = :message, j.completedAt = :now, "
+            + "j.updatedAt = :now "
+            + "where j.status in :unfinished and j.leaseOwner is null and j.createdAt < :createdBefore "
+            + "and (j.status <> :pending or j.inputFilePath is null) "
+            + "and (j.originNode is null or j.originNode = :node or j.originNode not in "
+            + "(select n.id from QueueNode n where n.heartbeatAt >= :aliveSince))")
+    int failOrphaned(@Param("unfinished") Collection<JobStatus> unfinished,
+            @Param("pending") JobStatus pending,
+            @Param("failed") JobStatus failed,
+            @Param("message") String message,
+            @Param("node") String node,
+            @Param("now") LocalDateTime now,
+            @Param("createdBefore") LocalDateTime createdBefore,
+            @Param("aliveSince") LocalDateTime aliveSince);
+
+    /**
+     * Pending jobs nobody has claimed yet, i.e. the shared queue's length.
+     */
+    @Query("select count(j) from TranscriptionJob j where j.status = :status and j.leaseOwner is null "
+            + "and j.inputFilePath is not null")
+    long countQueued(@Param("status") JobStatus status);
+
+    /**
+     * {model, audio seconds} of all unclaimed pending jobs, oldest first.
+     */
+    @Query("select j.model, j.audioSeconds from TranscriptionJob j where j.status = :status "
+            + "and j.leaseOwner is null and j.inputFilePath is not null order by j.createdAt, j.id")
+    List<Object[]> findQueued(@Param("status") JobStatus status);
+
+    /**
+     * {model, audio seconds} of the unclaimed pending jobs created up to and including {@code id},
+     * oldest first; {@code id} itself comes last.
+     */
+    @Query("select j.model, j.audioSeconds from TranscriptionJob j, TranscriptionJob me where me.id = :id "
+            + "and j.status = :status and j.leaseOwner is null and j.inputFilePath is not null "
+            + "and (j.createdAt < me.createdAt or (j.createdAt = me.createdAt and j.id <= me.id)) "
+            + "order by j.createdAt, j.id")
+    List<Object[]> findQueuedUpTo(@Param("id") String id, @Param("status") JobStatus status);
+
+    /**
+     * {id, status, message} of the given jobs.
+     */
+    @Query("select j.id, j.status, j.message from TranscriptionJob j where j.id in :ids")
+    List<Object[]> findStatuses(@Param("ids") Collection<String> ids);
+
+    /**
+     * {id, status, message, model, batch id, updated at, completed at} of those of {@code ids}
+     * that belong to the user.
+     */
+    @Query("select j.id, j.status, j.message, j.model, j.batchId, j.updatedAt, j.completedAt "
+            + "from TranscriptionJob j where j.user.id = :userId and j.id in :ids")
+    List<Object[]> findStatusRows(@Param("userId") Long userId, @Param("ids") Collection<String> ids);
+
+    /**
+     * {id, status, message, model, batch id, updated at, completed at} of the user's jobs in
+     * {@code batchId} (null for any) that changed strictly after the (afterUpdatedAt, afterId)
+     * keyset position (null for all), in the order they changed. Served by idx_jobs_user_updated.
+     */
+    @Query("select j.id, j.status, j.message, j.model, j.batchId, j.updatedAt, j.completedAt "
+            + "from TranscriptionJob j where j.user.id = :userId "
+            + "and (:batchId is null or j.batchId = :batchId) "
+            + "and (:afterUpdatedAt is null or j.updatedAt > :afterUpdatedAt "
+            + "or (j.updatedAt = :afterUpdatedAt and j.id > :afterId)) "
+            + "order by j.updatedAt, j.id")
+    List<Object[]> findStatusRowsChanged(@Param("userId") Long userId,
+            @Param("batchId") String batchId,
+            @Param("afterUpdatedAt") LocalDateTime afterUpdatedAt,
+            @Param("afterId") String afterId,
+            Pageable page);
 }
@@ -0,0 +1,503 @@
+package com.example.audiototext;
+
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Admission-controlled job queue in front of the Whisper workers. At most
+ * {@code app.scheduler.max-concurrent-jobs} jobs run at once, each model is
+ * further capped by its own limit, and at most {@code app.scheduler.queue-capacity}
+ * jobs may wait. Submissions beyond that are rejected with {@link QueueFullException}
+ * instead of piling up and thrashing the CPU. Waiting jobs start in weighted fair order
+ * across users ({@link FairQueue}), costed by their audio length.
+ * <p>
+ * Jobs are split into a short and a long lane by audio length. Long jobs never take the
+ * last {@code app.scheduler.short-lane-slots} slots, so a voice note does not wait behind
+ * a batch of podcasts; short jobs may use any free slot. A lane below its share of slots
+ * is served first, so a stream of short clips cannot starve the long lane either. Start
+ * and finish times are predicted from each model's measured real-time factor.
+ * <p>
+ * For {@code model=auto} jobs, the same prediction picks the most accurate model that would
+ * still finish by the job's deadline: larger models while the queue is short, stepping down
+ * towards the fastest one as it backs up.
+ */
+@Component
+public class TranscriptionScheduler {
+
+    @Value("${app.scheduler.max-concurrent-jobs:2}")
+    private int maxConcurrentJobs;
+
+    @Value("${app.scheduler.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${app.scheduler.default-concurrency:1}")
+    private int defaultModelConcurrency;
+
+    @Value("${app.scheduler.model-concurrency:}")
+    private String modelConcurrencySpec;
+
+    @Value("${app.scheduler.default-job-seconds:120}")
+    private long defaultJobSeconds;
+
+    @Value("${app.scheduler.short-job-seconds:600}")
+    private double shortJobSeconds;
+
+    @Value("${app.scheduler.short-lane-slots:1}")
+    private int shortLaneSlots;
+
+    @Value("${app.scheduler.default-real-time-factors:}")
+    private String defaultRealTimeFactorSpec;
+
+    @Value("${app.scheduler.min-real-time-factor-samples:3}")
+    private int minRealTimeFactorSamples;
+
+    @Value("${app.scheduler.auto-models:medium,small,base,tiny}")
+    private List<String> autoModels;
+
+    // Very short clips are dominated by fixed costs; do not let them inflate the real-time factor
+    private static final double MIN_MEASURED_AUDIO_SECONDS = 30;
+
+    private final Executor executor;
+
+    @Autowired
+    private PipelineMetrics metrics;
+
+    // Guarded by "this"
+    private final Map<Lane, FairQueue<QueuedJob>> pending = new EnumMap<>(Lane.class);
+    private final Map<String, QueuedJob> running = new HashMap<>();
+    private final Map<String, Integer> runningPerModel = new HashMap<>();
+    private final Map<Lane, Integer> runningPerLane = new EnumMap<>(Lane.class);
+    // Wall-clock seconds per second of audio, smoothed over recent jobs
+    private final Map<String, Double> realTimeFactorPerModel = new HashMap<>();
+    private final Map<String, Integer> realTimeFactorSamples = new HashMap<>();
+
+    public TranscriptionScheduler(@Qualifier("transcriptionExecutor") Executor executor,
+            @Value("${app.scheduler.fair-quantum-seconds:300}") double fairQuantumSeconds) {
+        this.executor = executor;
+        for (Lane lane : Lane.values()) {
+            pending.put(lane, new FairQueue<>(fairQuantumSeconds));
+            runningPerLane.put(lane, 0);
+        }
+    }
+
+    public enum Lane {
+        SHORT, LONG
+    }
+
+    public static final String AUTO_MODEL = "auto";
+
+    @PostConstruct
+    void registerGauges() {
+        metrics.gauge("transcription.queue.size", Tags.empty(), this, s -> s.countQueued());
+        metrics.gauge("transcription.jobs.running", Tags.empty(), this, s -> s.countRunning());
+    }
+
+    /**
+     * Where a job stands in the queue. {@code position} is 1-based and 0 once running.
+     */
+    public static class QueueStatus {
+        public final int position;
+        public final Instant expectedStartAt;
+        public final Instant expectedFinishAt;
+
+        public QueueStatus(int position, Instant expectedStartAt, Instant expectedFinishAt) {
+            this.position = position;
+            this.expectedStartAt = expectedStartAt;
+            this.expectedFinishAt = expectedFinishAt;
+        }
+    }
+
+    /**
+     * The work of one job. Returns what a Whisper run measured, or null if Whisper did not
+     * run (the job failed, or completed from a cache) and there is nothing to learn from it.
+     */
+    @FunctionalInterface
+    public interface JobWork {
+        Measurement run();
+    }
+
+    /**
+     * Seconds of audio Whisper transcribed and the wall-clock seconds it took.
+     */
+    public static class Measurement {
+        public final double audioSeconds;
+        public final double wallSeconds;
+
+        public Measurement(double audioSeconds, double wallSeconds) {
+            this.audioSeconds = audioSeconds;
+            this.wallSeconds = wallSeconds;
+        }
+    }
+
+    private static class QueuedJob {
+        final String jobId;
+        final String model;
+        final double audioSeconds;
+        final Lane lane;
+        final JobWork work;
+        final long submittedAtNanos = System.nanoTime();
+        Instant startedAt;
+
+        QueuedJob(String jobId, String model, double audioSeconds, Lane lane, JobWork work) {
+            this.jobId = jobId;
+            this.model = model;
+            this.audioSeconds = audioSeconds;
+            this.lane = lane;
+            this.work = work;
+        }
+    }
+
+    // A slot in the start-time replay: busy with a job of {@code lane} until {@code freeAt}, or idle
+    private static class ReplaySlot {
+        final Instant freeAt;
+        final Lane lane;
+
+        ReplaySlot(Instant freeAt, Lane lane) {
+            this.freeAt = freeAt;
+            this.lane = lane;
+        }
+    }
+
+    /**
+     * Queues {@code work} for {@code jobId}, owned by {@code userId} with scheduling {@code weight},
+     * at a cost of {@code audioSeconds}. Runs it immediately if capacity allows.
+     *
+     * @throws QueueFullException if the wait queue is at capacity
+     */
+    public void submit(String jobId, String model, long userId, double weight, double audioSeconds, JobWork work) {
+        synchronized (this) {
+            if (countQueued() >= queueCapacity) {
+                throw new QueueFullException("Transcription queue is full (" + queueCapacity + " jobs waiting)",
+                        retryAfterSeconds());
+            }
+            Lane lane = laneOf(audioSeconds);
+            pending.get(lane).add(userId, weight, audioSeconds, new QueuedJob(jobId, model, audioSeconds, lane, work));
+        }
+        dispatch();
+    }
+
+    /**
+     * Cheap pre-check so callers can refuse an upload before doing any work for it.
+     */
+    public synchronized boolean isAcceptingJobs() {
+        return countQueued() < queueCapacity;
+    }
+
+    public Lane laneOf(double audioSeconds) {
+        return audioSeconds < shortJobSeconds ? Lane.SHORT : Lane.LONG;
+    }
+
+    /**
+     * Audio length from which a job goes into the long lane.
+     */
+    public double getShortJobSeconds() {
+        return shortJobSeconds;
+    }
+
+    public synchronized long retryAfterSeconds() {
+        Instant now = Instant.now();
+        long soonest = Long.MAX_VALUE;
+        for (QueuedJob job : running.values()) {
+            Instant finish = job.startedAt.plusSeconds(Math.round(expectedSeconds(job)));
+            soonest = Math.min(soonest, Math.max(1, finish.getEpochSecond() - now.getEpochSecond()));
+        }
+        return soonest == Long.MAX_VALUE ? Math.max(1, defaultJobSeconds / 4) : soonest;
+    }
+
+    /**
+     * Returns the queue status of {@code jobId}, or null if the scheduler no longer tracks it.
+     */
+    public synchronized QueueStatus getQueueStatus(String jobId) {
+        QueuedJob active = running.get(jobId);
+        if (active != null) {
+            return new QueueStatus(0, active.startedAt,
+                    active.startedAt.plusSeconds(Math.round(expectedSeconds(active))));
+        }
+        return replay(jobId, List.of());
+    }
+
+    /**
+     * Predicts when the last of {@code queued} ({model, audio seconds} each, in queue order)
+     * would start and finish if they were all waiting here after the local queue. Used for
+     * jobs in the shared queue that no instance has claimed yet; with several instances
+     * pulling from it, the prediction is on the late side.
+     */
+    public synchronized QueueStatus predict(List<Object[]> queued) {
+        if (queued.isEmpty()) {
+            return null;
+        }
+        List<QueuedJob> jobs = new ArrayList<>();
+        for (Object[] row : queued) {
+            double audioSeconds = row[1] != null ? (Double) row[1] : 0;
+            jobs.add(new QueuedJob(null, (String) row[0], audioSeconds, laneOf(audioSeconds), null));
+        }
+        QueueStatus status = replay(null, jobs);
+        return status != null ? new QueueStatus(jobs.size(), status.expectedStartAt, status.expectedFinishAt) : null;
+    }
+
+    /**
+     * Models {@code model=auto} chooses from, most accurate first.
+     */
+    public List<String> getAutoModels() {
+        return autoModels;
+    }
+
+    /**
+     * The most accurate of {@code app.scheduler.auto-models} predicted to finish a job of
+     * {@code audioSeconds} by {@code deadline}, behind the jobs waiting here and {@code queued}
+     * ({model, audio seconds} of jobs in the shared queue), or the one predicted to finish
+     * first if none makes it.
+     */
+    public synchronized String chooseModel(double audioSeconds, Instant deadline, List<Object[]> queued) {
+        String fastest = null;
+        Instant earliest = null;
+        for (String model : autoModels) {
+            List<QueuedJob> jobs = new ArrayList<>();
+            for (Object[] row : queued) {
+                double seconds = row[1] != null ? (Double) row[1] : 0;
+                jobs.add(new QueuedJob(null, (String) row[0], seconds, laneOf(seconds), null));
+            }
+            jobs.add(new QueuedJob(null, model, audioSeconds, laneOf(audioSeconds), null));
+            QueueStatus status = replay(null, jobs);
+            if (status == null) {
+                continue;
+            }
+            if (!status.expectedFinishAt.isAfter(deadline)) {
+                return model;
+            }
+            if (earliest == null || status.expectedFinishAt.isBefore(earliest)) {
+                earliest = status.expectedFinishAt;
+                fastest = model;
+            }
+        }
+        return fastest != null ? fastest : autoModels.get(autoModels.size() - 1);
+    }
+
+    /**
+     * Replays the lanes, with {@code extra} queued behind the local jobs, against the expected
+     * finish time of each running slot (ignoring per-model limits). Stops at {@code jobId},
+     * or with a null {@code jobId} at the last of {@code extra}.
+     */
+    private QueueStatus replay(String jobId, List<QueuedJob> extra) {
+        // Busy slots before idle ones freeing at the same time, so an idle slot sees the lane counts drop
+        PriorityQueue<ReplaySlot> slots = new PriorityQueue<>(Comparator.comparing((ReplaySlot slot) -> slot.freeAt)
+                .thenComparing(slot -> slot.lane == null));
+        Map<Lane, Integer> busy = new EnumMap<>(Lane.class);
+        Map<Lane, ArrayDeque<QueuedJob>> waiting = new EnumMap<>(Lane.class);
+        Instant now = Instant.now();
+        for (Lane lane : Lane.values()) {
+            busy.put(lane, 0);
+            waiting.put(lane, new ArrayDeque<>(pending.get(lane).order()));
+        }
+        extra.forEach(job -> waiting.get(job.lane).addLast(job));
+        QueuedJob target = jobId == null && !extra.isEmpty() ? extra.get(extra.size() - 1) : null;
+        for (QueuedJob job : running.values()) {
+            Instant finish = job.startedAt.plusSeconds(Math.round(expectedSeconds(job)));
+            slots.add(new ReplaySlot(finish.isBefore(now) ? now : finish, job.lane));
+            busy.merge(job.lane, 1, Integer::sum);
+        }
+        while (slots.size() < maxConcurrentJobs) {
+            slots.add(new ReplaySlot(now, null));
+        }
+
+        int position = 0;
+        while (!slots.isEmpty()) {
+            ReplaySlot slot = slots.poll();
+            if (slot.lane != null) {
+                busy.merge(slot.lane, -1, Integer::sum);
+            }
+            QueuedJob job = null;
+            for (Lane lane : startOrder(busy.get(Lane.SHORT), busy.get(Lane.LONG))) {
+                job = waiting.get(lane).pollFirst();
+                if (job != null) {
+                    break;
+                }
+            }
+            if (job == null) {
+                if (waiting.get(Lane.SHORT).isEmpty() && waiting.get(Lane.LONG).isEmpty()) {
+                    return null;
+                }
+                // Only long jobs left and their lane is full: this slot idles until a busy one frees up
+                Instant nextFree = slots.stream().filter(other -> other.lane != null)
+                        .map(other -> other.freeAt).min(Comparator.naturalOrder()).orElse(null);
+                if (nextFree == null) {
+                    return null;
+                }
+                slots.add(new ReplaySlot(nextFree, null));
+                continue;
+            }
+            position++;
+            Instant finish = slot.freeAt.plusSeconds(Math.round(expectedSeconds(job)));
+            if (job == target || (jobId != null && jobId.equals(job.jobId))) {
+                return new QueueStatus(position, slot.freeAt, finish);
+            }
+            slots.add(new ReplaySlot(finish, job.lane));
+            busy.merge(job.lane, 1, Integer::sum);
+        }
+        return null;
+    }
+
+    /**
+     * Jobs that could start here right now without waiting, ignoring per-model limits.
+     */
+    public synchronized int freeSlots() {
+        return Math.max(0, maxConcurrentJobs - running.size() - countQueued());
+    }
+
+    /**
+     * Lanes a job could be taken into here right now, counting jobs already waiting, in the
+     * order to try them. Empty when there are no free slots.
+     */
+    public synchronized List<Lane> claimableLanes() {
+        if (freeSlots() == 0) {
+            return List.of();
+        }
+        return startOrder(runningPerLane.get(Lane.SHORT) + pending.get(Lane.SHORT).size(),
+                runningPerLane.get(Lane.LONG) + pending.get(Lane.LONG).size());
+    }
+
+    /**
+     * Models whose running and waiting jobs already take all of their slots.
+     */
+    public synchronized Set<String> saturatedModels() {
+        Map<String, Integer> busy = new HashMap<>(runningPerModel);
+        pending.values().forEach(lane -> lane.forEach(job -> busy.merge(job.model, 1, Integer::sum)));
+        Set<String> saturated = new HashSet<>();
+        busy.forEach((model, count) -> {
+            if (count >= modelConcurrency(model)) {
+                saturated.add(model);
+            }
+        });
+        return saturated;
+    }
+
+    public synchronized Map<String, Object> describe() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("queued", countQueued());
+        result.put("queuedShort", pending.get(Lane.SHORT).size());
+        result.put("queuedLong", pending.get(Lane.LONG).size());
+        result.put("running", running.size());
+        result.put("queueCapacity", queueCapacity);
+        result.put("maxConcurrentJobs", maxConcurrentJobs);
+        result.put("runningPerModel", new HashMap<>(runningPerModel));
+        result.put("runningPerLane", new EnumMap<>(runningPerLane));
+        result.put("realTimeFactorPerModel", new HashMap<>(realTimeFactorPerModel));
+        result.put("realTimeFactorSamples", new HashMap<>(realTimeFactorSamples));
+        return result;
+    }
+
+    private void dispatch() {
+        List<QueuedJob> toStart = new ArrayList<>();
+        synchronized (this) {
+            while (running.size() < maxConcurrentJobs) {
+                QueuedJob job = null;
+                for (Lane lane : startOrder(runningPerLane.get(Lane.SHORT), runningPerLane.get(Lane.LONG))) {
+                    // Jobs of a saturated model are passed over, letting other models overtake
+                    job = pending.get(lane).poll(
+                            j -> runningPerModel.getOrDefault(j.model, 0) < modelConcurrency(j.model));
+                    if (job != null) {
+                        break;
+                    }
+                }
+                if (job == null) {
+                    break;
+                }
+                int active = runningPerModel.getOrDefault(job.model, 0);
+                job.startedAt = Instant.now();
+                metrics.queueWait(job.model, System.nanoTime() - job.submittedAtNanos);
+                running.put(job.jobId, job);
+                runningPerModel.put(job.model, active + 1);
+                runningPerLane.merge(job.lane, 1, Integer::sum);
+                toStart.add(job);
+            }
+        }
+        for (QueuedJob job : toStart) {
+            executor.execute(() -> run(job));
+        }
+    }
+
+    private void run(QueuedJob job) {
+        Measurement measurement = null;
+        try {
+            measurement = job.work.run();
+        } catch (RuntimeException e) {
+            System.err.println("[Scheduler]: Job " + job.jobId + " failed: " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                running.remove(job.jobId);
+                runningPerModel.merge(job.model, -1, Integer::sum);
+                runningPerLane.merge(job.lane, -1, Integer::sum);
+                // Only real Whisper runs, against the audio they actually decoded, not the submit-time guess
+                if (measurement != null && measurement.audioSeconds > 0) {
+                    double realTimeFactor = measurement.wallSeconds
+                            / Math.max(MIN_MEASURED_AUDIO_SECONDS, measurement.audioSeconds);
+                    realTimeFactorPerModel.merge(job.model, realTimeFactor,
+                            (old, latest) -> old * 0.8 + latest * 0.2);
+                    realTimeFactorSamples.merge(job.model, 1, Integer::sum);
+                }
+            }
+            dispatch();
+        }
+    }
+
+    private synchronized int countQueued() {
+        return pending.get(Lane.SHORT).size() + pending.get(Lane.LONG).size();
+    }
+
+    private synchronized int countRunning() {
+        return running.size();
+    }
+
+    private double expectedSeconds(QueuedJob job) {
+        // A model's first runs pay for loading it; trust its own factor only after a few
+        boolean measured = realTimeFactorSamples.getOrDefault(job.model, 0) >= Math.max(1, minRealTimeFactorSamples);
+        double realTimeFactor = measured
+                ? realTimeFactorPerModel.get(job.model)
+                : ModelSettings.lookupDouble(defaultRealTimeFactorSpec, job.model, -1);
+        return realTimeFactor > 0
+                ? realTimeFactor * Math.max(MIN_MEASURED_AUDIO_SECONDS, job.audioSeconds)
+                : defaultJobSeconds;
+    }
+
+    /**
+     * Lanes that may start a job given how many slots each already takes, in the order to
+     * serve them: the long lane first while short jobs fill their reserved slots and long
+     * ones are below the rest, short before long otherwise. The long lane never gets the
+     * reserved slots, but always at least one slot, so with too few slots to reserve any
+     * it simply comes second.
+     */
+    private List<Lane> startOrder(int shortBusy, int longBusy) {
+        if (shortBusy + longBusy >= maxConcurrentJobs) {
+            return List.of();
+        }
+        int longSlots = Math.max(1, maxConcurrentJobs - shortLaneSlots);
+        int reserved = maxConcurrentJobs - longSlots;
+        if (longBusy >= longSlots) {
+            return List.of(Lane.SHORT);
+        }
+        return reserved > 0 && shortBusy >= reserved
+                ? List.of(Lane.LONG, Lane.SHORT)
+                : List.of(Lane.SHORT, Lane.LONG);
+    }
+
+    int modelConcurrency(String model) {
+        return ModelSettings.lookup(modelConcurrencySpec, model, defaultModelConcurrency);
+    }
+}
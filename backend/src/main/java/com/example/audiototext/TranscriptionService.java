@@ -1,25 +1,50 @@
 package com.example.audiototext;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
 
 @Service
 public class TranscriptionService {
@@ -39,13 +64,89 @@ public class TranscriptionService {
     @Autowired
     private TranscriptionJobRepository repository;
 
-    private final Map<String, SseEmitter> emitters = new ConcurrentHashMap<>();
+    @Autowired
+    private JobStateTable jobStates;
+
+    @Autowired
+    private WhisperWorkerPool workerPool;
+
+    @Autowired
+    private TranscriptionScheduler scheduler;
+
+    @Autowired
+    private ChunkedTranscriber chunkedTranscriber;
+
+    @Autowired
+    private TranscriptCache transcriptCache;
+
+    @Autowired
+    private JobEventHub eventHub;
+
+    @Autowired
+    private PipelineMetrics metrics;
+
+    @Autowired
+    @Qualifier("cpuExecutor")
+    private ExecutorService cpuExecutor;
+
+    @Autowired
+    private AudioPreflight audioPreflight;
+
+    @Autowired
+    private TranscriptSearchIndex searchIndex;
+
+    @Autowired
+    private JobQueue jobQueue;
+
+    @Autowired
+    private UserQuotas userQuotas;
+
+    @Autowired
+    private LinkCache linkCache;
+
+    @Value("${app.quota.default-audio-minutes:10}")
+    private double defaultAudioMinutes;
+
+    @Value("${app.scheduler.auto-deadline-seconds:900}")
+    private long autoDeadlineSeconds;
+
+    @Value("${app.batch.max-jobs:500}")
+    private int maxBatchJobs;
+
+    @Value("${app.batch.max-archive-mb:2048}")
+    private long maxArchiveMb;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // How soon a browser re-polls a job that is not running on this node
+    private static final long STATUS_RECONNECT_MILLIS = 5000;
+
+    // How far back a changes cursor restarts: rows are stamped before their transaction commits
+    private static final Duration STATUS_CHANGES_OVERLAP = Duration.ofSeconds(5);
+
+    @Value("${app.progress.min-interval-ms:500}")
+    private long progressIntervalMillis;
+
+    // Progress of the jobs currently transcribing
+    private final Map<String, JobProgress> progress = new ConcurrentHashMap<>();
 
     // Inner class to hold job information (for response mapping)
     public static class JobInfo {
         public JobStatus status;
         public String outputFilePath;
         public String message;
+        public Integer queuePosition;
+        public Instant expectedStartAt;
+        public Instant expectedFinishAt;
+        public Double percentComplete;
+        public Double realTimeFactor;
+        public Instant estimatedCompletionAt;
 
         public JobInfo(JobStatus status, String outputFilePath, String message) {
             this.status = status;
@@ -63,87 +164,648 @@ public class TranscriptionService {
                 .model(model)
                 .task(task)
                 .user(user)
+                .originNode(jobQueue.getNodeId())
                 .build();
         repository.save(job);
+        jobStates.track(job);
+        eventHub.open(jobId, user != null ? user.getId() : null);
         return jobId;
     }
 
     public void updateJobStatus(String jobId, JobStatus status, String message, String outputFilePath) {
-        repository.findById(jobId).ifPresent(job -> {
-            job.setStatus(status);
-            if (message != null)
-                job.setMessage(message);
-            if (outputFilePath != null)
-                job.setOutputFilePath(outputFilePath);
-
-            if (status == JobStatus.COMPLETED || status == JobStatus.FAILED) {
-                job.setCompletedAt(LocalDateTime.now());
+        JobStateTable.JobState state = jobStates.update(jobId, status, message, outputFilePath);
+        if (state != null) {
+            if (status == JobStatus.COMPLETED && state.outputFilePath != null) {
+                searchIndex.indexCompletedJob(jobId, state.outputFilePath);
             }
 
-            repository.save(job);
+            Map<String, Object> data = new HashMap<>();
+            data.put("jobId", jobId);
+            data.put("status", status);
+            data.put("message", state.message);
+            eventHub.publish(jobId, "status-update", data);
+        }
 
-            // Notify via SSE if an emitter exists
-            SseEmitter emitter = emitters.get(jobId);
-            if (emitter != null) {
-                try {
-                    Map<String, Object> data = new HashMap<>();
-                    data.put("jobId", jobId);
-                    data.put("status", status);
-                    data.put("message", job.getMessage());
-
-                    emitter.send(SseEmitter.event()
-                            .name("status-update")
-                            .data(data));
-
-                    if (status == JobStatus.COMPLETED || status == JobStatus.FAILED) {
-                        emitter.complete();
-                        emitters.remove(jobId);
-                    }
-                } catch (IOException e) {
-                    emitters.remove(jobId);
-                }
-            }
-        });
+        if (status == JobStatus.COMPLETED || status == JobStatus.FAILED) {
+            progress.remove(jobId);
+            eventHub.finish(jobId);
+        }
+    }
+
+    /**
+     * Pushes a freshly decoded segment to the job's SSE subscribers as a {@code segment} event.
+     */
+    public void publishSegment(String jobId, TranscriptSegment segment) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("jobId", jobId);
+        data.put("start", segment.getStart());
+        data.put("end", segment.getEnd());
+        data.put("text", segment.getText().strip());
+        eventHub.publish(jobId, "segment", data);
     }
 
-    public SseEmitter registerEmitter(String jobId) {
-        SseEmitter emitter = new SseEmitter(null); // No timeout for simplicity in dev
-        emitters.put(jobId, emitter);
+    private void publishProgress(String jobId, JobProgress jobProgress) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("jobId", jobId);
+        data.put("percent", Math.round(jobProgress.getPercent() * 10) / 10.0);
+        data.put("realTimeFactor", Math.round(jobProgress.getRealTimeFactor() * 1000) / 1000.0);
+        data.put("estimatedCompletionAt", jobProgress.getEstimatedCompletionAt());
+        eventHub.publish(jobId, "progress", data);
+    }
 
-        emitter.onCompletion(() -> emitters.remove(jobId));
-        emitter.onTimeout(() -> emitters.remove(jobId));
-        emitter.onError((e) -> emitters.remove(jobId));
+    /**
+     * Event stream for one job, resuming after {@code lastEventId} if given. Jobs this
+     * node is not running get their current status as a single event. Returns null for
+     * unknown jobs.
+     */
+    public SseEmitter registerEmitter(String jobId, String lastEventId) {
+        SseEmitter emitter = eventHub.subscribeJob(jobId, lastEventId);
+        if (emitter != null) {
+            return emitter;
+        }
+        JobStateTable.JobState state = jobStates.get(jobId);
+        if (state == null) {
+            return null;
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("jobId", jobId);
+        data.put("status", state.status);
+        data.put("message", state.message);
+        return eventHub.snapshot("status-update", data, STATUS_RECONNECT_MILLIS);
+    }
 
-        return emitter;
+    /**
+     * Event stream multiplexing all of {@code user}'s jobs.
+     */
+    public SseEmitter registerUserEmitter(User user, String lastEventId) {
+        return eventHub.subscribeUser(user.getId(), lastEventId);
     }
 
     public JobInfo getJobInfo(String jobId) {
-        return repository.findById(jobId)
-                .map(job -> new JobInfo(job.getStatus(), job.getOutputFilePath(), job.getMessage()))
-                .orElse(null);
+        JobStateTable.JobState state = jobStates.get(jobId);
+        JobInfo info = state != null ? new JobInfo(state.status, state.outputFilePath, state.message) : null;
+        if (info != null && (info.status == JobStatus.PENDING || info.status == JobStatus.PROCESSING)) {
+            TranscriptionScheduler.QueueStatus queueStatus = scheduler.getQueueStatus(jobId);
+            if (queueStatus == null && info.status == JobStatus.PENDING) {
+                queueStatus = jobQueue.predict(jobId); // Not claimed by any instance yet
+            }
+            if (queueStatus != null) {
+                info.queuePosition = queueStatus.position;
+                info.expectedStartAt = queueStatus.expectedStartAt;
+                info.expectedFinishAt = queueStatus.expectedFinishAt;
+            }
+            JobProgress jobProgress = progress.get(jobId);
+            if (jobProgress != null && jobProgress.getEstimatedCompletionAt() != null) {
+                info.percentComplete = jobProgress.getPercent();
+                info.realTimeFactor = jobProgress.getRealTimeFactor();
+                info.estimatedCompletionAt = jobProgress.getEstimatedCompletionAt();
+            }
+        }
+        return info;
     }
 
     public List<TranscriptionJob> getAllJobs(User user) {
         return repository.findAllByUserOrderByCreatedAtDesc(user);
     }
 
-    public String saveAudioFile(MultipartFile file) throws IOException {
+    /**
+     * One page of {@code user}'s history, newest first. Fetches one row more than
+     * {@code limit} to learn whether a next page exists without a count query.
+     */
+    public HistoryPage getHistoryPage(User user, int limit, HistoryCursor cursor, JobStatus status, String model,
+            LocalDateTime from, LocalDateTime to) {
+        List<JobSummary> rows = repository.findHistoryPage(user.getId(), status, model, from, to,
+                cursor != null ? cursor.createdAt : null, cursor != null ? cursor.id : null,
+                PageRequest.of(0, limit + 1));
+        if (rows.size() <= limit) {
+            return new HistoryPage(rows, null);
+        }
+        List<JobSummary> items = rows.subList(0, limit);
+        JobSummary last = items.get(limit - 1);
+        return new HistoryPage(items, new HistoryCursor(last.createdAt, last.id).encode());
+    }
+
+    public static class HistoryPage {
+        public final List<JobSummary> items;
+        public final String nextCursor;
+
+        public HistoryPage(List<JobSummary> items, String nextCursor) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    public StoredAudio saveAudioFile(MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return saveAudioStream(in, file.getOriginalFilename(), Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Copies {@code in} (left open) into the upload directory, failing with
+     * IllegalArgumentException once it exceeds {@code maxBytes}.
+     */
+    private StoredAudio saveAudioStream(InputStream in, String originalFilename, long maxBytes) throws IOException {
         Path uploadPath = Paths.get(uploadDir);
         if (!Files.exists(uploadPath)) {
             Files.createDirectories(uploadPath);
         }
 
         // Generate a unique filename to avoid collisions
-        String originalFilename = file.getOriginalFilename();
         String uniqueFilename = UUID.randomUUID().toString() + "_" + originalFilename;
         Path filePath = uploadPath.resolve(uniqueFilename);
 
-        file.transferTo(filePath.toFile());
-        return filePath.toAbsolutePath().toString();
+        // Hash while copying so duplicate uploads can be recognized without a second pass
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        long size = 0;
+        long started = System.nanoTime();
+        byte[] buffer = new byte[64 * 1024];
+        try (OutputStream out = Files.newOutputStream(filePath, StandardOpenOption.CREATE_NEW)) {
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                size += read;
+                if (size > maxBytes) {
+                    throw new IllegalArgumentException("Archive expands to more than " + maxArchiveMb + " MB");
+                }
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(filePath);
+            throw e;
+        }
+        metrics.uploadCompleted(size, System.nanoTime() - started);
+        return new StoredAudio(filePath.toAbsolutePath().toString(), HexFormat.of().formatHex(digest.digest()), size);
+    }
+
+    /**
+     * One file, archive entry or link of a batch, and what became of it.
+     */
+    public static class BatchItem {
+        public final String name;
+        final String inputFilePath;
+        final String contentHash;
+        public String jobId;
+        public JobStatus status;          // Null if rejected
+        public String error;
+        public Long retryAfterSeconds;    // Null unless retrying later can succeed
+
+        BatchItem(String name, String inputFilePath, String contentHash) {
+            this.name = name;
+            this.inputFilePath = inputFilePath;
+            this.contentHash = contentHash;
+        }
+    }
+
+    public static class BatchResult {
+        public final String batchId;
+        public final List<BatchItem> items;
+
+        public BatchResult(String batchId, List<BatchItem> items) {
+            this.batchId = batchId;
+            this.items = items;
+        }
+    }
+
+    /**
+     * Creates a job for each of {@code files}, each audio file in the ZIP {@code archive}
+     * and each of {@code urls}, all in one batched insert under a new batch id, then submits
+     * them in that order as {@link #submitTranscription} does. Jobs the queue or the user's
+     * quota turns away are deleted again and come back with an error and Retry-After instead
+     * of a status; jobs that fail to submit for any other reason come back with just the error.
+     *
+     * @throws IllegalArgumentException if there is nothing to transcribe or more than
+     *         {@code app.batch.max-jobs} items, an archive is not a ZIP or expands past
+     *         {@code app.batch.max-archive-mb}, or a link is not http(s); nothing is kept then
+     */
+    public BatchResult submitBatch(User user, List<MultipartFile> files, MultipartFile archive, List<String> urls,
+            String language, String model, String task, Duration deadline) throws IOException {
+        if (files.size() + urls.size() > maxBatchJobs) {
+            throw new IllegalArgumentException("At most " + maxBatchJobs + " jobs per batch");
+        }
+        String batchId = UUID.randomUUID().toString();
+        List<BatchItem> items = new ArrayList<>();
+        try {
+            for (String url : urls) {
+                if (!url.startsWith("http://") && !url.startsWith("https://")) {
+                    throw new IllegalArgumentException("Not an http(s) link: " + url);
+                }
+                items.add(new BatchItem(url, url, null));
+            }
+            for (MultipartFile file : files) {
+                if (file.isEmpty()) {
+                    throw new IllegalArgumentException("Empty file: " + file.getOriginalFilename());
+                }
+                StoredAudio stored = saveAudioFile(file);
+                items.add(new BatchItem(file.getOriginalFilename(), stored.path, stored.sha256));
+            }
+            if (archive != null && !archive.isEmpty()) {
+                extractArchive(archive, items);
+            }
+            if (items.isEmpty()) {
+                throw new IllegalArgumentException("Nothing to transcribe: send files, an archive or urls");
+            }
+            insertBatch(batchId, items, language, model, task, user);
+        } catch (IOException | RuntimeException e) {
+            items.forEach(item -> deleteUpload(batchId, item.inputFilePath));
+            throw e;
+        }
+        System.out.println("[Batch-" + batchId + "]: Created " + items.size() + " jobs for user " + user.getUsername());
+
+        List<String> rejected = new ArrayList<>();
+        for (BatchItem item : items) {
+            try {
+                item.status = submitTranscription(item.jobId, user, item.inputFilePath, item.contentHash, language,
+                        model, task, deadline);
+            } catch (QueueFullException e) {
+                item.error = "Server is busy";
+                item.retryAfterSeconds = e.getRetryAfterSeconds();
+                metrics.batchItemRejected("busy");
+            } catch (QuotaExceededException e) {
+                item.error = e.getMessage();
+                item.retryAfterSeconds = e.getRetryAfterSeconds();
+                metrics.batchItemRejected("quota");
+            } catch (RuntimeException e) {
+                // One bad item must not strand the rest of the batch half-submitted. Retrying will
+                // not help, so there is no Retry-After.
+                item.error = "Could not submit: " + e.getMessage();
+                metrics.batchItemRejected("error");
+            }
+            if (item.status == null) {
+                rejected.add(item.jobId);
+                jobStates.remove(item.jobId);
+                eventHub.discard(item.jobId);
+                deleteUpload(item.jobId, item.inputFilePath);
+            }
+        }
+        if (!rejected.isEmpty()) {
+            repository.deleteAllByIdInBatch(rejected);
+            System.out.println("[Batch-" + batchId + "]: " + rejected.size() + " of " + items.size()
+                    + " jobs rejected");
+        }
+        return new BatchResult(batchId, items);
+    }
+
+    /**
+     * Saves each audio file in the archive as a batch item, skipping directories, hidden
+     * files and macOS resource forks. Entry paths are dropped; only the file name is kept.
+     */
+    private void extractArchive(MultipartFile archive, List<BatchItem> items) throws IOException {
+        long budget = maxArchiveMb * 1024 * 1024;
+        int entries = 0;
+        try (ZipInputStream zip = new ZipInputStream(archive.getInputStream())) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries++;
+                String path = entry.getName().replace('\\', '/');
+                String name = path.substring(path.lastIndexOf('/') + 1);
+                if (entry.isDirectory() || name.isEmpty() || name.startsWith(".") || path.startsWith("__MACOSX/")) {
+                    continue;
+                }
+                if (items.size() >= maxBatchJobs) {
+                    throw new IllegalArgumentException("At most " + maxBatchJobs + " jobs per batch");
+                }
+                StoredAudio stored = saveAudioStream(zip, name, budget);
+                budget -= stored.sizeBytes;
+                items.add(new BatchItem(name, stored.path, stored.sha256));
+            }
+        } catch (ZipException e) {
+            throw new IllegalArgumentException("Not a valid ZIP archive: " + e.getMessage());
+        }
+        if (entries == 0) {
+            throw new IllegalArgumentException("Not a ZIP archive, or an empty one: " + archive.getOriginalFilename());
+        }
+    }
+
+    /**
+     * Inserts a PENDING job for every item in one JDBC batch and transaction, and starts
+     * tracking them as {@link #createJob} does.
+     */
+    private void insertBatch(String batchId, List<BatchItem> items, String language, String model, String task,
+            User user) {
+        LocalDateTime now = LocalDateTime.now();
+        List<TranscriptionJob> jobs = new ArrayList<>(items.size());
+        for (BatchItem item : items) {
+            item.jobId = UUID.randomUUID().toString();
+            jobs.add(TranscriptionJob.builder()
+                    .id(item.jobId)
+                    .status(JobStatus.PENDING)
+                    .language(language)
+                    .model(model)
+                    .task(task)
+                    .user(user)
+                    .batchId(batchId)
+                    .originNode(jobQueue.getNodeId())
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build());
+        }
+        Timestamp created = Timestamp.valueOf(now);
+        transactionTemplate.executeWithoutResult(tx -> jdbcTemplate.batchUpdate(
+                "insert into transcription_jobs (id, user_id, status, language, model, task, batch_id, origin_node, "
+                        + "created_at, updated_at) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                jobs, jobs.size(), (statement, job) -> {
+                    statement.setString(1, job.getId());
+                    statement.setLong(2, user.getId());
+                    statement.setString(3, job.getStatus().name());
+                    statement.setString(4, language);
+                    statement.setString(5, model);
+                    statement.setString(6, task);
+                    statement.setString(7, batchId);
+                    statement.setString(8, jobQueue.getNodeId());
+                    statement.setTimestamp(9, created);
+                    statement.setTimestamp(10, created);
+                }));
+        for (TranscriptionJob job : jobs) {
+            jobStates.track(job);
+            eventHub.open(job.getId(), user.getId());
+        }
+    }
+
+    /**
+     * A compact listing of job states for polling many jobs at once.
+     */
+    public static class StatusPage {
+        public final List<Map<String, Object>> jobs;
+        public final List<String> missing;
+        public final String cursor;
+        public final boolean truncated;
+
+        public StatusPage(List<Map<String, Object>> jobs, List<String> missing, String cursor, boolean truncated) {
+            this.jobs = jobs;
+            this.missing = missing;
+            this.cursor = cursor;
+            this.truncated = truncated;
+        }
+    }
+
+    /**
+     * The state of those of {@code ids} that belong to {@code user}; the rest are listed as missing.
+     */
+    public StatusPage getStatuses(User user, Collection<String> ids) {
+        List<Map<String, Object>> jobs = new ArrayList<>();
+        Set<String> missing = new LinkedHashSet<>(ids);
+        for (Object[] row : repository.findStatusRows(user.getId(), ids)) {
+            jobs.add(statusRow(row));
+            missing.remove((String) row[0]);
+        }
+        return new StatusPage(jobs, new ArrayList<>(missing), null, false);
+    }
+
+    /**
+     * Up to {@code limit} of {@code user}'s jobs (in {@code batchId} if given) that changed after
+     * {@code after} (from the start if null), in the order they changed. The returned cursor
+     * continues from there: after the last row if the page is full, otherwise from a little
+     * before now, so a row stamped just before this query but committed after it is not
+     * missed. Jobs may therefore show up again in the next page.
+     */
+    public StatusPage getStatusChanges(User user, String batchId, StatusCursor after, int limit) {
+        LocalDateTime queriedAt = LocalDateTime.now();
+        List<Object[]> rows = repository.findStatusRowsChanged(user.getId(), batchId,
+                after != null ? after.updatedAt : null, after != null ? after.id : null,
+                PageRequest.of(0, limit + 1));
+        boolean truncated = rows.size() > limit;
+        List<Map<String, Object>> jobs = new ArrayList<>();
+        for (Object[] row : truncated ? rows.subList(0, limit) : rows) {
+            jobs.add(statusRow(row));
+        }
+        StatusCursor next;
+        if (truncated) {
+            Object[] last = rows.get(limit - 1);
+            next = new StatusCursor((LocalDateTime) last[5], (String) last[0]);
+        } else if (after != null && after.updatedAt.isAfter(queriedAt.minus(STATUS_CHANGES_OVERLAP))) {
+            next = after;
+        } else {
+            next = new StatusCursor(queriedAt.minus(STATUS_CHANGES_OVERLAP), "");
+        }
+        return new StatusPage(jobs, List.of(), next.encode(), truncated);
+    }
+
+    // {id, status, message, model, batch id, updated at, completed at}, with what this instance holds in memory on top
+    private Map<String, Object> statusRow(Object[] row) {
+        String jobId = (String) row[0];
+        JobStateTable.JobState live = jobStates.peek(jobId);
+        Map<String, Object> job = new LinkedHashMap<>();
+        job.put("jobId", jobId);
+        job.put("status", live != null ? live.status : row[1]);
+        putIfPresent(job, "message", live != null ? live.message : row[2]);
+        putIfPresent(job, "model", row[3]);
+        putIfPresent(job, "batchId", row[4]);
+        putIfPresent(job, "updatedAt", row[5]);
+        putIfPresent(job, "completedAt", live != null ? live.completedAt : row[6]);
+        return job;
     }
 
-    @Async
-    public void processTranscription(String jobId, String inputFilePath, String language, String model, String task) {
+    private static void putIfPresent(Map<String, Object> map, String key, Object value) {
+        if (value != null) {
+            map.put(key, value);
+        }
+    }
+
+    public boolean isAcceptingJobs() {
+        return jobQueue.isEnabled() ? jobQueue.isAcceptingJobs() : scheduler.isAcceptingJobs();
+    }
+
+    public long retryAfterSeconds() {
+        return scheduler.retryAfterSeconds();
+    }
+
+    /**
+     * Hands the job to the scheduler, or with {@code app.queue.enabled} to the shared queue,
+     * from which whichever instance has a free slot for its model claims it. Either way jobs
+     * start in weighted fair order across users, costed by their audio length, which is read
+     * from the file's headers here and stored on the job. Uploads whose content was already
+     * transcribed with the same settings complete immediately from the transcript cache
+     * instead, without counting against the user's quota.
+     * <p>
+     * With {@code model=auto} the scheduler picks the most accurate model predicted to finish
+     * within {@code deadline}, and the choice replaces "auto" on the job.
+     *
+     * @param contentHash SHA-256 of the audio, or null if unknown (e.g. links)
+     * @param deadline how soon an auto job should be done, or null for {@code app.scheduler.auto-deadline-seconds}
+     * @return the job status right after submission: COMPLETED on a cache hit, otherwise PENDING
+     * @throws QueueFullException if the queue is full; the caller should discard the job
+     * @throws QuotaExceededException if the user is over their quota; the caller should discard the job
+     */
+    public JobStatus submitTranscription(String jobId, User user, String inputFilePath, String contentHash,
+            String language, String model, String task, Duration deadline) {
+        boolean auto = TranscriptionScheduler.AUTO_MODEL.equals(model);
+        // An auto job takes any model's earlier transcript of the recording, the most accurate first
+        for (String candidate : auto ? scheduler.getAutoModels() : List.of(model)) {
+            if (completeFromCache(jobId, transcriptCache.keyFor(contentHash, candidate, language, task))) {
+                if (auto) {
+                    repository.recordSubmission(jobId, candidate, null, LocalDateTime.now());
+                }
+                metrics.jobFinished(candidate, language, "cache", true, 0, 0);
+                deleteUpload(jobId, inputFilePath);
+                return JobStatus.COMPLETED;
+            }
+        }
+        double audioSeconds = estimateAudioSeconds(inputFilePath);
+        userQuotas.acquire(user.getId(), audioSeconds);
+        String chosen = auto ? chooseModel(jobId, audioSeconds, deadline) : model;
+        String cacheKey = transcriptCache.keyFor(contentHash, chosen, language, task);
+        try {
+            if (jobQueue.isEnabled()) {
+                jobQueue.enqueue(jobId, inputFilePath, cacheKey, chosen, audioSeconds);
+                jobStates.remove(jobId); // Tracked again by whichever instance runs it
+                claimQueuedJobs();
+            } else {
+                repository.recordSubmission(jobId, chosen, audioSeconds, LocalDateTime.now());
+                scheduler.submit(jobId, chosen, user.getId(), userQuotas.weight(user.getId()), audioSeconds,
+                        () -> processTranscription(jobId, inputFilePath, cacheKey, language, chosen, task));
+            }
+        } catch (RuntimeException e) { // Queue full, or the database failed
+            userQuotas.refund(user.getId(), audioSeconds);
+            throw e;
+        }
+        return JobStatus.PENDING;
+    }
+
+    private String chooseModel(String jobId, double audioSeconds, Duration deadline) {
+        Duration budget = deadline != null ? deadline : Duration.ofSeconds(autoDeadlineSeconds);
+        String model = scheduler.chooseModel(audioSeconds, Instant.now().plus(budget), jobQueue.queuedJobs());
+        System.out.println("[Job-" + jobId + "]: model=auto chose " + model + " for " + Math.round(audioSeconds)
+                + " s of audio due within " + budget.toSeconds() + " s");
+        return model;
+    }
+
+    /**
+     * Seconds until {@code user} may submit another job under their quota, 0 if they may now.
+     */
+    public long quotaRetryAfterSeconds(User user) {
+        return userQuotas.retryAfterSeconds(user.getId());
+    }
+
+    /**
+     * Audio length used for quotas, fair scheduling and lanes: read from the container
+     * headers where possible, otherwise guessed from the file size at 128 kbit/s, or a
+     * default for links that have not been downloaded before.
+     */
+    private double estimateAudioSeconds(String inputFilePath) {
+        boolean link = inputFilePath.startsWith("http://") || inputFilePath.startsWith("https://");
+        Path path = link ? linkCache.peek(inputFilePath) : Paths.get(inputFilePath);
+        if (path == null) {
+            return defaultAudioMinutes * 60;
+        }
+        try {
+            double duration = AudioHeaders.probeDurationSeconds(path);
+            return duration > 0 ? duration : Files.size(path) / 16000.0;
+        } catch (IOException e) {
+            return defaultAudioMinutes * 60;
+        }
+    }
+
+    /**
+     * Moves jobs from the shared queue into the local scheduler while it has free slots.
+     */
+    @Scheduled(fixedDelayString = "${app.queue.poll-interval-ms:1000}")
+    public void claimQueuedJobs() {
+        for (JobQueue.ClaimedJob job = jobQueue.claimNext(); job != null; job = jobQueue.claimNext()) {
+            System.out.println("[Job-" + job.jobId + "]: Claimed by node " + jobQueue.getNodeId());
+            eventHub.open(job.jobId, job.userId);
+            JobQueue.ClaimedJob claimed = job;
+            try {
+                scheduler.submit(job.jobId, job.model, job.userId, userQuotas.weight(job.userId), job.audioSeconds,
+                        () -> {
+                            try {
+                                return processTranscription(claimed.jobId, claimed.inputFilePath, claimed.cacheKey,
+                                        claimed.language, claimed.model, claimed.task);
+                            } finally {
+                                jobQueue.release(claimed.jobId);
+                            }
+                        });
+            } catch (QueueFullException e) {
+                jobQueue.release(job.jobId); // Back to the queue for the next poll
+                return;
+            }
+        }
+    }
+
+    private boolean completeFromCache(String jobId, String cacheKey) {
+        if (cacheKey == null) {
+            return false;
+        }
+        try {
+            Path outputPath = Files.createDirectories(Paths.get(outputDir));
+            Path textPath = transcriptCache.restore(cacheKey, outputPath, jobId);
+            if (textPath == null) {
+                return false;
+            }
+            System.out.println("[Job-" + jobId + "]: Served from transcript cache");
+            updateJobStatus(jobId, JobStatus.COMPLETED, "Success! Identical recording found, reused its transcript.",
+                    textPath.toAbsolutePath().toString());
+            return true;
+        } catch (IOException e) {
+            System.err.println("[Job-" + jobId + "]: Cache lookup failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Removes a job that was never admitted, together with its uploaded file.
+     */
+    public void discardJob(String jobId, String inputFilePath) {
+        jobStates.remove(jobId);
+        eventHub.discard(jobId);
+        repository.deleteById(jobId);
+        deleteUpload(jobId, inputFilePath);
+    }
+
+    private void deleteUpload(String jobId, String inputFilePath) {
+        if (inputFilePath != null && !inputFilePath.startsWith("http://") && !inputFilePath.startsWith("https://")) {
+            try {
+                Files.deleteIfExists(Paths.get(inputFilePath));
+            } catch (IOException e) {
+                System.err.println("[Job-" + jobId + "]: Could not delete upload: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Runs a job. Links to media files are first fetched into the {@link LinkCache} (or found
+     * there) and transcribed like uploads, which also lets them complete from the transcript
+     * cache; other links are handed to the worker as they are. Returns what the Whisper run
+     * measured, or null if it failed or did not run.
+     */
+    public TranscriptionScheduler.Measurement processTranscription(String jobId, String inputFilePath,
+            String cacheKey, String language, String model, String task) {
+        if (!inputFilePath.startsWith("http://") && !inputFilePath.startsWith("https://")) {
+            return transcribe(jobId, inputFilePath, cacheKey, language, model, task);
+        }
+        LinkCache.Media media;
+        try {
+            updateJobStatus(jobId, JobStatus.PROCESSING, "Fetching linked media...", null);
+            media = linkCache.acquire(inputFilePath);
+        } catch (IOException e) {
+            System.err.println("[Job-" + jobId + "]: Could not fetch " + inputFilePath + ": " + e.getMessage());
+            updateJobStatus(jobId, JobStatus.FAILED, "Could not download the link: " + e.getMessage(), null);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            updateJobStatus(jobId, JobStatus.FAILED, "Transcription was interrupted", null);
+            return null;
+        }
+        if (media == null) {
+            return transcribe(jobId, inputFilePath, cacheKey, language, model, task);
+        }
+        try {
+            String mediaCacheKey = transcriptCache.keyFor(media.sha256, model, language, task);
+            if (completeFromCache(jobId, mediaCacheKey)) {
+                metrics.jobFinished(model, language, "cache", true, 0, 0);
+                return null;
+            }
+            return transcribe(jobId, media.path.toString(), mediaCacheKey, language, model, task);
+        } finally {
+            linkCache.release(media);
+        }
+    }
+
+    private TranscriptionScheduler.Measurement transcribe(String jobId, String inputFilePath, String cacheKey,
+            String language, String model, String task) {
         updateJobStatus(jobId, JobStatus.PROCESSING, "Initializing AI transcription engine...", null);
 
         Path outputPath = Paths.get(outputDir);
@@ -152,10 +814,148 @@ public class TranscriptionService {
                 Files.createDirectories(outputPath);
             } catch (IOException e) {
                 updateJobStatus(jobId, JobStatus.FAILED, "Could not create output directory", null);
-                return;
+                return null;
+            }
+        }
+
+        JobProgress jobProgress = new JobProgress(progressIntervalMillis, p -> publishProgress(jobId, p));
+        progress.put(jobId, jobProgress);
+
+        // Single-shot processes write their own outputs, so only pooled runs can have their timestamps mapped back
+        AudioPreflight.Prepared prepared = workerPool.isEnabled() ? preflight(jobId, inputFilePath, outputPath) : null;
+        String audioPath = prepared != null ? prepared.path.toString() : inputFilePath;
+        AudioPreflight.TimeMap timeMap = prepared != null ? prepared.timeMap : AudioPreflight.TimeMap.IDENTITY;
+        try {
+            double chunkableDuration = chunkedTranscriber.chunkableDuration(audioPath, model);
+            boolean succeeded;
+            String mode;
+            if (chunkableDuration > 0) {
+                mode = "chunked";
+                succeeded = runChunked(jobId, audioPath, outputPath, chunkableDuration, language, model, task,
+                        jobProgress, timeMap);
+            } else if (workerPool.isEnabled()) {
+                mode = "pool";
+                succeeded = runOnWorkerPool(jobId, audioPath, outputPath, language, model, task, jobProgress,
+                        prepared);
+            } else {
+                mode = "process";
+                succeeded = runInNewProcess(jobId, audioPath, outputPath, language, model, task, jobProgress);
+            }
+            metrics.jobFinished(model, language, mode, succeeded, jobProgress.elapsedNanos(),
+                    jobProgress.getRealTimeFactor());
+            if (!succeeded) {
+                return null;
+            }
+            double wallSeconds = jobProgress.elapsedNanos() / 1e9;
+            transcriptCache.store(cacheKey, outputPath, jobId);
+            double audioSeconds = jobProgress.getTotalSeconds();
+            return audioSeconds > 0 ? new TranscriptionScheduler.Measurement(audioSeconds, wallSeconds) : null;
+        } finally {
+            if (prepared != null) {
+                try {
+                    Files.deleteIfExists(prepared.path);
+                } catch (IOException e) {
+                    System.err.println("[Preflight-" + jobId + "]: Could not delete " + prepared.path);
+                }
             }
         }
+    }
+
+    /**
+     * Converts a WAV upload to 16 kHz mono without long silences. Returns null if the
+     * upload is used as it is (not PCM WAV, nothing to gain, or preflight failed).
+     */
+    private AudioPreflight.Prepared preflight(String jobId, String inputFilePath, Path outputPath) {
+        if (!audioPreflight.isEnabled()) {
+            return null;
+        }
+        Path target = outputPath.resolve(jobId + ".preflight.wav");
+        long started = System.nanoTime();
+        try {
+            AudioPreflight.Prepared prepared = onCpuPool(() -> audioPreflight.prepare(Paths.get(inputFilePath), target));
+            if (prepared == null) {
+                return null;
+            }
+            metrics.preflight(prepared.originalSeconds, prepared.preparedSeconds, System.nanoTime() - started);
+            System.out.printf("[Preflight-%s]: %.1fs -> %.1fs of 16 kHz mono audio (%d silences cut)%n", jobId,
+                    prepared.originalSeconds, prepared.preparedSeconds, prepared.timeMap.cuts());
+            if (prepared.removedSeconds() >= 1) {
+                updateJobStatus(jobId, JobStatus.PROCESSING, String.format(
+                        "Skipping %d seconds of silence...", Math.round(prepared.removedSeconds())), null);
+            }
+            return prepared;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[Preflight-" + jobId + "]: Using the original audio: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param prepared the preflighted audio, or null to transcribe the upload as it is
+     */
+    private boolean runOnWorkerPool(String jobId, String inputFilePath, Path outputPath, String language, String model,
+            String task, JobProgress jobProgress, AudioPreflight.Prepared prepared) {
+        try {
+            updateJobStatus(jobId, JobStatus.PROCESSING, "Waiting for a warm AI model...", null);
+            // With preflight, timestamps refer to the trimmed audio and are mapped back before storing
+            double duration = prepared != null ? prepared.preparedSeconds : 0;
+            AudioPreflight.TimeMap timeMap = prepared != null ? prepared.timeMap : AudioPreflight.TimeMap.IDENTITY;
+            WhisperOutputHandler handler = new WhisperOutputHandler(jobId, model, jobProgress,
+                    jobProgress.part(duration), false, timeMap);
+            workerPool.transcribeSegments(jobId, inputFilePath, outputPath.toAbsolutePath().toString(), model,
+                    language, task, duration, handler);
+            Path segmentPath = storeSegments(jobId, outputPath, timeMap);
+            updateJobStatus(jobId, JobStatus.COMPLETED, "Success! Transcription finalized.",
+                    segmentPath.toAbsolutePath().toString());
+            return true;
+        } catch (IOException e) {
+            System.err.println("[Whisper-" + jobId + "]: " + e.getMessage());
+            updateJobStatus(jobId, JobStatus.FAILED, "Process encountered an error: " + e.getMessage(), null);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            updateJobStatus(jobId, JobStatus.FAILED, "Transcription was interrupted", null);
+            return false;
+        } catch (Exception e) {
+            e.printStackTrace();
+            updateJobStatus(jobId, JobStatus.FAILED, "System Exception: " + e.getMessage(), null);
+            return false;
+        }
+    }
 
+    private boolean runChunked(String jobId, String inputFilePath, Path outputPath, double duration, String language,
+            String model, String task, JobProgress jobProgress, AudioPreflight.TimeMap timeMap) {
+        try {
+            updateJobStatus(jobId, JobStatus.PROCESSING, "Long recording detected. Preparing parallel transcription...",
+                    null);
+            List<TranscriptSegment> segments = chunkedTranscriber.transcribe(jobId, inputFilePath, outputPath,
+                    duration, model, language, task,
+                    message -> updateJobStatus(jobId, JobStatus.PROCESSING, message, null),
+                    segment -> {
+                        recordFirstSegment(model, jobProgress);
+                        publishSegment(jobId, timeMap.map(segment));
+                    },
+                    chunk -> new WhisperOutputHandler(jobId, model, jobProgress,
+                            jobProgress.part(chunk.durationSeconds), true, timeMap));
+            List<TranscriptSegment> mapped = segments.stream().map(timeMap::map).toList();
+            Path segmentPath = onCpuPool(() -> SegmentFile.write(mapped,
+                    outputPath.resolve(jobId + SegmentFile.SUFFIX)));
+            updateJobStatus(jobId, JobStatus.COMPLETED, "Success! Transcription finalized.",
+                    segmentPath.toAbsolutePath().toString());
+            return true;
+        } catch (IOException e) {
+            System.err.println("[Whisper-" + jobId + "]: " + e.getMessage());
+            updateJobStatus(jobId, JobStatus.FAILED, "Process encountered an error: " + e.getMessage(), null);
+            return false;
+        } catch (Exception e) {
+            e.printStackTrace();
+            updateJobStatus(jobId, JobStatus.FAILED, "System Exception: " + e.getMessage(), null);
+            return false;
+        }
+    }
+
+    private boolean runInNewProcess(String jobId, String inputFilePath, Path outputPath, String language, String model,
+            String task, JobProgress jobProgress) {
         try {
             // Build the command list dynamically based on parameters
             java.util.List<String> command = new java.util.ArrayList<>();
@@ -164,6 +964,7 @@ public class TranscriptionService {
             command.add(inputFilePath);
             command.add(outputPath.toAbsolutePath().toString()); // Pass output directory
             command.add(jobId); // Pass job ID as base filename
+            command.add("--segments-only"); // Stored and rendered here, like pooled jobs
 
             // Add optional parameters if provided
             if (model != null && !model.isEmpty()) {
@@ -183,38 +984,156 @@ public class TranscriptionService {
 
             ProcessBuilder pb = new ProcessBuilder(command);
             pb.redirectErrorStream(true); // Merge stderr into stdout
+            pb.environment().put("PYTHONUNBUFFERED", "1");
+            pb.environment().put("PYTHONIOENCODING", "utf-8");
+            long spawnStarted = System.nanoTime();
             Process process = pb.start();
+            metrics.processSpawn(model, System.nanoTime() - spawnStarted);
 
             updateJobStatus(jobId, JobStatus.PROCESSING, "AI Model loading... (This may take a minute)", null);
 
             // Read output from the process (logging purposes)
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                boolean processingStarted = false;
-                while ((line = reader.readLine()) != null) {
-                    System.out.println("[Whisper-" + jobId + "]: " + line);
-
-                    // Update UI status based on whisper output if possible
-                    if (!processingStarted && line.toLowerCase().contains("detecting language")) {
-                        updateJobStatus(jobId, JobStatus.PROCESSING, "Analyzing audio and detecting language...", null);
-                        processingStarted = true;
-                    } else if (line.toLowerCase().contains("transcribing")) {
-                        updateJobStatus(jobId, JobStatus.PROCESSING, "Audio analysis complete. Transcribing...", null);
+            WhisperOutputHandler handler = new WhisperOutputHandler(jobId, model, jobProgress, jobProgress.part(0),
+                    false, AudioPreflight.TimeMap.IDENTITY);
+            try (InputStream output = process.getInputStream()) {
+                WorkerLineReader lines = new WorkerLineReader(output);
+                while (lines.next()) {
+                    if (!handler.acceptRaw(lines.buffer(), lines.lineStart(), lines.lineEnd())) {
+                        handler.accept(lines.line());
                     }
                 }
             }
 
             int exitCode = process.waitFor();
             if (exitCode == 0) {
+                Path segmentPath = storeSegments(jobId, outputPath, AudioPreflight.TimeMap.IDENTITY);
                 updateJobStatus(jobId, JobStatus.COMPLETED, "Success! Transcription finalized.",
-                        outputPath.resolve(jobId + ".txt").toAbsolutePath().toString());
+                        segmentPath.toAbsolutePath().toString());
+                return true;
             } else {
                 updateJobStatus(jobId, JobStatus.FAILED, "Process encountered an error (Code: " + exitCode + ")", null);
+                return false;
             }
 
         } catch (Exception e) {
             e.printStackTrace();
             updateJobStatus(jobId, JobStatus.FAILED, "System Exception: " + e.getMessage(), null);
+            return false;
+        }
+    }
+
+    /**
+     * Turns the worker's {@code <jobId>.segments.json} into the job's {@link SegmentFile},
+     * with timestamps mapped back to the original recording.
+     */
+    private Path storeSegments(String jobId, Path outputPath, AudioPreflight.TimeMap timeMap) throws IOException {
+        Path segmentsPath = outputPath.resolve(jobId + ".segments.json");
+        List<TranscriptSegment> segments = objectMapper.readValue(segmentsPath.toFile(),
+                new TypeReference<List<TranscriptSegment>>() {
+                });
+        Files.deleteIfExists(segmentsPath);
+        List<TranscriptSegment> mapped = segments.stream().map(timeMap::map).toList();
+        return onCpuPool(() -> SegmentFile.write(mapped, outputPath.resolve(jobId + SegmentFile.SUFFIX)));
+    }
+
+    /**
+     * Runs a CPU-bound step on the bounded CPU pool and waits for it, so however many jobs
+     * are finishing, only as many render or compress at once as there are cores.
+     */
+    private <T> T onCpuPool(Callable<T> step) throws IOException {
+        try {
+            return cpuExecutor.submit(step).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the CPU pool", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    private void recordFirstSegment(String model, JobProgress jobProgress) {
+        long nanos = jobProgress.firstSegmentNanos();
+        if (nanos >= 0) {
+            metrics.firstSegment(model, nanos);
+        }
+    }
+
+    /**
+     * Logs Whisper output and turns recognizable lines into user-facing status updates,
+     * live segments and progress. Progress frames are parsed from the read buffer and are
+     * neither logged nor decoded.
+     */
+    private class WhisperOutputHandler implements WhisperWorker.RawOutputHandler {
+        private final String jobId;
+        private final String model;
+        private final JobProgress jobProgress;
+        private final JobProgress.Part progressPart;
+        private final boolean chunkPart;
+        private final AudioPreflight.TimeMap timeMap;
+        private boolean processingStarted;
+        private boolean transcribingStarted;
+
+        /**
+         * @param chunkPart true for one piece of a chunked job: its segments are relative to
+         *                  the piece and are published after stitching, not here
+         * @param timeMap   maps live segment times from preflighted audio back to the upload
+         */
+        WhisperOutputHandler(String jobId, String model, JobProgress jobProgress, JobProgress.Part progressPart,
+                boolean chunkPart, AudioPreflight.TimeMap timeMap) {
+            this.jobId = jobId;
+            this.model = model;
+            this.jobProgress = jobProgress;
+            this.progressPart = progressPart;
+            this.chunkPart = chunkPart;
+            this.timeMap = timeMap;
+        }
+
+        @Override
+        public boolean acceptRaw(byte[] line, int from, int to) {
+            return progressPart.accept(line, from, to);
+        }
+
+        @Override
+        public void accept(String line) {
+            if (progressPart.accept(line)) {
+                return;
+            }
+            System.out.println("[Whisper-" + jobId + "]: " + line);
+            if (chunkPart) {
+                return;
+            }
+
+            TranscriptSegment segment = TranscriptSegment.fromFrame(line);
+            if (segment != null) {
+                recordFirstSegment(model, jobProgress);
+                publishSegment(jobId, timeMap.map(segment));
+                return;
+            }
+
+            // Update UI status based on whisper output if possible
+            if (!processingStarted && containsIgnoreCase(line, "detecting language")) {
+                updateJobStatus(jobId, JobStatus.PROCESSING, "Analyzing audio and detecting language...", null);
+                processingStarted = true;
+            } else if (!transcribingStarted && containsIgnoreCase(line, "transcribing")) {
+                updateJobStatus(jobId, JobStatus.PROCESSING, "Audio analysis complete. Transcribing...", null);
+                transcribingStarted = true;
+            }
+        }
+
+        private boolean containsIgnoreCase(String line, String needle) {
+            for (int i = 0; i + needle.length() <= line.length(); i++) {
+                if (line.regionMatches(true, i, needle, 0, needle.length())) {
+                    return true;
+                }
+            }
+            return false;
         }
     }
 }
@@ -0,0 +1,20 @@
+package com.example.audiototext;
+
+/**
+ * Thrown when a resumable upload write does not start at the session's current
+ * offset, or the session is busy. Controllers map it to 409 Conflict with the
+ * offset the client should resume from.
+ */
+public class UploadConflictException extends RuntimeException {
+
+    private final long offset;
+
+    public UploadConflictException(String message, long offset) {
+        super(message);
+        this.offset = offset;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+}
@@ -0,0 +1,281 @@
+package com.example.audiototext;
+
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Resumable uploads. A session preallocates {@code <uploadId>_<name>.part} in the upload
+ * directory; the client then sends the bytes in order, in as many ranged PUTs as it
+ * likes, each streamed from the socket to the file with positional writes (no multipart
+ * parsing, no buffering of the whole request). The SHA-256 is updated as bytes land, so
+ * finishing needs no second pass, and after a dropped connection the client asks for the
+ * offset and carries on from there. Sessions live in memory and expire after
+ * {@code app.uploads.session-ttl-minutes} without activity.
+ */
+@Component
+public class UploadSessions {
+
+    static final String PART_SUFFIX = ".part";
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    @Value("${app.upload.dir}")
+    private String uploadDir;
+
+    @Value("${app.uploads.max-size-mb:10240}")
+    private long maxSizeMb;
+
+    @Value("${app.uploads.session-ttl-minutes:1440}")
+    private long sessionTtlMinutes;
+
+    @Autowired
+    private PipelineMetrics metrics;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    public static class Session {
+        public final String id;
+        public final Long userId;
+        public final String filename;
+        public final long length;
+        final Path partPath;
+        final MessageDigest digest;
+        // One writer at a time; the offset and digest only ever advance together
+        final ReentrantLock lock = new ReentrantLock();
+        final long createdAtNanos = System.nanoTime();
+        volatile long offset;
+        volatile long lastActivityMillis = System.currentTimeMillis();
+
+        Session(String id, Long userId, String filename, long length, Path partPath) {
+            this.id = id;
+            this.userId = userId;
+            this.filename = filename;
+            this.length = length;
+            this.partPath = partPath;
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public boolean isComplete() {
+            return offset == length;
+        }
+    }
+
+    /**
+     * Partial files cannot be resumed after a restart (their sessions and digests were in memory).
+     */
+    @PostConstruct
+    void removeStaleParts() throws IOException {
+        metrics.gauge("transcription.upload.sessions.open", Tags.empty(), sessions, Map::size);
+        Path dir = Paths.get(uploadDir);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> p.getFileName().toString().endsWith(PART_SUFFIX)).forEach(UploadSessions::deleteQuietly);
+        }
+    }
+
+    public long getMaxBytes() {
+        return maxSizeMb * 1024 * 1024;
+    }
+
+    /**
+     * Opens a session for {@code length} bytes and reserves the file.
+     *
+     * @throws IllegalArgumentException if the length is not positive or above the limit
+     * @throws IOException              if the file cannot be created or the disk is too full
+     */
+    public Session create(Long userId, String filename, long length) throws IOException {
+        if (length <= 0 || length > getMaxBytes()) {
+            throw new IllegalArgumentException("Upload length must be between 1 byte and " + maxSizeMb + " MB");
+        }
+        Path dir = Files.createDirectories(Paths.get(uploadDir));
+        if (Files.getFileStore(dir).getUsableSpace() < length) {
+            throw new IOException("Not enough disk space for " + length + " bytes");
+        }
+        String id = UUID.randomUUID().toString();
+        Path partPath = dir.resolve(id + "_" + safeFilename(filename) + PART_SUFFIX);
+        try (FileChannel channel = FileChannel.open(partPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            // Extend to the final size up front so the file system can lay it out in one go
+            channel.write(ByteBuffer.allocate(1), length - 1);
+        }
+        Session session = new Session(id, userId, safeFilename(filename), length, partPath);
+        sessions.put(id, session);
+        metrics.uploadSession("opened");
+        return session;
+    }
+
+    /**
+     * The session, or null if it does not exist or belongs to someone else.
+     */
+    public Session get(String uploadId, Long userId) {
+        Session session = sessions.get(uploadId);
+        if (session == null || (session.userId != null && !session.userId.equals(userId))) {
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * Streams {@code in} into the file starting at {@code start}, which must equal the
+     * current offset. At most {@code maxBytes} are read (-1: up to the declared length).
+     * If the stream breaks off, everything received so far is kept and the offset shows
+     * where to resume.
+     *
+     * @return the new offset
+     * @throws UploadConflictException if {@code start} is not the current offset, another write is
+     *                                 running, or the session was aborted or expired meanwhile
+     */
+    public long write(Session session, long start, long maxBytes, InputStream in) throws IOException {
+        if (!session.lock.tryLock()) {
+            throw new UploadConflictException("Another request is writing to this upload", session.offset);
+        }
+        try {
+            if (sessions.get(session.id) != session) {
+                throw new UploadConflictException("Upload was aborted or expired", session.offset);
+            }
+            if (start != session.offset) {
+                throw new UploadConflictException("Expected data at offset " + session.offset, session.offset);
+            }
+            long remaining = session.length - session.offset;
+            if (maxBytes >= 0) {
+                remaining = Math.min(remaining, maxBytes);
+            }
+            byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(remaining, 1))];
+            ByteBuffer view = ByteBuffer.wrap(buffer);
+            try (FileChannel channel = FileChannel.open(session.partPath, StandardOpenOption.WRITE)) {
+                while (remaining > 0) {
+                    int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read < 0) {
+                        break;
+                    }
+                    view.clear().limit(read);
+                    long position = session.offset;
+                    while (view.hasRemaining()) {
+                        position += channel.write(view, position);
+                    }
+                    session.digest.update(buffer, 0, read);
+                    session.offset += read;
+                    session.lastActivityMillis = System.currentTimeMillis();
+                    remaining -= read;
+                }
+            }
+            if (maxBytes < 0 && in.read() != -1) {
+                throw new IllegalArgumentException("Upload is longer than the declared " + session.length + " bytes");
+            }
+            return session.offset;
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Ends a fully received session: renames the file to its final name and returns it
+     * with its checksum. The session is gone afterwards.
+     *
+     * @throws UploadConflictException if bytes are still missing
+     */
+    public StoredAudio complete(Session session) throws IOException {
+        session.lock.lock();
+        try {
+            if (!session.isComplete()) {
+                throw new UploadConflictException("Upload incomplete: " + session.offset + " of " + session.length
+                        + " bytes received", session.offset);
+            }
+            if (sessions.remove(session.id) == null) {
+                throw new UploadConflictException("Upload was already completed", session.offset);
+            }
+            String name = session.partPath.getFileName().toString();
+            Path target = session.partPath.resolveSibling(name.substring(0, name.length() - PART_SUFFIX.length()));
+            Files.move(session.partPath, target, StandardCopyOption.ATOMIC_MOVE);
+            metrics.uploadCompleted(session.length, System.nanoTime() - session.createdAtNanos);
+            metrics.uploadSession("completed");
+            return new StoredAudio(target.toAbsolutePath().toString(),
+                    HexFormat.of().formatHex(session.digest.digest()), session.length);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    public void abort(Session session) {
+        if (sessions.remove(session.id, session)) {
+            session.lock.lock();
+            try {
+                deleteQuietly(session.partPath);
+            } finally {
+                session.lock.unlock();
+            }
+            metrics.uploadSession("aborted");
+        }
+    }
+
+    /**
+     * Drops sessions without data for {@code app.uploads.session-ttl-minutes}. A session that is
+     * being written to is skipped; the write keeps it alive.
+     */
+    @Scheduled(fixedDelay = 10, timeUnit = TimeUnit.MINUTES)
+    public void expireIdleSessions() {
+        long cutoff = System.currentTimeMillis() - sessionTtlMinutes * 60_000;
+        for (Session session : sessions.values()) {
+            if (session.lastActivityMillis >= cutoff || !session.lock.tryLock()) {
+                continue;
+            }
+            try {
+                // Checked again under the lock, in case a write ran in between
+                if (session.lastActivityMillis < cutoff && sessions.remove(session.id, session)) {
+                    deleteQuietly(session.partPath);
+                    metrics.uploadSession("expired");
+                }
+            } finally {
+                session.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * The last path element of a client-supplied name, restricted to characters that are safe on any file system.
+     */
+    static String safeFilename(String filename) {
+        String name = filename == null ? "" : filename.replace('\\', '/');
+        name = name.substring(name.lastIndexOf('/') + 1).replaceAll("[^A-Za-z0-9._-]", "_");
+        return name.isEmpty() || name.startsWith(".") ? "upload" + name : name;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("[Upload]: Could not delete " + path + ": " + e.getMessage());
+        }
+    }
+}
@@ -34,6 +34,11 @@ public class User implements UserDetails {
     @Column(unique = true, nullable = false)
     private String email;
 
+    // Scheduling share and quota overrides (UserQuotas); null means the app.quota.* defaults
+    private Double schedulingWeight;
+    private Integer jobsPerHour;
+    private Integer audioMinutesPerHour;
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return List.of(new SimpleGrantedAuthority("ROLE_USER"));
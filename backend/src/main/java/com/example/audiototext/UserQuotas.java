@@ -0,0 +1,222 @@
+package com.example.audiototext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-user token buckets limiting how much transcription work each user can submit: one
+ * bucket counts jobs, the other minutes of audio. Buckets refill continuously at the
+ * user's hourly rate up to a burst size, so occasional batches go through at once while a
+ * sustained flood is turned away with 429 and a Retry-After of when enough has refilled.
+ * Rates and the fair-scheduling weight come from the {@link User} row when set there,
+ * otherwise from {@code app.quota.*}; they are re-read at most once a minute. Buckets are
+ * kept per instance.
+ */
+@Component
+public class UserQuotas {
+
+    private static final long SETTINGS_TTL_MILLIS = 60_000;
+
+    @Value("${app.quota.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.quota.jobs-per-hour:60}")
+    private int defaultJobsPerHour;
+
+    @Value("${app.quota.job-burst:20}")
+    private int jobBurst;
+
+    @Value("${app.quota.audio-minutes-per-hour:600}")
+    private int defaultAudioMinutesPerHour;
+
+    @Value("${app.quota.audio-burst-minutes:300}")
+    private int audioBurstMinutes;
+
+    @Value("${app.quota.default-weight:1.0}")
+    private double defaultWeight;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private static class Settings {
+        final double weight;
+        final int jobsPerHour;
+        final int audioMinutesPerHour;
+        final long loadedAt = System.currentTimeMillis();
+
+        Settings(double weight, int jobsPerHour, int audioMinutesPerHour) {
+            this.weight = weight;
+            this.jobsPerHour = jobsPerHour;
+            this.audioMinutesPerHour = audioMinutesPerHour;
+        }
+    }
+
+    private static class Bucket {
+        final double capacity;
+        double tokens;
+        long updatedNanos = System.nanoTime();
+
+        Bucket(double capacity) {
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+
+        void refill(double perSecond) {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - updatedNanos) / 1e9 * perSecond);
+            updatedNanos = now;
+        }
+
+        /**
+         * Seconds until {@code amount} is available (amounts above the capacity only need a full bucket).
+         */
+        double secondsUntil(double amount, double perSecond) {
+            double missing = Math.min(amount, capacity) - tokens;
+            return missing <= 0 ? 0 : missing / perSecond;
+        }
+    }
+
+    // Guarded by the instance's own monitor
+    private static class Buckets {
+        final Bucket jobs;
+        final Bucket audioSeconds;
+
+        Buckets(double jobCapacity, double audioCapacity) {
+            jobs = new Bucket(jobCapacity);
+            audioSeconds = new Bucket(audioCapacity);
+        }
+
+        boolean isFull() {
+            return jobs.tokens >= jobs.capacity && audioSeconds.tokens >= audioSeconds.capacity;
+        }
+    }
+
+    private final Map<Long, Settings> settings = new ConcurrentHashMap<>();
+    private final Map<Long, Buckets> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * The user's fair-scheduling weight: their share of transcription time relative to others.
+     */
+    public double weight(long userId) {
+        return settings(userId).weight;
+    }
+
+    /**
+     * Seconds until the user may submit another job, 0 if they may now. A cheap check before
+     * accepting an upload; the audio quota is only known once the file is in.
+     */
+    public long retryAfterSeconds(long userId) {
+        if (!enabled) {
+            return 0;
+        }
+        Settings user = settings(userId);
+        if (user.jobsPerHour <= 0) {
+            return 0;
+        }
+        Buckets bucketsOfUser = buckets(userId);
+        synchronized (bucketsOfUser) {
+            bucketsOfUser.jobs.refill(user.jobsPerHour / 3600.0);
+            return (long) Math.ceil(bucketsOfUser.jobs.secondsUntil(1, user.jobsPerHour / 3600.0));
+        }
+    }
+
+    /**
+     * Takes one job and {@code audioSeconds} of audio from the user's buckets.
+     *
+     * @throws QuotaExceededException if either bucket is short; nothing is taken then
+     */
+    public void acquire(long userId, double audioSeconds) {
+        if (!enabled) {
+            return;
+        }
+        Settings user = settings(userId);
+        double jobRate = user.jobsPerHour / 3600.0;
+        double audioRate = user.audioMinutesPerHour / 60.0;
+        Buckets bucketsOfUser = buckets(userId);
+        synchronized (bucketsOfUser) {
+            double jobWait = 0;
+            double audioWait = 0;
+            if (jobRate > 0) {
+                bucketsOfUser.jobs.refill(jobRate);
+                jobWait = bucketsOfUser.jobs.secondsUntil(1, jobRate);
+            }
+            if (audioRate > 0) {
+                bucketsOfUser.audioSeconds.refill(audioRate);
+                audioWait = bucketsOfUser.audioSeconds.secondsUntil(audioSeconds, audioRate);
+            }
+            if (jobWait > 0 || audioWait > 0) {
+                String limit = jobWait >= audioWait
+                        ? user.jobsPerHour + " jobs per hour"
+                        : user.audioMinutesPerHour + " minutes of audio per hour";
+                throw new QuotaExceededException("Quota exceeded (" + limit + ")",
+                        (long) Math.ceil(Math.max(jobWait, audioWait)));
+            }
+            // A recording longer than the burst may overdraw a full bucket; the debt delays the next job
+            if (jobRate > 0) {
+                bucketsOfUser.jobs.tokens -= 1;
+            }
+            if (audioRate > 0) {
+                bucketsOfUser.audioSeconds.tokens -= audioSeconds;
+            }
+        }
+    }
+
+    /**
+     * Gives back what {@link #acquire} took for a job that was not accepted after all.
+     */
+    public void refund(long userId, double audioSeconds) {
+        Buckets bucketsOfUser = buckets.get(userId);
+        if (!enabled || bucketsOfUser == null) {
+            return;
+        }
+        synchronized (bucketsOfUser) {
+            bucketsOfUser.jobs.tokens = Math.min(bucketsOfUser.jobs.capacity, bucketsOfUser.jobs.tokens + 1);
+            bucketsOfUser.audioSeconds.tokens = Math.min(bucketsOfUser.audioSeconds.capacity,
+                    bucketsOfUser.audioSeconds.tokens + audioSeconds);
+        }
+    }
+
+    /**
+     * Forgets users whose buckets have refilled completely; they start from full again anyway.
+     */
+    @Scheduled(fixedDelay = 10, timeUnit = TimeUnit.MINUTES)
+    public void dropIdleBuckets() {
+        buckets.entrySet().removeIf(entry -> {
+            Settings user = settings(entry.getKey());
+            Buckets bucketsOfUser = entry.getValue();
+            synchronized (bucketsOfUser) {
+                bucketsOfUser.jobs.refill(user.jobsPerHour / 3600.0);
+                bucketsOfUser.audioSeconds.refill(user.audioMinutesPerHour / 60.0);
+                return bucketsOfUser.isFull();
+            }
+        });
+        long cutoff = System.currentTimeMillis() - SETTINGS_TTL_MILLIS;
+        settings.values().removeIf(user -> user.loadedAt < cutoff);
+    }
+
+    private Buckets buckets(long userId) {
+        return buckets.computeIfAbsent(userId, id -> new Buckets(jobBurst, audioBurstMinutes * 60.0));
+    }
+
+    private Settings settings(long userId) {
+        Settings cached = settings.get(userId);
+        if (cached != null && cached.loadedAt >= System.currentTimeMillis() - SETTINGS_TTL_MILLIS) {
+            return cached;
+        }
+        Settings loaded = userRepository.findById(userId)
+                .map(user -> new Settings(
+                        user.getSchedulingWeight() != null ? user.getSchedulingWeight() : defaultWeight,
+                        user.getJobsPerHour() != null ? user.getJobsPerHour() : defaultJobsPerHour,
+                        user.getAudioMinutesPerHour() != null ? user.getAudioMinutesPerHour()
+                                : defaultAudioMinutesPerHour))
+                .orElseGet(() -> new Settings(defaultWeight, defaultJobsPerHour, defaultAudioMinutesPerHour));
+        settings.put(userId, loaded);
+        return loaded;
+    }
+}
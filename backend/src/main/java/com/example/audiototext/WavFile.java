@@ -0,0 +1,152 @@
+package com.example.audiototext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Minimal RIFF/WAVE header reader. Locates the {@code fmt } and {@code data} chunks
+ * so PCM audio can be measured and sliced without decoding or external tools.
+ */
+public class WavFile {
+
+    private final Path path;
+    private final byte[] fmtChunk; // full "fmt " chunk including its 8-byte header
+    private final int audioFormat;
+    private final int channels;
+    private final int sampleRate;
+    private final int bitsPerSample;
+    private final int blockAlign;
+    private final long dataOffset;
+    private final long dataLength;
+
+    private WavFile(Path path, byte[] fmtChunk, long dataOffset, long dataLength) {
+        this.path = path;
+        this.fmtChunk = fmtChunk;
+        ByteBuffer fmt = ByteBuffer.wrap(fmtChunk).order(ByteOrder.LITTLE_ENDIAN);
+        this.audioFormat = fmt.getShort(8) & 0xFFFF;
+        this.channels = fmt.getShort(10) & 0xFFFF;
+        this.sampleRate = fmt.getInt(12);
+        this.blockAlign = fmt.getShort(20) & 0xFFFF;
+        this.bitsPerSample = fmt.getShort(22) & 0xFFFF;
+        this.dataOffset = dataOffset;
+        this.dataLength = dataLength;
+    }
+
+    /**
+     * Parses the header of {@code path}, or returns null if it is not a readable WAVE file.
+     */
+    public static WavFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.read(header, 0) < 12 || header.getInt(0) != 0x46464952 /* RIFF */
+                    || header.getInt(8) != 0x45564157 /* WAVE */) {
+                return null;
+            }
+            long size = channel.size();
+            long position = 12;
+            byte[] fmtChunk = null;
+            ByteBuffer chunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            while (position + 8 <= size) {
+                chunkHeader.clear();
+                channel.read(chunkHeader, position);
+                int id = chunkHeader.getInt(0);
+                long length = chunkHeader.getInt(4) & 0xFFFFFFFFL;
+                if (id == 0x20746D66 /* "fmt " */ && length >= 16) {
+                    ByteBuffer fmt = ByteBuffer.allocate((int) (8 + length));
+                    channel.read(fmt, position);
+                    fmtChunk = fmt.array();
+                } else if (id == 0x61746164 /* data */ && fmtChunk != null) {
+                    // Streaming writers leave 0 or 0xFFFFFFFF here; trust the file size instead
+                    long available = size - position - 8;
+                    long dataLength = length == 0 || length > available ? available : length;
+                    WavFile wav = new WavFile(path, fmtChunk, position + 8, dataLength);
+                    return wav.blockAlign > 0 && wav.sampleRate > 0 ? wav : null;
+                }
+                position += 8 + length + (length & 1); // chunks are word aligned
+            }
+            return null;
+        }
+    }
+
+    public double getDurationSeconds() {
+        return (double) (dataLength / blockAlign) / sampleRate;
+    }
+
+    public boolean isPcm() {
+        return audioFormat == 1 || audioFormat == 0xFFFE;
+    }
+
+    /**
+     * True for IEEE float samples, either plain (format 3) or as the sub-format of
+     * WAVE_FORMAT_EXTENSIBLE.
+     */
+    public boolean isFloat() {
+        if (audioFormat == 3) {
+            return true;
+        }
+        // The extensible sub-format GUID starts with the format code, 24 bytes into the fmt body
+        return audioFormat == 0xFFFE && fmtChunk.length >= 8 + 26
+                && ByteBuffer.wrap(fmtChunk).order(ByteOrder.LITTLE_ENDIAN).getShort(8 + 24) == 3;
+    }
+
+    /**
+     * Copies {@code [startSeconds, startSeconds + lengthSeconds)} of the audio into a new
+     * WAVE file with the same format, without touching the samples.
+     */
+    public void writeSlice(Path target, double startSeconds, double lengthSeconds) throws IOException {
+        long startFrame = (long) Math.floor(startSeconds * sampleRate);
+        long frames = (long) Math.ceil(lengthSeconds * sampleRate);
+        long from = Math.min(dataLength, startFrame * blockAlign);
+        long length = Math.min(dataLength - from, frames * blockAlign);
+
+        ByteBuffer header = ByteBuffer.allocate(12 + fmtChunk.length + 8).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0x46464952).putInt((int) (4 + fmtChunk.length + 8 + length)).putInt(0x45564157);
+        header.put(fmtChunk);
+        header.putInt(0x61746164).putInt((int) length);
+        header.flip();
+
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            long copied = 0;
+            while (copied < length) {
+                copied += in.transferTo(dataOffset + from + copied, length - copied, out);
+            }
+        }
+    }
+
+    public int getAudioFormat() {
+        return audioFormat;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getBitsPerSample() {
+        return bitsPerSample;
+    }
+
+    public int getBlockAlign() {
+        return blockAlign;
+    }
+
+    public long getDataOffset() {
+        return dataOffset;
+    }
+
+    public long getDataLength() {
+        return dataLength;
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.audiototext;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * One long-lived {@code transcribe.py --serve} process with its model already loaded.
+ * Jobs are written to stdin as single JSON lines; the worker answers with
+ * {@code @@DONE <jobId>} or {@code @@ERROR <jobId> <message>} on stdout;
+ * {@code @@SEGMENT} frames printed while decoding are passed through with the log output.
+ * A worker runs one job at a time and is owned by {@link WhisperWorkerPool}.
+ */
+public class WhisperWorker {
+
+    static final String READY_FRAME = "@@READY";
+    static final String DONE_FRAME = "@@DONE ";
+    static final String ERROR_FRAME = "@@ERROR ";
+    static final String SEGMENT_FRAME = "@@SEGMENT ";
+
+    private final String model;
+    private final Process process;
+    private final WorkerLineReader lines;
+    private final BufferedWriter writer;
+    private int jobsCompleted;
+    private boolean broken;
+
+    private WhisperWorker(String model, Process process) {
+        this.model = model;
+        this.process = process;
+        this.lines = new WorkerLineReader(process.getInputStream());
+        this.writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Starts a worker process and blocks until it reports that the model is loaded.
+     */
+    public static WhisperWorker start(String model, List<String> command) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectErrorStream(true); // Merge stderr into stdout
+        pb.environment().put("PYTHONUNBUFFERED", "1");
+        pb.environment().put("PYTHONIOENCODING", "utf-8");
+        WhisperWorker worker = new WhisperWorker(model, pb.start());
+
+        while (worker.lines.next()) {
+            String line = worker.lines.line();
+            if (line.startsWith(READY_FRAME)) {
+                System.out.println("[WhisperPool-" + model + "]: Worker " + worker.pid() + " ready");
+                return worker;
+            }
+            System.out.println("[WhisperPool-" + model + "]: " + line);
+        }
+        worker.destroy();
+        throw new IOException("Worker for model '" + model + "' exited before loading (Code: "
+                + worker.exitCodeOrUnknown() + ")");
+    }
+
+    /**
+     * An output handler that can take some lines, such as progress frames, straight from
+     * the read buffer without decoding them to a String first.
+     */
+    public interface RawOutputHandler extends Consumer<String> {
+
+        /**
+         * Returns true if the UTF-8 line {@code line[from, to)} was handled; otherwise it is
+         * decoded and passed to {@link #accept(Object)}.
+         */
+        boolean acceptRaw(byte[] line, int from, int to);
+    }
+
+    /**
+     * Sends one job and blocks until the worker answers for it. Every non-protocol
+     * line printed in between is handed to {@code outputHandler}, first as bytes if it is
+     * a {@link RawOutputHandler}.
+     *
+     * @throws IOException if the worker reports an error or dies mid-job
+     */
+    public void runJob(String jobId, String requestJson, Consumer<String> outputHandler) throws IOException {
+        try {
+            writer.write(requestJson);
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            broken = true;
+            throw new IOException("Whisper worker is not accepting jobs: " + e.getMessage(), e);
+        }
+
+        String doneFrame = DONE_FRAME + jobId;
+        String errorFrame = ERROR_FRAME + jobId;
+        RawOutputHandler rawHandler = outputHandler instanceof RawOutputHandler raw ? raw : null;
+        while (lines.next()) {
+            if (rawHandler != null && rawHandler.acceptRaw(lines.buffer(), lines.lineStart(), lines.lineEnd())) {
+                continue;
+            }
+            String line = lines.line();
+            if (line.equals(doneFrame)) {
+                jobsCompleted++;
+                return;
+            }
+            if (line.startsWith(errorFrame)) {
+                jobsCompleted++;
+                throw new IOException(line.substring(errorFrame.length()).trim());
+            }
+            outputHandler.accept(line);
+        }
+        broken = true;
+        throw new IOException("Whisper worker crashed (Code: " + exitCodeOrUnknown() + ")");
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public int getJobsCompleted() {
+        return jobsCompleted;
+    }
+
+    /**
+     * False once the process has exited or its pipes broke; such a worker must be replaced.
+     */
+    public boolean isHealthy() {
+        return !broken && process.isAlive();
+    }
+
+    public long pid() {
+        return process.pid();
+    }
+
+    public void destroy() {
+        try {
+            writer.close(); // EOF on stdin lets the worker exit cleanly
+        } catch (IOException ignored) {
+        }
+        process.destroy();
+    }
+
+    private String exitCodeOrUnknown() {
+        try {
+            // stdout closes a moment before the process is reaped
+            return process.waitFor(2, TimeUnit.SECONDS) ? String.valueOf(process.exitValue()) : "unknown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.audiototext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Keeps resident Whisper workers per model so the model load is paid once per
+ * worker instead of once per job. Each model gets its own fixed-size pool;
+ * crashed workers are replaced and workers are recycled after a configurable
+ * number of jobs to bound Python-side memory growth.
+ */
+@Component
+public class WhisperWorkerPool {
+
+    @Value("${app.python.command}")
+    private String pythonCommand;
+
+    @Value("${app.whisper.script}")
+    private String whisperScriptPath;
+
+    @Value("${app.whisper.pool.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.whisper.pool.default-size:1}")
+    private int defaultSize;
+
+    @Value("${app.whisper.pool.sizes:}")
+    private String sizesSpec;
+
+    @Value("${app.whisper.pool.max-jobs-per-worker:50}")
+    private int maxJobsPerWorker;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Autowired
+    private PipelineMetrics metrics;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, ModelPool> pools = new ConcurrentHashMap<>();
+    private ExecutorService spawner;
+    private volatile boolean shuttingDown;
+
+    @PostConstruct
+    void init() {
+        // Spawning waits on the model load, so it runs on virtual threads when they are enabled
+        spawner = Executors.newCachedThreadPool(
+                AsyncConfig.blockingThreadFactory("whisper-pool-spawner-", virtualThreads));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Runs one transcription on a pooled worker for {@code model}, blocking until it
+     * finishes. Lines the worker prints along the way go to {@code outputHandler}. The
+     * worker writes {@code <jobId>.segments.json} into {@code outputDir}, which the
+     * backend stores as a {@link SegmentFile} or stitches into a chunked transcript.
+     *
+     * @param durationSeconds length of the audio if known (for progress), otherwise 0
+     * @throws IOException if the job fails or the worker dies while running it
+     */
+    public void transcribeSegments(String jobId, String inputSource, String outputDir, String model,
+            String language, String task, double durationSeconds, Consumer<String> outputHandler)
+            throws IOException, InterruptedException {
+        Map<String, Object> request = toRequest(jobId, inputSource, outputDir, language, task);
+        request.put("segments_only", true);
+        if (durationSeconds > 0) {
+            request.put("duration", durationSeconds);
+        }
+        run(model, jobId, request, outputHandler);
+    }
+
+    private void run(String model, String jobId, Map<String, Object> request, Consumer<String> outputHandler)
+            throws IOException, InterruptedException {
+        ModelPool pool = poolFor(model);
+        WhisperWorker worker = pool.acquire();
+        try {
+            worker.runJob(jobId, objectMapper.writeValueAsString(request), outputHandler);
+        } finally {
+            pool.release(worker);
+        }
+    }
+
+    /**
+     * Snapshot of live/idle worker counts per model, for diagnostics.
+     */
+    public Map<String, Map<String, Integer>> describe() {
+        Map<String, Map<String, Integer>> result = new HashMap<>();
+        pools.forEach((model, pool) -> {
+            Map<String, Integer> counts = new HashMap<>();
+            counts.put("size", pool.size);
+            counts.put("live", pool.live.get());
+            counts.put("idle", pool.idle.size());
+            result.put(model, counts);
+        });
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        pools.values().forEach(ModelPool::destroyIdle);
+        spawner.shutdownNow();
+    }
+
+    private ModelPool poolFor(String model) {
+        return pools.computeIfAbsent(model, m -> {
+            ModelPool pool = new ModelPool(m, configuredSize(m));
+            Tags tags = Tags.of("model", m);
+            metrics.gauge("transcription.workers.live", tags, pool, p -> p.live.get());
+            metrics.gauge("transcription.workers.idle", tags, pool, p -> p.idle.size());
+            metrics.gauge("transcription.workers.busy", tags, pool, p -> p.size - p.permits.availablePermits());
+            return pool;
+        });
+    }
+
+    int configuredSize(String model) {
+        return ModelSettings.lookup(sizesSpec, model, defaultSize);
+    }
+
+    private Map<String, Object> toRequest(String jobId, String inputSource, String outputDir, String language,
+            String task) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("job_id", jobId);
+        request.put("input", inputSource);
+        request.put("output_dir", outputDir);
+        if (language != null && !language.isEmpty() && !"auto".equalsIgnoreCase(language)) {
+            request.put("language", language);
+        }
+        if (task != null && !task.isEmpty()) {
+            request.put("task", task);
+        }
+        return request;
+    }
+
+    private List<String> workerCommand(String model) {
+        List<String> command = new ArrayList<>();
+        command.add(pythonCommand);
+        command.add(whisperScriptPath);
+        command.add("--serve");
+        command.add("--model");
+        command.add(model);
+        return command;
+    }
+
+    /**
+     * Workers for a single model. {@code permits} caps concurrent jobs, {@code live}
+     * caps processes (idle + busy + starting) at {@code size}.
+     */
+    private class ModelPool {
+        private final String model;
+        private final int size;
+        private final Semaphore permits;
+        private final AtomicInteger live = new AtomicInteger();
+        private final LinkedBlockingDeque<WhisperWorker> idle = new LinkedBlockingDeque<>();
+
+        ModelPool(String model, int size) {
+            this.model = model;
+            this.size = size;
+            this.permits = new Semaphore(size, true);
+        }
+
+        WhisperWorker acquire() throws IOException, InterruptedException {
+            permits.acquire();
+            try {
+                while (true) {
+                    WhisperWorker worker = idle.pollFirst();
+                    if (worker != null) {
+                        if (worker.isHealthy()) {
+                            return worker;
+                        }
+                        retire(worker, "found dead while idle");
+                        continue;
+                    }
+                    if (reserveSlot()) {
+                        try {
+                            return startWorker();
+                        } catch (IOException e) {
+                            live.decrementAndGet();
+                            throw e;
+                        }
+                    }
+                    // A replacement is already starting in the background; wait for it.
+                    worker = idle.pollFirst(1, TimeUnit.SECONDS);
+                    if (worker != null) {
+                        idle.offerFirst(worker);
+                    }
+                }
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        void release(WhisperWorker worker) {
+            try {
+                if (!worker.isHealthy()) {
+                    retire(worker, "crashed");
+                    replaceInBackground();
+                } else if (worker.getJobsCompleted() >= maxJobsPerWorker) {
+                    retire(worker, "recycled after " + worker.getJobsCompleted() + " jobs");
+                    replaceInBackground();
+                } else if (shuttingDown) {
+                    retire(worker, "pool shutting down");
+                } else {
+                    idle.offerFirst(worker);
+                }
+            } finally {
+                permits.release();
+            }
+        }
+
+        void destroyIdle() {
+            WhisperWorker worker;
+            while ((worker = idle.pollFirst()) != null) {
+                retire(worker, "pool shutting down");
+            }
+        }
+
+        private boolean reserveSlot() {
+            while (true) {
+                int current = live.get();
+                if (current >= size) {
+                    return false;
+                }
+                if (live.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private WhisperWorker startWorker() throws IOException {
+            long started = System.nanoTime();
+            boolean succeeded = false;
+            try {
+                WhisperWorker worker = WhisperWorker.start(model, workerCommand(model));
+                succeeded = true;
+                return worker;
+            } finally {
+                metrics.workerStartup(model, System.nanoTime() - started, succeeded);
+            }
+        }
+
+        private void retire(WhisperWorker worker, String reason) {
+            System.out.println("[WhisperPool-" + model + "]: Retiring worker " + worker.pid() + " (" + reason + ")");
+            worker.destroy();
+            live.decrementAndGet();
+        }
+
+        /**
+         * Starts a replacement so the next job does not pay the model load.
+         */
+        private void replaceInBackground() {
+            if (shuttingDown || !reserveSlot()) {
+                return;
+            }
+            spawner.execute(() -> {
+                try {
+                    idle.offerLast(startWorker());
+                } catch (Exception e) {
+                    live.decrementAndGet();
+                    System.err.println("[WhisperPool-" + model + "]: Could not start replacement worker: "
+                            + e.getMessage());
+                }
+            });
+        }
+    }
+}
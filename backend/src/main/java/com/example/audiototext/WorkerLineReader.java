@@ -0,0 +1,99 @@
+package com.example.audiototext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits a worker's stdout into lines inside one reusable byte buffer. Each line is
+ * {@code buffer()[lineStart(), lineEnd())} until the next call to {@link #next()}, so
+ * frames that are parsed as bytes (progress) are never decoded; {@link #line()} decodes
+ * the rest. Like {@link java.io.BufferedReader#readLine()}, a line ends at {@code \n},
+ * {@code \r} or {@code \r\n}, which matters for the carriage-return progress bars that
+ * Whisper prints on stderr.
+ */
+class WorkerLineReader {
+
+    private final InputStream in;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private int lineStart;
+    private int lineEnd;
+    private boolean skipLineFeed;
+
+    WorkerLineReader(InputStream in) {
+        this(in, 8192);
+    }
+
+    WorkerLineReader(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Advances to the next line. Returns false at the end of the stream.
+     */
+    boolean next() throws IOException {
+        int scanned = position;
+        while (true) {
+            for (int i = scanned; i < limit; i++) {
+                byte b = buffer[i];
+                if (skipLineFeed) {
+                    skipLineFeed = false;
+                    if (b == '\n' && i == position) {
+                        position++;
+                        continue;
+                    }
+                }
+                if (b == '\n' || b == '\r') {
+                    lineStart = position;
+                    lineEnd = i;
+                    position = i + 1;
+                    skipLineFeed = b == '\r';
+                    return true;
+                }
+            }
+            // No line end in the buffer: keep the partial line at the front and read more
+            scanned = limit - position;
+            if (position > 0) {
+                System.arraycopy(buffer, position, buffer, 0, scanned);
+                limit = scanned;
+                position = 0;
+            } else if (limit == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                if (limit == position) {
+                    return false;
+                }
+                lineStart = position;
+                lineEnd = limit;
+                position = limit;
+                return true;
+            }
+            limit += read;
+        }
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int lineStart() {
+        return lineStart;
+    }
+
+    int lineEnd() {
+        return lineEnd;
+    }
+
+    /**
+     * The current line decoded as UTF-8.
+     */
+    String line() {
+        return new String(buffer, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+    }
+}
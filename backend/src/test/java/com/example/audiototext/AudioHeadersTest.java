@@ -0,0 +1,128 @@
+package com.example.audiototext;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AudioHeadersTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void wavDurationFromTheDataChunk() throws IOException {
+        int sampleRate = 16000;
+        int dataBytes = sampleRate * 2 * 3; // 3 s of 16-bit mono
+        ByteBuffer wav = ByteBuffer.allocate(44 + dataBytes).order(ByteOrder.LITTLE_ENDIAN);
+        wav.put(ascii("RIFF")).putInt(36 + dataBytes).put(ascii("WAVE"));
+        wav.put(ascii("fmt ")).putInt(16).putShort((short) 1).putShort((short) 1).putInt(sampleRate)
+                .putInt(sampleRate * 2).putShort((short) 2).putShort((short) 16);
+        wav.put(ascii("data")).putInt(dataBytes);
+
+        assertEquals(3.0, probe("a.wav", wav.array()), 0.001);
+    }
+
+    @Test
+    void constantBitrateMp3DurationFromTheFileSize() throws IOException {
+        ByteArrayOutputStream mp3 = new ByteArrayOutputStream();
+        mp3.write(new byte[] { 'I', 'D', '3', 4, 0, 0, 0, 0, 0, 20 }); // ID3v2 tag with 20 bytes of payload
+        mp3.write(new byte[20]);
+        int frames = 500;
+        for (int i = 0; i < frames; i++) {
+            mp3.write(mp3Frame(false));
+        }
+        mp3.write(ascii("TAG"));
+        mp3.write(new byte[125]); // ID3v1 tag
+
+        // 417-byte frames at 128 kbps; tags are not audio
+        assertEquals(frames * 417 * 8 / 128_000.0, probe("cbr.mp3", mp3.toByteArray()), 0.001);
+    }
+
+    @Test
+    void variableBitrateMp3DurationFromTheXingFrameCount() throws IOException {
+        ByteArrayOutputStream mp3 = new ByteArrayOutputStream();
+        mp3.write(mp3Frame(true));
+        for (int i = 0; i < 10; i++) {
+            mp3.write(mp3Frame(false));
+        }
+
+        // The header claims 1000 frames of 1152 samples at 44.1 kHz, whatever the file size says
+        assertEquals(1000 * 1152 / 44100.0, probe("vbr.mp3", mp3.toByteArray()), 0.001);
+    }
+
+    @Test
+    void m4aDurationFromTheMovieHeader() throws IOException {
+        ByteArrayOutputStream m4a = new ByteArrayOutputStream();
+        m4a.write(box("ftyp", ByteBuffer.allocate(8).put(ascii("M4A ")).array()));
+        m4a.write(box("mdat", new byte[4096])); // Media before the movie box, as many encoders write it
+        ByteBuffer mvhd = ByteBuffer.allocate(100);
+        mvhd.putInt(0).putInt(0).putInt(0).putInt(1000).putInt(95_500); // Version 0: 95.5 s at 1 kHz timescale
+        m4a.write(box("moov", box("mvhd", mvhd.array())));
+
+        assertEquals(95.5, probe("a.m4a", m4a.toByteArray()), 0.001);
+    }
+
+    @Test
+    void opusDurationFromTheLastGranuleMinusPreSkip() throws IOException {
+        int serial = 0x1234;
+        int preSkip = 312;
+        ByteBuffer head = ByteBuffer.allocate(19).order(ByteOrder.LITTLE_ENDIAN);
+        head.put(ascii("OpusHead")).put((byte) 1).put((byte) 1).putShort((short) preSkip).putInt(48000)
+                .putShort((short) 0).put((byte) 0);
+
+        ByteArrayOutputStream opus = new ByteArrayOutputStream();
+        opus.write(oggPage(serial, 0, 2, head.array()));
+        opus.write(oggPage(serial, 48000L * 20, 0, new byte[200]));
+        opus.write(oggPage(serial, 48000L * 42 + preSkip, 4, new byte[200]));
+
+        assertEquals(42.0, probe("a.opus", opus.toByteArray()), 0.001);
+    }
+
+    @Test
+    void unknownFormatIsMinusOne() throws IOException {
+        assertEquals(-1, probe("notes.txt", "just some text, not audio at all".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private double probe(String name, byte[] bytes) throws IOException {
+        Path file = dir.resolve(name);
+        Files.write(file, bytes);
+        return AudioHeaders.probeDurationSeconds(file);
+    }
+
+    // MPEG-1 Layer III, 128 kbps, 44.1 kHz, stereo, no padding: 417 bytes
+    private static byte[] mp3Frame(boolean xing) {
+        ByteBuffer frame = ByteBuffer.allocate(417);
+        frame.put((byte) 0xFF).put((byte) 0xFB).put((byte) 0x90).put((byte) 0x00);
+        if (xing) {
+            frame.position(4 + 32); // After the stereo side info
+            frame.put(ascii("Xing")).putInt(1).putInt(1000);
+        }
+        return frame.array();
+    }
+
+    private static byte[] box(String type, byte[] payload) {
+        return ByteBuffer.allocate(8 + payload.length).putInt(8 + payload.length).put(ascii(type)).put(payload)
+                .array();
+    }
+
+    private static byte[] oggPage(int serial, long granule, int headerType, byte[] packet) {
+        ByteBuffer page = ByteBuffer.allocate(27 + 1 + packet.length).order(ByteOrder.LITTLE_ENDIAN);
+        page.put(ascii("OggS")).put((byte) 0).put((byte) headerType).putLong(granule).putInt(serial)
+                .putInt(0).putInt(0) // Sequence number and checksum, which the probe does not check
+                .put((byte) 1).put((byte) packet.length).put(packet);
+        return page.array();
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.audiototext;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AuthControllerTest {
+
+    private final User user = User.builder().id(5L).username("u5").email("u5@example.com").build();
+    private UserRepository users;
+    private AuthTokens tokens;
+    private AuthController controller;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        users = mock(UserRepository.class);
+        when(users.findById(anyLong())).thenReturn(Optional.empty());
+        when(users.findById(5L)).thenReturn(Optional.of(user));
+        tokens = AuthTokensTest.create(AuthTokensTest.SECRET, 15, 14);
+        controller = new AuthController(users, mock(PasswordEncoder.class), mock(AuthenticationManager.class),
+                tokens);
+    }
+
+    @Test
+    void refreshCookieIsTradedForANewTokenPair() {
+        AuthTokens.Issued issued = tokens.issue(user, new MockHttpServletResponse());
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(AuthTokens.REFRESH_COOKIE, issued.refreshToken));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseEntity<?> result = controller.refresh(null, request, response);
+
+        assertEquals(200, result.getStatusCode().value());
+        Map<?, ?> body = (Map<?, ?>) result.getBody();
+        assertEquals(5L, body.get("id"));
+        assertEquals(5L, tokens.authenticate(AuthTokensTest.bearer((String) body.get("accessToken"))).getId());
+        assertEquals(2, response.getHeaders(HttpHeaders.SET_COOKIE).size());
+    }
+
+    @Test
+    void refreshTokenInTheBodyWorksToo() {
+        AuthTokens.Issued issued = tokens.issue(user, new MockHttpServletResponse());
+
+        ResponseEntity<?> result = controller.refresh(Map.of("refreshToken", issued.refreshToken),
+                new MockHttpServletRequest(), new MockHttpServletResponse());
+
+        assertEquals(200, result.getStatusCode().value());
+    }
+
+    @Test
+    void accessTokenCannotRefresh() {
+        AuthTokens.Issued issued = tokens.issue(user, new MockHttpServletResponse());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseEntity<?> result = controller.refresh(Map.of("refreshToken", issued.accessToken),
+                new MockHttpServletRequest(), response);
+
+        assertEquals(401, result.getStatusCode().value());
+        assertTrue(response.getHeaders(HttpHeaders.SET_COOKIE).stream().allMatch(c -> c.contains("Max-Age=0")));
+    }
+
+    @Test
+    void deletedUserCannotRefresh() {
+        User deleted = User.builder().id(6L).username("gone").email("gone@example.com").build();
+        AuthTokens.Issued issued = tokens.issue(deleted, new MockHttpServletResponse());
+
+        ResponseEntity<?> result = controller.refresh(Map.of("refreshToken", issued.refreshToken),
+                new MockHttpServletRequest(), new MockHttpServletResponse());
+
+        assertEquals(401, result.getStatusCode().value());
+    }
+
+    @Test
+    void refreshIsNotFoundWithoutStatelessMode() {
+        ReflectionTestUtils.setField(tokens, "stateless", false);
+
+        ResponseEntity<?> result = controller.refresh(null, new MockHttpServletRequest(),
+                new MockHttpServletResponse());
+
+        assertEquals(404, result.getStatusCode().value());
+    }
+}
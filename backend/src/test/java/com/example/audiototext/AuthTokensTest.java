@@ -0,0 +1,133 @@
+package com.example.audiototext;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuthTokensTest {
+
+    static final String SECRET = "0123456789abcdef0123456789abcdef";
+
+    private AuthTokens tokens;
+    private final User user = User.builder().id(7L).username("u7").email("u7@example.com").build();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        tokens = create(SECRET, 15, 14);
+    }
+
+    static AuthTokens create(String secret, long accessMinutes, long refreshDays) throws Exception {
+        AuthTokens tokens = new AuthTokens();
+        ReflectionTestUtils.setField(tokens, "stateless", true);
+        ReflectionTestUtils.setField(tokens, "secret", secret);
+        ReflectionTestUtils.setField(tokens, "accessMinutes", accessMinutes);
+        ReflectionTestUtils.setField(tokens, "refreshDays", refreshDays);
+        ReflectionTestUtils.setField(tokens, "claimsCacheSize", 100);
+        ReflectionTestUtils.invokeMethod(tokens, "init");
+        return tokens;
+    }
+
+    @Test
+    void accessTokenRoundTrip() {
+        AuthTokens.Issued issued = tokens.issue(user, new MockHttpServletResponse());
+
+        User principal = tokens.authenticate(bearer(issued.accessToken));
+        assertEquals(7L, principal.getId());
+        assertEquals("u7", principal.getUsername());
+        assertEquals("u7@example.com", principal.getEmail());
+        assertEquals(15 * 60, issued.expiresInSeconds);
+        // Answered from the verified-token cache the second time
+        assertEquals(7L, tokens.authenticate(bearer(issued.accessToken)).getId());
+    }
+
+    @Test
+    void issueSetsHttpOnlyCookiesThatAuthenticate() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AuthTokens.Issued issued = tokens.issue(user, response);
+
+        assertTrue(response.getHeaders(HttpHeaders.SET_COOKIE).stream()
+                .allMatch(cookie -> cookie.contains("HttpOnly")));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(AuthTokens.ACCESS_COOKIE, issued.accessToken),
+                new Cookie(AuthTokens.REFRESH_COOKIE, issued.refreshToken));
+        assertEquals(7L, tokens.authenticate(request).getId());
+        assertEquals(7L, tokens.refreshSubject(request, null));
+    }
+
+    @Test
+    void tamperedSignatureIsRejected() {
+        String token = tokens.issue(user, new MockHttpServletResponse()).accessToken;
+        int at = token.length() - 10; // Inside the signature, away from its padding bits
+        String tampered = token.substring(0, at) + (token.charAt(at) == 'A' ? 'B' : 'A') + token.substring(at + 1);
+
+        assertNull(tokens.authenticate(bearer(tampered)));
+    }
+
+    @Test
+    void tamperedPayloadIsRejected() {
+        String token = tokens.issue(user, new MockHttpServletResponse()).accessToken;
+        String[] parts = token.split("\\.");
+        String claims = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+        String forged = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(claims.replace("\"sub\":\"7\"", "\"sub\":\"1\"").getBytes(StandardCharsets.UTF_8));
+
+        assertNull(tokens.authenticate(bearer(parts[0] + "." + forged + "." + parts[2])));
+    }
+
+    @Test
+    void tokenSignedWithAnotherSecretIsRejected() throws Exception {
+        String token = create("another secret of at least 32 chars", 15, 14)
+                .issue(user, new MockHttpServletResponse()).accessToken;
+
+        assertNull(tokens.authenticate(bearer(token)));
+    }
+
+    @Test
+    void expiredTokensAreRejected() throws Exception {
+        AuthTokens expiring = create(SECRET, 0, 0); // Issued already expired
+        AuthTokens.Issued issued = expiring.issue(user, new MockHttpServletResponse());
+
+        assertNull(expiring.authenticate(bearer(issued.accessToken)));
+        assertNull(expiring.refreshSubject(new MockHttpServletRequest(), issued.refreshToken));
+    }
+
+    @Test
+    void tokenTypesAreNotInterchangeable() {
+        AuthTokens.Issued issued = tokens.issue(user, new MockHttpServletResponse());
+
+        assertNull(tokens.authenticate(bearer(issued.refreshToken)));
+        assertNull(tokens.refreshSubject(new MockHttpServletRequest(), issued.accessToken));
+        assertEquals(7L, tokens.refreshSubject(new MockHttpServletRequest(), issued.refreshToken));
+    }
+
+    @Test
+    void malformedTokensAreRejected() {
+        assertNull(tokens.authenticate(bearer("not-a-token")));
+        assertNull(tokens.authenticate(bearer("a.b.c")));
+        assertNull(tokens.refreshSubject(new MockHttpServletRequest(), "x.y"));
+        assertNull(tokens.authenticate(new MockHttpServletRequest()));
+    }
+
+    @Test
+    void shortSecretIsRefused() {
+        assertThrows(IllegalStateException.class, () -> create("too short", 15, 14));
+    }
+
+    static MockHttpServletRequest bearer(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        return request;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.audiototext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChunkedTranscriberTest {
+
+    @TempDir
+    Path dir;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private WhisperWorkerPool workerPool;
+    private AudioChunker audioChunker;
+    private ChunkedTranscriber transcriber;
+
+    @BeforeEach
+    void setUp() {
+        workerPool = mock(WhisperWorkerPool.class);
+        audioChunker = mock(AudioChunker.class);
+        when(workerPool.isEnabled()).thenReturn(true);
+        transcriber = new ChunkedTranscriber();
+        ReflectionTestUtils.setField(transcriber, "workerPool", workerPool);
+        ReflectionTestUtils.setField(transcriber, "audioChunker", audioChunker);
+        ReflectionTestUtils.setField(transcriber, "executor", executor);
+        ReflectionTestUtils.setField(transcriber, "enabled", true);
+        ReflectionTestUtils.setField(transcriber, "minDurationSeconds", 1200.0);
+        ReflectionTestUtils.setField(transcriber, "windowSeconds", 600.0);
+        ReflectionTestUtils.setField(transcriber, "overlapSeconds", 5.0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void longRecordingIsChunkedOnlyWithTwoOrMoreWorkers() {
+        Path audio = dir.resolve("long.wav");
+        when(audioChunker.probeDurationSeconds(audio)).thenReturn(3600.0);
+        when(workerPool.configuredSize("small")).thenReturn(1);
+        when(workerPool.configuredSize("base")).thenReturn(2);
+
+        assertEquals(-1, transcriber.chunkableDuration(audio.toString(), "small"));
+        assertEquals(3600, transcriber.chunkableDuration(audio.toString(), "base"));
+        assertEquals(-1, transcriber.chunkableDuration("https://example.com/long.mp3", "base"));
+    }
+
+    @Test
+    void segmentsArePublishedInOrderWhenChunksFinishOutOfOrder() throws Exception {
+        Path audio = dir.resolve("long.wav");
+        when(audioChunker.split(eq(audio), any(), eq(1290.0), eq(600.0), eq(5.0))).thenReturn(List.of(
+                new AudioChunker.AudioChunk(0, 0, 600, dir.resolve("part0.wav")),
+                new AudioChunker.AudioChunk(1, 595, 600, dir.resolve("part1.wav")),
+                new AudioChunker.AudioChunk(2, 1190, 100, dir.resolve("part2.wav"))));
+        Map<Integer, List<TranscriptSegment>> segments = Map.of(
+                0, List.of(new TranscriptSegment(1, 3, "one"), new TranscriptSegment(595, 599.5, "across")),
+                1, List.of(new TranscriptSegment(0.5, 5, "across"), new TranscriptSegment(10, 12, "two")),
+                2, List.of(new TranscriptSegment(5, 7, "three")));
+        // The last part finishes first and the first part last
+        CountDownLatch thirdDone = new CountDownLatch(1);
+        CountDownLatch secondDone = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            String chunkId = invocation.getArgument(0);
+            int index = chunkId.charAt(chunkId.length() - 1) - '0';
+            if (index == 1) {
+                assertTrue(thirdDone.await(5, TimeUnit.SECONDS));
+            } else if (index == 0) {
+                assertTrue(secondDone.await(5, TimeUnit.SECONDS));
+            }
+            objectMapper.writeValue(Path.of((String) invocation.getArgument(2), chunkId + ".segments.json").toFile(),
+                    segments.get(index));
+            return null;
+        }).when(workerPool).transcribeSegments(anyString(), anyString(), anyString(), eq("base"), any(), any(),
+                anyDouble(), any());
+
+        List<String> statuses = new CopyOnWriteArrayList<>();
+        List<TranscriptSegment> published = new CopyOnWriteArrayList<>();
+        List<TranscriptSegment> result = transcriber.transcribe("job", audio.toString(), dir, 1290, "base", null,
+                "transcribe", status -> {
+                    statuses.add(status);
+                    if (status.startsWith("Transcribed part 1 ")) {
+                        thirdDone.countDown();
+                    } else if (status.startsWith("Transcribed part 2 ")) {
+                        secondDone.countDown();
+                    }
+                }, published::add, chunk -> line -> {
+                });
+
+        assertEquals(List.of("1.0 one", "595.0 across", "605.0 two", "1195.0 three"),
+                result.stream().map(s -> s.getStart() + " " + s.getText()).toList());
+        assertEquals(result, published);
+        assertFalse(Files.exists(dir.resolve("job_chunks")));
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.audiototext;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FairQueueTest {
+
+    @Test
+    void weightsSetTheShareOfAudioPerRound() {
+        FairQueue<String> queue = new FairQueue<>(100);
+        for (int i = 0; i < 30; i++) {
+            queue.add(1, 2.0, 100, "heavy-" + i);
+            queue.add(2, 1.0, 100, "light-" + i);
+        }
+
+        int heavy = 0;
+        for (int i = 0; i < 30; i++) {
+            if (queue.poll(item -> true).startsWith("heavy")) {
+                heavy++;
+            }
+        }
+
+        assertEquals(20, heavy);
+        assertEquals(30, queue.size());
+    }
+
+    @Test
+    void shortJobDoesNotWaitBehindAnotherUsersBacklog() {
+        FairQueue<String> queue = new FairQueue<>(300);
+        for (int i = 0; i < 200; i++) {
+            queue.add(1, 1.0, 3600, "podcast-" + i);
+        }
+        queue.add(2, 1.0, 30, "voice-note");
+
+        List<String> firstTwo = List.of(queue.poll(item -> true), queue.poll(item -> true));
+
+        assertTrue(firstTwo.contains("voice-note"), firstTwo.toString());
+    }
+
+    @Test
+    void itemsOfOneUserKeepTheirOrder() {
+        FairQueue<String> queue = new FairQueue<>(10);
+        queue.add(1, 1.0, 50, "a");
+        queue.add(1, 1.0, 5, "b");
+        queue.add(1, 1.0, 500, "c");
+
+        assertEquals(List.of("a", "b", "c"), List.of(queue.poll(item -> true), queue.poll(item -> true),
+                queue.poll(item -> true)));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void skipsItemsThePredicateRejects() {
+        FairQueue<String> queue = new FairQueue<>(100);
+        queue.add(1, 1.0, 10, "blocked-1");
+        queue.add(1, 1.0, 10, "free-1");
+        queue.add(2, 1.0, 10, "blocked-2");
+
+        assertEquals("free-1", queue.poll(item -> item.startsWith("free")));
+        assertNull(queue.poll(item -> item.startsWith("free")));
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    void orderPredictsPollsWithoutChangingTheQueue() {
+        FairQueue<String> queue = new FairQueue<>(100);
+        for (int i = 0; i < 5; i++) {
+            queue.add(1, 3.0, 100, "a" + i);
+            queue.add(2, 1.0, 100, "b" + i);
+        }
+
+        List<String> predicted = queue.order();
+        List<String> polled = new ArrayList<>();
+        for (String item = queue.poll(x -> true); item != null; item = queue.poll(x -> true)) {
+            polled.add(item);
+        }
+
+        assertEquals(10, predicted.size());
+        assertEquals(predicted, polled);
+    }
+}
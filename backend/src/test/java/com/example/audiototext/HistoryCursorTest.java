@@ -0,0 +1,34 @@
+package com.example.audiototext;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HistoryCursorTest {
+
+    @Test
+    void decodesWhatItEncodes() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 17, 9, 30, 15, 123_456_000);
+        HistoryCursor cursor = HistoryCursor.decode(new HistoryCursor(createdAt, "job|with|bars").encode());
+
+        assertEquals(createdAt, cursor.createdAt);
+        assertEquals("job|with|bars", cursor.id);
+    }
+
+    @Test
+    void tokenIsUrlSafe() {
+        String token = new HistoryCursor(LocalDateTime.of(2024, 1, 1, 0, 0), "~~~???>>>").encode();
+
+        assertEquals(token, token.replaceAll("[^A-Za-z0-9_-]", ""));
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        assertThrows(IllegalArgumentException.class, () -> HistoryCursor.decode("not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> HistoryCursor.decode("bm8tc2VwYXJhdG9y"));
+        assertThrows(IllegalArgumentException.class, () -> HistoryCursor.decode("eWVzdGVyZGF5fGlk"));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.audiototext;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JobProgressTest {
+
+    @Test
+    void progressFramesFromBytesMatchTheStringPath() {
+        JobProgress fromString = new JobProgress(0, p -> {
+        });
+        JobProgress fromBytes = new JobProgress(0, p -> {
+        });
+
+        assertTrue(fromString.part(0).accept("@@PROGRESS 30.5 120"));
+        assertTrue(acceptBytes(fromBytes.part(0), "@@PROGRESS 30.5 120"));
+
+        assertEquals(25.4, fromString.getPercent(), 0.1);
+        assertEquals(fromString.getPercent(), fromBytes.getPercent(), 1e-9);
+        assertEquals(120.0, fromBytes.getTotalSeconds(), 1e-9);
+    }
+
+    @Test
+    void otherLinesAreLeftForTheCaller() {
+        JobProgress.Part part = new JobProgress(0, p -> {
+        }).part(0);
+
+        assertFalse(acceptBytes(part, "Detected language: English"));
+        assertFalse(acceptBytes(part, "@@PROGRESS"));
+        assertFalse(acceptBytes(part, ""));
+        assertFalse(acceptBytes(part, "@@SEGMENT 1.0 2.0 @@PROGRESS 1 2"));
+    }
+
+    @Test
+    void malformedFramesAreConsumedWithoutReporting() {
+        AtomicInteger notified = new AtomicInteger();
+        JobProgress progress = new JobProgress(0, p -> notified.incrementAndGet());
+        JobProgress.Part part = progress.part(0);
+
+        assertTrue(acceptBytes(part, "@@PROGRESS 12.5"));
+        assertTrue(acceptBytes(part, "@@PROGRESS abc 100"));
+        assertTrue(acceptBytes(part, "@@PROGRESS 10 0"));
+
+        assertEquals(0, notified.get());
+        assertEquals(0, progress.getPercent(), 1e-9);
+    }
+
+    @Test
+    void parsesOnlyTheGivenRangeOfTheBuffer() {
+        JobProgress progress = new JobProgress(0, p -> {
+        });
+        byte[] buffer = "log line\n@@PROGRESS 50 200\nnext".getBytes(StandardCharsets.US_ASCII);
+
+        assertTrue(progress.part(0).accept(buffer, 9, 26));
+
+        assertEquals(25.0, progress.getPercent(), 1e-9);
+    }
+
+    @Test
+    void parseSecondsAcceptsOnlyUnsignedDecimals() {
+        assertEquals(12.345, parseBytes("12.345"), 1e-9);
+        assertEquals(7.0, parseBytes("7"), 1e-9);
+        assertEquals(0.5, parseBytes(".5"), 1e-9);
+        assertEquals(-1, parseBytes("-1"), 1e-9);
+        assertEquals(-1, parseBytes("1.2.3"), 1e-9);
+        assertEquals(-1, parseBytes(""), 1e-9);
+    }
+
+    private static boolean acceptBytes(JobProgress.Part part, String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return part.accept(bytes, 0, bytes.length);
+    }
+
+    private static double parseBytes(String s) {
+        return JobProgress.parseSeconds(s.getBytes(StandardCharsets.US_ASCII), 0, s.length());
+    }
+}
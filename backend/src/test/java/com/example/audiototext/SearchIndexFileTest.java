@@ -0,0 +1,46 @@
+package com.example.audiototext;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SearchIndexFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackWhatTheBuilderWrote() throws IOException {
+        SearchIndexFile.Builder builder = new SearchIndexFile.Builder();
+        builder.add(1L, "job-a", List.of(
+                new TranscriptSegment(0.0, 2.5, " Hello world, hello again "),
+                new TranscriptSegment(2.5, 3.0, " ... "), // No words: not indexed
+                new TranscriptSegment(3.0, 6.0, "Goodbye")));
+        builder.add(2L, "job-b", List.of(new TranscriptSegment(1.0, 4.0, "Hello from user two")));
+        Path file = dir.resolve("index.bin");
+        builder.write(file);
+
+        SearchIndexFile index = SearchIndexFile.open(file);
+
+        assertEquals(2, index.jobCount());
+        assertEquals("job-a", index.jobId(0));
+        assertEquals(3, index.docCount());
+        assertEquals("Hello world, hello again", index.docText(0));
+        assertEquals(3.0, index.docStart(1), 0.001);
+        assertEquals(2, index.userDocs(1L));
+        assertEquals(1, index.userDocs(2L));
+
+        SearchGeneration.PostingList hello = index.postings(1L, "hello");
+        assertEquals(1, hello.size());
+        assertEquals(0, hello.doc(0));
+        assertEquals(2, hello.termFrequency(0));
+        assertEquals(2, index.postings(2L, "hello").doc(0));
+        assertNull(index.postings(1L, "two")); // Another user's words stay theirs
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.audiototext;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TokenAuthenticationFilterTest {
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void validAccessTokenAuthenticatesTheRequest() throws Exception {
+        AuthTokens tokens = AuthTokensTest.create(AuthTokensTest.SECRET, 15, 14);
+        User user = User.builder().id(3L).username("u3").email("u3@example.com").build();
+        String token = tokens.issue(user, new MockHttpServletResponse()).accessToken;
+        MockFilterChain chain = new MockFilterChain();
+
+        new TokenAuthenticationFilter(tokens).doFilter(AuthTokensTest.bearer(token), new MockHttpServletResponse(),
+                chain);
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(authentication);
+        assertEquals(3L, ((User) authentication.getPrincipal()).getId());
+        assertNotNull(chain.getRequest());
+    }
+
+    @Test
+    void requestWithARefreshTokenStaysAnonymous() throws Exception {
+        AuthTokens tokens = AuthTokensTest.create(AuthTokensTest.SECRET, 15, 14);
+        User user = User.builder().id(3L).username("u3").email("u3@example.com").build();
+        String refreshToken = tokens.issue(user, new MockHttpServletResponse()).refreshToken;
+        MockFilterChain chain = new MockFilterChain();
+
+        new TokenAuthenticationFilter(tokens).doFilter(AuthTokensTest.bearer(refreshToken),
+                new MockHttpServletResponse(), chain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertNotNull(chain.getRequest()); // Passed on; the authorization rules turn it away
+    }
+
+    @Test
+    void requestWithoutATokenStaysAnonymous() throws Exception {
+        AuthTokens tokens = AuthTokensTest.create(AuthTokensTest.SECRET, 15, 14);
+
+        new TokenAuthenticationFilter(tokens).doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(),
+                new MockFilterChain());
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+}
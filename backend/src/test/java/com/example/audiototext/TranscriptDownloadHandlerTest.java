@@ -0,0 +1,123 @@
+package com.example.audiototext;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TranscriptDownloadHandlerTest {
+
+    @TempDir
+    Path dir;
+
+    private TranscriptDownloadHandler handler;
+    private SegmentFile file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        handler = new TranscriptDownloadHandler();
+        ReflectionTestUtils.setField(handler, "renderCacheMb", 64L);
+        List<TranscriptSegment> segments = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            segments.add(new TranscriptSegment(i * 2, i * 2 + 2, " Sentence number " + i + " of the recording."));
+        }
+        file = SegmentFile.open(SegmentFile.write(segments, dir.resolve("job.seg")));
+    }
+
+    @Test
+    void rangeIsASliceOfTheFullRenderingRenderedOnce() throws IOException {
+        MockHttpServletResponse full = get(TranscriptWriter.Format.SRT, null, null);
+        Object rendering = renderings().values().iterator().next();
+
+        MockHttpServletResponse partial = get(TranscriptWriter.Format.SRT, "bytes=100-199", null);
+
+        assertEquals(206, partial.getStatus());
+        assertEquals(100, partial.getContentLength());
+        assertEquals("bytes 100-199/" + full.getContentLength(), partial.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(full.getContentAsByteArray(), 100, 200),
+                partial.getContentAsByteArray());
+        assertEquals(1, renderings().size());
+        assertSame(rendering, renderings().values().iterator().next());
+    }
+
+    @Test
+    void unsatisfiableRangeGets416WithTheLength() throws IOException {
+        int length = get(TranscriptWriter.Format.TXT, null, null).getContentLength();
+
+        MockHttpServletResponse response = get(TranscriptWriter.Format.TXT, "bytes=" + length + "-", null);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */" + length, response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void gzipVariantIsCompressedOnceAndMatchesThePlainBody() throws IOException {
+        byte[] plain = get(TranscriptWriter.Format.VTT, null, null).getContentAsByteArray();
+
+        MockHttpServletResponse first = get(TranscriptWriter.Format.VTT, null, "gzip, deflate");
+        MockHttpServletResponse second = get(TranscriptWriter.Format.VTT, null, "gzip");
+
+        assertEquals("gzip", first.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(first.getHeader(HttpHeaders.ETAG).endsWith("-gz\""));
+        assertEquals(first.getContentLength(), first.getContentAsByteArray().length);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(first.getContentAsByteArray()))) {
+            assertArrayEquals(plain, in.readAllBytes());
+        }
+        assertArrayEquals(first.getContentAsByteArray(), second.getContentAsByteArray());
+        assertEquals((long) plain.length + first.getContentLength(),
+                ReflectionTestUtils.getField(handler, "renderedBytes"));
+    }
+
+    @Test
+    void formatsAndSlicesAreCachedSeparatelyAndEvictedOverTheLimit() throws IOException {
+        get(TranscriptWriter.Format.TXT, null, null);
+        get(TranscriptWriter.Format.SRT, null, null);
+        handler.serveRendered(file, TranscriptWriter.Format.SRT, 10, 20, null, new MockHttpServletRequest(),
+                new MockHttpServletResponse());
+        assertEquals(3, renderings().size());
+
+        ReflectionTestUtils.setField(handler, "renderCacheMb", 0L);
+        get(TranscriptWriter.Format.JSON, null, null);
+
+        // Only the rendering just made is left, even though it alone is over the limit
+        assertEquals(1, renderings().size());
+        assertTrue(renderings().keySet().iterator().next().contains("-json\""));
+    }
+
+    private MockHttpServletResponse get(TranscriptWriter.Format format, String range, String acceptEncoding)
+            throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (range != null) {
+            request.addHeader(HttpHeaders.RANGE, range);
+        }
+        if (acceptEncoding != null) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        handler.serveRendered(file, format, 0, file.size(), "transcript.txt", request, response);
+        return response;
+    }
+
+    private Map<String, ?> renderings() {
+        @SuppressWarnings("unchecked")
+        Map<String, ?> renderings = (Map<String, ?>) ReflectionTestUtils.getField(handler, "renderings");
+        return renderings;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.audiototext;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TranscriptStitcherTest {
+
+    // 600 s windows with 5 s of overlap: boundaries at 597.5 s and 1192.5 s
+    private static final double FIRST = 0;
+    private static final double SECOND = 595;
+    private static final double THIRD = 1190;
+
+    @Test
+    void shiftsSegmentsByTheirChunkOffset() {
+        List<TranscriptSegment> merged = TranscriptStitcher.stitch(List.of(
+                chunk(FIRST, 600, segment(1, 3, "one")),
+                chunk(SECOND, 600, segment(10, 12, "two")),
+                chunk(THIRD, 100, segment(20, 25, "three"))));
+
+        assertSegments(merged, "1.0-3.0 one", "605.0-607.0 two", "1210.0-1215.0 three");
+    }
+
+    @Test
+    void segmentsInTheOverlapAreKeptByTheChunkOwningTheirMidpoint() {
+        List<TranscriptSegment> merged = TranscriptStitcher.stitch(List.of(
+                chunk(FIRST, 600,
+                        segment(593, 597, "before the boundary"),
+                        segment(598, 600, "cut off at the end")), // Midpoint 599: the next chunk's
+                chunk(SECOND, 600,
+                        segment(0, 2, "before the"),              // 595-597, midpoint 596: the previous chunk's
+                        segment(3, 5, "cut off at the end, whole"),
+                        segment(6, 8, "after"))));
+
+        assertSegments(merged, "593.0-597.0 before the boundary", "598.0-600.0 cut off at the end, whole",
+                "601.0-603.0 after");
+    }
+
+    @Test
+    void dropsTheSecondCopyOfASegmentStraddlingTheBoundary() {
+        List<TranscriptSegment> merged = TranscriptStitcher.stitch(List.of(
+                chunk(FIRST, 600, segment(595, 599.5, "Straddling words.")),   // Midpoint 597.25
+                chunk(SECOND, 600, segment(0.5, 5, "straddling words"),        // 595.5-600, midpoint 597.75
+                        segment(5, 7, "next"))));
+
+        assertSegments(merged, "595.0-599.5 Straddling words.", "600.0-602.0 next");
+    }
+
+    @Test
+    void clipsADifferentSegmentThatStartsBeforeThePreviousEnds() {
+        List<TranscriptSegment> merged = TranscriptStitcher.stitch(List.of(
+                chunk(FIRST, 600, segment(594, 598, "first take")),            // Midpoint 596
+                chunk(SECOND, 600, segment(2, 6, "second take"),               // 597-601, midpoint 599
+                        segment(2.5, 3, "swallowed"))));                       // 597.5-598, inside the clip
+
+        assertSegments(merged, "594.0-598.0 first take", "598.0-601.0 second take");
+    }
+
+    @Test
+    void prefixUpToTheNextBoundaryIsStable() {
+        List<TranscriptStitcher.ChunkResult> chunks = List.of(
+                chunk(FIRST, 600, segment(1, 3, "one"), segment(596, 599, "overlap")),
+                chunk(SECOND, 600, segment(1, 4, "overlap"), segment(590, 596, "late in two")),
+                chunk(THIRD, 100, segment(0, 2, "gone"), segment(4, 6, "three")));
+        List<TranscriptSegment> all = TranscriptStitcher.stitch(chunks);
+
+        // Only the first two chunks are done; the third owns everything from 1192.5 s
+        List<TranscriptSegment> prefix = TranscriptStitcher.stitch(chunks.subList(0, 2),
+                TranscriptStitcher.boundary(SECOND, 600, THIRD, 100));
+
+        assertSegments(prefix, "1.0-3.0 one", "596.0-599.0 overlap", "1185.0-1191.0 late in two");
+        assertEquals(all.subList(0, prefix.size()).toString(), prefix.toString());
+        assertSegments(all.subList(prefix.size(), all.size()), "1194.0-1196.0 three");
+    }
+
+    private static TranscriptStitcher.ChunkResult chunk(double offset, double duration,
+            TranscriptSegment... segments) {
+        return new TranscriptStitcher.ChunkResult(offset, duration, List.of(segments));
+    }
+
+    private static TranscriptSegment segment(double start, double end, String text) {
+        return new TranscriptSegment(start, end, text);
+    }
+
+    private static void assertSegments(List<TranscriptSegment> segments, String... expected) {
+        assertEquals(List.of(expected), segments.stream()
+                .map(s -> s.getStart() + "-" + s.getEnd() + " " + s.getText())
+                .toList());
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.audiototext;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TranscriptionControllerBatchTest {
+
+    private TranscriptionService service;
+    private TranscriptionController controller;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        service = mock(TranscriptionService.class);
+        when(service.isAcceptingJobs()).thenReturn(true);
+        controller = new TranscriptionController();
+        ReflectionTestUtils.setField(controller, "transcriptionService", service);
+        User user = User.builder().id(1L).username("u1").build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void failedItemNextToAnAcceptedOneIsAPartialSuccess() throws Exception {
+        ResponseEntity<?> response = submit(accepted("a.mp3"), failed("b.mp3"));
+
+        assertEquals(HttpStatus.MULTI_STATUS, response.getStatusCode());
+        assertNull(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        List<?> rejected = (List<?>) ((Map<?, ?>) response.getBody()).get("rejected");
+        assertEquals("Could not submit: boom", ((Map<?, ?>) rejected.get(0)).get("error"));
+    }
+
+    @Test
+    void retryAfterComesFromRetryableItemsOnly() throws Exception {
+        ResponseEntity<?> response = submit(failed("a.mp3"), busy("b.mp3", 30), failed("c.mp3"));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals("30", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void batchWhereEveryItemFailedIsAServerError() throws Exception {
+        ResponseEntity<?> response = submit(failed("a.mp3"));
+
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+    }
+
+    @Test
+    void fullyAcceptedBatchIsOk() throws Exception {
+        assertEquals(HttpStatus.OK, submit(accepted("a.mp3")).getStatusCode());
+    }
+
+    private ResponseEntity<?> submit(TranscriptionService.BatchItem... items) throws Exception {
+        when(service.submitBatch(any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(new TranscriptionService.BatchResult("batch-1", List.of(items)));
+        return controller.submitBatch(null, null, List.of("https://example.com/x.mp3"), null, "small", null,
+                "transcribe");
+    }
+
+    private static TranscriptionService.BatchItem accepted(String name) {
+        TranscriptionService.BatchItem item = item(name);
+        item.status = JobStatus.PENDING;
+        return item;
+    }
+
+    private static TranscriptionService.BatchItem busy(String name, long retryAfterSeconds) {
+        TranscriptionService.BatchItem item = item(name);
+        item.error = "Server is busy";
+        item.retryAfterSeconds = retryAfterSeconds;
+        return item;
+    }
+
+    private static TranscriptionService.BatchItem failed(String name) {
+        TranscriptionService.BatchItem item = item(name);
+        item.error = "Could not submit: boom";
+        return item;
+    }
+
+    private static TranscriptionService.BatchItem item(String name) {
+        TranscriptionService.BatchItem item = new TranscriptionService.BatchItem(name, name, null);
+        item.jobId = name + "-job";
+        return item;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.audiototext;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TranscriptionControllerUploadTest {
+
+    @TempDir
+    Path dir;
+
+    private UploadSessions uploads;
+    private TranscriptionController controller;
+    private UploadSessions.Session session;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        uploads = new UploadSessions();
+        ReflectionTestUtils.setField(uploads, "uploadDir", dir.toString());
+        ReflectionTestUtils.setField(uploads, "maxSizeMb", 1L);
+        ReflectionTestUtils.setField(uploads, "sessionTtlMinutes", 60L);
+        ReflectionTestUtils.setField(uploads, "metrics", new PipelineMetrics(new SimpleMeterRegistry()));
+        controller = new TranscriptionController();
+        ReflectionTestUtils.setField(controller, "uploadSessions", uploads);
+        User user = User.builder().id(1L).username("u1").build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, List.of()));
+        session = uploads.create(1L, "talk.wav", 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void rangesInOrderAreAccepted() {
+        assertEquals(HttpStatus.OK, put("bytes 0-49/100", 50).getStatusCode());
+        ResponseEntity<?> response = put("bytes 50-99/100", 50);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(true, ((Map<?, ?>) response.getBody()).get("complete"));
+    }
+
+    @Test
+    void rangeNotAtTheOffsetIs409WithTheOffset() {
+        put("bytes 0-49/100", 50);
+
+        ResponseEntity<?> response = put("bytes 60-99/100", 40);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertEquals(50L, ((Map<?, ?>) response.getBody()).get("offset"));
+    }
+
+    @Test
+    void bodyLongerThanTheUploadIs400() {
+        assertEquals(HttpStatus.BAD_REQUEST, put(null, 101).getStatusCode());
+    }
+
+    @Test
+    void rangeWithAnotherTotalIs400() {
+        assertEquals(HttpStatus.BAD_REQUEST, put("bytes 0-49/200", 50).getStatusCode());
+    }
+
+    private ResponseEntity<?> put(String contentRange, int bytes) {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/uploads/" + session.id);
+        request.setContent(new byte[bytes]);
+        return controller.writeUpload(session.id, contentRange, request);
+    }
+}
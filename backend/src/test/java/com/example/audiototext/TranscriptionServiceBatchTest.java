@@ -0,0 +1,84 @@
+package com.example.audiototext;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class TranscriptionServiceBatchTest {
+
+    private static final String BROKEN = "https://example.com/broken.mp3";
+    private static final String BUSY = "https://example.com/busy.mp3";
+    private static final String FINE = "https://example.com/fine.mp3";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private TranscriptionService service;
+    private TranscriptionScheduler scheduler;
+    private TranscriptionJobRepository repository;
+    private UserQuotas userQuotas;
+
+    @BeforeEach
+    void setUp() {
+        service = new TranscriptionService();
+        scheduler = mock(TranscriptionScheduler.class);
+        repository = mock(TranscriptionJobRepository.class);
+        userQuotas = mock(UserQuotas.class);
+        ReflectionTestUtils.setField(service, "scheduler", scheduler);
+        ReflectionTestUtils.setField(service, "repository", repository);
+        ReflectionTestUtils.setField(service, "userQuotas", userQuotas);
+        ReflectionTestUtils.setField(service, "metrics", new PipelineMetrics(registry));
+        ReflectionTestUtils.setField(service, "jobStates", mock(JobStateTable.class));
+        ReflectionTestUtils.setField(service, "eventHub", mock(JobEventHub.class));
+        ReflectionTestUtils.setField(service, "jobQueue", mock(JobQueue.class));
+        ReflectionTestUtils.setField(service, "linkCache", mock(LinkCache.class));
+        ReflectionTestUtils.setField(service, "transcriptCache", mock(TranscriptCache.class));
+        ReflectionTestUtils.setField(service, "jdbcTemplate", mock(JdbcTemplate.class));
+        ReflectionTestUtils.setField(service, "transactionTemplate", mock(TransactionTemplate.class));
+        ReflectionTestUtils.setField(service, "maxBatchJobs", 10);
+        ReflectionTestUtils.setField(service, "defaultAudioMinutes", 10.0);
+        ReflectionTestUtils.setField(service, "autoDeadlineSeconds", 900L);
+    }
+
+    @Test
+    void unexpectedFailureRejectsOnlyThatItemWithoutRetryAfter() throws IOException {
+        doThrow(new QueueFullException("Transcription queue is full", 30))
+                .doThrow(new IllegalStateException("disk on fire"))
+                .doNothing()
+                .when(scheduler).submit(any(), any(), anyLong(), anyDouble(), anyDouble(), any());
+        User user = User.builder().id(1L).username("u1").build();
+
+        TranscriptionService.BatchResult batch = service.submitBatch(user, List.of(), null,
+                List.of(BUSY, BROKEN, FINE), null, "small", "transcribe", null);
+
+        TranscriptionService.BatchItem busy = batch.items.get(0);
+        assertNull(busy.status);
+        assertEquals(30L, busy.retryAfterSeconds);
+
+        TranscriptionService.BatchItem broken = batch.items.get(1);
+        assertNull(broken.status);
+        assertEquals("Could not submit: disk on fire", broken.error);
+        assertNull(broken.retryAfterSeconds);
+
+        assertEquals(JobStatus.PENDING, batch.items.get(2).status);
+        verify(repository).deleteAllByIdInBatch(List.of(busy.jobId, broken.jobId));
+        verify(userQuotas, times(2)).refund(eq(1L), anyDouble());
+        assertEquals(1.0, registry.counter("transcription.batch.rejected", "reason", "busy").count());
+        assertEquals(1.0, registry.counter("transcription.batch.rejected", "reason", "error").count());
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.audiototext;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UploadSessionsTest {
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private UploadSessions uploads;
+    private final byte[] data = new byte[600_000];
+
+    @BeforeEach
+    void setUp() throws IOException {
+        new Random(42).nextBytes(data);
+        uploads = new UploadSessions();
+        ReflectionTestUtils.setField(uploads, "uploadDir", dir.toString());
+        ReflectionTestUtils.setField(uploads, "maxSizeMb", 1L);
+        ReflectionTestUtils.setField(uploads, "sessionTtlMinutes", 60L);
+        ReflectionTestUtils.setField(uploads, "metrics", new PipelineMetrics(registry));
+        ReflectionTestUtils.invokeMethod(uploads, "removeStaleParts");
+    }
+
+    @Test
+    void resumesAfterATruncatedStreamAndCompletesWithTheRightChecksum() throws Exception {
+        UploadSessions.Session session = uploads.create(1L, "talk.wav", data.length);
+
+        // The connection drops somewhere after 300 000 bytes
+        assertThrows(IOException.class, () -> uploads.write(session, 0, -1, breakingAfter(300_000)));
+        long offset = session.getOffset();
+        assertTrue(offset > 0 && offset <= 300_000);
+
+        uploads.write(session, offset, -1, new ByteArrayInputStream(data, (int) offset, data.length - (int) offset));
+        StoredAudio stored = uploads.complete(session);
+
+        assertArrayEquals(data, Files.readAllBytes(Paths.get(stored.path)));
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data)), stored.sha256);
+        assertTrue(stored.path.endsWith("talk.wav"));
+        assertNull(uploads.get(session.id, 1L));
+        assertEquals(1.0, registry.counter("transcription.upload.sessions", "event", "completed").count());
+    }
+
+    @Test
+    void writeAtTheWrongOffsetIsAConflictWithTheOffsetToResumeFrom() throws IOException {
+        UploadSessions.Session session = uploads.create(1L, "talk.wav", data.length);
+        uploads.write(session, 0, 1000, new ByteArrayInputStream(data));
+
+        UploadConflictException ahead = assertThrows(UploadConflictException.class,
+                () -> uploads.write(session, 2000, 1000, new ByteArrayInputStream(data, 2000, 1000)));
+        UploadConflictException behind = assertThrows(UploadConflictException.class,
+                () -> uploads.write(session, 0, 1000, new ByteArrayInputStream(data)));
+
+        assertEquals(1000, ahead.getOffset());
+        assertEquals(1000, behind.getOffset());
+        assertEquals(1000, session.getOffset());
+    }
+
+    @Test
+    void completingAnUnfinishedUploadIsAConflict() throws IOException {
+        UploadSessions.Session session = uploads.create(1L, "talk.wav", data.length);
+        uploads.write(session, 0, 1000, new ByteArrayInputStream(data));
+
+        assertEquals(1000, assertThrows(UploadConflictException.class, () -> uploads.complete(session)).getOffset());
+    }
+
+    @Test
+    void rejectsMoreDataThanDeclared() throws IOException {
+        UploadSessions.Session session = uploads.create(1L, "talk.wav", 1000);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> uploads.write(session, 0, -1, new ByteArrayInputStream(data, 0, 1001)));
+    }
+
+    @Test
+    void rejectsLengthsOutsideTheLimit() {
+        assertThrows(IllegalArgumentException.class, () -> uploads.create(1L, "big.wav", 1024 * 1024 + 1));
+        assertThrows(IllegalArgumentException.class, () -> uploads.create(1L, "empty.wav", 0));
+    }
+
+    @Test
+    void sessionsBelongToTheirUser() throws IOException {
+        UploadSessions.Session session = uploads.create(1L, "talk.wav", 1000);
+
+        assertNotNull(uploads.get(session.id, 1L));
+        assertNull(uploads.get(session.id, 2L));
+    }
+
+    @Test
+    void expirySkipsASessionBeingWrittenTo() throws Exception {
+        UploadSessions.Session session = uploads.create(1L, "talk.wav", data.length);
+        session.lastActivityMillis = 0;
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            try {
+                uploads.write(session, 0, -1, new InputStream() {
+                    @Override
+                    public int read() {
+                        return -1;
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        writing.countDown();
+                        try {
+                            release.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                        return -1;
+                    }
+                });
+            } catch (IOException ignored) {
+            }
+        });
+        writer.start();
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        uploads.expireIdleSessions();
+        assertNotNull(uploads.get(session.id, 1L));
+        assertTrue(Files.exists(session.partPath));
+
+        release.countDown();
+        writer.join(5000);
+        uploads.expireIdleSessions();
+        assertNull(uploads.get(session.id, 1L));
+        assertFalse(Files.exists(session.partPath));
+        assertEquals(1.0, registry.counter("transcription.upload.sessions", "event", "expired").count());
+    }
+
+    @Test
+    void writeToAnExpiredSessionIsAConflict() throws IOException {
+        UploadSessions.Session session = uploads.create(1L, "talk.wav", data.length);
+        session.lastActivityMillis = 0;
+        uploads.expireIdleSessions();
+
+        assertThrows(UploadConflictException.class,
+                () -> uploads.write(session, 0, -1, new ByteArrayInputStream(data)));
+    }
+
+    private InputStream breakingAfter(int bytes) {
+        return new InputStream() {
+            private int position;
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (position >= bytes) {
+                    throw new IOException("Connection reset");
+                }
+                int n = Math.min(length, Math.min(bytes - position, 100_000));
+                System.arraycopy(Arrays.copyOfRange(data, position, position + n), 0, buffer, offset, n);
+                position += n;
+                return n;
+            }
+        };
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.audiototext;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserQuotasTest {
+
+    private UserRepository users;
+    private UserQuotas quotas;
+
+    @BeforeEach
+    void setUp() {
+        users = mock(UserRepository.class);
+        when(users.findById(anyLong())).thenReturn(Optional.empty());
+        quotas = new UserQuotas();
+        ReflectionTestUtils.setField(quotas, "userRepository", users);
+        ReflectionTestUtils.setField(quotas, "enabled", true);
+        ReflectionTestUtils.setField(quotas, "defaultWeight", 1.0);
+        configure(36_000, 2, 6_000, 1); // 10 jobs and 100 seconds of audio per second; 60 seconds of audio burst
+    }
+
+    private void configure(int jobsPerHour, int jobBurst, int audioMinutesPerHour, int audioBurstMinutes) {
+        ReflectionTestUtils.setField(quotas, "defaultJobsPerHour", jobsPerHour);
+        ReflectionTestUtils.setField(quotas, "jobBurst", jobBurst);
+        ReflectionTestUtils.setField(quotas, "defaultAudioMinutesPerHour", audioMinutesPerHour);
+        ReflectionTestUtils.setField(quotas, "audioBurstMinutes", audioBurstMinutes);
+    }
+
+    @Test
+    void burstThenRetryAfterUntilTheJobBucketRefills() throws InterruptedException {
+        quotas.acquire(1, 1);
+        quotas.acquire(1, 1);
+
+        QuotaExceededException e = assertThrows(QuotaExceededException.class, () -> quotas.acquire(1, 1));
+        assertEquals(1, e.getRetryAfterSeconds()); // A tenth of a second, rounded up
+        assertEquals(1, quotas.retryAfterSeconds(1));
+
+        Thread.sleep(150);
+        assertEquals(0, quotas.retryAfterSeconds(1));
+        assertDoesNotThrow(() -> quotas.acquire(1, 1));
+    }
+
+    @Test
+    void retryAfterCoversTheMissingAudio() {
+        configure(36_000, 100, 60, 1); // One second of audio per second, 60 seconds of burst
+        quotas.acquire(1, 50);
+
+        QuotaExceededException e = assertThrows(QuotaExceededException.class, () -> quotas.acquire(1, 30));
+        assertEquals(20, e.getRetryAfterSeconds());
+    }
+
+    @Test
+    void longRecordingOverdrawsAFullBucket() {
+        configure(36_000, 100, 60, 1);
+        quotas.acquire(1, 100);
+
+        QuotaExceededException e = assertThrows(QuotaExceededException.class, () -> quotas.acquire(1, 1));
+        assertEquals(41, e.getRetryAfterSeconds());
+    }
+
+    @Test
+    void refundGivesBackWhatWasTaken() {
+        configure(36_000, 100, 60, 1);
+        quotas.acquire(1, 50);
+        quotas.refund(1, 50);
+
+        assertDoesNotThrow(() -> quotas.acquire(1, 50));
+    }
+
+    @Test
+    void bucketsArePerUserAndUserOverridesApply() {
+        User limited = User.builder().id(2L).username("limited").jobsPerHour(1).schedulingWeight(3.0).build();
+        when(users.findById(2L)).thenReturn(Optional.of(limited));
+
+        quotas.acquire(2, 1);
+        quotas.acquire(2, 1);
+
+        // Same burst for everyone, but the limited user's next job is an hour away
+        QuotaExceededException e = assertThrows(QuotaExceededException.class, () -> quotas.acquire(2, 1));
+        assertEquals(3600, e.getRetryAfterSeconds(), 1);
+        assertDoesNotThrow(() -> quotas.acquire(1, 1));
+        assertEquals(3.0, quotas.weight(2));
+        assertEquals(1.0, quotas.weight(1));
+    }
+}
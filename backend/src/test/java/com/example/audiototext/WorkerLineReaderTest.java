@@ -0,0 +1,60 @@
+package com.example.audiototext;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WorkerLineReaderTest {
+
+    @Test
+    void splitsOnLineFeedCarriageReturnAndBoth() throws IOException {
+        assertEquals(List.of("one", "two", "three", "", "four"), readAll("one\ntwo\r\nthree\r\rfour\n", 8192));
+    }
+
+    @Test
+    void returnsTheLastLineWithoutATerminator() throws IOException {
+        assertEquals(List.of("one", "two"), readAll("one\ntwo", 8192));
+        assertEquals(List.of(), readAll("", 8192));
+    }
+
+    @Test
+    void growsTheBufferForLinesLongerThanIt() throws IOException {
+        String longLine = "x".repeat(100);
+        assertEquals(List.of(longLine, "short", longLine), readAll(longLine + "\nshort\n" + longLine + "\n", 16));
+    }
+
+    @Test
+    void handlesTerminatorsSplitAcrossReads() throws IOException {
+        // One byte per read, so "\r" and "\n" of a pair always arrive separately
+        assertEquals(List.of("one", "two", "thrée"), readAll(trickle("one\r\ntwo\r\nthrée\r\n"), 4));
+    }
+
+    private static List<String> readAll(String text, int bufferSize) throws IOException {
+        return readAll(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), bufferSize);
+    }
+
+    private static List<String> readAll(InputStream in, int bufferSize) throws IOException {
+        WorkerLineReader lines = new WorkerLineReader(in, bufferSize);
+        List<String> result = new ArrayList<>();
+        while (lines.next()) {
+            result.add(lines.line());
+        }
+        return result;
+    }
+
+    private static InputStream trickle(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+    }
+}
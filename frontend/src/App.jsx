@@ -1,5 +1,5 @@
 import { useState, useEffect, useRef } from 'react'
-import { uploadAudio, checkStatus, getDownloadUrl, transcribeLink, getHistory, login, register, getMe, logout } from './api'
+import { uploadAudioResumable, checkStatus, getDownloadUrl, transcribeLink, getHistory, searchTranscripts, login, register, getMe, logout } from './api'
 import './index.css'
 
 const LANGUAGES = [
@@ -21,6 +21,7 @@ const MODELS = [
     { id: 'small', name: 'Small (Recommended)' },
     { id: 'medium', name: 'Medium (Accurate)' },
     { id: 'large', name: 'Large (Ultimate)' },
+    { id: 'auto', name: 'Auto (Best that fits the queue)' },
 ];
 
 function Auth({ onAuthSuccess }) {
@@ -133,11 +134,17 @@ function App() {
     const [jobId, setJobId] = useState(null);
     const [status, setStatus] = useState(null);
     const [statusMessage, setStatusMessage] = useState('');
+    const [uploadProgress, setUploadProgress] = useState(0);
+    const [progress, setProgress] = useState(null);
+    const [queueEta, setQueueEta] = useState(null);
     const [transcript, setTranscript] = useState(null);
     const [error, setError] = useState(null);
     const [loading, setLoading] = useState(false);
     const [isDragging, setIsDragging] = useState(false);
     const [history, setHistory] = useState([]);
+    const [historyCursor, setHistoryCursor] = useState(null);
+    const [searchQuery, setSearchQuery] = useState('');
+    const [searchHits, setSearchHits] = useState(null);
     const [copied, setCopied] = useState(false);
 
     const resultRef = useRef(null);
@@ -183,12 +190,56 @@ function App() {
         setUser(null);
         setActiveTab('file');
         setHistory([]);
+        setHistoryCursor(null);
     };
 
-    const fetchHistory = async () => {
+    const openJob = async (id, jobStatus) => {
+        setJobId(id);
+        setStatus(jobStatus);
+        if (jobStatus === 'COMPLETED') {
+            const data = await checkStatus(id);
+            setTranscript(data.transcript);
+            setTimeout(() => {
+                resultRef.current?.scrollIntoView({ behavior: 'smooth', block: 'start' });
+            }, 500);
+        } else {
+            setTranscript(null);
+        }
+        setActiveTab('file');
+    };
+
+    const handleSearch = async (e) => {
+        e.preventDefault();
+        if (!searchQuery.trim()) {
+            setSearchHits(null);
+            return;
+        }
+        try {
+            const data = await searchTranscripts(searchQuery.trim());
+            setSearchHits(data.hits);
+        } catch (err) {
+            console.error("Search failed", err);
+        }
+    };
+
+    // Wraps the matched words of a search hit in <mark>
+    const highlight = (hit) => {
+        const parts = [];
+        let last = 0;
+        hit.highlights.forEach(([from, to], i) => {
+            parts.push(hit.snippet.substring(last, from));
+            parts.push(<mark key={i}>{hit.snippet.substring(from, to)}</mark>);
+            last = to;
+        });
+        parts.push(hit.snippet.substring(last));
+        return parts;
+    };
+
+    const fetchHistory = async (cursor = null) => {
         try {
-            const data = await getHistory();
-            setHistory(data);
+            const data = await getHistory(cursor ? { cursor } : {});
+            setHistory(prev => cursor ? [...prev, ...data.items] : data.items);
+            setHistoryCursor(data.nextCursor);
         } catch (err) {
             console.error("Failed to fetch history", err);
         }
@@ -229,6 +280,12 @@ function App() {
         }
     };
 
+    const formatTimestamp = (seconds) => {
+        const total = Math.floor(seconds);
+        const pad = (n) => String(n).padStart(2, '0');
+        return `[${pad(Math.floor(total / 3600))}:${pad(Math.floor((total % 3600) / 60))}:${pad(total % 60)}]`;
+    };
+
     const startRealtimeUpdates = (id) => {
         if (pollInterval.current) {
             if (pollInterval.current instanceof EventSource) pollInterval.current.close();
@@ -236,14 +293,28 @@ function App() {
         }
 
         const eventSource = new EventSource(`/api/status/events/${id}`);
+        const segmentLines = [];
+
+        // Partial transcript: one event per decoded segment, in the same format as the timestamped file
+        eventSource.addEventListener('segment', (event) => {
+            const segment = JSON.parse(event.data);
+            segmentLines.push(`${formatTimestamp(segment.start)} ${segment.text.trim()}`);
+            setTranscript(segmentLines.join('\n') + '\n');
+        });
+
+        eventSource.addEventListener('progress', (event) => {
+            setProgress(JSON.parse(event.data));
+        });
 
         eventSource.addEventListener('status-update', async (event) => {
             const data = JSON.parse(event.data);
             setStatus(data.status);
             if (data.message) setStatusMessage(data.message);
 
+            if (data.status === 'COMPLETED' || data.status === 'FAILED') setProgress(null);
             if (data.status === 'COMPLETED') {
                 try {
+                    // The live view may miss segments that aged out of the replay buffer; show the stored result
                     const finalData = await checkStatus(id);
                     setTranscript(finalData.transcript);
                     // Scroll to result after a short delay for state update
@@ -264,9 +335,11 @@ function App() {
             }
         });
 
+        // The browser reconnects on its own and resumes after the last event it saw
         eventSource.onerror = (err) => {
-            console.error("SSE Connection Error:", err);
-            eventSource.close();
+            if (eventSource.readyState === EventSource.CLOSED) {
+                console.error("SSE Connection Error:", err);
+            }
         };
 
         pollInterval.current = eventSource;
@@ -285,6 +358,7 @@ function App() {
         setLoading(true);
         setError(null);
         setTranscript(null);
+        setQueueEta(null);
         setStatus('UPLOADING');
 
         try {
@@ -296,7 +370,8 @@ function App() {
 
             let data;
             if (activeTab === 'file') {
-                data = await uploadAudio(file, options);
+                setUploadProgress(0);
+                data = await uploadAudioResumable(file, options, setUploadProgress);
             } else {
                 setStatus('PROCESSING');
                 data = await transcribeLink(url, options);
@@ -304,7 +379,17 @@ function App() {
 
             setJobId(data.jobId);
             setStatus(data.status);
-            startRealtimeUpdates(data.jobId);
+            if (data.status === 'COMPLETED') {
+                // Served from the transcript cache, nothing to wait for
+                const finalData = await checkStatus(data.jobId);
+                setTranscript(finalData.transcript);
+                setStatusMessage(finalData.message || '');
+                setLoading(false);
+            } else {
+                startRealtimeUpdates(data.jobId);
+                // Predicted start and finish, from the scheduler's lanes and each model's real-time factor
+                checkStatus(data.jobId).then(setQueueEta).catch(() => setQueueEta(null));
+            }
         } catch (err) {
             console.error("Transcription Start Error:", err);
             const errorMessage = err.response?.data || err.message || "Failed to start processing. Check backend connection.";
@@ -398,7 +483,35 @@ function App() {
                     </div>
                 ) : activeTab === 'history' ? (
                     <div className="history-container">
-                        {history.length === 0 ? (
+                        <form className="search-form" onSubmit={handleSearch}>
+                            <input
+                                type="text"
+                                className="url-input"
+                                placeholder="Search your transcripts..."
+                                value={searchQuery}
+                                onChange={(e) => setSearchQuery(e.target.value)}
+                            />
+                            <button type="submit" className="view-btn">Search</button>
+                        </form>
+                        {searchHits !== null ? (
+                            searchHits.length === 0 ? (
+                                <p style={{ color: '#94a3b8', padding: '2rem', textAlign: 'center' }}>No matching segments.</p>
+                            ) : (
+                                <div className="history-list">
+                                    {searchHits.map(hit => (
+                                        <div key={hit.jobId + hit.start} className="history-item">
+                                            <div className="history-info">
+                                                <span className="history-id">[{hit.timestamp}] {hit.jobId.substring(0, 8)}...</span>
+                                                <span className="search-snippet">{highlight(hit)}</span>
+                                            </div>
+                                            <button className="view-btn" onClick={() => openJob(hit.jobId, 'COMPLETED')}>
+                                                View Details
+                                            </button>
+                                        </div>
+                                    ))}
+                                </div>
+                            )
+                        ) : history.length === 0 ? (
                             <p style={{ color: '#94a3b8', padding: '2rem', textAlign: 'center' }}>No past transcriptions found.</p>
                         ) : (
                             <div className="history-list">
@@ -421,18 +534,7 @@ function App() {
                                                 e.target.innerText = 'Loading...';
                                                 setLoading(true);
                                                 try {
-                                                    setJobId(job.id);
-                                                    setStatus(job.status);
-                                                    if (job.status === 'COMPLETED') {
-                                                        const data = await checkStatus(job.id);
-                                                        setTranscript(data.transcript);
-                                                        setTimeout(() => {
-                                                            resultRef.current?.scrollIntoView({ behavior: 'smooth', block: 'start' });
-                                                        }, 500);
-                                                    } else {
-                                                        setTranscript(null);
-                                                    }
-                                                    setActiveTab('file');
+                                                    await openJob(job.id, job.status);
                                                 } finally {
                                                     setLoading(false);
                                                     e.target.innerText = originalText;
@@ -443,6 +545,11 @@ function App() {
                                         </button>
                                     </div>
                                 ))}
+                                {historyCursor && (
+                                    <button className="view-btn" onClick={() => fetchHistory(historyCursor)}>
+                                        Load more
+                                    </button>
+                                )}
                             </div>
                         )}
                     </div>
@@ -496,7 +603,7 @@ function App() {
                             style={{ width: '100%', padding: '1.2rem' }}
                         >
                             {isProcessing ? (
-                                <span>{status === 'UPLOADING' ? 'Uploading File...' : 'AI Processing...'}</span>
+                                <span>{status === 'UPLOADING' ? `Uploading File... ${uploadProgress}%` : 'AI Processing...'}</span>
                             ) : 'Generate Script'}
                         </button>
 
@@ -507,10 +614,23 @@ function App() {
                                 <div className={`status-badge status-${status}`}>
                                     {status}
                                 </div>
-                                {status === 'PENDING' && <p>Job added to queue... waiting to start.</p>}
+                                {status === 'PENDING' && (
+                                    <p>
+                                        Job added to queue... waiting to start.
+                                        {queueEta?.expectedFinishAt &&
+                                            ` Expected to be done in about ${Math.max(1, Math.round((new Date(queueEta.expectedFinishAt) - Date.now()) / 60000))} min.`}
+                                    </p>
+                                )}
                                 {status === 'PROCESSING' && (
                                     <div>
                                         <p><strong>{statusMessage || 'Whisper is working its magic...'}</strong></p>
+                                        {progress && (
+                                            <p>
+                                                {progress.percent.toFixed(0)}% done
+                                                {progress.estimatedCompletionAt &&
+                                                    ` · about ${Math.max(1, Math.round((new Date(progress.estimatedCompletionAt) - Date.now()) / 60000))} min left`}
+                                            </p>
+                                        )}
                                         <p style={{ fontSize: '0.9rem', color: '#94a3b8' }}>
                                             This might take some time depending on audio duration and model size.
                                         </p>
@@ -556,6 +676,11 @@ function App() {
                                             WebVTT (.vtt)
                                         </button>
                                     </a>
+                                    <a href={getDownloadUrl(jobId, 'json')} target="_blank" rel="noreferrer">
+                                        <button style={{ background: 'transparent', border: '1px solid var(--primary)', color: 'var(--primary)', padding: '0.5rem 1rem', width: 'auto' }}>
+                                            Segments (.json)
+                                        </button>
+                                    </a>
                                 </div>
                             </div>
                         )}
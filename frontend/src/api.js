@@ -4,6 +4,24 @@ const API_BASE_URL = "/api";
 
 axios.defaults.withCredentials = true;
 
+// With stateless auth the access token cookie is short-lived: on a 401, trade the refresh
+// token for a new pair once (shared by concurrent requests) and retry the request.
+let refreshing = null;
+axios.interceptors.response.use(undefined, async (error) => {
+  const config = error.config;
+  if (error.response?.status !== 401 || !config || config._retried
+      || (config.url.includes("/auth/") && !config.url.endsWith("/auth/me"))) {
+    throw error;
+  }
+  refreshing = refreshing || axios.post(`${API_BASE_URL}/auth/refresh`).finally(() => { refreshing = null; });
+  try {
+    await refreshing;
+  } catch {
+    throw error;
+  }
+  return axios({ ...config, _retried: true });
+});
+
 export const uploadAudio = async (file, options = {}) => {
   const formData = new FormData();
   formData.append("file", file);
@@ -24,6 +42,50 @@ export const uploadAudio = async (file, options = {}) => {
   }
 };
 
+const UPLOAD_CHUNK_SIZE = 8 * 1024 * 1024;
+const UPLOAD_MAX_RETRIES = 5;
+
+// Resumable upload: the file goes up in ranged PUTs, and after a network error the
+// transfer continues from the offset the server reports instead of starting over.
+export const uploadAudioResumable = async (file, options = {}, onProgress) => {
+  const created = await axios.post(`${API_BASE_URL}/uploads`, null, {
+    params: { filename: file.name, length: file.size },
+  });
+  const uploadId = created.data.uploadId;
+  let offset = created.data.offset;
+  let retries = 0;
+
+  while (offset < file.size) {
+    const end = Math.min(offset + UPLOAD_CHUNK_SIZE, file.size);
+    try {
+      const response = await axios.put(`${API_BASE_URL}/uploads/${uploadId}`, file.slice(offset, end), {
+        headers: {
+          "Content-Type": "application/octet-stream",
+          "Content-Range": `bytes ${offset}-${end - 1}/${file.size}`,
+        },
+      });
+      offset = response.data.offset;
+      retries = 0;
+    } catch (error) {
+      if (error.response?.status === 404 || retries >= UPLOAD_MAX_RETRIES) {
+        throw error;
+      }
+      retries++;
+      await new Promise((resolve) => setTimeout(resolve, 1000 * 2 ** retries));
+      const state = await axios.get(`${API_BASE_URL}/uploads/${uploadId}`).catch(() => null);
+      if (state) offset = state.data.offset;
+    }
+    if (onProgress) onProgress(Math.round((100 * offset) / file.size));
+  }
+
+  const params = {};
+  if (options.language) params.language = options.language;
+  if (options.model) params.model = options.model;
+  if (options.task) params.task = options.task;
+  const response = await axios.post(`${API_BASE_URL}/uploads/${uploadId}/complete`, null, { params });
+  return response.data;
+};
+
 export const transcribeLink = async (url, options = {}) => {
   const params = new URLSearchParams();
   params.append("url", url);
@@ -52,15 +114,20 @@ export const getDownloadUrl = (jobId, format = 'txt') => {
   return `${API_BASE_URL}/download/${jobId}?format=${format}`;
 };
 
-export const getHistory = async () => {
+export const getHistory = async (params = {}) => {
   try {
-    const response = await axios.get(`${API_BASE_URL}/history`);
+    const response = await axios.get(`${API_BASE_URL}/history`, { params });
     return response.data;
   } catch (error) {
     throw error;
   }
 };
 
+export const searchTranscripts = async (q, limit = 20) => {
+  const response = await axios.get(`${API_BASE_URL}/search`, { params: { q, limit } });
+  return response.data;
+};
+
 export const login = async (username, password) => {
   const response = await axios.post(`${API_BASE_URL}/auth/login`, { username, password });
   return response.data;
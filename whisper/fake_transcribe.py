@@ -0,0 +1,157 @@
+"""
+Stand-in for transcribe.py that needs neither Whisper nor FFmpeg.
+
+It accepts the same command line as transcribe.py (single-shot and --serve
+worker mode), sleeps to simulate model loading and decoding, and writes the
+same four output files with placeholder segments. Point app.whisper.script at
+this file to exercise the backend on a machine without Whisper installed.
+
+Decoding takes --job-delay seconds plus --decode-cost seconds per second of
+audio, so load tests can model a real model's speed (e.g. 0.1 = ten times
+faster than real time). WAV durations are read from the header; other files
+are assumed to be 128 kbit/s.
+"""
+import argparse
+import json
+import os
+import sys
+import time
+import wave
+
+FAKE_SEGMENTS = [
+    (0.0, 4.2, "This is a simulated transcript."),
+    (4.2, 9.8, "No Whisper model was loaded to produce it."),
+    (9.8, 15.0, "It exists so the backend can be exercised offline."),
+]
+
+def format_timestamp(seconds, separator):
+    millis = int(round(seconds * 1000))
+    h, millis = divmod(millis, 3_600_000)
+    m, millis = divmod(millis, 60_000)
+    s, millis = divmod(millis, 1000)
+    return f"{h:02d}:{m:02d}:{s:02d}{separator}{millis:03d}"
+
+def write_outputs(output_dir, job_id):
+    os.makedirs(output_dir, exist_ok=True)
+    base = os.path.join(output_dir, job_id)
+
+    with open(f"{base}.txt", "w", encoding="utf-8") as f:
+        f.write(" ".join(text for _, _, text in FAKE_SEGMENTS))
+
+    with open(f"{base}_timestamped.txt", "w", encoding="utf-8") as f:
+        for start, _, text in FAKE_SEGMENTS:
+            m, s = divmod(int(start), 60)
+            h, m = divmod(m, 60)
+            f.write(f"[{h:02d}:{m:02d}:{s:02d}] {text}\n")
+
+    with open(f"{base}.srt", "w", encoding="utf-8") as f:
+        for i, (start, end, text) in enumerate(FAKE_SEGMENTS, start=1):
+            f.write(f"{i}\n{format_timestamp(start, ',')} --> {format_timestamp(end, ',')}\n{text}\n\n")
+
+    with open(f"{base}.vtt", "w", encoding="utf-8") as f:
+        f.write("WEBVTT\n\n")
+        for start, end, text in FAKE_SEGMENTS:
+            f.write(f"{format_timestamp(start, '.')} --> {format_timestamp(end, '.')}\n{text}\n\n")
+
+    print(f"Saved text to: {base}.txt")
+
+def fake_segments(duration):
+    """Placeholder segments, spread over the given duration when it is known."""
+    if not duration:
+        return FAKE_SEGMENTS
+    segments = []
+    start = 0.0
+    while start < duration:
+        end = min(duration, start + 5.0)
+        segments.append((start, end, f"Simulated speech at {int(start)} seconds."))
+        start = end
+    return segments
+
+def write_segments(output_dir, job_id, duration):
+    os.makedirs(output_dir, exist_ok=True)
+    path = os.path.join(output_dir, f"{job_id}.segments.json")
+    with open(path, "w", encoding="utf-8") as f:
+        json.dump([{"start": s, "end": e, "text": f" {t}"} for s, e, t in fake_segments(duration)], f)
+    print(f"Saved segments to: {path}")
+
+def audio_duration(path):
+    """Length of the input in seconds, or None if it cannot be determined."""
+    try:
+        with wave.open(path, "rb") as w:
+            return w.getnframes() / w.getframerate()
+    except (wave.Error, EOFError, OSError):
+        pass
+    try:
+        return os.path.getsize(path) * 8 / 128_000
+    except OSError:
+        return None
+
+def run_job(args, input_source, output_dir, job_id, segments_only=False, duration=None):
+    print(f"Processing audio: {input_source}...")
+    segments = fake_segments(duration) if segments_only else FAKE_SEGMENTS
+    total = segments[-1][1]
+    decode_seconds = args.job_delay
+    if args.decode_cost:
+        decode_seconds += (duration or audio_duration(input_source) or total) * args.decode_cost
+    print(f"@@PROGRESS 0.000 {total:.3f}", flush=True)
+    for start, end, text in segments:
+        time.sleep(decode_seconds / len(segments))
+        print(f"@@SEGMENT {start:.3f} {end:.3f} {text}", flush=True)
+        print(f"@@PROGRESS {end:.3f} {total:.3f}", flush=True)
+    if segments_only:
+        write_segments(output_dir, job_id, duration)
+    else:
+        write_outputs(output_dir, job_id)
+
+def serve(args):
+    print(f"Loading Whisper model: {args.model}... (simulated)", flush=True)
+    time.sleep(args.load_delay)
+    print(f"@@READY {args.model}", flush=True)
+
+    jobs_done = 0
+    for line in sys.stdin:
+        line = line.strip()
+        if not line:
+            continue
+        request = json.loads(line)
+        job_id = request["job_id"]
+        if args.crash_after and jobs_done >= args.crash_after:
+            print("Simulating a worker crash", flush=True)
+            os._exit(3)
+        try:
+            run_job(args, request["input"], request["output_dir"], job_id,
+                    request.get("segments_only", False), request.get("duration"))
+            print(f"@@DONE {job_id}", flush=True)
+        except Exception as e:
+            print(f"@@ERROR {job_id} {e}", flush=True)
+        jobs_done += 1
+
+if __name__ == "__main__":
+    parser = argparse.ArgumentParser(description="Simulated Whisper transcription (no model required).")
+    parser.add_argument("input_source", nargs="?")
+    parser.add_argument("output_dir", nargs="?")
+    parser.add_argument("job_id", nargs="?")
+    parser.add_argument("--model", default="small")
+    parser.add_argument("--language", default=None)
+    parser.add_argument("--task", default="transcribe")
+    parser.add_argument("--serve", action="store_true")
+    parser.add_argument("--segments-only", action="store_true")
+    parser.add_argument("--load-delay", type=float, default=float(os.environ.get("FAKE_WHISPER_LOAD_DELAY", "1.0")),
+                        help="Seconds spent 'loading' the model")
+    parser.add_argument("--job-delay", type=float, default=float(os.environ.get("FAKE_WHISPER_JOB_DELAY", "0.5")),
+                        help="Seconds spent 'transcribing' each job")
+    parser.add_argument("--decode-cost", type=float,
+                        default=float(os.environ.get("FAKE_WHISPER_DECODE_COST", "0")),
+                        help="Extra seconds spent per second of audio")
+    parser.add_argument("--crash-after", type=int, default=int(os.environ.get("FAKE_WHISPER_CRASH_AFTER", "0")),
+                        help="In --serve mode, exit abruptly after this many jobs (0 = never)")
+
+    args = parser.parse_args()
+
+    if args.serve:
+        serve(args)
+    else:
+        print(f"Loading Whisper model: {args.model}... (simulated)")
+        time.sleep(args.load_delay)
+        run_job(args, args.input_source, args.output_dir, args.job_id, args.segments_only)
+        print("Transcription complete.")
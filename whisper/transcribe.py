@@ -1,10 +1,61 @@
 import argparse
+import contextlib
+import io
+import json
+import re
 import whisper
 import os
 import sys
 import yt_dlp
 from whisper.utils import get_writer
 
+# Whisper's verbose output prints one line per decoded segment: "[00:01.000 --> 00:04.500]  text"
+SEGMENT_LINE = re.compile(r"^\[((?:\d+:)?\d+:\d+\.\d+) --> ((?:\d+:)?\d+:\d+\.\d+)\]\s*(.*)$")
+
+def parse_timestamp(value):
+    seconds = 0.0
+    for part in value.split(":"):
+        seconds = seconds * 60 + float(part)
+    return seconds
+
+def progress_frame(processed, total):
+    return f"@@PROGRESS {min(processed, total):.3f} {total:.3f}\n"
+
+class SegmentFrameWriter(io.TextIOBase):
+    """
+    Stands in for stdout while Whisper decodes. Segment lines are re-emitted as
+    "@@SEGMENT <start> <end> <text>" frames the backend can stream to clients,
+    each followed by "@@PROGRESS <processed> <total>" (seconds of audio) when the
+    total duration is known; everything else is passed through unchanged.
+    """
+    def __init__(self, target, total_seconds=None):
+        self.target = target
+        self.total_seconds = total_seconds
+        self.pending = ""
+
+    def write(self, text):
+        self.pending += text
+        while "\n" in self.pending:
+            line, self.pending = self.pending.split("\n", 1)
+            self.emit(line)
+        return len(text)
+
+    def emit(self, line):
+        match = SEGMENT_LINE.match(line)
+        if match:
+            start, end, text = match.groups()
+            self.target.write(f"@@SEGMENT {parse_timestamp(start):.3f} {parse_timestamp(end):.3f} {text.strip()}\n")
+            if self.total_seconds:
+                self.target.write(progress_frame(parse_timestamp(end), self.total_seconds))
+        else:
+            self.target.write(line + "\n")
+        self.target.flush()
+
+    def flush(self):
+        if self.pending:
+            self.emit(self.pending)
+            self.pending = ""
+
 def download_audio(url, output_dir, job_id):
     print(f"Downloading audio from: {url}...")
     ydl_opts = {
@@ -19,66 +70,88 @@ def download_audio(url, output_dir, job_id):
     }
     with yt_dlp.YoutubeDL(ydl_opts) as ydl:
         ydl.download([url])
-    
+
     audio_path = os.path.join(output_dir, f'{job_id}_temp_audio.mp3')
     return audio_path
 
-def transcribe_audio(input_source, output_dir, job_id, model_name="small", language=None, task="transcribe"):
+def write_outputs(result, output_dir, job_id):
+    # 1. Save Plain Text
+    text_path = os.path.abspath(os.path.join(output_dir, f"{job_id}.txt"))
+    with open(text_path, "w", encoding="utf-8") as f:
+        f.write(result["text"].strip())
+    print(f"Saved text to: {text_path}")
+
+    # 2. Save Timestamped Text (for UI display)
+    timestamped_text_path = os.path.abspath(os.path.join(output_dir, f"{job_id}_timestamped.txt"))
+    with open(timestamped_text_path, "w", encoding="utf-8") as f:
+        for segment in result["segments"]:
+            start = int(segment['start'])
+            m, s = divmod(start, 60)
+            h, m = divmod(m, 60)
+            timestamp = f"[{h:02d}:{m:02d}:{s:02d}]"
+            f.write(f"{timestamp} {segment['text'].strip()}\n")
+    print(f"Saved timestamped text to: {timestamped_text_path}")
+
+    # 3. Save SRT and VTT using Whisper utilities
+    # Whisper 2024+ writers expect: writer(result, audio_path_or_id, options)
+    options = {"highlight_words": False, "max_line_count": None, "max_line_width": None}
+    for fmt in ["srt", "vtt"]:
+        writer = get_writer(fmt, output_dir)
+        writer(result, job_id, options)
+        print(f"Saved {fmt.upper()} to: {os.path.join(output_dir, job_id)}.{fmt}")
+
+def write_segments(result, output_dir, job_id):
+    # Raw segment list used by the backend to stitch chunked transcriptions
+    segments_path = os.path.abspath(os.path.join(output_dir, f"{job_id}.segments.json"))
+    segments = [{"start": s["start"], "end": s["end"], "text": s["text"]} for s in result["segments"]]
+    with open(segments_path, "w", encoding="utf-8") as f:
+        json.dump(segments, f, ensure_ascii=False)
+    print(f"Saved segments to: {segments_path}")
+
+def run_job(model, input_source, output_dir, job_id, language=None, task="transcribe", segments_only=False):
+    """Transcribes one input with an already loaded model. Raises on failure."""
     audio_path = input_source
     is_url = input_source.startswith("http://") or input_source.startswith("https://")
-    
-    if is_url:
-        try:
-            audio_path = download_audio(input_source, output_dir, job_id)
-        except Exception as e:
-            print(f"Error downloading audio: {e}")
-            sys.exit(1)
 
-    print(f"Loading Whisper model: {model_name}...")
-    try:
-        model = whisper.load_model(model_name)
-    except Exception as e:
-        print(f"Error loading model: {e}")
-        sys.exit(1)
+    if is_url:
+        audio_path = download_audio(input_source, output_dir, job_id)
 
     print(f"Processing audio: {audio_path}...")
     if not os.path.exists(audio_path):
-        print(f"Error: Audio file not found: {audio_path}")
-        sys.exit(1)
+        raise FileNotFoundError(f"Audio file not found: {audio_path}")
 
     try:
-        # Transcribe
-        result = model.transcribe(audio_path, language=language, task=task)
-        
-        # 1. Save Plain Text
-        text_path = os.path.abspath(os.path.join(output_dir, f"{job_id}.txt"))
-        with open(text_path, "w", encoding="utf-8") as f:
-            f.write(result["text"].strip())
-        print(f"Saved text to: {text_path}")
-            
-        # 2. Save Timestamped Text (for UI display)
-        timestamped_text_path = os.path.abspath(os.path.join(output_dir, f"{job_id}_timestamped.txt"))
-        with open(timestamped_text_path, "w", encoding="utf-8") as f:
-            for segment in result["segments"]:
-                start = int(segment['start'])
-                m, s = divmod(start, 60)
-                h, m = divmod(m, 60)
-                timestamp = f"[{h:02d}:{m:02d}:{s:02d}]"
-                f.write(f"{timestamp} {segment['text'].strip()}\n")
-        print(f"Saved timestamped text to: {timestamped_text_path}")
-
-        # 3. Save SRT and VTT using Whisper utilities
-        # Whisper 2024+ writers expect: writer(result, audio_path_or_id, options)
-        options = {"highlight_words": False, "max_line_count": None, "max_line_width": None}
-        for fmt in ["srt", "vtt"]:
-            writer = get_writer(fmt, output_dir)
-            writer(result, job_id, options)
-            print(f"Saved {fmt.upper()} to: {os.path.join(output_dir, job_id)}.{fmt}")
+        # Decode once up front so the total duration is known for progress frames
+        audio = whisper.load_audio(audio_path)
+        total_seconds = len(audio) / whisper.audio.SAMPLE_RATE
+        print(progress_frame(0, total_seconds), end="", flush=True)
 
+        frames = SegmentFrameWriter(sys.stdout, total_seconds)
+        with contextlib.redirect_stdout(frames):
+            result = model.transcribe(audio, language=language, task=task, verbose=True)
+        frames.flush()
+        print(progress_frame(total_seconds, total_seconds), end="", flush=True)
+        if segments_only:
+            write_segments(result, output_dir, job_id)
+        else:
+            write_outputs(result, output_dir, job_id)
+    finally:
         # Cleanup temp audio if downloaded from URL
         if is_url and os.path.exists(audio_path):
             os.remove(audio_path)
 
+def transcribe_audio(input_source, output_dir, job_id, model_name="small", language=None, task="transcribe",
+                     segments_only=False):
+    print(f"Loading Whisper model: {model_name}...")
+    try:
+        model = whisper.load_model(model_name)
+    except Exception as e:
+        print(f"Error loading model: {e}")
+        sys.exit(1)
+
+    try:
+        run_job(model, input_source, output_dir, job_id, language, task, segments_only)
+
         print("Transcription complete.")
         print(f"Files saved to {output_dir}")
 
@@ -88,15 +161,58 @@ def transcribe_audio(input_source, output_dir, job_id, model_name="small", langu
         print(f"Error during transcription: {e}")
         sys.exit(1)
 
+def serve(model_name):
+    """
+    Resident worker mode. Loads the model once, then reads one JSON job per line
+    from stdin and answers with protocol frames on stdout:
+      @@READY <model>            model loaded, ready for the first job
+      @@DONE <job_id>            job finished, outputs written
+      @@ERROR <job_id> <message> job failed, worker stays usable
+      @@SEGMENT <start> <end> <text> a segment was decoded (seconds, also in CLI mode)
+      @@PROGRESS <processed> <total> seconds of audio decoded so far (also in CLI mode)
+    With "segments_only": true a job writes <job_id>.segments.json instead of
+    the four transcript files (the backend stores and renders segments itself).
+    Every other line is free-form log output. The worker exits when stdin closes.
+    """
+    print(f"Loading Whisper model: {model_name}...", flush=True)
+    model = whisper.load_model(model_name)
+    print(f"@@READY {model_name}", flush=True)
+
+    for line in sys.stdin:
+        line = line.strip()
+        if not line:
+            continue
+        request = json.loads(line)
+        job_id = request["job_id"]
+        try:
+            run_job(model, request["input"], request["output_dir"], job_id,
+                    request.get("language"), request.get("task") or "transcribe",
+                    request.get("segments_only", False))
+            print(f"@@DONE {job_id}", flush=True)
+        except Exception as e:
+            import traceback
+            traceback.print_exc(file=sys.stdout)
+            message = str(e).replace("\n", " ")
+            print(f"@@ERROR {job_id} {message}", flush=True)
+
 if __name__ == "__main__":
     parser = argparse.ArgumentParser(description="Transcribe audio or URL to text using Whisper.")
-    parser.add_argument("input_source", help="Path to input audio file or URL")
-    parser.add_argument("output_dir", help="Directory to save output files")
-    parser.add_argument("job_id", help="Base name for output files (Job ID)")
+    parser.add_argument("input_source", nargs="?", help="Path to input audio file or URL")
+    parser.add_argument("output_dir", nargs="?", help="Directory to save output files")
+    parser.add_argument("job_id", nargs="?", help="Base name for output files (Job ID)")
     parser.add_argument("--model", default="small", help="Whisper model name")
     parser.add_argument("--language", default=None, help="Language code")
     parser.add_argument("--task", default="transcribe", help="Task (transcribe or translate)")
+    parser.add_argument("--serve", action="store_true", help="Run as a resident worker reading jobs from stdin")
+    parser.add_argument("--segments-only", action="store_true",
+                        help="Write <job_id>.segments.json instead of the four transcript files")
 
     args = parser.parse_args()
 
-    transcribe_audio(args.input_source, args.output_dir, args.job_id, args.model, args.language, args.task)
+    if args.serve:
+        serve(args.model)
+    elif not (args.input_source and args.output_dir and args.job_id):
+        parser.error("input_source, output_dir and job_id are required unless --serve is given")
+    else:
+        transcribe_audio(args.input_source, args.output_dir, args.job_id, args.model, args.language, args.task,
+                         args.segments_only)